@@ -47,6 +47,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -126,6 +127,7 @@ import rs117.hd.utils.Mat4;
 import rs117.hd.utils.NpcDisplacementCache;
 import rs117.hd.utils.PopupUtils;
 import rs117.hd.utils.Props;
+import rs117.hd.utils.QualityGovernor;
 import rs117.hd.utils.ResourcePath;
 import rs117.hd.utils.ShaderRecompile;
 import rs117.hd.utils.buffer.GLBuffer;
@@ -187,6 +189,9 @@ public class HdPlugin extends Plugin {
 	public static final float NEAR_PLANE = 50;
 	public static final int MAX_FACE_COUNT = 6144;
 	public static final int MAX_DISTANCE = EXTENDED_SCENE_SIZE;
+	// The adaptive quality governor never reduces distances set above these limits to below them
+	private static final int MIN_GOVERNED_DRAW_DISTANCE = 25;
+	private static final int MIN_GOVERNED_DETAIL_DISTANCE = 20;
 	public static final int MAX_FOG_DEPTH = 100;
 	public static final int TILED_LIGHTING_TILE_SIZE = 16;
 
@@ -296,6 +301,9 @@ public class HdPlugin extends Plugin {
 	@Inject
 	private FrameTimer frameTimer;
 
+	@Inject
+	public QualityGovernor qualityGovernor;
+
 	@Inject
 	private UIShaderProgram uiProgram;
 
@@ -420,7 +428,18 @@ public class HdPlugin extends Plugin {
 	public boolean configHideVanillaWaterEffects;
 	public boolean configTiledLighting;
 	public boolean configTiledLightingImageLoadStore;
+	public boolean configTiledLightingCpuBinning;
+	public boolean configOcclusionCulling;
+	public boolean configOptimizeCommandBuffers;
+	public boolean configDeduplicateFaceData;
+	public boolean configZoneLods;
+	public int configDetailCullingPixels;
+	public boolean configDynamicModelInstancing;
+	public boolean configShareModelTopology;
+	public boolean configEarlyTiledLightBinning;
+	public int configBackgroundJobBudgetMs;
 	public int configDetailDrawDistance;
+	public int configAdaptiveQualityTargetFps;
 	public int configExpandedMapLoadingChunks;
 	public DynamicLights configDynamicLights;
 	public ShadowMode configShadowMode;
@@ -470,6 +489,26 @@ public class HdPlugin extends Plugin {
 	@Getter
 	public int drawnDynamicRenderableCount;
 	@Getter
+	public int occludedZoneCount;
+	@Getter
+	public int culledDetailModelCount;
+	@Getter
+	public int instancedDynamicModelCount;
+	@Getter
+	public int tempAlphaModelCount;
+	@Getter
+	public int concurrentTempAlphaModelCount;
+	@Getter
+	public float overlappedTiledLightBinningMs;
+	@Getter
+	public int recordedCommandCount;
+	@Getter
+	public int optimizedCommandCount;
+	@Getter
+	public int recordedDrawCount;
+	@Getter
+	public int optimizedDrawCount;
+	@Getter
 	public long garbageCollectionCount;
 
 	private int startupCount;
@@ -1664,7 +1703,19 @@ public class HdPlugin extends Plugin {
 		configDynamicLights = config.dynamicLights();
 		configTiledLighting = config.tiledLighting();
 		configTiledLightingImageLoadStore = config.tiledLightingImageLoadStore();
+		configTiledLightingCpuBinning = config.tiledLightingCpuBinning();
+		configOcclusionCulling = config.occlusionCulling();
+		configOptimizeCommandBuffers = config.optimizeCommandBuffers();
+		configDeduplicateFaceData = config.deduplicateFaceData();
+		configZoneLods = config.zoneLods();
+		configDetailCullingPixels = config.detailCullingPixels();
+		configDynamicModelInstancing = config.dynamicModelInstancing();
+		configShareModelTopology = config.shareModelTopology();
+		configEarlyTiledLightBinning = config.earlyTiledLightBinning();
+		configBackgroundJobBudgetMs = config.backgroundJobBudget();
+		jobSystem.setBackgroundFrameBudget(TimeUnit.MILLISECONDS.toNanos(configBackgroundJobBudgetMs));
 		configDetailDrawDistance = config.detailDrawDistance();
+		configAdaptiveQualityTargetFps = config.adaptiveQualityTargetFps();
 		configExpandShadowDraw = config.expandShadowDraw();
 		configUseFasterModelHashing = config.fasterModelHashing();
 		configZoneStreaming = config.zoneStreaming();
@@ -1777,6 +1828,7 @@ public class HdPlugin extends Plugin {
 							case KEY_REMOVE_VERTEX_SNAPPING:
 							case KEY_LEGACY_RENDERER:
 							case KEY_INDIRECT_DRAW:
+							case KEY_PACKED_VERTICES:
 							case KEY_STORAGE_BUFFERS:
 							case KEY_SHADING_MODE:
 								restartPlugin();
@@ -1857,6 +1909,9 @@ public class HdPlugin extends Plugin {
 								// fall-through
 							case KEY_GROUND_BLENDING:
 							case KEY_FILL_GAPS_IN_TERRAIN:
+							case KEY_DEDUPLICATE_FACE_DATA:
+							case KEY_ZONE_LODS:
+							case KEY_DETAIL_CULLING_PIXELS:
 							case KEY_LEGACY_TZHAAR_RESKIN:
 								reloadScene = true;
 								break;
@@ -1971,7 +2026,21 @@ public class HdPlugin extends Plugin {
 	}
 
 	public int getDrawDistance() {
-		return clamp(config.drawDistance(), 0, MAX_DISTANCE);
+		int drawDistance = clamp(config.drawDistance(), 0, MAX_DISTANCE);
+		return governDistance(drawDistance, qualityGovernor.getDrawDistanceScale(), MIN_GOVERNED_DRAW_DISTANCE);
+	}
+
+	public int getDetailDrawDistance() {
+		return governDistance(configDetailDrawDistance, qualityGovernor.getDetailDistanceScale(), MIN_GOVERNED_DETAIL_DISTANCE);
+	}
+
+	/**
+	 * Scale down a distance in tiles while over the frame time budget, but never below the specified minimum.
+	 */
+	private static int governDistance(int distance, float scale, int minDistance) {
+		if (scale == 1)
+			return distance;
+		return max(min(distance, minDistance), round(distance * scale));
 	}
 
 	public float getGammaCorrection() {
@@ -2020,6 +2089,9 @@ public class HdPlugin extends Plugin {
 		lastFrameTimeMillis = System.currentTimeMillis();
 		lastFrameClientTime = elapsedClientTime;
 
+		qualityGovernor.setTargetFps(configAdaptiveQualityTargetFps);
+		qualityGovernor.update(frameTimer.takeLastFrameDuration());
+
 		isClientMinimized = HDUtils.isJFrameMinimized(clientJFrame);
 		if (isClientInFocus) {
 			clientUnfocusedTime = 0;
@@ -1214,6 +1214,170 @@ public interface HdPluginConfig extends Config
 		return true;
 	}
 
+	String KEY_TILED_LIGHTING_CPU_BINNING = "experimentalTiledLightingCpuBinning";
+	@ConfigItem(
+		keyName = KEY_TILED_LIGHTING_CPU_BINNING,
+		name = "Bin tiled lights on the CPU",
+		description =
+			"Determine which lights affect each part of the screen on the CPU instead of the GPU.<br>" +
+			"This <i>might</i> improve performance on integrated GPUs when there are many lights nearby.",
+		section = experimentalSettings
+	)
+	default boolean tiledLightingCpuBinning() {
+		return false;
+	}
+
+	String KEY_OCCLUSION_CULLING = "experimentalOcclusionCulling";
+	@ConfigItem(
+		keyName = KEY_OCCLUSION_CULLING,
+		name = "Occlusion culling",
+		description =
+			"Skip drawing parts of the scene which are hidden behind hills and other terrain.<br>" +
+			"This is checked on the CPU, and is currently only supported by the new renderer.",
+		section = experimentalSettings
+	)
+	default boolean occlusionCulling() {
+		return false;
+	}
+
+	String KEY_OPTIMIZE_COMMAND_BUFFERS = "experimentalOptimizeCommandBuffers";
+	@ConfigItem(
+		keyName = KEY_OPTIMIZE_COMMAND_BUFFERS,
+		name = "Optimize draw commands",
+		description =
+			"Remove redundant state changes and merge consecutive draws before submitting each frame to the GPU.<br>" +
+			"This is currently only supported by the new renderer.",
+		section = experimentalSettings
+	)
+	default boolean optimizeCommandBuffers() {
+		return false;
+	}
+
+	String KEY_DEDUPLICATE_FACE_DATA = "experimentalDeduplicateFaceData";
+	@ConfigItem(
+		keyName = KEY_DEDUPLICATE_FACE_DATA,
+		name = "Share identical face data",
+		description =
+			"Store the colors and materials of identical faces in the scene only once, reducing GPU memory usage.<br>" +
+			"This is currently only supported by the new renderer.",
+		section = experimentalSettings
+	)
+	default boolean deduplicateFaceData() {
+		return false;
+	}
+
+	String KEY_PACKED_VERTICES = "experimentalPackedVertices";
+	@ConfigItem(
+		keyName = KEY_PACKED_VERTICES,
+		name = "Compact scene geometry",
+		description =
+			"Store scene geometry in a tighter format, reducing static scene vertex memory by roughly 30%.<br>" +
+			"This is currently only supported by the new renderer.",
+		section = experimentalSettings
+	)
+	default boolean packedVertices() {
+		return false;
+	}
+
+	String KEY_ADAPTIVE_QUALITY_TARGET_FPS = "experimentalAdaptiveQualityTargetFps";
+	@Range(
+		max = 240
+	)
+	@ConfigItem(
+		keyName = KEY_ADAPTIVE_QUALITY_TARGET_FPS,
+		name = "Adaptive quality target FPS",
+		description =
+			"Temporarily reduce draw distance, shadow distance, detail distance and transparency sorting while frames<br>" +
+			"take longer to draw than this frame rate allows, restoring them once performance recovers. 0 disables this.",
+		section = experimentalSettings
+	)
+	default int adaptiveQualityTargetFps() {
+		return 0;
+	}
+
+	String KEY_ZONE_LODS = "experimentalZoneLods";
+	@ConfigItem(
+		keyName = KEY_ZONE_LODS,
+		name = "Simplify distant scenery",
+		description =
+			"Draw simplified copies of static scene geometry far away from the camera, reducing GPU load at high draw distances.<br>" +
+			"This uses more GPU memory, and is currently only supported by the new renderer.",
+		section = experimentalSettings
+	)
+	default boolean zoneLods() {
+		return false;
+	}
+
+	String KEY_DETAIL_CULLING_PIXELS = "experimentalDetailCullingPixels";
+	@Range(
+		max = 16
+	)
+	@ConfigItem(
+		keyName = KEY_DETAIL_CULLING_PIXELS,
+		name = "Cull small scenery",
+		description =
+			"Skip drawing small static objects like grass, rocks and debris once they would be less than this many pixels across.<br>" +
+			"0 disables this. This is currently only supported by the new renderer.",
+		section = experimentalSettings
+	)
+	default int detailCullingPixels() {
+		return 0;
+	}
+
+	String KEY_DYNAMIC_MODEL_INSTANCING = "experimentalDynamicModelInstancing";
+	@ConfigItem(
+		keyName = KEY_DYNAMIC_MODEL_INSTANCING,
+		name = "Share identical animated models",
+		description =
+			"Process animated models which are drawn several times in the same pose only once per frame,<br>" +
+			"like crowds of NPCs or repeated animated scenery. This is currently only supported by the new renderer.",
+		section = experimentalSettings
+	)
+	default boolean dynamicModelInstancing() {
+		return false;
+	}
+
+	String KEY_SHARE_MODEL_TOPOLOGY = "experimentalShareModelTopology";
+	@ConfigItem(
+		keyName = KEY_SHARE_MODEL_TOPOLOGY,
+		name = "Share animated model faces",
+		description =
+			"Keep a single copy of the faces, colors and textures of animated models between draws,<br>" +
+			"instead of copying them for every draw. This is currently only supported by the new renderer.",
+		section = experimentalSettings
+	)
+	default boolean shareModelTopology() {
+		return false;
+	}
+
+	String KEY_EARLY_TILED_LIGHT_BINNING = "experimentalEarlyTiledLightBinning";
+	@ConfigItem(
+		keyName = KEY_EARLY_TILED_LIGHT_BINNING,
+		name = "Bin tiled lights early",
+		description =
+			"When binning tiled lights on the CPU, start as soon as the camera and lights are known,<br>" +
+			"on background threads while the scene is being drawn. This is currently only supported by the new renderer.",
+		section = experimentalSettings
+	)
+	default boolean earlyTiledLightBinning() {
+		return false;
+	}
+
+	String KEY_BACKGROUND_JOB_BUDGET = "experimentalBackgroundJobBudget";
+	@Range(max = 16)
+	@Units(" ms")
+	@ConfigItem(
+		keyName = KEY_BACKGROUND_JOB_BUDGET,
+		name = "Background work budget",
+		description =
+			"Limit how much time background threads may spend streaming in zones each frame, leaving more of your<br>" +
+			"processor to the client. Work which has been waiting for too long is always picked up. 0 means unlimited.",
+		section = experimentalSettings
+	)
+	default int backgroundJobBudget() {
+		return 0;
+	}
+
 	String KEY_INDIRECT_DRAW = "experimentalIndirectDraw";
 	@ConfigItem(
 		keyName = KEY_INDIRECT_DRAW,
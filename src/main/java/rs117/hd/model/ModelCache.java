@@ -1,16 +1,33 @@
 package rs117.hd.model;
 
+import java.nio.Buffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayDeque;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
 import lombok.extern.slf4j.Slf4j;
 import org.lwjgl.system.MemoryUtil;
 
 import static rs117.hd.utils.MathUtils.*;
-
+import static rs117.hd.utils.collections.Util.murmurHash3;
+
+/**
+ * A cache of model data, split into shards by hash bits, each with its own ring of allocations which are reused in
+ * the order they were reserved. The cache can be used from multiple threads at once:
+ * <ul>
+ *     <li>Lookups copy the cached data out without locking, and validate afterwards that no entry in the shard was
+ *     evicted in the meantime, falling back to copying under a read lock if it was.</li>
+ *     <li>Reservations are handed out under the shard's write lock, but filled by the caller without holding any lock.
+ *     A reservation is only visible to lookups once it has been committed, and a shard will refuse to evict a
+ *     reservation which hasn't been committed yet, failing the new reservation instead.</li>
+ * </ul>
+ */
 @Slf4j
 public class ModelCache {
+	private static final long MIN_SHARD_BYTES = 16 * MiB;
+	private static final int MAX_SHARDS = 16;
+
 	private static class Allocation {
 		long address;
 		long byteCapacity;
@@ -58,22 +75,27 @@ public class ModelCache {
 		}
 	}
 
-	private static class Buffer {
-		final boolean endMarker;
-		final long hash;
-		final long byteCapacity;
-		final IntBuffer intBuffer;
-		final FloatBuffer floatBuffer;
-
-		public Buffer(long byteCapacity) {
+	public static final class Entry {
+		private final boolean endMarker;
+		private final long hash;
+		private final long byteCapacity;
+		public final IntBuffer intBuffer;
+		public final FloatBuffer floatBuffer;
+		private int generation;
+		// The number of bytes which were written before the entry was committed
+		private long committedBytes;
+		private volatile boolean committed;
+
+		private Entry(long byteCapacity) {
 			endMarker = true;
 			this.hash = 0;
 			this.byteCapacity = byteCapacity;
 			intBuffer = null;
 			floatBuffer = null;
+			committed = true;
 		}
 
-		public Buffer(long hash, IntBuffer buffer) {
+		private Entry(long hash, IntBuffer buffer) {
 			endMarker = false;
 			this.hash = hash;
 			byteCapacity = buffer.capacity() * 4L;
@@ -81,25 +103,289 @@ public class ModelCache {
 			floatBuffer = null;
 		}
 
-		public Buffer(long hash, FloatBuffer buffer) {
+		private Entry(long hash, FloatBuffer buffer) {
 			endMarker = false;
 			this.hash = hash;
 			byteCapacity = buffer.capacity() * 4L;
 			intBuffer = null;
 			floatBuffer = buffer;
 		}
+
+		private long address() {
+			return MemoryUtil.memAddress0(intBuffer == null ? floatBuffer : intBuffer);
+		}
+	}
+
+	private final class Shard {
+		final StampedLock lock = new StampedLock();
+		final ConcurrentHashMap<Long, Entry> cache = new ConcurrentHashMap<>();
+		final ArrayDeque<Entry> entries = new ArrayDeque<>();
+		final Allocation[] allocations;
+		Allocation currentAllocation;
+		int currentAllocationIndex;
+		// Incremented whenever the shard is cleared, to avoid committing reservations from before it was cleared
+		int generation;
+
+		Shard(long byteCapacity) {
+			Allocation[] allocations = new Allocation[1];
+			try {
+				// Try allocating the whole size as a single chunk
+				allocations[0] = new Allocation(byteCapacity);
+			} catch (Throwable err) {
+				log.warn("Unable to allocate {} MiB as a single chunk", byteCapacity / MiB, err);
+
+				try {
+					// Try allocating in chunks of up to 1 GiB each
+					int numChunks = (int) ((byteCapacity + GiB - 1) / GiB);
+					allocations = new Allocation[numChunks];
+					for (int i = 0; i < numChunks; i++) {
+						allocations[i] = new Allocation(min(byteCapacity - i * GiB, GiB));
+					}
+				} catch (Throwable err2) {
+					for (Allocation allocation : allocations)
+						if (allocation != null)
+							allocation.destroy();
+					log.error("Unable to allocate {} MiB in chunks of up to 1 GiB each", byteCapacity / MiB, err2);
+					throw err2;
+				}
+			}
+
+			this.allocations = allocations;
+			currentAllocation = allocations[0];
+		}
+
+		void destroy() {
+			long stamp = lock.writeLock();
+			try {
+				cache.clear();
+				entries.clear();
+				currentAllocation = null;
+
+				for (int i = 0; i < allocations.length; i++) {
+					if (allocations[i] != null) {
+						allocations[i].destroy();
+						allocations[i] = null;
+					}
+				}
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		void clear() {
+			long stamp = lock.writeLock();
+			try {
+				generation++;
+				cache.clear();
+				entries.clear();
+				for (Allocation allocation : allocations) {
+					if (allocation != null) {
+						allocation.cursor = 0;
+						allocation.freeBytesAhead = allocation.byteCapacity;
+					}
+				}
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		boolean copy(long hash, long byteCapacity, long dstAddress) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp != 0) {
+				Entry entry = cache.get(hash);
+				if (entry == null || entry.committedBytes != byteCapacity)
+					return false;
+				MemoryUtil.memCopy(entry.address(), dstAddress, byteCapacity);
+				if (lock.validate(stamp))
+					return true;
+			}
+
+			// An entry was evicted while copying, so the copied data may have been overwritten
+			stamp = lock.readLock();
+			try {
+				Entry entry = cache.get(hash);
+				if (entry == null || entry.committedBytes != byteCapacity)
+					return false;
+				MemoryUtil.memCopy(entry.address(), dstAddress, byteCapacity);
+				return true;
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+
+		long reserve(long numBytes) {
+			assert currentAllocation != null : "model cache used after destruction";
+
+			if (currentAllocation.bytesFromEnd() < numBytes) {
+				// ### = taken, ... = free, MMM = end marker
+				//                    _________ -> not enough space
+				// [##################....###MM]
+				// inserting a new end marker as follows will cause issues
+				// [##################MMMM###MM]
+				// since ### and MM will be freed next, an option is to move these to the end of the buffer list
+				// another minor optimization we can make is to pretend that the buffers are shifted to the left like so
+				// [##################|MMMM###MM]
+				// [##################|###MMMMMM]
+				// this leaves us with only a single dummy buffer at the end, and a guarantee that buffers will still be
+				// freed in an appropriate order with no collisions
+
+				// Move the existing regions to the end of the buffer list
+				while (currentAllocation.bytesFromEnd() != currentAllocation.freeBytesAhead) {
+					assert currentAllocation.bytesFromEnd() > currentAllocation.freeBytesAhead;
+					Entry entry = entries.pollFirst();
+					if (entry == null) {
+						log.error("No more cache entries left to free, yet the allocation is still in use ({} != {})",
+							currentAllocation.bytesFromEnd(), currentAllocation.freeBytesAhead);
+						terminationHook.run();
+						return 0;
+					}
+
+					if (entry.endMarker) {
+						// Shift unused space to the end of the buffer, as detailed above
+						currentAllocation.freeBytesAhead += entry.byteCapacity;
+						assert currentAllocation.cursor + currentAllocation.freeBytesAhead <= currentAllocation.byteCapacity;
+					} else {
+						// Move the buffer to the end of the list, and pretend we've shifted it to the left as detailed above
+						entries.addLast(entry);
+						currentAllocation.cursor += entry.byteCapacity;
+					}
+				}
+
+				// Consume the remaining free bytes of the allocation
+				entries.addLast(new Entry(currentAllocation.freeBytesAhead));
+				// Advance to the next allocation, or the beginning of the same allocation if there is only one
+				nextAllocation();
+
+				if (currentAllocation.bytesFromEnd() < numBytes) {
+					log.error("Failed to reserve space for {} bytes. Too large to fit in allocation {} of size {}",
+						numBytes, currentAllocationIndex, currentAllocation.byteCapacity);
+					terminationHook.run();
+					return 0;
+				}
+			}
+
+			while (currentAllocation.freeBytesAhead < numBytes) {
+				Entry oldest = entries.peekFirst();
+				if (oldest == null) {
+					log.error("No more cache entries left to free, yet there aren't enough free bytes ({} < {})",
+						currentAllocation.freeBytesAhead, numBytes);
+					terminationHook.run();
+					return 0;
+				}
+
+				// The oldest entry is still being written to by another thread, so its memory can't be reused yet
+				if (!oldest.committed)
+					return 0;
+
+				removeOldestCacheEntry();
+			}
+
+			return currentAllocation.reserve(numBytes);
+		}
+
+		private void nextAllocation() {
+			currentAllocation.cursor = 0;
+			currentAllocation.freeBytesAhead = 0;
+
+			currentAllocationIndex++;
+			currentAllocationIndex %= allocations.length;
+			currentAllocation = allocations[currentAllocationIndex];
+		}
+
+		private void removeOldestCacheEntry() {
+			Entry entry = entries.pollFirst();
+			assert entry != null;
+
+			if (!entry.endMarker) {
+				cache.remove(entry.hash, entry);
+				// Normally, these addresses will be equal, but in case they've been "shifted" as detailed in the
+				// reserve function, the buffer's actual address will be larger than the cursor position
+				assert currentAllocation.address + currentAllocation.cursor + currentAllocation.freeBytesAhead <= entry.address();
+			}
+
+			currentAllocation.freeBytesAhead += entry.byteCapacity;
+			assert currentAllocation.cursor + currentAllocation.freeBytesAhead <= currentAllocation.byteCapacity;
+		}
+
+		void commit(Entry entry) {
+			long stamp = lock.readLock();
+			try {
+				if (entry.generation != generation)
+					return;
+				entry.committedBytes = (entry.intBuffer == null ? entry.floatBuffer : entry.intBuffer).position() * 4L;
+				entry.committed = true;
+				cache.put(entry.hash, entry);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+
+		Entry reserveIntBuffer(long hash, int capacity) {
+			long stamp = lock.writeLock();
+			try {
+				long address = reserve(capacity * 4L);
+				if (address == 0L)
+					return null;
+				Entry entry = new Entry(hash, MemoryUtil.memIntBuffer(address, capacity));
+				entry.generation = generation;
+				entries.addLast(entry);
+				return entry;
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		Entry reserveFloatBuffer(long hash, int capacity) {
+			long stamp = lock.writeLock();
+			try {
+				long address = reserve(capacity * 4L);
+				if (address == 0L)
+					return null;
+				Entry entry = new Entry(hash, MemoryUtil.memFloatBuffer(address, capacity));
+				entry.generation = generation;
+				entries.addLast(entry);
+				return entry;
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
 	}
 
 	private final Runnable terminationHook;
-	private final HashMap<Long, Buffer> cache = new HashMap<>();
-	private final ArrayDeque<Buffer> buffers = new ArrayDeque<>();
-	private final Allocation[] allocations;
-	private Allocation currentAllocation;
-	private int currentAllocationIndex;
+	private final Shard[] shards;
+	private final int shardMask;
 
 	public ModelCache(int modelCacheSizeMiB, Runnable terminationHook) {
+		this(limitCacheSize(modelCacheSizeMiB) * MiB, 0, terminationHook);
+	}
+
+	/**
+	 * @param byteCapacity   total size of the cache
+	 * @param shardCount     number of shards to split the cache into, which must be a power of two, or 0 to decide
+	 *                       based on the size of the cache
+	 * @param terminationHook called if the cache ends up in an unrecoverable state
+	 */
+	public ModelCache(long byteCapacity, int shardCount, Runnable terminationHook) {
 		this.terminationHook = terminationHook;
 
+		if (shardCount <= 0)
+			shardCount = (int) clamp(Long.highestOneBit(byteCapacity / MIN_SHARD_BYTES), 1, MAX_SHARDS);
+		assert Integer.bitCount(shardCount) == 1 : "Shard count must be a power of two";
+
+		log.debug("Allocating {} MiB model cache in {} shards", byteCapacity / MiB, shardCount);
+
+		shards = new Shard[shardCount];
+		shardMask = shardCount - 1;
+		try {
+			for (int i = 0; i < shardCount; i++)
+				shards[i] = new Shard(byteCapacity / shardCount);
+		} catch (Throwable err) {
+			destroy();
+			throw err;
+		}
+	}
+
+	private static int limitCacheSize(int modelCacheSizeMiB) {
 		// Limit cache size to 128 MiB for 32-bit
 		if (modelCacheSizeMiB > 128 && !"64".equals(System.getProperty("sun.arch.data.model"))) {
 			log.warn("Defaulting model cache to 128 MiB due to non 64-bit client");
@@ -121,48 +407,13 @@ public class ModelCache {
 			log.warn("Unable to check physical memory size: " + e);
 		}
 
-		long byteCapacity = modelCacheSizeMiB * MiB;
-
-		log.debug("Allocating {} MiB model cache", modelCacheSizeMiB);
-
-		Allocation[] allocations = new Allocation[1];
-		try {
-			// Try allocating the whole size as a single chunk
-			allocations[0] = new Allocation(byteCapacity);
-		} catch (Throwable err) {
-			log.warn("Unable to allocate {} MiB as a single chunk", modelCacheSizeMiB, err);
-
-			try {
-				// Try allocating in chunks of up to 1 GiB each
-				int numChunks = (int) ((byteCapacity + GiB - 1) / GiB);
-				allocations = new Allocation[numChunks];
-				for (int i = 0; i < numChunks; i++) {
-					allocations[i] = new Allocation(min(byteCapacity - i * GiB, GiB));
-				}
-			} catch (Throwable err2) {
-				destroy();
-				log.error("Unable to allocate {} MiB in chunks of up to 1 GiB each", modelCacheSizeMiB, err2);
-				throw err2;
-			}
-		}
-
-		this.allocations = allocations;
-		currentAllocation = allocations[0];
+		return modelCacheSizeMiB;
 	}
 
 	public void destroy() {
-		cache.clear();
-		buffers.clear();
-		currentAllocation = null;
-
-		if (allocations != null) {
-			for (int i = 0; i < allocations.length; i++) {
-				if (allocations[i] != null) {
-					allocations[i].destroy();
-					allocations[i] = null;
-				}
-			}
-		}
+		for (Shard shard : shards)
+			if (shard != null)
+				shard.destroy();
 	}
 
 	@Override
@@ -176,143 +427,60 @@ public class ModelCache {
 		}
 	}
 
+	/**
+	 * Clear the cache. Any reservations which haven't been committed yet are discarded, so this must not be called
+	 * while other threads are still filling reservations.
+	 */
 	public void clear() {
-		cache.clear();
-		buffers.clear();
-		for (Allocation allocation : allocations) {
-			if (allocation != null) {
-				allocation.cursor = 0;
-				allocation.freeBytesAhead = allocation.byteCapacity;
-			}
-		}
+		for (Shard shard : shards)
+			shard.clear();
 	}
 
-	private Buffer get(long hash) {
-		return cache.get(hash);
+	private Shard shard(long hash) {
+		return shards[(int) murmurHash3(hash) & shardMask];
 	}
 
-	private void nextAllocation() {
-		currentAllocation.cursor = 0;
-		currentAllocation.freeBytesAhead = 0;
-
-		currentAllocationIndex++;
-		currentAllocationIndex %= allocations.length;
-		currentAllocation = allocations[currentAllocationIndex];
+	/**
+	 * Copy cached data into the remaining space of the destination buffer, advancing its position.
+	 *
+	 * @return true if the data was cached with the same number of elements, otherwise the buffer is left untouched
+	 */
+	public boolean copyTo(long hash, int capacity, IntBuffer dst) {
+		return copyTo(hash, capacity, (Buffer) dst);
 	}
 
-	private long reserve(long numBytes) {
-		assert currentAllocation != null : "model cache used after destruction";
-
-		if (currentAllocation.bytesFromEnd() < numBytes) {
-			// ### = taken, ... = free, MMM = end marker
-			//                    _________ -> not enough space
-			// [##################....###MM]
-			// inserting a new end marker as follows will cause issues
-			// [##################MMMM###MM]
-			// since ### and MM will be freed next, an option is to move these to the end of the buffer list
-			// another minor optimization we can make is to pretend that the buffers are shifted to the left like so
-			// [##################|MMMM###MM]
-			// [##################|###MMMMMM]
-			// this leaves us with only a single dummy buffer at the end, and a guarantee that buffers will still be
-			// freed in an appropriate order with no collisions
-
-			// Move the existing regions to the end of the buffer list
-			while (currentAllocation.bytesFromEnd() != currentAllocation.freeBytesAhead) {
-				assert currentAllocation.bytesFromEnd() > currentAllocation.freeBytesAhead;
-				Buffer buffer = buffers.pollFirst();
-				if (buffer == null) {
-					log.error("No more cache entries left to free, yet the allocation is still in use ({} != {})",
-						currentAllocation.bytesFromEnd(), currentAllocation.freeBytesAhead);
-					terminationHook.run();
-					return 0;
-				}
-
-				if (buffer.endMarker) {
-					// Shift unused space to the end of the buffer, as detailed above
-					currentAllocation.freeBytesAhead += buffer.byteCapacity;
-					assert currentAllocation.cursor + currentAllocation.freeBytesAhead <= currentAllocation.byteCapacity;
-				} else {
-					// Move the buffer to the end of the list, and pretend we've shifted it to the left as detailed above
-					buffers.addLast(buffer);
-					currentAllocation.cursor += buffer.byteCapacity;
-				}
-			}
-
-			// Consume the remaining free bytes of the allocation
-			buffers.addLast(new Buffer(currentAllocation.freeBytesAhead));
-			// Advance to the next allocation, or the beginning of the same allocation if there is only one
-			nextAllocation();
-
-			if (currentAllocation.bytesFromEnd() < numBytes) {
-				log.error("Failed to reserve space for {} bytes. Too large to fit in allocation {} of size {}",
-					numBytes, currentAllocationIndex, currentAllocation.byteCapacity);
-				terminationHook.run();
-				return 0;
-			}
-		}
-
-		while (currentAllocation.freeBytesAhead < numBytes) {
-			if (removeOldestCacheEntry() == null) {
-				log.error("No more cache entries left to free, yet there aren't enough free bytes ({} < {})",
-					currentAllocation.freeBytesAhead, numBytes);
-				terminationHook.run();
-				return 0;
-			}
-		}
-
-		return currentAllocation.reserve(numBytes);
-	}
-
-	private Buffer removeOldestCacheEntry() {
-		Buffer buffer = buffers.pollFirst();
-
-		if (buffer != null) {
-			if (!buffer.endMarker) {
-				cache.remove(buffer.hash, buffer);
-				// Normally, these addresses will be equal, but in case they've been "shifted" as detailed in the
-				// reserve function, the buffer's actual address will be larger than the cursor position
-				assert currentAllocation.address + currentAllocation.cursor + currentAllocation.freeBytesAhead <=
-					MemoryUtil.memAddress0(buffer.intBuffer == null ? buffer.floatBuffer : buffer.intBuffer);
-			}
-
-			currentAllocation.freeBytesAhead += buffer.byteCapacity;
-			assert currentAllocation.cursor + currentAllocation.freeBytesAhead <= currentAllocation.byteCapacity;
-		}
-
-		return buffer;
+	public boolean copyTo(long hash, int capacity, FloatBuffer dst) {
+		return copyTo(hash, capacity, (Buffer) dst);
 	}
 
-	public IntBuffer getIntBuffer(long hash) {
-		Buffer buffer = get(hash);
-		if (buffer == null)
-			return null;
-		return buffer.intBuffer;
+	private boolean copyTo(long hash, int capacity, Buffer dst) {
+		assert dst.isDirect() && dst.remaining() >= capacity;
+		if (!shard(hash).copy(hash, capacity * 4L, MemoryUtil.memAddress(dst)))
+			return false;
+		dst.position(dst.position() + capacity);
+		return true;
 	}
 
-	public FloatBuffer getFloatBuffer(long hash) {
-		Buffer buffer = get(hash);
-		if (buffer == null)
-			return null;
-		return buffer.floatBuffer;
+	/**
+	 * Reserve space in the cache for the caller to fill. The entry won't be visible to lookups until it has been
+	 * committed with {@link #commit(Entry)}. Every reservation must be committed, since the space of uncommitted
+	 * reservations can't be reused.
+	 *
+	 * @return the reserved entry, or null if no space could be reserved
+	 */
+	public Entry reserveIntBuffer(long hash, int capacity) {
+		return shard(hash).reserveIntBuffer(hash, capacity);
 	}
 
-	public IntBuffer reserveIntBuffer(long hash, int capacity) {
-		long address = reserve(capacity * 4L);
-		if (address == 0L)
-			return null;
-		Buffer buffer = new Buffer(hash, MemoryUtil.memIntBuffer(address, capacity));
-		cache.put(hash, buffer);
-		buffers.addLast(buffer);
-		return buffer.intBuffer;
+	public Entry reserveFloatBuffer(long hash, int capacity) {
+		return shard(hash).reserveFloatBuffer(hash, capacity);
 	}
 
-	public FloatBuffer reserveFloatBuffer(long hash, int capacity) {
-		long address = reserve(capacity * 4L);
-		if (address == 0L)
-			return null;
-		Buffer buffer = new Buffer(hash, MemoryUtil.memFloatBuffer(address, capacity));
-		cache.put(hash, buffer);
-		buffers.addLast(buffer);
-		return buffer.floatBuffer;
+	/**
+	 * Make a reservation visible to lookups, and allow its space to be reused once it's the oldest entry. Lookups will
+	 * only match the entry if it was filled up to its capacity, as indicated by the position of its buffer.
+	 */
+	public void commit(Entry entry) {
+		shard(entry.hash).commit(entry);
 	}
 }
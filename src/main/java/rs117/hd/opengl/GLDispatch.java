@@ -0,0 +1,55 @@
+package rs117.hd.opengl;
+
+import java.nio.IntBuffer;
+import rs117.hd.opengl.shader.ShaderProgram;
+
+/**
+ * The GL calls made when applying a {@link rs117.hd.utils.RenderState} and executing a
+ * {@link rs117.hd.utils.CommandBuffer}. Swapping out the backend allows command buffers to be replayed without a GL
+ * context, for instance in benchmarks and tests.
+ */
+public interface GLDispatch {
+	GLDispatch LWJGL = new LwjglGLDispatch();
+
+	void useProgram(ShaderProgram program);
+
+	void bindFramebuffer(int target, int framebuffer);
+
+	void framebufferTextureLayer(int target, int attachment, int texture, int level, int layer);
+
+	void drawBuffer(int buffer);
+
+	void viewport(int x, int y, int width, int height);
+
+	void bindVertexArray(int vao);
+
+	void bindBuffer(int target, int buffer);
+
+	void bindTextureUnit(int textureUnit, int target, int texture);
+
+	void depthMask(boolean writeDepth);
+
+	void depthFunc(int func);
+
+	void colorMask(boolean writeRed, boolean writeGreen, boolean writeBlue, boolean writeAlpha);
+
+	void blendFuncSeparate(int srcRgb, int dstRgb, int srcAlpha, int dstAlpha);
+
+	void enable(int capability);
+
+	void disable(int capability);
+
+	long fenceSync(int condition);
+
+	void drawArrays(int mode, int first, int count);
+
+	void drawElements(int mode, int count, int type, long byteOffset);
+
+	void multiDrawArrays(int mode, IntBuffer firsts, IntBuffer counts);
+
+	void drawArraysIndirect(int mode, long indirectByteOffset);
+
+	void drawElementsIndirect(int mode, int type, long indirectByteOffset);
+
+	void multiDrawArraysIndirect(int mode, long indirectByteOffset, int drawCount);
+}
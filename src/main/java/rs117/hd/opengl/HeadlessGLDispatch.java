@@ -0,0 +1,288 @@
+package rs117.hd.opengl;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+import lombok.Getter;
+import lombok.Setter;
+import rs117.hd.opengl.shader.ShaderProgram;
+
+/**
+ * Counts the calls made without a GL context, for measuring and comparing command buffer replays. Vertices drawn by
+ * indirect draws can only be counted if the indirect commands are provided with {@link #setIndirectBuffer}.
+ */
+public final class HeadlessGLDispatch implements GLDispatch {
+	public enum Call {
+		USE_PROGRAM,
+		BIND_FRAMEBUFFER,
+		FRAMEBUFFER_TEXTURE_LAYER,
+		DRAW_BUFFER,
+		VIEWPORT,
+		BIND_VERTEX_ARRAY,
+		BIND_BUFFER,
+		BIND_TEXTURE_UNIT,
+		DEPTH_MASK,
+		DEPTH_FUNC,
+		COLOR_MASK,
+		BLEND_FUNC_SEPARATE,
+		ENABLE,
+		DISABLE,
+		FENCE_SYNC,
+		DRAW_ARRAYS,
+		DRAW_ELEMENTS,
+		MULTI_DRAW_ARRAYS,
+		DRAW_ARRAYS_INDIRECT,
+		DRAW_ELEMENTS_INDIRECT,
+		MULTI_DRAW_ARRAYS_INDIRECT;
+
+		private static final Call[] VALUES = values();
+
+		public boolean isDraw() {
+			return ordinal() >= DRAW_ARRAYS.ordinal();
+		}
+
+		public boolean isStateChange() {
+			return ordinal() < FENCE_SYNC.ordinal();
+		}
+	}
+
+	private static final int INDIRECT_COMMAND_INTS = 4;
+	private static final int INDIRECT_ELEMENTS_COMMAND_INTS = 5;
+
+	private final int[] callCounts = new int[Call.VALUES.length];
+	@Nullable
+	private final List<String> callLog;
+
+	@Getter
+	private int stateChangeCount;
+	@Getter
+	private int drawCallCount;
+	// Individual draws, counting each draw of a multi-draw separately
+	@Getter
+	private int drawCount;
+	@Getter
+	private long vertexCount;
+
+	@Setter
+	@Nullable
+	private IntBuffer indirectBuffer;
+	private long fenceHandle;
+
+	public HeadlessGLDispatch() {
+		this(false);
+	}
+
+	/**
+	 * @param logCalls whether to keep a readable log of every call, which allocates for each call
+	 */
+	public HeadlessGLDispatch(boolean logCalls) {
+		callLog = logCalls ? new ArrayList<>() : null;
+	}
+
+	public int getCallCount(Call call) {
+		return callCounts[call.ordinal()];
+	}
+
+	public List<String> getCallLog() {
+		assert callLog != null : "Call logging is disabled";
+		return callLog;
+	}
+
+	public void reset() {
+		Arrays.fill(callCounts, 0);
+		stateChangeCount = drawCallCount = drawCount = 0;
+		vertexCount = 0;
+		if (callLog != null)
+			callLog.clear();
+	}
+
+	private void record(Call call) {
+		callCounts[call.ordinal()]++;
+		if (call.isStateChange())
+			stateChangeCount++;
+		if (call.isDraw())
+			drawCallCount++;
+	}
+
+	private void log(Call call, Object... args) {
+		var sb = new StringBuilder(call.name());
+		for (Object arg : args)
+			sb.append(' ').append(arg);
+		callLog.add(sb.toString());
+	}
+
+	private void countIndirectDraws(long indirectByteOffset, int drawCount, int commandInts) {
+		this.drawCount += drawCount;
+		if (indirectBuffer == null)
+			return;
+		int offset = (int) (indirectByteOffset / Integer.BYTES);
+		for (int i = 0; i < drawCount; i++)
+			vertexCount += indirectBuffer.get(offset + i * commandInts);
+	}
+
+	@Override
+	public void useProgram(ShaderProgram program) {
+		record(Call.USE_PROGRAM);
+		if (callLog != null)
+			log(Call.USE_PROGRAM, program);
+	}
+
+	@Override
+	public void bindFramebuffer(int target, int framebuffer) {
+		record(Call.BIND_FRAMEBUFFER);
+		if (callLog != null)
+			log(Call.BIND_FRAMEBUFFER, target, framebuffer);
+	}
+
+	@Override
+	public void framebufferTextureLayer(int target, int attachment, int texture, int level, int layer) {
+		record(Call.FRAMEBUFFER_TEXTURE_LAYER);
+		if (callLog != null)
+			log(Call.FRAMEBUFFER_TEXTURE_LAYER, target, attachment, texture, level, layer);
+	}
+
+	@Override
+	public void drawBuffer(int buffer) {
+		record(Call.DRAW_BUFFER);
+		if (callLog != null)
+			log(Call.DRAW_BUFFER, buffer);
+	}
+
+	@Override
+	public void viewport(int x, int y, int width, int height) {
+		record(Call.VIEWPORT);
+		if (callLog != null)
+			log(Call.VIEWPORT, x, y, width, height);
+	}
+
+	@Override
+	public void bindVertexArray(int vao) {
+		record(Call.BIND_VERTEX_ARRAY);
+		if (callLog != null)
+			log(Call.BIND_VERTEX_ARRAY, vao);
+	}
+
+	@Override
+	public void bindBuffer(int target, int buffer) {
+		record(Call.BIND_BUFFER);
+		if (callLog != null)
+			log(Call.BIND_BUFFER, target, buffer);
+	}
+
+	@Override
+	public void bindTextureUnit(int textureUnit, int target, int texture) {
+		record(Call.BIND_TEXTURE_UNIT);
+		if (callLog != null)
+			log(Call.BIND_TEXTURE_UNIT, textureUnit, target, texture);
+	}
+
+	@Override
+	public void depthMask(boolean writeDepth) {
+		record(Call.DEPTH_MASK);
+		if (callLog != null)
+			log(Call.DEPTH_MASK, writeDepth);
+	}
+
+	@Override
+	public void depthFunc(int func) {
+		record(Call.DEPTH_FUNC);
+		if (callLog != null)
+			log(Call.DEPTH_FUNC, func);
+	}
+
+	@Override
+	public void colorMask(boolean writeRed, boolean writeGreen, boolean writeBlue, boolean writeAlpha) {
+		record(Call.COLOR_MASK);
+		if (callLog != null)
+			log(Call.COLOR_MASK, writeRed, writeGreen, writeBlue, writeAlpha);
+	}
+
+	@Override
+	public void blendFuncSeparate(int srcRgb, int dstRgb, int srcAlpha, int dstAlpha) {
+		record(Call.BLEND_FUNC_SEPARATE);
+		if (callLog != null)
+			log(Call.BLEND_FUNC_SEPARATE, srcRgb, dstRgb, srcAlpha, dstAlpha);
+	}
+
+	@Override
+	public void enable(int capability) {
+		record(Call.ENABLE);
+		if (callLog != null)
+			log(Call.ENABLE, capability);
+	}
+
+	@Override
+	public void disable(int capability) {
+		record(Call.DISABLE);
+		if (callLog != null)
+			log(Call.DISABLE, capability);
+	}
+
+	@Override
+	public long fenceSync(int condition) {
+		record(Call.FENCE_SYNC);
+		if (callLog != null)
+			log(Call.FENCE_SYNC, condition);
+		return ++fenceHandle;
+	}
+
+	@Override
+	public void drawArrays(int mode, int first, int count) {
+		record(Call.DRAW_ARRAYS);
+		if (callLog != null)
+			log(Call.DRAW_ARRAYS, mode, first, count);
+		drawCount++;
+		vertexCount += count;
+	}
+
+	@Override
+	public void drawElements(int mode, int count, int type, long byteOffset) {
+		record(Call.DRAW_ELEMENTS);
+		if (callLog != null)
+			log(Call.DRAW_ELEMENTS, mode, count, type, byteOffset);
+		drawCount++;
+		vertexCount += count;
+	}
+
+	@Override
+	public void multiDrawArrays(int mode, IntBuffer firsts, IntBuffer counts) {
+		record(Call.MULTI_DRAW_ARRAYS);
+		int start = counts.position();
+		int end = counts.limit();
+		if (callLog != null) {
+			var sb = new StringBuilder(Call.MULTI_DRAW_ARRAYS.name()).append(' ').append(mode);
+			for (int i = start; i < end; i++)
+				sb.append(' ').append(firsts.get(firsts.position() + i - start)).append(':').append(counts.get(i));
+			callLog.add(sb.toString());
+		}
+		drawCount += end - start;
+		for (int i = start; i < end; i++)
+			vertexCount += counts.get(i);
+	}
+
+	@Override
+	public void drawArraysIndirect(int mode, long indirectByteOffset) {
+		record(Call.DRAW_ARRAYS_INDIRECT);
+		if (callLog != null)
+			log(Call.DRAW_ARRAYS_INDIRECT, mode, indirectByteOffset);
+		countIndirectDraws(indirectByteOffset, 1, INDIRECT_COMMAND_INTS);
+	}
+
+	@Override
+	public void drawElementsIndirect(int mode, int type, long indirectByteOffset) {
+		record(Call.DRAW_ELEMENTS_INDIRECT);
+		if (callLog != null)
+			log(Call.DRAW_ELEMENTS_INDIRECT, mode, type, indirectByteOffset);
+		countIndirectDraws(indirectByteOffset, 1, INDIRECT_ELEMENTS_COMMAND_INTS);
+	}
+
+	@Override
+	public void multiDrawArraysIndirect(int mode, long indirectByteOffset, int drawCount) {
+		record(Call.MULTI_DRAW_ARRAYS_INDIRECT);
+		if (callLog != null)
+			log(Call.MULTI_DRAW_ARRAYS_INDIRECT, mode, indirectByteOffset, drawCount);
+		countIndirectDraws(indirectByteOffset, drawCount, INDIRECT_COMMAND_INTS);
+	}
+}
@@ -0,0 +1,122 @@
+package rs117.hd.opengl;
+
+import java.nio.IntBuffer;
+import rs117.hd.opengl.shader.ShaderProgram;
+
+import static org.lwjgl.opengl.GL33C.*;
+import static org.lwjgl.opengl.GL40.glDrawArraysIndirect;
+import static org.lwjgl.opengl.GL40.glDrawElementsIndirect;
+import static org.lwjgl.opengl.GL43.glMultiDrawArraysIndirect;
+
+/**
+ * Forwards every call directly to the current GL context.
+ */
+public final class LwjglGLDispatch implements GLDispatch {
+	LwjglGLDispatch() {}
+
+	@Override
+	public void useProgram(ShaderProgram program) {
+		program.use();
+	}
+
+	@Override
+	public void bindFramebuffer(int target, int framebuffer) {
+		glBindFramebuffer(target, framebuffer);
+	}
+
+	@Override
+	public void framebufferTextureLayer(int target, int attachment, int texture, int level, int layer) {
+		glFramebufferTextureLayer(target, attachment, texture, level, layer);
+	}
+
+	@Override
+	public void drawBuffer(int buffer) {
+		glDrawBuffer(buffer);
+	}
+
+	@Override
+	public void viewport(int x, int y, int width, int height) {
+		glViewport(x, y, width, height);
+	}
+
+	@Override
+	public void bindVertexArray(int vao) {
+		glBindVertexArray(vao);
+	}
+
+	@Override
+	public void bindBuffer(int target, int buffer) {
+		glBindBuffer(target, buffer);
+	}
+
+	@Override
+	public void bindTextureUnit(int textureUnit, int target, int texture) {
+		glActiveTexture(textureUnit);
+		glBindTexture(target, texture);
+	}
+
+	@Override
+	public void depthMask(boolean writeDepth) {
+		glDepthMask(writeDepth);
+	}
+
+	@Override
+	public void depthFunc(int func) {
+		glDepthFunc(func);
+	}
+
+	@Override
+	public void colorMask(boolean writeRed, boolean writeGreen, boolean writeBlue, boolean writeAlpha) {
+		glColorMask(writeRed, writeGreen, writeBlue, writeAlpha);
+	}
+
+	@Override
+	public void blendFuncSeparate(int srcRgb, int dstRgb, int srcAlpha, int dstAlpha) {
+		glBlendFuncSeparate(srcRgb, dstRgb, srcAlpha, dstAlpha);
+	}
+
+	@Override
+	public void enable(int capability) {
+		glEnable(capability);
+	}
+
+	@Override
+	public void disable(int capability) {
+		glDisable(capability);
+	}
+
+	@Override
+	public long fenceSync(int condition) {
+		return glFenceSync(condition, 0);
+	}
+
+	@Override
+	public void drawArrays(int mode, int first, int count) {
+		glDrawArrays(mode, first, count);
+	}
+
+	@Override
+	public void drawElements(int mode, int count, int type, long byteOffset) {
+		glDrawElements(mode, count, type, byteOffset);
+	}
+
+	@Override
+	public void multiDrawArrays(int mode, IntBuffer firsts, IntBuffer counts) {
+		glMultiDrawArrays(mode, firsts, counts);
+	}
+
+	@Override
+	public void drawArraysIndirect(int mode, long indirectByteOffset) {
+		glDrawArraysIndirect(mode, indirectByteOffset);
+	}
+
+	@Override
+	public void drawElementsIndirect(int mode, int type, long indirectByteOffset) {
+		glDrawElementsIndirect(mode, type, indirectByteOffset);
+	}
+
+	@Override
+	public void multiDrawArraysIndirect(int mode, long indirectByteOffset, int drawCount) {
+		glMultiDrawArraysIndirect(mode, indirectByteOffset, drawCount, 0);
+	}
+}
@@ -15,6 +15,7 @@ import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.callback.ClientThread;
 import org.lwjgl.opengl.*;
 import rs117.hd.HdPlugin;
+import rs117.hd.utils.jobs.JobSystem;
 
 import static org.lwjgl.opengl.GL33C.*;
 
@@ -25,6 +26,7 @@ public class FrameTimer {
 	public static final int ASYNC_CPU_TIMER = 1;
 	public static final int GPU_TIMER = 2;
 	public static final int ASYNC_GPU_TIMER = 3;
+	public static final int QUEUE_LATENCY_TIMER = 4;
 
 	private static final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
 
@@ -34,6 +36,9 @@ public class FrameTimer {
 	@Inject
 	private HdPlugin plugin;
 
+	@Inject
+	private JobSystem jobSystem;
+
 	private static final int NUM_TIMERS = Timer.TIMERS.length;
 	private static final int NUM_GPU_TIMERS = (int) Arrays.stream(Timer.TIMERS).filter(Timer::isGpuTimer).count();
 	private static final int NUM_GPU_DEBUG_GROUPS = (int) Arrays.stream(Timer.TIMERS).filter(Timer::hasGpuDebugGroup).count();
@@ -41,6 +46,7 @@ public class FrameTimer {
 	private final AutoTimer[] autoTimers = new AutoTimer[NUM_TIMERS];
 	private final boolean[] activeTimers = new boolean[NUM_TIMERS];
 	private final long[] timings = new long[NUM_TIMERS];
+	private final long[] traceStartNanos = new long[NUM_TIMERS];
 	private final int[] gpuQueries = new int[NUM_TIMERS * 2];
 	private final ArrayDeque<Timer> glDebugGroupStack = new ArrayDeque<>(NUM_GPU_DEBUG_GROUPS);
 	private final ArrayDeque<Listener> listeners = new ArrayDeque<>();
@@ -68,6 +74,10 @@ public class FrameTimer {
 	public long cumulativeError;
 	public long errorCompensation;
 
+	// The cost of the last frame is tracked even while detailed timings are disabled, for the quality governor
+	private long frameStartNanos;
+	private long lastFrameDuration;
+
 	private void initialize() {
 		clientThread.invoke(() -> {
 			int[] queryNames = new int[NUM_GPU_TIMERS * 2];
@@ -152,6 +162,12 @@ public class FrameTimer {
 			}
 		}
 
+		if (timer == Timer.DRAW_FRAME)
+			frameStartNanos = System.nanoTime();
+
+		if (jobSystem.tracer.isEnabled())
+			traceStartNanos[index] = System.nanoTime();
+
 		if (!isActive)
 			return null;
 
@@ -179,6 +195,16 @@ public class FrameTimer {
 			}
 		}
 
+		if (timer == Timer.DRAW_FRAME && frameStartNanos != 0) {
+			lastFrameDuration = System.nanoTime() - frameStartNanos;
+			frameStartNanos = 0;
+		}
+
+		if (traceStartNanos[timer.ordinal()] != 0) {
+			jobSystem.tracer.complete(timer.name, traceStartNanos[timer.ordinal()]);
+			traceStartNanos[timer.ordinal()] = 0;
+		}
+
 		if (!isActive || !activeTimers[timer.ordinal()])
 			return;
 
@@ -239,6 +265,9 @@ public class FrameTimer {
 			}
 		}
 
+		// With GPU timings available, GPU-bound frames can be told apart from CPU-bound ones
+		lastFrameDuration = Math.max(lastFrameDuration, timings[Timer.RENDER_FRAME.ordinal()]);
+
 		final float cpuLoad = (float) osBean.getSystemLoadAverage() / osBean.getAvailableProcessors();
 		var frameTimings = new FrameTimings(frameEndTimestamp, timings, cpuLoad);
 		for (var listener : listeners)
@@ -247,6 +276,16 @@ public class FrameTimer {
 		reset();
 	}
 
+	/**
+	 * Get the CPU time spent drawing the last frame, or the GPU time if it was longer and is being measured.
+	 * Each frame is only returned once, so 0 is returned if no frame has been drawn since the last call.
+	 */
+	public long takeLastFrameDuration() {
+		long duration = lastFrameDuration;
+		lastFrameDuration = 0;
+		return duration;
+	}
+
 	private void trackGarbageCollection() {
 		List<GarbageCollectorMXBean> garbageCollectors = ManagementFactory.getGarbageCollectorMXBeans();
 		if (lastGCTimes == null || lastGCTimes.length != garbageCollectors.size())
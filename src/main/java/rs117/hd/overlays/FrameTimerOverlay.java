@@ -190,6 +190,51 @@ public class FrameTimerOverlay extends OverlayPanel implements FrameTimer.Listen
 					.left("Temp renderables:")
 					.right(String.valueOf(plugin.getDrawnTempRenderableCount()))
 					.build());
+
+				children.add(LineComponent.builder()
+					.left("Temp alpha models:")
+					.right(format("%d (%d concurrent)", plugin.getTempAlphaModelCount(), plugin.getConcurrentTempAlphaModelCount()))
+					.build());
+
+				if (plugin.configOcclusionCulling) {
+					children.add(LineComponent.builder()
+						.left("Occluded zones:")
+						.right(String.valueOf(plugin.getOccludedZoneCount()))
+						.build());
+				}
+
+				if (plugin.configDetailCullingPixels > 0) {
+					children.add(LineComponent.builder()
+						.left("Culled detail models:")
+						.right(String.valueOf(plugin.getCulledDetailModelCount()))
+						.build());
+				}
+
+				if (plugin.configDynamicModelInstancing) {
+					children.add(LineComponent.builder()
+						.left("Instanced dynamic models:")
+						.right(String.valueOf(plugin.getInstancedDynamicModelCount()))
+						.build());
+				}
+
+				if (plugin.configEarlyTiledLightBinning) {
+					children.add(LineComponent.builder()
+						.left("Overlapped light binning:")
+						.right(format("%.2f ms", plugin.getOverlappedTiledLightBinningMs()))
+						.build());
+				}
+
+				if (plugin.configOptimizeCommandBuffers) {
+					children.add(LineComponent.builder()
+						.left("Commands:")
+						.right(plugin.getRecordedCommandCount() + " -> " + plugin.getOptimizedCommandCount())
+						.build());
+
+					children.add(LineComponent.builder()
+						.left("Draw calls:")
+						.right(plugin.getRecordedDrawCount() + " -> " + plugin.getOptimizedDrawCount())
+						.build());
+				}
 			} else {
 				children.add(LineComponent.builder()
 					.left("Tiles:")
@@ -255,6 +300,20 @@ public class FrameTimerOverlay extends OverlayPanel implements FrameTimer.Listen
 				.right(String.valueOf(jobSystem.getWorkQueueSize()))
 				.build());
 
+			children.add(LineComponent.builder()
+				.left("Workers blocked:")
+				.right(format("%.2f ms", jobSystem.getLastFrameWorkerBlockedNanos() / 1e6))
+				.build());
+
+			children.add(LineComponent.builder()
+				.leftFont(boldFont)
+				.left("Job queue latency (p99):")
+				.build());
+
+			for (var t : Timer.TIMERS)
+				if (t.isQueueLatencyTimer())
+					addTiming(t, timings);
+
 			if (frameTimingsRecorder.isCapturingSnapshot())
 				children.add(LineComponent.builder()
 					.leftFont(boldFont)
@@ -7,6 +7,7 @@ import static rs117.hd.overlays.FrameTimer.ASYNC_CPU_TIMER;
 import static rs117.hd.overlays.FrameTimer.ASYNC_GPU_TIMER;
 import static rs117.hd.overlays.FrameTimer.CPU_TIMER;
 import static rs117.hd.overlays.FrameTimer.GPU_TIMER;
+import static rs117.hd.overlays.FrameTimer.QUEUE_LATENCY_TIMER;
 
 @RequiredArgsConstructor
 public enum Timer {
@@ -29,6 +30,7 @@ public enum Timer {
 	// Miscellaneous
 	SWAP_BUFFERS,
 	EXECUTE_COMMAND_BUFFER,
+	OPTIMIZE_COMMAND_BUFFERS,
 	MAP_UI_BUFFER("Map UI Buffer"),
 	COPY_UI("Copy UI"),
 	MODEL_UPLOAD_COMPLETE,
@@ -42,6 +44,9 @@ public enum Timer {
 	GARBAGE_COLLECTION,
 	REPLACE_FISHING_SPOTS,
 	CHARACTER_DISPLACEMENT,
+	BIN_TILED_LIGHTS,
+	OCCLUSION_CULLING,
+	DETAIL_CULLING,
 
 	// Legacy
 	GET_MODEL,
@@ -59,6 +64,9 @@ public enum Timer {
 	DRAW_TEMP_ASYNC(ASYNC_CPU_TIMER),
 	DRAW_DYNAMIC_ASYNC(ASYNC_CPU_TIMER),
 	STATIC_ALPHA_SORT(ASYNC_CPU_TIMER),
+	RASTERIZE_OCCLUDERS(ASYNC_CPU_TIMER),
+	CULL_DETAIL_MODELS(ASYNC_CPU_TIMER),
+	BIN_TILED_LIGHTS_ASYNC(ASYNC_CPU_TIMER),
 
 	// GPU timers
 	RENDER_FRAME(GPU_TIMER),
@@ -71,6 +79,11 @@ public enum Timer {
 	RENDER_SHADOWS(GPU_TIMER),
 	RENDER_SCENE(GPU_TIMER),
 	RENDER_UI(GPU_TIMER, "Render UI"),
+
+	// 99th percentile of the time jobs spent queued, per priority class
+	FRAME_CRITICAL_JOB_LATENCY(QUEUE_LATENCY_TIMER, "Frame-critical"),
+	FRAME_DEFERRED_JOB_LATENCY(QUEUE_LATENCY_TIMER, "Frame-deferred"),
+	BACKGROUND_JOB_LATENCY(QUEUE_LATENCY_TIMER, "Background"),
 	;
 
 	public static final Timer[] TIMERS = values();
@@ -114,6 +127,10 @@ public enum Timer {
 		return type == GPU_TIMER || type == ASYNC_GPU_TIMER;
 	}
 
+	public boolean isQueueLatencyTimer() {
+		return type == QUEUE_LATENCY_TIMER;
+	}
+
 	public boolean hasGpuDebugGroup() {
 		return type == GPU_TIMER;
 	}
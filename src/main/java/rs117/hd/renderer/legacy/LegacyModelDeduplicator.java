@@ -0,0 +1,128 @@
+package rs117.hd.renderer.legacy;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import rs117.hd.utils.collections.Int2ObjectHashMap;
+
+import static rs117.hd.renderer.legacy.LegacyRenderer.NORMAL_SIZE;
+import static rs117.hd.renderer.legacy.LegacyRenderer.UV_SIZE;
+import static rs117.hd.renderer.legacy.LegacyRenderer.VERTEX_SIZE;
+
+/**
+ * Deduplicates identical static model geometry written to the scene's staging buffers. Many distinct models in a scene
+ * end up with the exact same pre-transformed geometry, such as fences, trees and floor decorations repeated across the
+ * scene. Since each placement is already drawn as an offset, orientation and position record expanded by the compute
+ * pass, all such models can be drawn from a single shared copy of the geometry.
+ */
+@RequiredArgsConstructor
+public class LegacyModelDeduplicator {
+	@RequiredArgsConstructor
+	private static final class Region {
+		final int vertexOffset;
+		final int vertexCount;
+		final int uvOffset;
+		final int uvCount;
+		final Region next;
+	}
+
+	private final LegacyStagingBuffers staging;
+	private final Int2ObjectHashMap<Region> regions = new Int2ObjectHashMap<>();
+
+	/**
+	 * The offsets the last deduplicated geometry should be drawn from.
+	 */
+	@Getter
+	private int vertexOffset;
+	@Getter
+	private int uvOffset;
+
+	@Getter
+	private int deduplicatedModelCount;
+	@Getter
+	private long deduplicatedBytes;
+
+	/**
+	 * Check whether the geometry written to the staging buffers since the given offsets is identical to geometry which
+	 * was written earlier. If it is, the staging buffers are rewound to discard the new copy, and the offsets of the
+	 * earlier copy are made available through {@link #getVertexOffset()} and {@link #getUvOffset()}.
+	 *
+	 * @param vertexOffset the vertex offset the geometry was written at
+	 * @param uvOffset     the UV offset the geometry was written at, or -1 if it has no UVs
+	 * @return true if the geometry was deduplicated
+	 */
+	public boolean deduplicate(int vertexOffset, int uvOffset) {
+		final int vertexCount = staging.getVertexOffset() - vertexOffset;
+		final int uvCount = uvOffset == -1 ? 0 : staging.getUvOffset() - uvOffset;
+		this.vertexOffset = vertexOffset;
+		this.uvOffset = uvOffset;
+		if (vertexCount <= 0)
+			return false;
+
+		final IntBuffer vertices = staging.vertices.getBuffer();
+		final FloatBuffer normals = staging.normals.getBuffer();
+		final FloatBuffer uvs = staging.uvs.getBuffer();
+
+		// Negative keys are reserved by the hash map
+		final int key = hash(vertices, normals, uvs, vertexOffset, vertexCount, uvOffset, uvCount) & 0x7FFFFFFF;
+		final Region head = regions.get(key);
+		for (Region region = head; region != null; region = region.next) {
+			if (region.vertexCount != vertexCount || region.uvCount != uvCount)
+				continue;
+			if (!matches(vertices, region.vertexOffset * VERTEX_SIZE, vertexOffset * VERTEX_SIZE, vertexCount * VERTEX_SIZE) ||
+				!matches(normals, region.vertexOffset * NORMAL_SIZE, vertexOffset * NORMAL_SIZE, vertexCount * NORMAL_SIZE) ||
+				!matches(uvs, region.uvOffset * UV_SIZE, uvOffset * UV_SIZE, uvCount * UV_SIZE))
+				continue;
+
+			vertices.position(vertexOffset * VERTEX_SIZE);
+			normals.position(vertexOffset * NORMAL_SIZE);
+			if (uvCount > 0)
+				uvs.position(uvOffset * UV_SIZE);
+
+			this.vertexOffset = region.vertexOffset;
+			if (uvCount > 0)
+				this.uvOffset = region.uvOffset;
+			deduplicatedModelCount++;
+			deduplicatedBytes += 4L * (vertexCount * (VERTEX_SIZE + NORMAL_SIZE) + uvCount * UV_SIZE);
+			return true;
+		}
+
+		regions.put(key, new Region(vertexOffset, vertexCount, uvOffset, uvCount, head));
+		return false;
+	}
+
+	private static int hash(
+		IntBuffer vertices,
+		FloatBuffer normals,
+		FloatBuffer uvs,
+		int vertexOffset,
+		int vertexCount,
+		int uvOffset,
+		int uvCount
+	) {
+		int h = vertexCount * 31 + uvCount;
+		for (int i = vertexOffset * VERTEX_SIZE, end = i + vertexCount * VERTEX_SIZE; i < end; i++)
+			h = h * 31 + vertices.get(i);
+		for (int i = vertexOffset * NORMAL_SIZE, end = i + vertexCount * NORMAL_SIZE; i < end; i++)
+			h = h * 31 + Float.floatToRawIntBits(normals.get(i));
+		for (int i = uvOffset * UV_SIZE, end = i + uvCount * UV_SIZE; i < end; i++)
+			h = h * 31 + Float.floatToRawIntBits(uvs.get(i));
+		return h;
+	}
+
+	private static boolean matches(IntBuffer buffer, int a, int b, int length) {
+		for (int i = 0; i < length; i++)
+			if (buffer.get(a + i) != buffer.get(b + i))
+				return false;
+		return true;
+	}
+
+	private static boolean matches(FloatBuffer buffer, int a, int b, int length) {
+		// Compare raw bits, since UVs contain packed material data which may not be valid floats
+		for (int i = 0; i < length; i++)
+			if (Float.floatToRawIntBits(buffer.get(a + i)) != Float.floatToRawIntBits(buffer.get(b + i)))
+				return false;
+		return true;
+	}
+}
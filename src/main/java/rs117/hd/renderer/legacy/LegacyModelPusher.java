@@ -206,30 +206,15 @@ public class LegacyModelPusher {
 		boolean foundCachedUvData = skipUVs;
 
 		if (useCache) {
-			assert client.isClientThread() : "Model caching isn't thread-safe";
-
-			IntBuffer vertexData = this.modelCache.getIntBuffer(modelHasher.vertexHash);
-			foundCachedVertexData = vertexData != null && vertexData.remaining() == bufferSize;
-			if (foundCachedVertexData) {
-				sceneContext.stagingBufferVertices.put(vertexData);
-				vertexData.rewind();
-			}
-
-			FloatBuffer normalData = this.modelCache.getFloatBuffer(modelHasher.normalHash);
-			foundCachedNormalData = normalData != null && normalData.remaining() == bufferSize;
-			if (foundCachedNormalData) {
-				sceneContext.stagingBufferNormals.put(normalData);
-				normalData.rewind();
-			}
+			foundCachedVertexData = modelCache.copyTo(
+				modelHasher.vertexHash, bufferSize, sceneContext.stagingBufferVertices.getBuffer());
+			foundCachedNormalData = modelCache.copyTo(
+				modelHasher.normalHash, bufferSize, sceneContext.stagingBufferNormals.getBuffer());
 
 			if (!foundCachedUvData) {
-				FloatBuffer uvData = this.modelCache.getFloatBuffer(modelHasher.uvHash);
-				foundCachedUvData = uvData != null && uvData.remaining() == bufferSize;
-				if (foundCachedUvData) {
+				foundCachedUvData = modelCache.copyTo(modelHasher.uvHash, bufferSize, sceneContext.stagingBufferUvs.getBuffer());
+				if (foundCachedUvData)
 					texturedFaceCount = faceCount;
-					sceneContext.stagingBufferUvs.put(uvData);
-					uvData.rewind();
-				}
 			}
 
 			if (foundCachedVertexData && foundCachedNormalData && foundCachedUvData) {
@@ -239,6 +224,9 @@ public class LegacyModelPusher {
 			}
 		}
 
+		ModelCache.Entry vertexEntry = null;
+		ModelCache.Entry normalEntry = null;
+		ModelCache.Entry uvEntry = null;
 		IntBuffer fullVertexData = null;
 		FloatBuffer fullNormalData = null;
 		FloatBuffer fullUvData = null;
@@ -246,143 +234,153 @@ public class LegacyModelPusher {
 		boolean cacheVertexData = false;
 		boolean cacheNormalData = false;
 		boolean cacheUvData = false;
-		if (useCache) {
-			cacheVertexData = !foundCachedVertexData;
-			cacheNormalData = !foundCachedNormalData;
-			cacheUvData = !foundCachedUvData;
-
-			if (cacheVertexData) {
-				fullVertexData = this.modelCache.reserveIntBuffer(modelHasher.vertexHash, bufferSize);
-				if (fullVertexData == null) {
-					log.error("failed to reserve vertex buffer");
-					cacheVertexData = false;
+		try {
+			if (useCache) {
+				cacheVertexData = !foundCachedVertexData;
+				cacheNormalData = !foundCachedNormalData;
+				cacheUvData = !foundCachedUvData;
+
+				if (cacheVertexData) {
+					vertexEntry = this.modelCache.reserveIntBuffer(modelHasher.vertexHash, bufferSize);
+					if (vertexEntry == null) {
+						log.debug("failed to reserve vertex buffer");
+						cacheVertexData = false;
+					} else {
+						fullVertexData = vertexEntry.intBuffer;
+					}
 				}
-			}
 
-			if (cacheNormalData) {
-				fullNormalData = this.modelCache.reserveFloatBuffer(modelHasher.normalHash, bufferSize);
-				if (fullNormalData == null) {
-					log.error("failed to reserve normal buffer");
-					cacheNormalData = false;
+				if (cacheNormalData) {
+					normalEntry = this.modelCache.reserveFloatBuffer(modelHasher.normalHash, bufferSize);
+					if (normalEntry == null) {
+						log.debug("failed to reserve normal buffer");
+						cacheNormalData = false;
+					} else {
+						fullNormalData = normalEntry.floatBuffer;
+					}
 				}
-			}
 
-			if (cacheUvData) {
-				fullUvData = this.modelCache.reserveFloatBuffer(modelHasher.uvHash, bufferSize);
-				if (fullUvData == null) {
-					log.error("failed to reserve uv buffer");
-					cacheUvData = false;
+				if (cacheUvData) {
+					uvEntry = this.modelCache.reserveFloatBuffer(modelHasher.uvHash, bufferSize);
+					if (uvEntry == null) {
+						log.debug("failed to reserve uv buffer");
+						cacheUvData = false;
+					} else {
+						fullUvData = uvEntry.floatBuffer;
+					}
 				}
 			}
-		}
 
-		if (!foundCachedVertexData) {
-			if (plugin.enableDetailedTimers)
-				frameTimer.begin(Timer.MODEL_PUSHING_VERTEX);
+			if (!foundCachedVertexData) {
+				if (plugin.enableDetailedTimers)
+					frameTimer.begin(Timer.MODEL_PUSHING_VERTEX);
+
+				modelOverride.applyRotation(model);
+				for (int face = 0; face < faceCount; face++) {
+					int[] data = getFaceVertices(sceneContext, tile, uuid, model, modelOverride, face);
+					sceneContext.stagingBufferVertices.put(data);
+					if (cacheVertexData)
+						fullVertexData.put(data);
+				}
+				modelOverride.revertRotation(model);
 
-			modelOverride.applyRotation(model);
-			for (int face = 0; face < faceCount; face++) {
-				int[] data = getFaceVertices(sceneContext, tile, uuid, model, modelOverride, face);
-				sceneContext.stagingBufferVertices.put(data);
-				if (cacheVertexData)
-					fullVertexData.put(data);
+				if (plugin.enableDetailedTimers)
+					frameTimer.end(Timer.MODEL_PUSHING_VERTEX);
 			}
-			modelOverride.revertRotation(model);
 
-			if (plugin.enableDetailedTimers)
-				frameTimer.end(Timer.MODEL_PUSHING_VERTEX);
-		}
+			if (!foundCachedNormalData) {
+				if (plugin.enableDetailedTimers)
+					frameTimer.begin(Timer.MODEL_PUSHING_NORMAL);
 
-		if (!foundCachedNormalData) {
-			if (plugin.enableDetailedTimers)
-				frameTimer.begin(Timer.MODEL_PUSHING_NORMAL);
+				for (int face = 0; face < faceCount; face++) {
+					getNormalDataForFace(sceneContext, model, modelOverride, face);
+					sceneContext.stagingBufferNormals.put(sceneContext.modelFaceNormals);
+					if (cacheNormalData)
+						fullNormalData.put(sceneContext.modelFaceNormals);
+				}
 
-			for (int face = 0; face < faceCount; face++) {
-				getNormalDataForFace(sceneContext, model, modelOverride, face);
-				sceneContext.stagingBufferNormals.put(sceneContext.modelFaceNormals);
-				if (cacheNormalData)
-					fullNormalData.put(sceneContext.modelFaceNormals);
+				if (plugin.enableDetailedTimers)
+					frameTimer.end(Timer.MODEL_PUSHING_NORMAL);
 			}
 
-			if (plugin.enableDetailedTimers)
-				frameTimer.end(Timer.MODEL_PUSHING_NORMAL);
-		}
-
-		if (!foundCachedUvData) {
-			if (plugin.enableDetailedTimers)
-				frameTimer.begin(Timer.MODEL_PUSHING_UV);
-
-			int[] faceColors = model.getFaceColors1();
-			byte[] faceTransparencies = model.getFaceTransparencies();
-			for (int face = 0; face < faceCount; face++) {
-				short textureId = isVanillaTextured ? faceTextures[face] : -1;
-				UvType uvType = UvType.GEOMETRY;
-				Material material = baseMaterial;
-				ModelOverride faceOverride = modelOverride;
-
-				if (textureId != -1) {
-					uvType = UvType.VANILLA;
-					if (textureMaterial != Material.NONE) {
-						material = textureMaterial;
-					} else {
-						material = materialManager.fromVanillaTexture(textureId);
-						if (modelOverride.materialOverrides != null) {
-							var override = modelOverride.materialOverrides.get(material);
-							if (override != null) {
+			if (!foundCachedUvData) {
+				if (plugin.enableDetailedTimers)
+					frameTimer.begin(Timer.MODEL_PUSHING_UV);
+
+				int[] faceColors = model.getFaceColors1();
+				byte[] faceTransparencies = model.getFaceTransparencies();
+				for (int face = 0; face < faceCount; face++) {
+					short textureId = isVanillaTextured ? faceTextures[face] : -1;
+					UvType uvType = UvType.GEOMETRY;
+					Material material = baseMaterial;
+					ModelOverride faceOverride = modelOverride;
+
+					if (textureId != -1) {
+						uvType = UvType.VANILLA;
+						if (textureMaterial != Material.NONE) {
+							material = textureMaterial;
+						} else {
+							material = materialManager.fromVanillaTexture(textureId);
+							if (modelOverride.materialOverrides != null) {
+								var override = modelOverride.materialOverrides.get(material);
+								if (override != null) {
+									faceOverride = override;
+									material = faceOverride.textureMaterial;
+								}
+							}
+						}
+					} else if (modelOverride.colorOverrides != null && (cacheUvData || !needsCaching)) {
+						// Color overrides are heavy. Only apply them if the UVs will be cached or don't need caching
+						int ahsl = (faceTransparencies == null ? 0xFF : 0xFF - (faceTransparencies[face] & 0xFF)) << 16 | faceColors[face];
+						for (var override : modelOverride.colorOverrides) {
+							if (override.ahslCondition.test(ahsl)) {
 								faceOverride = override;
-								material = faceOverride.textureMaterial;
+								material = faceOverride.baseMaterial;
+								break;
 							}
 						}
 					}
-				} else if (modelOverride.colorOverrides != null && (cacheUvData || !needsCaching)) {
-					// Color overrides are heavy. Only apply them if the UVs will be cached or don't need caching
-					int ahsl = (faceTransparencies == null ? 0xFF : 0xFF - (faceTransparencies[face] & 0xFF)) << 16 | faceColors[face];
-					for (var override : modelOverride.colorOverrides) {
-						if (override.ahslCondition.test(ahsl)) {
-							faceOverride = override;
-							material = faceOverride.baseMaterial;
-							break;
-						}
+
+					if (faceOverride.hide)
+						continue;
+
+					if (material != Material.NONE) {
+						uvType = faceOverride.uvType;
+						if (uvType == UvType.VANILLA || (textureId != -1 && faceOverride.retainVanillaUvs))
+							uvType = isVanillaUVMapped && textureFaces[face] != -1 ? UvType.VANILLA : UvType.GEOMETRY;
 					}
-				}
 
-				if (faceOverride.hide)
-					continue;
+					int materialData = material.packMaterialData(faceOverride, uvType, false);
 
-				if (material != Material.NONE) {
-					uvType = faceOverride.uvType;
-					if (uvType == UvType.VANILLA || (textureId != -1 && faceOverride.retainVanillaUvs))
-						uvType = isVanillaUVMapped && textureFaces[face] != -1 ? UvType.VANILLA : UvType.GEOMETRY;
-				}
+					final float[] uvData = sceneContext.modelFaceUvs;
+					if (materialData == 0) {
+						Arrays.fill(uvData, 0);
+					} else {
+						faceOverride.fillUvsForFace(uvData, model, preOrientation, uvType, face, sceneContext.modelFaceNormals);
+						uvData[3] = uvData[7] = uvData[11] = Float.intBitsToFloat(materialData);
+					}
 
-				int materialData = material.packMaterialData(faceOverride, uvType, false);
+					sceneContext.stagingBufferUvs.put(uvData);
+					if (cacheUvData)
+						fullUvData.put(uvData);
 
-				final float[] uvData = sceneContext.modelFaceUvs;
-				if (materialData == 0) {
-					Arrays.fill(uvData, 0);
-				} else {
-					faceOverride.fillUvsForFace(uvData, model, preOrientation, uvType, face, sceneContext.modelFaceNormals);
-					uvData[3] = uvData[7] = uvData[11] = Float.intBitsToFloat(materialData);
+					++texturedFaceCount;
 				}
 
-				sceneContext.stagingBufferUvs.put(uvData);
-				if (cacheUvData)
-					fullUvData.put(uvData);
-
-				++texturedFaceCount;
+				if (plugin.enableDetailedTimers)
+					frameTimer.end(Timer.MODEL_PUSHING_UV);
 			}
-
-			if (plugin.enableDetailedTimers)
-				frameTimer.end(Timer.MODEL_PUSHING_UV);
+		} finally {
+			// Reservations must be committed even if they end up partially filled or pushing fails, for their space
+			// to be reused. Only fully written entries are ever returned by lookups.
+			if (vertexEntry != null)
+				modelCache.commit(vertexEntry);
+			if (normalEntry != null)
+				modelCache.commit(normalEntry);
+			if (uvEntry != null)
+				modelCache.commit(uvEntry);
 		}
 
-		if (cacheVertexData)
-			fullVertexData.flip();
-		if (cacheNormalData)
-			fullNormalData.flip();
-		if (cacheUvData)
-			fullUvData.flip();
-
 		sceneContext.modelPusherResults[0] = faceCount;
 		sceneContext.modelPusherResults[1] = texturedFaceCount;
 	}
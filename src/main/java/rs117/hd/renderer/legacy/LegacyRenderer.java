@@ -1095,7 +1095,8 @@ public class LegacyRenderer implements Renderer {
 				final int camY = plugin.cameraFocalPoint[1];
 
 				final int drawDistanceSceneUnits =
-					min(config.shadowDistance().getValue(), plugin.getDrawDistance())
+					round(min(config.shadowDistance().getValue(), plugin.getDrawDistance())
+						* plugin.qualityGovernor.getShadowDistanceScale())
 					* Perspective.LOCAL_TILE_SIZE / 2;
 				final int east = min(camX + drawDistanceSceneUnits, Perspective.LOCAL_TILE_SIZE * Constants.SCENE_SIZE);
 				final int west = max(camX - drawDistanceSceneUnits, 0);
@@ -1269,6 +1270,7 @@ public class LegacyRenderer implements Renderer {
 
 		glBindFramebuffer(GL_FRAMEBUFFER, plugin.awtContext.getFramebuffer(false));
 
+		jobSystem.endFrame();
 		frameTimer.endFrameAndReset();
 		frameModelInfoMap.clear();
 		checkGLErrors();
@@ -1280,6 +1282,12 @@ public class LegacyRenderer implements Renderer {
 		if (client.getGameState().getState() < GameState.LOGGED_IN.getState())
 			return;
 
+		// Data from the current scene may be stale, so don't let the reloaded scene reuse it
+		synchronized (this) {
+			if (sceneContext != null)
+				sceneUploader.proceduralGenerator.clearSceneData(sceneContext);
+		}
+
 		Scene scene = client.getTopLevelWorldView().getScene();
 		loadScene(scene);
 		if (plugin.skipScene == scene)
@@ -1336,7 +1344,7 @@ public class LegacyRenderer implements Renderer {
 			nextSceneContext.forceDisableAreaHiding = sceneContext != null && sceneContext.forceDisableAreaHiding;
 
 			environmentManager.loadSceneEnvironments(nextSceneContext);
-			sceneUploader.upload(nextSceneContext);
+			sceneUploader.upload(nextSceneContext, sceneContext);
 		} catch (OutOfMemoryError oom) {
 			log.error(
 				"Ran out of memory while loading scene (32-bit: {}, low memory mode: {}, cache size: {})",
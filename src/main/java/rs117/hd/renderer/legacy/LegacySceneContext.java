@@ -28,6 +28,10 @@ public class LegacySceneContext extends SceneContext {
 	public int staticCustomTilesOffset;
 	public int staticCustomTilesVertexCount;
 
+	// Only set while the scene is being uploaded
+	@Nullable
+	public LegacyModelDeduplicator modelDeduplicator;
+
 	// Statistics
 	public int uniqueModels;
 
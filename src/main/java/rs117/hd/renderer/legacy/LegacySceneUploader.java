@@ -50,10 +50,13 @@ import rs117.hd.scene.tile_overrides.TileOverride;
 import rs117.hd.scene.water_types.WaterType;
 import rs117.hd.utils.HDUtils;
 import rs117.hd.utils.ModelHash;
+import rs117.hd.utils.jobs.GenericJob;
+import rs117.hd.utils.jobs.JobSystem;
 
 import static net.runelite.api.Constants.*;
 import static net.runelite.api.Constants.SCENE_SIZE;
 import static net.runelite.api.Perspective.*;
+import static rs117.hd.HdPlugin.PROCESSOR_COUNT;
 import static rs117.hd.scene.SceneContext.TILE_SKIP_FLAG;
 import static rs117.hd.scene.SceneContext.TILE_WATER_FLAG;
 import static rs117.hd.scene.tile_overrides.TileOverride.NONE;
@@ -71,6 +74,7 @@ public class LegacySceneUploader {
 	public static final int EXCLUDED_FROM_SCENE_BUFFER = 0xFFFFFFFF;
 
 	private static final short[] UP_NORMAL = { 0, -1, 0 };
+	private static final int MAX_TILE_STRIPS = 8;
 
 	@Inject
 	private Client client;
@@ -99,12 +103,15 @@ public class LegacySceneUploader {
 	@Inject
 	private LegacyModelPusher modelPusher;
 
-	public void upload(LegacySceneContext sceneContext) {
-		proceduralGenerator.generateSceneData(sceneContext, null);
+	@Inject
+	private JobSystem jobSystem;
+
+	public void upload(LegacySceneContext sceneContext, @Nullable LegacySceneContext prevSceneContext) {
+		// Tile overrides for tiles overlapping with the previous scene are carried over from it
+		proceduralGenerator.generateSceneData(sceneContext, prevSceneContext);
 
 		Stopwatch stopwatch = Stopwatch.createStarted();
 
-		var scene = sceneContext.scene;
 		sceneContext.enableAreaHiding =
 			config.hideUnrelatedAreas() &&
 			sceneContext.sceneBase != null &&
@@ -133,23 +140,18 @@ public class LegacySceneUploader {
 			prepareBeforeSwap(sceneContext);
 
 		sceneContext.staticCustomTilesOffset = sceneContext.staticVertexCount;
-		var tiles = scene.getExtendedTiles();
-		for (int z = 0; z < MAX_Z; ++z) {
-			for (int x = 0; x < EXTENDED_SCENE_SIZE; ++x) {
-				for (int y = 0; y < EXTENDED_SCENE_SIZE; ++y) {
-					Tile tile = tiles[z][x][y];
-					if (tile != null)
-						upload(sceneContext, tile, x, y);
-				}
-			}
-		}
+		// Avoid waiting on other workers from within a worker, and splitting the scene when there's no one to share it with
+		int stripCount = jobSystem.isWorker() ? 1 : clamp(PROCESSOR_COUNT, 1, MAX_TILE_STRIPS);
+		var deduplicator = uploadTiles(sceneContext, stripCount);
 		sceneContext.staticCustomTilesVertexCount = sceneContext.staticVertexCount - sceneContext.staticCustomTilesOffset;
 
 		stopwatch.stop();
 		log.debug(
-			"Scene upload time: {}, unique models: {}, size: {} MB",
+			"Scene upload time: {}, unique models: {}, deduplicated models: {} ({} MB), size: {} MB",
 			stopwatch,
 			sceneContext.uniqueModels,
+			deduplicator.getDeduplicatedModelCount(),
+			String.format("%.2f", deduplicator.getDeduplicatedBytes() / 1e6),
 			String.format(
 				"%.2f",
 				(
@@ -159,7 +161,91 @@ public class LegacySceneUploader {
 			)
 		);
 
+		// Keep the tile overrides around for the next scene load to reuse
+		var tileOverrideIndices = sceneContext.tileOverrideIndices;
 		proceduralGenerator.clearSceneData(sceneContext);
+		sceneContext.tileOverrideIndices = tileOverrideIndices;
+	}
+
+	private LegacyModelDeduplicator uploadTiles(LegacySceneContext sceneContext, int stripCount) {
+		// Tile geometry is independent between tiles, so it's generated in strips by workers, while models are pushed
+		// in the original tile order, since model caching and deduplication depend on the order models are seen in
+		var tileStrips = uploadTileStrips(sceneContext, stripCount);
+
+		var staging = new LegacyStagingBuffers(sceneContext);
+		sceneContext.modelDeduplicator = new LegacyModelDeduplicator(staging);
+		var tiles = sceneContext.scene.getExtendedTiles();
+		try {
+			for (int z = 0; z < MAX_Z; ++z) {
+				for (var strip : tileStrips) {
+					for (int x = strip.fromTileExX; x < strip.toTileExX; ++x) {
+						for (int y = 0; y < EXTENDED_SCENE_SIZE; ++y) {
+							Tile tile = tiles[z][x][y];
+							if (tile != null)
+								upload(sceneContext, staging, strip, tile, x, y);
+						}
+					}
+				}
+			}
+		} finally {
+			for (var strip : tileStrips)
+				strip.destroy();
+		}
+		var deduplicator = sceneContext.modelDeduplicator;
+		sceneContext.modelDeduplicator = null;
+		return deduplicator;
+	}
+
+	private LegacyTileStrip[] uploadTileStrips(LegacySceneContext sceneContext, int stripCount) {
+		var strips = new LegacyTileStrip[stripCount];
+		for (int i = 0; i < stripCount; i++)
+			strips[i] = new LegacyTileStrip(EXTENDED_SCENE_SIZE * i / stripCount, EXTENDED_SCENE_SIZE * (i + 1) / stripCount);
+
+		var jobs = new GenericJob[stripCount];
+		boolean success = false;
+		try {
+			for (int i = 1; i < stripCount; i++) {
+				var strip = strips[i];
+				jobs[i] = GenericJob.build("LegacySceneUploader::uploadTileStrip", t -> uploadTileStrip(sceneContext, strip));
+				jobs[i].queue();
+			}
+
+			// The first strip is uploaded by the current thread
+			uploadTileStrip(sceneContext, strips[0]);
+			success = true;
+		} finally {
+			// Strips must not be freed before every worker is done writing to them
+			for (var job : jobs) {
+				if (job == null)
+					continue;
+				job.waitForCompletion();
+				success &= !job.encounteredError();
+				job.release();
+			}
+
+			if (!success) {
+				for (var strip : strips)
+					strip.destroy();
+			}
+		}
+
+		if (!success)
+			throw new IllegalStateException("Failed to upload scene tiles");
+
+		return strips;
+	}
+
+	private void uploadTileStrip(LegacySceneContext sceneContext, LegacyTileStrip strip) {
+		var tiles = sceneContext.scene.getExtendedTiles();
+		for (int z = 0; z < MAX_Z; ++z) {
+			for (int x = strip.fromTileExX; x < strip.toTileExX; ++x) {
+				for (int y = 0; y < EXTENDED_SCENE_SIZE; ++y) {
+					Tile tile = tiles[z][x][y];
+					if (tile != null)
+						uploadTileGeometry(sceneContext, strip, tile, x, y);
+				}
+			}
+		}
 	}
 
 	public void prepareBeforeSwap(LegacySceneContext sceneContext) {
@@ -249,6 +335,7 @@ public class LegacySceneUploader {
 		int basePlane = sceneContext.sceneBase[2];
 		Material blackMaterial = materialManager.getMaterial("BLACK");
 
+		var staging = new LegacyStagingBuffers(sceneContext);
 		Tile[][][] extendedTiles = sceneContext.scene.getExtendedTiles();
 		for (int tileZ = 0; tileZ < MAX_Z; ++tileZ) {
 			for (int tileExX = 0; tileExX < EXTENDED_SCENE_SIZE; ++tileExX) {
@@ -317,7 +404,7 @@ public class LegacySceneUploader {
 							vertexCount = 6;
 						} else {
 							int[] worldPos = sceneContext.sceneToWorld(tileX, tileY, tileZ);
-							int[] uploadedTileModelData = uploadHDTileModelSurface(sceneContext, tile, worldPos, model, true);
+							int[] uploadedTileModelData = uploadHDTileModelSurface(sceneContext, staging, tile, worldPos, model, true);
 							vertexCount = uploadedTileModelData[0];
 						}
 
@@ -371,6 +458,13 @@ public class LegacySceneUploader {
 			modelPusher.pushModel(sceneContext, tile, uuid, model, modelOverride, orientation, false);
 			if (sceneContext.modelPusherResults[1] == 0)
 				uvOffset = -1;
+
+			// Draw distinct models with identical geometry from a single copy of it
+			var deduplicator = sceneContext.modelDeduplicator;
+			if (deduplicator != null && deduplicator.deduplicate(vertexOffset, uvOffset)) {
+				vertexOffset = deduplicator.getVertexOffset();
+				uvOffset = deduplicator.getUvOffset();
+			}
 		}
 
 		model.setBufferOffset(vertexOffset);
@@ -379,10 +473,18 @@ public class LegacySceneUploader {
 		++sceneContext.uniqueModels;
 	}
 
-	private void upload(LegacySceneContext sceneContext, @Nonnull Tile tile, int tileExX, int tileExY) {
+	private void uploadTileGeometry(
+		LegacySceneContext sceneContext,
+		LegacyTileStrip strip,
+		@Nonnull Tile tile,
+		int tileExX,
+		int tileExY
+	) {
 		Tile bridge = tile.getBridge();
 		if (bridge != null)
-			upload(sceneContext, bridge, tileExX, tileExY);
+			uploadTileGeometry(sceneContext, strip, bridge, tileExX, tileExY);
+
+		strip.beginTile();
 
 		int[] worldPos = sceneContext.localToWorld(tile.getLocalLocation(), tile.getPlane());
 		var override = tileOverrideManager.getOverride(sceneContext, tile, worldPos);
@@ -394,18 +496,54 @@ public class LegacySceneUploader {
 			boolean depthTested = override.depthTested ||
 								  override.forced && (sceneTilePaint == null || sceneTilePaint.getNeColor() == HIDDEN_HSL);
 
-			// Set offsets before pushing new data
-			int vertexOffset = sceneContext.getVertexOffset();
-			int uvOffset = sceneContext.getUvOffset();
-			int[] uploadedTilePaintData = upload(sceneContext, tile, worldPos, override, sceneTilePaint);
+			int[] uploadedTilePaintData = upload(sceneContext, strip, tile, worldPos, override, sceneTilePaint);
+			strip.setPaint(
+				LegacyTileStrip.PAINT_UPLOADED | (depthTested ? LegacyTileStrip.PAINT_DEPTH_TESTED : 0),
+				uploadedTilePaintData[0],
+				uploadedTilePaintData[1]
+			);
+		}
+		strip.endPaint();
 
-			int vertexCount = uploadedTilePaintData[0];
-			int uvCount = uploadedTilePaintData[1];
+		var sceneTileModel = tile.getSceneTileModel();
+		if (sceneTileModel != null) {
+			sceneContext.filledTiles[tileExX][tileExY] |= (byte) (1 << tile.getPlane());
+
+			int[] uploadedTileModelData = upload(sceneContext, strip, tile, worldPos, sceneTileModel);
+			strip.setModel(uploadedTileModelData[0], uploadedTileModelData[1], uploadedTileModelData[2]);
+		}
+
+		strip.endTile();
+	}
+
+	private void upload(
+		LegacySceneContext sceneContext,
+		LegacyStagingBuffers staging,
+		LegacyTileStrip strip,
+		@Nonnull Tile tile,
+		int tileExX,
+		int tileExY
+	) {
+		Tile bridge = tile.getBridge();
+		if (bridge != null)
+			upload(sceneContext, staging, strip, bridge, tileExX, tileExY);
+
+		// Set offsets before pushing new data
+		int vertexOffset = sceneContext.getVertexOffset();
+		int uvOffset = sceneContext.getUvOffset();
+		int record = strip.appendNextTile(staging);
+
+		int paintFlags = strip.getPaintFlags(record);
+		if ((paintFlags & LegacyTileStrip.PAINT_UPLOADED) != 0) {
+			SceneTilePaint sceneTilePaint = tile.getSceneTilePaint();
+			int vertexCount = strip.getPaintVertexCount(record);
+			int uvCount = strip.getPaintUvCount(record);
+			int paintUvOffset = uvOffset;
 
 			// Opening the right-click menu causes the game to stop drawing hidden tiles, which prevents us from drawing underwater tiles
 			// below the boats at Pest Control, or any other custom tile. To work around this, we can instead draw all hidden tiles at once
 			// at the start of the frame. This currently means they will only draw correctly if they're always behind everything else.
-			if (vertexCount > 0 && depthTested) {
+			if (vertexCount > 0 && (paintFlags & LegacyTileStrip.PAINT_DEPTH_TESTED) != 0) {
 				int tileX = tileExX - sceneContext.sceneOffset;
 				int tileY = tileExY - sceneContext.sceneOffset;
 
@@ -429,27 +567,24 @@ public class LegacySceneUploader {
 			}
 
 			if (uvCount <= 0)
-				uvOffset = -1;
+				paintUvOffset = -1;
 
 			if (sceneTilePaint != null) {
 				sceneTilePaint.setBufferLen(vertexCount);
 				sceneTilePaint.setBufferOffset(vertexOffset);
-				sceneTilePaint.setUvBufferOffset(uvOffset);
+				sceneTilePaint.setUvBufferOffset(paintUvOffset);
 			}
 		}
 
 		var sceneTileModel = tile.getSceneTileModel();
 		if (sceneTileModel != null) {
-			sceneContext.filledTiles[tileExX][tileExY] |= (byte) (1 << tile.getPlane());
+			// The tile model's geometry follows the tile paint's
+			sceneTileModel.setBufferOffset(vertexOffset + strip.getPaintVertexSpan(record));
+			sceneTileModel.setUvBufferOffset(uvOffset + strip.getPaintUvSpan(record));
 
-			// Set offsets before pushing new data
-			sceneTileModel.setBufferOffset(sceneContext.getVertexOffset());
-			sceneTileModel.setUvBufferOffset(sceneContext.getUvOffset());
-			int[] uploadedTileModelData = upload(sceneContext, tile, worldPos, sceneTileModel);
-
-			final int bufferLength = uploadedTileModelData[0];
-			final int uvBufferLength = uploadedTileModelData[1];
-			final int underwaterTerrain = uploadedTileModelData[2];
+			final int bufferLength = strip.getModelBufferLength(record);
+			final int uvBufferLength = strip.getModelUvBufferLength(record);
+			final int underwaterTerrain = strip.getModelUnderwaterTerrain(record);
 			if (uvBufferLength <= 0)
 				sceneTileModel.setUvBufferOffset(-1);
 			// pack a boolean into the buffer length of tiles so we can tell
@@ -543,6 +678,7 @@ public class LegacySceneUploader {
 
 	private int[] upload(
 		LegacySceneContext sceneContext,
+		LegacyStagingBuffers staging,
 		Tile tile,
 		int[] worldPos,
 		TileOverride override,
@@ -557,12 +693,12 @@ public class LegacySceneUploader {
 		if (paint != null)
 			waterType = proceduralGenerator.seasonalWaterType(override, paint.getTexture());
 
-		bufferLengths = uploadHDTilePaintUnderwater(sceneContext, tile, worldPos, waterType);
+		bufferLengths = uploadHDTilePaintUnderwater(sceneContext, staging, tile, worldPos, waterType);
 		bufferLength += bufferLengths[0];
 		uvBufferLength += bufferLengths[1];
 		underwaterTerrain += bufferLengths[2];
 
-		bufferLengths = uploadHDTilePaintSurface(sceneContext, tile, worldPos, waterType, paint, override);
+		bufferLengths = uploadHDTilePaintSurface(sceneContext, staging, tile, worldPos, waterType, paint, override);
 		bufferLength += bufferLengths[0];
 		uvBufferLength += bufferLengths[1];
 		underwaterTerrain += bufferLengths[2];
@@ -572,6 +708,7 @@ public class LegacySceneUploader {
 
 	private int[] uploadHDTilePaintSurface(
 		LegacySceneContext sceneContext,
+		LegacyStagingBuffers staging,
 		Tile tile,
 		int[] worldPos,
 		WaterType waterType,
@@ -739,24 +876,24 @@ public class LegacySceneUploader {
 
 			float terrainData = Float.intBitsToFloat(packTerrainData(true, 0, waterType, tileZ));
 
-			sceneContext.stagingBufferNormals.ensureCapacity(24);
-			sceneContext.stagingBufferNormals.put(neNormals[0], neNormals[1], neNormals[2], terrainData);
-			sceneContext.stagingBufferNormals.put(nwNormals[0], nwNormals[1], nwNormals[2], terrainData);
-			sceneContext.stagingBufferNormals.put(seNormals[0], seNormals[1], seNormals[2], terrainData);
+			staging.normals.ensureCapacity(24);
+			staging.normals.put(neNormals[0], neNormals[1], neNormals[2], terrainData);
+			staging.normals.put(nwNormals[0], nwNormals[1], nwNormals[2], terrainData);
+			staging.normals.put(seNormals[0], seNormals[1], seNormals[2], terrainData);
 
-			sceneContext.stagingBufferNormals.put(swNormals[0], swNormals[1], swNormals[2], terrainData);
-			sceneContext.stagingBufferNormals.put(seNormals[0], seNormals[1], seNormals[2], terrainData);
-			sceneContext.stagingBufferNormals.put(nwNormals[0], nwNormals[1], nwNormals[2], terrainData);
+			staging.normals.put(swNormals[0], swNormals[1], swNormals[2], terrainData);
+			staging.normals.put(seNormals[0], seNormals[1], seNormals[2], terrainData);
+			staging.normals.put(nwNormals[0], nwNormals[1], nwNormals[2], terrainData);
 
 
-			sceneContext.stagingBufferVertices.ensureCapacity(24);
-			sceneContext.stagingBufferVertices.put((float) localNeVertexX, neHeight, localNeVertexY, neColor);
-			sceneContext.stagingBufferVertices.put((float) localNwVertexX, nwHeight, localNwVertexY, nwColor);
-			sceneContext.stagingBufferVertices.put((float) localSeVertexX, seHeight, localSeVertexY, seColor);
+			staging.vertices.ensureCapacity(24);
+			staging.vertices.put((float) localNeVertexX, neHeight, localNeVertexY, neColor);
+			staging.vertices.put((float) localNwVertexX, nwHeight, localNwVertexY, nwColor);
+			staging.vertices.put((float) localSeVertexX, seHeight, localSeVertexY, seColor);
 
-			sceneContext.stagingBufferVertices.put((float) localSwVertexX, swHeight, localSwVertexY, swColor);
-			sceneContext.stagingBufferVertices.put((float) localSeVertexX, seHeight, localSeVertexY, seColor);
-			sceneContext.stagingBufferVertices.put((float) localNwVertexX, nwHeight, localNwVertexY, nwColor);
+			staging.vertices.put((float) localSwVertexX, swHeight, localSwVertexY, swColor);
+			staging.vertices.put((float) localSeVertexX, seHeight, localSeVertexY, seColor);
+			staging.vertices.put((float) localNwVertexX, nwHeight, localNwVertexY, nwColor);
 
 			bufferLength += 6;
 
@@ -778,14 +915,14 @@ public class LegacySceneUploader {
 			uvx = uvx * uvcos - uvy * uvsin;
 			uvy = tmp * uvsin + uvy * uvcos;
 
-			sceneContext.stagingBufferUvs.ensureCapacity(24);
-			sceneContext.stagingBufferUvs.put(uvx, uvy, 0, packedMaterialDataNE);
-			sceneContext.stagingBufferUvs.put(uvx - uvcos, uvy - uvsin, 0, packedMaterialDataNW);
-			sceneContext.stagingBufferUvs.put(uvx + uvsin, uvy - uvcos, 0, packedMaterialDataSE);
+			staging.uvs.ensureCapacity(24);
+			staging.uvs.put(uvx, uvy, 0, packedMaterialDataNE);
+			staging.uvs.put(uvx - uvcos, uvy - uvsin, 0, packedMaterialDataNW);
+			staging.uvs.put(uvx + uvsin, uvy - uvcos, 0, packedMaterialDataSE);
 
-			sceneContext.stagingBufferUvs.put(uvx - uvcos + uvsin, uvy - uvsin - uvcos, 0, packedMaterialDataSW);
-			sceneContext.stagingBufferUvs.put(uvx + uvsin, uvy - uvcos, 0, packedMaterialDataSE);
-			sceneContext.stagingBufferUvs.put(uvx - uvcos, uvy - uvsin, 0, packedMaterialDataNW);
+			staging.uvs.put(uvx - uvcos + uvsin, uvy - uvsin - uvcos, 0, packedMaterialDataSW);
+			staging.uvs.put(uvx + uvsin, uvy - uvcos, 0, packedMaterialDataSE);
+			staging.uvs.put(uvx - uvcos, uvy - uvsin, 0, packedMaterialDataNW);
 
 			uvBufferLength += 6;
 		}
@@ -793,7 +930,10 @@ public class LegacySceneUploader {
 		return new int[]{bufferLength, uvBufferLength, underwaterTerrain};
 	}
 
-	private int[] uploadHDTilePaintUnderwater(LegacySceneContext sceneContext, Tile tile, int[] worldPos, WaterType waterType) {
+	private int[] uploadHDTilePaintUnderwater(
+		LegacySceneContext sceneContext,
+		LegacyStagingBuffers staging,
+		Tile tile, int[] worldPos, WaterType waterType) {
 		final Scene scene = sceneContext.scene;
 		final Point tilePoint = tile.getSceneLocation();
 		final int tileX = tilePoint.getX();
@@ -872,23 +1012,23 @@ public class LegacySceneUploader {
 			float nwTerrainData = Float.intBitsToFloat(packTerrainData(true, max(1, nwDepth), waterType, tileZ));
 			float neTerrainData = Float.intBitsToFloat(packTerrainData(true, max(1, neDepth), waterType, tileZ));
 
-			sceneContext.stagingBufferNormals.ensureCapacity(24);
-			sceneContext.stagingBufferNormals.put(neNormals[0], neNormals[1], neNormals[2], neTerrainData);
-			sceneContext.stagingBufferNormals.put(nwNormals[0], nwNormals[1], nwNormals[2], nwTerrainData);
-			sceneContext.stagingBufferNormals.put(seNormals[0], seNormals[1], seNormals[2], seTerrainData);
+			staging.normals.ensureCapacity(24);
+			staging.normals.put(neNormals[0], neNormals[1], neNormals[2], neTerrainData);
+			staging.normals.put(nwNormals[0], nwNormals[1], nwNormals[2], nwTerrainData);
+			staging.normals.put(seNormals[0], seNormals[1], seNormals[2], seTerrainData);
 
-			sceneContext.stagingBufferNormals.put(swNormals[0], swNormals[1], swNormals[2], swTerrainData);
-			sceneContext.stagingBufferNormals.put(seNormals[0], seNormals[1], seNormals[2], seTerrainData);
-			sceneContext.stagingBufferNormals.put(nwNormals[0], nwNormals[1], nwNormals[2], nwTerrainData);
+			staging.normals.put(swNormals[0], swNormals[1], swNormals[2], swTerrainData);
+			staging.normals.put(seNormals[0], seNormals[1], seNormals[2], seTerrainData);
+			staging.normals.put(nwNormals[0], nwNormals[1], nwNormals[2], nwTerrainData);
 
-			sceneContext.stagingBufferVertices.ensureCapacity(24);
-			sceneContext.stagingBufferVertices.put((float) localNeVertexX, neHeight + neDepth, localNeVertexY, neColor);
-			sceneContext.stagingBufferVertices.put((float) localNwVertexX, nwHeight + nwDepth, localNwVertexY, nwColor);
-			sceneContext.stagingBufferVertices.put((float) localSeVertexX, seHeight + seDepth, localSeVertexY, seColor);
+			staging.vertices.ensureCapacity(24);
+			staging.vertices.put((float) localNeVertexX, neHeight + neDepth, localNeVertexY, neColor);
+			staging.vertices.put((float) localNwVertexX, nwHeight + nwDepth, localNwVertexY, nwColor);
+			staging.vertices.put((float) localSeVertexX, seHeight + seDepth, localSeVertexY, seColor);
 
-			sceneContext.stagingBufferVertices.put((float) localSwVertexX, swHeight + swDepth, localSwVertexY, swColor);
-			sceneContext.stagingBufferVertices.put((float) localSeVertexX, seHeight + seDepth, localSeVertexY, seColor);
-			sceneContext.stagingBufferVertices.put((float) localNwVertexX, nwHeight + nwDepth, localNwVertexY, nwColor);
+			staging.vertices.put((float) localSwVertexX, swHeight + swDepth, localSwVertexY, swColor);
+			staging.vertices.put((float) localSeVertexX, seHeight + seDepth, localSeVertexY, seColor);
+			staging.vertices.put((float) localNwVertexX, nwHeight + nwDepth, localNwVertexY, nwColor);
 
 			bufferLength += 6;
 
@@ -897,14 +1037,14 @@ public class LegacySceneUploader {
 			int packedMaterialDataNW = nwMaterial.packMaterialData(ModelOverride.NONE, UvType.GEOMETRY, false);
 			int packedMaterialDataNE = neMaterial.packMaterialData(ModelOverride.NONE, UvType.GEOMETRY, false);
 
-			sceneContext.stagingBufferUvs.ensureCapacity(24);
-			sceneContext.stagingBufferUvs.put(0, 0, 0, packedMaterialDataNE);
-			sceneContext.stagingBufferUvs.put(1, 0, 0, packedMaterialDataNW);
-			sceneContext.stagingBufferUvs.put(0, 1, 0, packedMaterialDataSE);
+			staging.uvs.ensureCapacity(24);
+			staging.uvs.put(0, 0, 0, packedMaterialDataNE);
+			staging.uvs.put(1, 0, 0, packedMaterialDataNW);
+			staging.uvs.put(0, 1, 0, packedMaterialDataSE);
 
-			sceneContext.stagingBufferUvs.put(1, 1, 0, packedMaterialDataSW);
-			sceneContext.stagingBufferUvs.put(0, 1, 0, packedMaterialDataSE);
-			sceneContext.stagingBufferUvs.put(1, 0, 0, packedMaterialDataNW);
+			staging.uvs.put(1, 1, 0, packedMaterialDataSW);
+			staging.uvs.put(0, 1, 0, packedMaterialDataSE);
+			staging.uvs.put(1, 0, 0, packedMaterialDataNW);
 
 			uvBufferLength += 6;
 		}
@@ -912,20 +1052,25 @@ public class LegacySceneUploader {
 		return new int[]{bufferLength, uvBufferLength, underwaterTerrain};
 	}
 
-	private int[] upload(LegacySceneContext sceneContext, Tile tile, int[] worldPos, SceneTileModel sceneTileModel)
-	{
+	private int[] upload(
+		LegacySceneContext sceneContext,
+		LegacyStagingBuffers staging,
+		Tile tile,
+		int[] worldPos,
+		SceneTileModel sceneTileModel
+	) {
 		int bufferLength = 0;
 		int uvBufferLength = 0;
 		int underwaterTerrain = 0;
 
 		int[] bufferLengths;
 
-		bufferLengths = uploadHDTileModelSurface(sceneContext, tile, worldPos, sceneTileModel, false);
+		bufferLengths = uploadHDTileModelSurface(sceneContext, staging, tile, worldPos, sceneTileModel, false);
 		bufferLength += bufferLengths[0];
 		uvBufferLength += bufferLengths[1];
 		underwaterTerrain += bufferLengths[2];
 
-		bufferLengths = uploadHDTileModelUnderwater(sceneContext, tile, worldPos, sceneTileModel);
+		bufferLengths = uploadHDTileModelUnderwater(sceneContext, staging, tile, worldPos, sceneTileModel);
 		assert bufferLengths[0] == bufferLength || bufferLengths[0] == 0;
 		bufferLength += bufferLengths[0];
 		uvBufferLength += bufferLengths[1];
@@ -936,6 +1081,7 @@ public class LegacySceneUploader {
 
 	private int[] uploadHDTileModelSurface(
 		LegacySceneContext sceneContext,
+		LegacyStagingBuffers staging,
 		Tile tile,
 		int[] worldPos,
 		SceneTileModel model,
@@ -1100,15 +1246,15 @@ public class LegacySceneUploader {
 
 			float terrainData = Float.intBitsToFloat(packTerrainData(true, 0, waterType, tileZ));
 
-			sceneContext.stagingBufferNormals.ensureCapacity(12);
-			sceneContext.stagingBufferNormals.put(normalsA[0], normalsA[1], normalsA[2], terrainData);
-			sceneContext.stagingBufferNormals.put(normalsB[0], normalsB[1], normalsB[2], terrainData);
-			sceneContext.stagingBufferNormals.put(normalsC[0], normalsC[1], normalsC[2], terrainData);
+			staging.normals.ensureCapacity(12);
+			staging.normals.put(normalsA[0], normalsA[1], normalsA[2], terrainData);
+			staging.normals.put(normalsB[0], normalsB[1], normalsB[2], terrainData);
+			staging.normals.put(normalsC[0], normalsC[1], normalsC[2], terrainData);
 
-			sceneContext.stagingBufferVertices.ensureCapacity(12);
-			sceneContext.stagingBufferVertices.put((float) localVertices[0][0], localVertices[0][1], localVertices[0][2], colorA);
-			sceneContext.stagingBufferVertices.put((float) localVertices[1][0], localVertices[1][1], localVertices[1][2], colorB);
-			sceneContext.stagingBufferVertices.put((float) localVertices[2][0], localVertices[2][1], localVertices[2][2], colorC);
+			staging.vertices.ensureCapacity(12);
+			staging.vertices.put((float) localVertices[0][0], localVertices[0][1], localVertices[0][2], colorA);
+			staging.vertices.put((float) localVertices[1][0], localVertices[1][1], localVertices[1][2], colorB);
+			staging.vertices.put((float) localVertices[2][0], localVertices[2][1], localVertices[2][2], colorC);
 
 			bufferLength += 3;
 
@@ -1125,7 +1271,7 @@ public class LegacySceneUploader {
 				uvsin = sin(rad) * -uvScale;
 			}
 
-			sceneContext.stagingBufferUvs.ensureCapacity(12);
+			staging.uvs.ensureCapacity(12);
 			for (int i = 0; i < 3; i++) {
 				float uvx = worldPos[0] + localVertices[i][0] / 128f - 1;
 				float uvy = worldPos[1] + localVertices[i][2] / 128f - 1;
@@ -1133,7 +1279,7 @@ public class LegacySceneUploader {
 				uvx = uvx * uvcos - uvy * uvsin;
 				uvy = tmp * uvsin + uvy * uvcos;
 
-				sceneContext.stagingBufferUvs.put(uvx, uvy, 0, packedMaterialData[i]);
+				staging.uvs.put(uvx, uvy, 0, packedMaterialData[i]);
 			}
 
 			uvBufferLength += 3;
@@ -1142,7 +1288,13 @@ public class LegacySceneUploader {
 		return new int[]{bufferLength, uvBufferLength, underwaterTerrain};
 	}
 
-	private int[] uploadHDTileModelUnderwater(LegacySceneContext sceneContext, Tile tile, int[] worldPos, SceneTileModel model) {
+	private int[] uploadHDTileModelUnderwater(
+		LegacySceneContext sceneContext,
+		LegacyStagingBuffers staging,
+		Tile tile,
+		int[] worldPos,
+		SceneTileModel model
+	) {
 		final Scene scene = sceneContext.scene;
 		final Point tilePoint = tile.getSceneLocation();
 		final int tileX = tilePoint.getX();
@@ -1234,25 +1386,25 @@ public class LegacySceneUploader {
 				float bTerrainData = Float.intBitsToFloat(packTerrainData(true, max(1, depthB), waterType, tileZ));
 				float cTerrainData = Float.intBitsToFloat(packTerrainData(true, max(1, depthC), waterType, tileZ));
 
-				sceneContext.stagingBufferNormals.ensureCapacity(12);
-				sceneContext.stagingBufferNormals.put(normalsA[0], normalsA[1], normalsA[2], aTerrainData);
-				sceneContext.stagingBufferNormals.put(normalsB[0], normalsB[1], normalsB[2], bTerrainData);
-				sceneContext.stagingBufferNormals.put(normalsC[0], normalsC[1], normalsC[2], cTerrainData);
+				staging.normals.ensureCapacity(12);
+				staging.normals.put(normalsA[0], normalsA[1], normalsA[2], aTerrainData);
+				staging.normals.put(normalsB[0], normalsB[1], normalsB[2], bTerrainData);
+				staging.normals.put(normalsC[0], normalsC[1], normalsC[2], cTerrainData);
 
-				sceneContext.stagingBufferVertices.ensureCapacity(12);
-				sceneContext.stagingBufferVertices.put(
+				staging.vertices.ensureCapacity(12);
+				staging.vertices.put(
 					(float) localVertices[0][0],
 					localVertices[0][1] + depthA,
 					localVertices[0][2],
 					colorA
 				);
-				sceneContext.stagingBufferVertices.put(
+				staging.vertices.put(
 					(float) localVertices[1][0],
 					localVertices[1][1] + depthB,
 					localVertices[1][2],
 					colorB
 				);
-				sceneContext.stagingBufferVertices.put(
+				staging.vertices.put(
 					(float) localVertices[2][0],
 					localVertices[2][1] + depthC,
 					localVertices[2][2],
@@ -1265,10 +1417,10 @@ public class LegacySceneUploader {
 				int packedMaterialDataB = materialB.packMaterialData(ModelOverride.NONE, UvType.GEOMETRY, false);
 				int packedMaterialDataC = materialC.packMaterialData(ModelOverride.NONE, UvType.GEOMETRY, false);
 
-				sceneContext.stagingBufferUvs.ensureCapacity(12);
-				sceneContext.stagingBufferUvs.put(1 - localVertices[0][0] / 128f, 1 - localVertices[0][2] / 128f, 0, packedMaterialDataA);
-				sceneContext.stagingBufferUvs.put(1 - localVertices[1][0] / 128f, 1 - localVertices[1][2] / 128f, 0, packedMaterialDataB);
-				sceneContext.stagingBufferUvs.put(1 - localVertices[2][0] / 128f, 1 - localVertices[2][2] / 128f, 0, packedMaterialDataC);
+				staging.uvs.ensureCapacity(12);
+				staging.uvs.put(1 - localVertices[0][0] / 128f, 1 - localVertices[0][2] / 128f, 0, packedMaterialDataA);
+				staging.uvs.put(1 - localVertices[1][0] / 128f, 1 - localVertices[1][2] / 128f, 0, packedMaterialDataB);
+				staging.uvs.put(1 - localVertices[2][0] / 128f, 1 - localVertices[2][2] / 128f, 0, packedMaterialDataC);
 
 				uvBufferLength += 3;
 			}
@@ -0,0 +1,27 @@
+package rs117.hd.renderer.legacy;
+
+import lombok.RequiredArgsConstructor;
+import rs117.hd.utils.buffer.GpuFloatBuffer;
+import rs117.hd.utils.buffer.GpuIntBuffer;
+
+/**
+ * The staging buffers tile geometry is written to, either the scene's own buffers or those of a {@link LegacyTileStrip}.
+ */
+@RequiredArgsConstructor
+public class LegacyStagingBuffers {
+	public final GpuIntBuffer vertices;
+	public final GpuFloatBuffer uvs;
+	public final GpuFloatBuffer normals;
+
+	public LegacyStagingBuffers(LegacySceneContext sceneContext) {
+		this(sceneContext.stagingBufferVertices, sceneContext.stagingBufferUvs, sceneContext.stagingBufferNormals);
+	}
+
+	public int getVertexOffset() {
+		return vertices.position() / LegacyRenderer.VERTEX_SIZE;
+	}
+
+	public int getUvOffset() {
+		return uvs.position() / LegacyRenderer.UV_SIZE;
+	}
+}
@@ -0,0 +1,177 @@
+package rs117.hd.renderer.legacy;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import rs117.hd.utils.buffer.GpuFloatBuffer;
+import rs117.hd.utils.buffer.GpuIntBuffer;
+
+import static net.runelite.api.Constants.*;
+
+/**
+ * Tile geometry of a strip of the scene, which can be uploaded by a worker thread into its own staging buffers. Each
+ * tile records where its tile paint and tile model ended up, so the strips can later be concatenated into the scene's
+ * staging buffers in the same order as a single-threaded upload, producing identical buffers.
+ */
+public class LegacyTileStrip extends LegacyStagingBuffers {
+	private static final int INITIAL_CAPACITY = 16384;
+
+	public static final int PAINT_UPLOADED = 1;
+	public static final int PAINT_DEPTH_TESTED = 1 << 1;
+
+	// Per-tile record fields
+	private static final int VERTEX_START = 0;
+	private static final int UV_START = 1;
+	private static final int NORMAL_START = 2;
+	private static final int VERTEX_PAINT_END = 3;
+	private static final int UV_PAINT_END = 4;
+	private static final int VERTEX_END = 5;
+	private static final int UV_END = 6;
+	private static final int NORMAL_END = 7;
+	private static final int PAINT_FLAGS = 8;
+	private static final int PAINT_VERTEX_COUNT = 9;
+	private static final int PAINT_UV_COUNT = 10;
+	private static final int MODEL_BUFFER_LENGTH = 11;
+	private static final int MODEL_UV_BUFFER_LENGTH = 12;
+	private static final int MODEL_UNDERWATER_TERRAIN = 13;
+	private static final int RECORD_SIZE = 14;
+
+	public final int fromTileExX;
+	public final int toTileExX;
+
+	private int[] records = new int[EXTENDED_SCENE_SIZE * RECORD_SIZE];
+	private int recordCount;
+	private int readRecord;
+
+	public LegacyTileStrip(int fromTileExX, int toTileExX) {
+		super(new GpuIntBuffer(INITIAL_CAPACITY), new GpuFloatBuffer(INITIAL_CAPACITY), new GpuFloatBuffer(INITIAL_CAPACITY));
+		this.fromTileExX = fromTileExX;
+		this.toTileExX = toTileExX;
+	}
+
+	public void destroy() {
+		vertices.destroy();
+		uvs.destroy();
+		normals.destroy();
+	}
+
+	/**
+	 * Start recording the geometry of the next tile. Tiles must be concatenated in the same order they were recorded.
+	 */
+	public void beginTile() {
+		int offset = recordCount * RECORD_SIZE;
+		if (offset + RECORD_SIZE > records.length) {
+			int[] newRecords = new int[records.length * 2];
+			System.arraycopy(records, 0, newRecords, 0, records.length);
+			records = newRecords;
+		}
+		recordCount++;
+
+		records[offset + VERTEX_START] = vertices.position();
+		records[offset + UV_START] = uvs.position();
+		records[offset + NORMAL_START] = normals.position();
+		records[offset + PAINT_FLAGS] = 0;
+		records[offset + PAINT_VERTEX_COUNT] = 0;
+		records[offset + PAINT_UV_COUNT] = 0;
+		records[offset + MODEL_BUFFER_LENGTH] = 0;
+		records[offset + MODEL_UV_BUFFER_LENGTH] = 0;
+		records[offset + MODEL_UNDERWATER_TERRAIN] = 0;
+	}
+
+	public void setPaint(int flags, int vertexCount, int uvCount) {
+		int offset = (recordCount - 1) * RECORD_SIZE;
+		records[offset + PAINT_FLAGS] = flags;
+		records[offset + PAINT_VERTEX_COUNT] = vertexCount;
+		records[offset + PAINT_UV_COUNT] = uvCount;
+	}
+
+	/**
+	 * Mark the end of the tile paint's geometry, and the start of the tile model's.
+	 */
+	public void endPaint() {
+		int offset = (recordCount - 1) * RECORD_SIZE;
+		records[offset + VERTEX_PAINT_END] = vertices.position();
+		records[offset + UV_PAINT_END] = uvs.position();
+	}
+
+	public void setModel(int bufferLength, int uvBufferLength, int underwaterTerrain) {
+		int offset = (recordCount - 1) * RECORD_SIZE;
+		records[offset + MODEL_BUFFER_LENGTH] = bufferLength;
+		records[offset + MODEL_UV_BUFFER_LENGTH] = uvBufferLength;
+		records[offset + MODEL_UNDERWATER_TERRAIN] = underwaterTerrain;
+	}
+
+	public void endTile() {
+		int offset = (recordCount - 1) * RECORD_SIZE;
+		records[offset + VERTEX_END] = vertices.position();
+		records[offset + UV_END] = uvs.position();
+		records[offset + NORMAL_END] = normals.position();
+	}
+
+	/**
+	 * Append the geometry of the next recorded tile to the end of the specified buffers.
+	 *
+	 * @return the offset of the tile's record, for use with the getters below
+	 */
+	public int appendNextTile(LegacyStagingBuffers dst) {
+		assert readRecord < recordCount : "Attempted to append more tiles than were recorded";
+		int offset = readRecord++ * RECORD_SIZE;
+
+		int vertexCount = records[offset + VERTEX_END] - records[offset + VERTEX_START];
+		if (vertexCount > 0) {
+			IntBuffer src = vertices.getBuffer().duplicate();
+			src.limit(records[offset + VERTEX_END]).position(records[offset + VERTEX_START]);
+			dst.vertices.ensureCapacity(vertexCount).put(src);
+		}
+
+		int uvCount = records[offset + UV_END] - records[offset + UV_START];
+		if (uvCount > 0) {
+			FloatBuffer src = uvs.getBuffer().duplicate();
+			src.limit(records[offset + UV_END]).position(records[offset + UV_START]);
+			dst.uvs.ensureCapacity(uvCount).put(src);
+		}
+
+		int normalCount = records[offset + NORMAL_END] - records[offset + NORMAL_START];
+		if (normalCount > 0) {
+			FloatBuffer src = normals.getBuffer().duplicate();
+			src.limit(records[offset + NORMAL_END]).position(records[offset + NORMAL_START]);
+			dst.normals.ensureCapacity(normalCount).put(src);
+		}
+
+		return offset;
+	}
+
+	public int getPaintFlags(int record) {
+		return records[record + PAINT_FLAGS];
+	}
+
+	public int getPaintVertexCount(int record) {
+		return records[record + PAINT_VERTEX_COUNT];
+	}
+
+	public int getPaintUvCount(int record) {
+		return records[record + PAINT_UV_COUNT];
+	}
+
+	/**
+	 * @return the number of vertices written by the tile paint, which precede the tile model's
+	 */
+	public int getPaintVertexSpan(int record) {
+		return (records[record + VERTEX_PAINT_END] - records[record + VERTEX_START]) / LegacyRenderer.VERTEX_SIZE;
+	}
+
+	public int getPaintUvSpan(int record) {
+		return (records[record + UV_PAINT_END] - records[record + UV_START]) / LegacyRenderer.UV_SIZE;
+	}
+
+	public int getModelBufferLength(int record) {
+		return records[record + MODEL_BUFFER_LENGTH];
+	}
+
+	public int getModelUvBufferLength(int record) {
+		return records[record + MODEL_UV_BUFFER_LENGTH];
+	}
+
+	public int getModelUnderwaterTerrain(int record) {
+		return records[record + MODEL_UNDERWATER_TERRAIN];
+	}
+}
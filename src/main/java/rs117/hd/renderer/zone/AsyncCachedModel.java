@@ -32,6 +32,8 @@ public final class AsyncCachedModel extends Job implements Model {
 	public static final Runtime RUNTIME = Runtime.getRuntime();
 	public static final ConcurrentLinkedQueue<AsyncCachedModel> INFLIGHT = new ConcurrentLinkedQueue<>();
 	public static ConcurrentPool<AsyncCachedModel> POOL;
+	// Face and texture arrays rarely change between draws of the same model, so they can be shared instead of copied
+	static final ModelTopologyStore TOPOLOGY = new ModelTopologyStore();
 
 	public static void initialize(Injector injector) {
 		if (AsyncCachedModel.POOL == null)
@@ -43,8 +45,10 @@ public final class AsyncCachedModel extends Job implements Model {
 		if (AsyncCachedModel.POOL != null)
 			AsyncCachedModel.POOL.destroy();
 		AsyncCachedModel.POOL = null;
+		TOPOLOGY.clear();
 	}
 
+	private boolean shareTopology;
 	private int sceneId;
 	private int bufferOffset;
 	private int uvBufferOffset;
@@ -192,10 +196,11 @@ public final class AsyncCachedModel extends Job implements Model {
 	@Override
 	public short[] getFaceTextures() { return faceTextures.getValue(); }
 
-	public synchronized boolean setup(Model model) {
+	public synchronized boolean setup(Model model, boolean shareTopology) {
 		// Wait for completion so that the job has cleared the job system before clearing the isProcessing flag
 		waitForCompletion(true);
 
+		this.shareTopology = shareTopology;
 		availableMemory = RUNTIME.freeMemory();
 		if (processCachedFields(model, false))
 			return true;
@@ -473,6 +478,8 @@ public final class AsyncCachedModel extends Job implements Model {
 		private final int fieldType;
 
 		private T value;
+		@Nullable
+		private ModelTopologyStore.Entry sharedEntry;
 		private final AtomicBoolean cached = new AtomicBoolean(false);
 
 		public boolean isCached() {
@@ -490,13 +497,17 @@ public final class AsyncCachedModel extends Job implements Model {
 		}
 
 		public void reset() {
-			if (value != null)
+			if (sharedEntry != null) {
+				TOPOLOGY.release(sharedEntry);
+			} else if (value != null) {
 				arrayType.release(value);
+			}
+			sharedEntry = null;
 			value = null;
 			cached.set(false);
 		}
 
-		@SuppressWarnings("SuspiciousSystemArraycopy")
+		@SuppressWarnings({ "SuspiciousSystemArraycopy", "unchecked" })
 		public boolean cache(final Model m, T src, boolean cache) {
 			if (src == null) {
 				if (cache)
@@ -517,6 +528,19 @@ public final class AsyncCachedModel extends Job implements Model {
 					break;
 			}
 
+			if (fieldType != VERTEX_TYPE && model.shareTopology) {
+				// Shared arrays are fully cached up front, since they can't change once stored
+				if (!cache) {
+					sharedEntry = TOPOLOGY.acquire(arrayType, src, arraySize);
+					if (sharedEntry == null)
+						return false;
+					value = (T) sharedEntry.array;
+				} else {
+					cached.set(true);
+				}
+				return true;
+			}
+
 			if (!cache) {
 				// Attempt to get an array from the pool, if we fail check if enough memory is available before creating
 				final long requested = (long) arraySize * arrayType.stride;
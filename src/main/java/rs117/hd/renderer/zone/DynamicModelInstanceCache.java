@@ -0,0 +1,366 @@
+package rs117.hd.renderer.zone;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import net.runelite.api.*;
+import rs117.hd.scene.model_overrides.ModelOverride;
+import rs117.hd.utils.collections.Int2ObjectHashMap;
+import rs117.hd.utils.collections.PooledArrayType;
+
+import static rs117.hd.utils.collections.Util.EMPTY;
+import static rs117.hd.utils.collections.Util.murmurHash3;
+
+/**
+ * Shares the processed geometry of identical dynamic models drawn within the same frame, like crowds of NPCs or
+ * repeated animated scenery. When a model and animation frame is drawn a second time, a template is built with the
+ * vertex data of all its faces relative to the model's origin, and its face data is written to the dynamic model buffers
+ * once. Every later draw of the same model only copies the vertices of its visible faces from the template, translated
+ * into place, pointing at the shared face data.
+ * <p>
+ * Draws are looked up by a cheap key of the model's size, draw parameters and a few sampled vertices. Since most models
+ * are only drawn once, the model is only compared in full against a copy of the model the template was built from,
+ * once a template exists.
+ */
+public final class DynamicModelInstanceCache {
+	static final int FACE_SIZE_INTS = 3 * DynamicModelVAO.VERT_SIZE_INTS;
+
+	// The model arrays which affect the processed geometry, in the order returned by getArray
+	private static final int ARRAY_COUNT = 20;
+
+	public static final class Template {
+		// The offset of each face's vertices in the template, or -1 if the face is never drawn
+		int[] faceOffsets;
+		boolean[] alphaFaces;
+		int[] opaqueVertices;
+		int[] alphaVertices;
+
+		private int drawCount;
+		private boolean building;
+		private boolean built;
+		private boolean failed;
+
+		// Copies of the model and draw parameters the template was built from, to verify other draws with the same key
+		private final Object[] arrays = new Object[ARRAY_COUNT];
+		private final int[] lengths = new int[ARRAY_COUNT];
+		private ModelOverride modelOverride;
+		private int vertexCount;
+		private int faceCount;
+		private int preOrientation;
+		private int orientation;
+		private boolean hasAlphaModel;
+		private boolean isSquashed;
+		private int transparency;
+		private int overrideAmount;
+		private int overrideHue;
+		private int overrideSaturation;
+		private int overrideLuminance;
+
+		/**
+		 * Whether the caller must build the template, and then pass it to {@link DynamicModelInstanceCache#finishBuilding}.
+		 */
+		public boolean needsBuilding() {
+			return building;
+		}
+
+		void allocate(int faceCount, int opaqueFaceCount, int alphaFaceCount) {
+			faceOffsets = PooledArrayType.INT.borrow(faceCount);
+			alphaFaces = PooledArrayType.BOOL.borrow(faceCount);
+			opaqueVertices = PooledArrayType.INT.borrow(opaqueFaceCount * FACE_SIZE_INTS);
+			alphaVertices = PooledArrayType.INT.borrow(alphaFaceCount * FACE_SIZE_INTS);
+		}
+
+		private void release() {
+			PooledArrayType.INT.release(faceOffsets);
+			PooledArrayType.BOOL.release(alphaFaces);
+			PooledArrayType.INT.release(opaqueVertices);
+			PooledArrayType.INT.release(alphaVertices);
+			faceOffsets = opaqueVertices = alphaVertices = null;
+			alphaFaces = null;
+		}
+
+		private void reset() {
+			release();
+			for (int i = 0; i < ARRAY_COUNT; i++) {
+				if (arrays[i] != null)
+					typeOf(arrays[i]).release(arrays[i]);
+				arrays[i] = null;
+			}
+			modelOverride = null;
+			drawCount = 0;
+			building = built = failed = false;
+		}
+
+		private void copyFrom(
+			Model model,
+			ModelOverride modelOverride,
+			int preOrientation,
+			int orientation,
+			boolean hasAlphaModel,
+			boolean isSquashed
+		) {
+			this.modelOverride = modelOverride;
+			this.preOrientation = preOrientation;
+			this.orientation = orientation;
+			this.hasAlphaModel = hasAlphaModel;
+			this.isSquashed = isSquashed;
+			vertexCount = model.getVerticesCount();
+			faceCount = model.getFaceCount();
+			transparency = model.getTransparency();
+			overrideAmount = model.getOverrideAmount();
+			overrideHue = model.getOverrideHue();
+			overrideSaturation = model.getOverrideSaturation();
+			overrideLuminance = model.getOverrideLuminance();
+
+			for (int i = 0; i < ARRAY_COUNT; i++) {
+				Object src = getArray(model, i);
+				if (src == null)
+					continue;
+				int length = Math.min(getLength(model, i, src), Array.getLength(src));
+				Object copy = typeOf(src).borrow(length);
+				// noinspection SuspiciousSystemArraycopy
+				System.arraycopy(src, 0, copy, 0, length);
+				arrays[i] = copy;
+				lengths[i] = length;
+			}
+		}
+
+		private boolean matches(
+			Model model,
+			ModelOverride modelOverride,
+			int preOrientation,
+			int orientation,
+			boolean hasAlphaModel,
+			boolean isSquashed
+		) {
+			if (this.modelOverride != modelOverride ||
+				this.preOrientation != preOrientation ||
+				this.orientation != orientation ||
+				this.hasAlphaModel != hasAlphaModel ||
+				this.isSquashed != isSquashed ||
+				vertexCount != model.getVerticesCount() ||
+				faceCount != model.getFaceCount() ||
+				transparency != model.getTransparency() ||
+				overrideAmount != model.getOverrideAmount() ||
+				overrideHue != model.getOverrideHue() ||
+				overrideSaturation != model.getOverrideSaturation() ||
+				overrideLuminance != model.getOverrideLuminance())
+				return false;
+
+			for (int i = 0; i < ARRAY_COUNT; i++) {
+				Object array = getArray(model, i);
+				if ((array == null) != (arrays[i] == null))
+					return false;
+				if (array == null)
+					continue;
+				// Texture coordinate indices are only read through textureFaces, which have already been compared
+				int length = i >= 14 && i <= 16 ?
+					Math.min(lengths[i], Array.getLength(array)) :
+					lengths[i];
+				if (Array.getLength(array) < length || !contentEquals(arrays[i], array, length))
+					return false;
+			}
+			return true;
+		}
+	}
+
+	private final Int2ObjectHashMap<Template> templates = new Int2ObjectHashMap<>();
+	// Every template in the map, and unused templates to reuse, so clearing doesn't allocate
+	private final ArrayList<Template> usedTemplates = new ArrayList<>();
+	private final ArrayList<Template> freeTemplates = new ArrayList<>();
+	// Draws this frame which copied their vertices from a template, instead of processing the model again
+	public final AtomicInteger instancedDrawCount = new AtomicInteger();
+
+	/**
+	 * Count a draw of the model, and get its template if the same model has already been drawn this frame.
+	 *
+	 * @param key the model's key from {@link #key}
+	 * @return the template to copy the model's vertices from, or null if the model should be processed normally.
+	 * 	If {@link Template#needsBuilding()}, the caller must build the template before using it.
+	 */
+	@Nullable
+	public Template acquire(
+		int key,
+		Model model,
+		ModelOverride modelOverride,
+		int preOrientation,
+		int orientation,
+		boolean hasAlphaModel,
+		boolean isSquashed
+	) {
+		Template template;
+		boolean build = false;
+		synchronized (this) {
+			template = templates.get(key);
+			if (template == null) {
+				template = freeTemplates.isEmpty() ? new Template() : freeTemplates.remove(freeTemplates.size() - 1);
+				templates.put(key, template);
+				usedTemplates.add(template);
+			}
+
+			// Only build a template once the model has been seen twice, since most models are only drawn once.
+			// Draws during the build are processed normally
+			if (++template.drawCount < 2 || template.failed || template.building)
+				return null;
+
+			if (!template.built)
+				build = template.building = true;
+		}
+
+		if (build) {
+			// Nothing else reads the template until it has been built
+			template.copyFrom(model, modelOverride, preOrientation, orientation, hasAlphaModel, isSquashed);
+			return template;
+		}
+
+		// Built templates are immutable until the cache is cleared
+		if (!template.matches(model, modelOverride, preOrientation, orientation, hasAlphaModel, isSquashed))
+			return null;
+
+		instancedDrawCount.incrementAndGet();
+		return template;
+	}
+
+	/**
+	 * Make a template returned by {@link #acquire} available to later draws, or mark it as failed.
+	 */
+	public void finishBuilding(Template template, boolean success) {
+		synchronized (this) {
+			assert template.building;
+			template.building = false;
+			if (success) {
+				template.built = true;
+				instancedDrawCount.incrementAndGet();
+			} else {
+				template.failed = true;
+				template.release();
+			}
+		}
+	}
+
+	/**
+	 * Forget all templates, since the face data they point to is only valid for the frame it was written in.
+	 */
+	public synchronized void clear() {
+		for (int i = 0; i < usedTemplates.size(); i++) {
+			Template template = usedTemplates.get(i);
+			template.reset();
+			freeTemplates.add(template);
+		}
+		usedTemplates.clear();
+		templates.clear();
+		instancedDrawCount.set(0);
+	}
+
+	/**
+	 * Key a draw of a dynamic model by its size, draw parameters and a few sampled vertices, without reading the whole
+	 * model. Different models may share a key, which {@link #acquire} detects.
+	 */
+	public static int key(
+		Model model,
+		ModelOverride modelOverride,
+		int preOrientation,
+		int orientation,
+		boolean hasAlphaModel,
+		boolean isSquashed
+	) {
+		final int v = model.getVerticesCount();
+		final int f = model.getFaceCount();
+		int h = v;
+		h = h * 31 + f;
+		h = h * 31 + System.identityHashCode(modelOverride);
+		h = h * 31 + preOrientation;
+		h = h * 31 + orientation;
+		h = h * 31 + (hasAlphaModel ? 1 : 0);
+		h = h * 31 + (isSquashed ? 1 : 0);
+		h = h * 31 + model.getTransparency();
+		h = h * 31 + model.getOverrideAmount();
+		h = h * 31 + model.getOverrideHue();
+		h = h * 31 + model.getOverrideSaturation();
+		h = h * 31 + model.getOverrideLuminance();
+		// Animation frames of the same model mostly differ in their vertex positions
+		final float[] vx = model.getVerticesX();
+		final float[] vy = model.getVerticesY();
+		final float[] vz = model.getVerticesZ();
+		if (v > 0 && vx != null && vy != null && vz != null) {
+			h = hashVertex(h, vx, vy, vz, 0);
+			h = hashVertex(h, vx, vy, vz, v >> 1);
+			h = hashVertex(h, vx, vy, vz, v - 1);
+		}
+		final int[] colors = model.getFaceColors1();
+		if (f > 0 && colors != null)
+			h = h * 31 + colors[0];
+
+		h = murmurHash3(h);
+		// The empty key is reserved by the map
+		return h == EMPTY ? 0 : h;
+	}
+
+	private static int hashVertex(int h, float[] vx, float[] vy, float[] vz, int i) {
+		h = h * 31 + Float.floatToRawIntBits(vx[i]);
+		h = h * 31 + Float.floatToRawIntBits(vy[i]);
+		return h * 31 + Float.floatToRawIntBits(vz[i]);
+	}
+
+	@Nullable
+	private static Object getArray(Model model, int index) {
+		switch (index) {
+			case 0: return model.getVerticesX();
+			case 1: return model.getVerticesY();
+			case 2: return model.getVerticesZ();
+			case 3: return model.getFaceIndices1();
+			case 4: return model.getFaceIndices2();
+			case 5: return model.getFaceIndices3();
+			case 6: return model.getFaceColors1();
+			case 7: return model.getFaceColors2();
+			case 8: return model.getFaceColors3();
+			case 9: return model.getUnlitFaceColors();
+			case 10: return model.getFaceTextures();
+			case 11: return model.getFaceTransparencies();
+			case 12: return model.getFaceBias();
+			case 13: return model.getTextureFaces();
+			case 14: return model.getTexIndices1();
+			case 15: return model.getTexIndices2();
+			case 16: return model.getTexIndices3();
+			case 17: return model.getVertexNormalsX();
+			case 18: return model.getVertexNormalsY();
+			case 19: return model.getVertexNormalsZ();
+			default: throw new IllegalArgumentException("Unknown model array: " + index);
+		}
+	}
+
+	private static int getLength(Model model, int index, Object array) {
+		// Model arrays may be shared buffers which are larger than the model itself
+		if (index <= 2 || index >= 17)
+			return model.getVerticesCount();
+		if (index <= 13)
+			return model.getFaceCount();
+		return Array.getLength(array);
+	}
+
+	private static PooledArrayType typeOf(Object array) {
+		if (array instanceof int[])
+			return PooledArrayType.INT;
+		if (array instanceof float[])
+			return PooledArrayType.FLOAT;
+		if (array instanceof short[])
+			return PooledArrayType.SHORT;
+		if (array instanceof byte[])
+			return PooledArrayType.BYTE;
+		throw new IllegalArgumentException("Unsupported array type: " + array.getClass());
+	}
+
+	private static boolean contentEquals(Object a, Object b, int length) {
+		if (a instanceof int[])
+			return Arrays.equals((int[]) a, 0, length, (int[]) b, 0, length);
+		if (a instanceof float[])
+			return Arrays.equals((float[]) a, 0, length, (float[]) b, 0, length);
+		if (a instanceof short[])
+			return Arrays.equals((short[]) a, 0, length, (short[]) b, 0, length);
+		if (a instanceof byte[])
+			return Arrays.equals((byte[]) a, 0, length, (byte[]) b, 0, length);
+		throw new IllegalArgumentException("Unsupported array type: " + a.getClass());
+	}
+}
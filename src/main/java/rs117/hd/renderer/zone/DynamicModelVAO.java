@@ -30,7 +30,7 @@ public class DynamicModelVAO implements Destructible {
 	// Temp vertex format
 	// pos float vec3(x, y, z)
 	// uvw short vec3(u, v, w)
-	// normal short vec3(nx, ny, nz)
+	// normal short vec3(nx, ny, nz), or snorm16 vec2 octahedral-encoded along with packed zone vertices
 	static final int VERT_SIZE = 32;
 	static final int VERT_SIZE_INTS = VERT_SIZE / 4;
 
@@ -53,6 +53,7 @@ public class DynamicModelVAO implements Destructible {
 	private final GLMappedBufferIntWriter tboWriter;
 
 	private boolean isMapped = false;
+	private boolean packedNormals;
 	private int[] drawOffsets = new int[16];
 	private int[] drawCounts = new int[16];
 	private int writtenRangeCount;
@@ -87,7 +88,8 @@ public class DynamicModelVAO implements Destructible {
 
 	public boolean hasStagingBuffer() { return vboRender != vboStaging; }
 
-	void initialize() {
+	void initialize(boolean packedNormals) {
+		this.packedNormals = packedNormals;
 		vao = glGenVertexArrays();
 		tbo.initialize(INITIAL_SIZE);
 		vboRender.initialize(INITIAL_SIZE);
@@ -131,7 +133,11 @@ public class DynamicModelVAO implements Destructible {
 
 		// Normals
 		glEnableVertexAttribArray(2);
-		glVertexAttribPointer(2, 4, GL_SHORT, false, VERT_SIZE, 20);
+		if (packedNormals) {
+			glVertexAttribPointer(2, 2, GL_SHORT, true, VERT_SIZE, 20);
+		} else {
+			glVertexAttribPointer(2, 4, GL_SHORT, false, VERT_SIZE, 20);
+		}
 
 		// TextureFaceIdx
 		glEnableVertexAttribArray(3);
@@ -216,7 +222,15 @@ public class DynamicModelVAO implements Destructible {
 		return beginDraw(-1, faceCount);
 	}
 
-	public synchronized View beginDraw(int drawIdx, int faceCount) {
+	public View beginDraw(int drawIdx, int faceCount) {
+		return beginDraw(drawIdx, faceCount, faceCount);
+	}
+
+	/**
+	 * Begin a draw with space for the vertices of the specified number of faces, but only face data for some of them,
+	 * for draws which point some of their vertices at face data written elsewhere.
+	 */
+	public synchronized View beginDraw(int drawIdx, int faceCount, int faceDataCount) {
 		if (drawIdx == -1)
 			drawIdx = obtainDrawIndex();
 
@@ -231,7 +245,7 @@ public class DynamicModelVAO implements Destructible {
 		if (view == null)
 			view = new View();
 		view.vbo = vboWriter.reserve(faceCount * 3 * VERT_SIZE_INTS);
-		view.tbo = tboWriter.reserve(faceCount * 9);
+		view.tbo = tboWriter.reserve(faceDataCount * 9);
 		view.vao = vao;
 		view.tboTexId = tbo.getTexId();
 		view.drawIdx = drawIdx;
@@ -239,6 +253,14 @@ public class DynamicModelVAO implements Destructible {
 		return view;
 	}
 
+	/**
+	 * Reserve face data which isn't part of any draw, for vertices of later draws to point at.
+	 */
+	synchronized ReservedView reserveFaceData(int faceCount) {
+		assert isMapped : "reserveFaceData called while not mapped, this is not allowed!";
+		return tboWriter.reserve(faceCount * 9);
+	}
+
 	private synchronized void endDraw(View view) {
 		assert drawOffsets[view.drawIdx] == 0 && drawCounts[view.drawIdx] == 0 : String.format(
 			"Provided draw index is already in use: %d %d %d",
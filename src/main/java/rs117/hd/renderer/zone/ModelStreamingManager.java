@@ -80,6 +80,7 @@ public class ModelStreamingManager {
 		final int[] worldPos = new int[3];
 		final float[] objectWorldPos = new float[4];
 		int renderableCount;
+		int tempAlphaModelCount;
 	}
 
 	public void initialize() {
@@ -132,8 +133,10 @@ public class ModelStreamingManager {
 
 	@Subscribe
 	public void onBeforeRender(BeforeRender event) {
-		for (int i = 0; i < streamingContexts.length; i++)
+		for (int i = 0; i < streamingContexts.length; i++) {
 			streamingContexts[i].renderableCount = 0;
+			streamingContexts[i].tempAlphaModelCount = 0;
+		}
 
 		updateRenderThreads();
 	}
@@ -145,6 +148,17 @@ public class ModelStreamingManager {
 		return count;
 	}
 
+	/**
+	 * Get the number of temp alpha models requested this frame. Those requested from RuneLite's render threads were
+	 * requested concurrently with other threads, and would previously have contended for the zone's lock.
+	 */
+	public int getTempAlphaModelCount(boolean concurrentOnly) {
+		int count = 0;
+		for (int i = concurrentOnly ? 1 : 0; i < streamingContexts.length; i++)
+			count += streamingContexts[i].tempAlphaModelCount;
+		return count;
+	}
+
 	private boolean isAlphaModel(Model m) {
 		if (m.getTransparency() != 0 || m.getFaceTransparencies() != null)
 			return true;
@@ -200,7 +214,7 @@ public class ModelStreamingManager {
 
 			// Cull dynamic models based on detail draw distance
 			float squaredDistance = renderer.sceneCamera.squaredDistanceTo(objectWorldPos[0], objectWorldPos[1], objectWorldPos[2]);
-			int detailDrawDistanceTiles = plugin.configDetailDrawDistance * LOCAL_TILE_SIZE;
+			int detailDrawDistanceTiles = plugin.getDetailDrawDistance() * LOCAL_TILE_SIZE;
 			if (squaredDistance > detailDrawDistanceTiles * detailDrawDistanceTiles && modelOverrideManager.allowDetailCulling(uuid))
 				return;
 		} else {
@@ -254,6 +268,8 @@ public class ModelStreamingManager {
 				y - (r instanceof Actor ? r.getModelHeight() : 0), // order players over objects?
 				z & 1023
 			) : null;
+		if (alphaModel != null)
+			streamingContext.tempAlphaModelCount++;
 
 		final int drawIndex = renderThreadId != -1 ? -1 : ctx.obtainDrawIndex(r instanceof Player ? VAO_PLAYER : VAO_OPAQUE);
 		final boolean isModelPartiallyVisible = sceneManager.isRoot(ctx) && modelClassification == 0;
@@ -364,6 +380,43 @@ public class ModelStreamingManager {
 			SceneUploader sceneUploader = SceneUploader.POOL.acquire();
 			FacePrioritySorter facePrioritySorter = shouldSort ? FacePrioritySorter.POOL.acquire() : null
 		) {
+			final int preOrientation = HDUtils.getModelPreOrientation(HDUtils.getObjectConfig(tileObject));
+			final boolean isSquashed = ctx.uboWorldViewStruct != null && ctx.uboWorldViewStruct.isSquashed();
+
+			// Players are excluded since they're drawn into their own reserved draw ranges
+			DynamicModelInstanceCache.Template template = null;
+			if (plugin.configDynamicModelInstancing && vaoType == -1 && !isPlayer) {
+				final int key = DynamicModelInstanceCache.key(m, modelOverride, preOrientation, orient, alphaModel != null, isSquashed);
+				template = ctx.instanceCache.acquire(key, m, modelOverride, preOrientation, orient, alphaModel != null, isSquashed);
+				// The template must be built before the model is preprocessed at its actual position below
+				if (template != null && template.needsBuilding()) {
+					final PrimitiveCharArray templateFaces = FACE_INDICES.acquire();
+					final PrimitiveCharArray templateCulledFaces = FACE_INDICES.acquire();
+					boolean built = false;
+					try {
+						built = sceneUploader.buildTempModelTemplate(
+							template,
+							ctx,
+							projection,
+							templateFaces,
+							templateCulledFaces,
+							modelOverride,
+							m,
+							alphaModel != null,
+							preOrientation,
+							orient,
+							isSquashed
+						);
+					} finally {
+						FACE_INDICES.recycle(templateFaces);
+						FACE_INDICES.recycle(templateCulledFaces);
+						ctx.instanceCache.finishBuilding(template, built);
+					}
+					if (!built)
+						template = null;
+				}
+			}
+
 			final int[] faceDistances = shouldSort ? PooledArrayType.INT.borrow(m.getFaceCount()) : null;
 			shouldSort &= sceneUploader.preprocessTempModel(
 				projection,
@@ -379,8 +432,6 @@ public class ModelStreamingManager {
 				x, y, z
 			);
 
-			final int preOrientation = HDUtils.getModelPreOrientation(HDUtils.getObjectConfig(tileObject));
-			final boolean isSquashed = ctx.uboWorldViewStruct != null && ctx.uboWorldViewStruct.isSquashed();
 			if (shouldSort && !isSquashed)
 				facePrioritySorter.sortModelFaces(visibleFaces, m, faceDistances, !isActor);
 
@@ -416,19 +467,27 @@ public class ModelStreamingManager {
 				// transparent faces are already not depth tested
 				if (vaoType == -1)
 					vaoType = isPlayer ? VAO_PLAYER : VAO_OPAQUE;
-				final DynamicModelVAO.View opaqueView = ctx.beginDraw(vaoType, drawIndex, opaqueFaceCount);
-				final DynamicModelVAO.View alphaView = alphaFaceCount > 0 ? ctx.beginDraw(VAO_ALPHA, alphaFaceCount) : opaqueView;
 
-				sceneUploader.uploadTempModel(
-					visibleFaces,
-					m,
-					modelOverride,
-					preOrientation,
-					orient,
-					isSquashed,
-					opaqueView,
-					alphaView
-				);
+				final DynamicModelVAO.View opaqueView, alphaView;
+				if (template != null) {
+					// Instances point at the face data written along with the template
+					opaqueView = ctx.beginDraw(vaoType, drawIndex, opaqueFaceCount, 0);
+					alphaView = alphaFaceCount > 0 ? ctx.beginDraw(VAO_ALPHA, -1, alphaFaceCount, 0) : opaqueView;
+					sceneUploader.writeTempModelInstance(template, visibleFaces, x, y, z, opaqueView, alphaView);
+				} else {
+					opaqueView = ctx.beginDraw(vaoType, drawIndex, opaqueFaceCount);
+					alphaView = alphaFaceCount > 0 ? ctx.beginDraw(VAO_ALPHA, alphaFaceCount) : opaqueView;
+					sceneUploader.uploadTempModel(
+						visibleFaces,
+						m,
+						modelOverride,
+						preOrientation,
+						orient,
+						isSquashed,
+						opaqueView,
+						alphaView
+					);
+				}
 
 				if (opaqueView != alphaView && alphaView.getEndOffset() > alphaView.getStartOffset()) {
 					alphaModel.setView(alphaView);
@@ -480,6 +539,10 @@ public class ModelStreamingManager {
 			}
 		}
 
+		// Once every model has been processed, shared arrays which are no longer drawn can be released
+		if (zone == null)
+			AsyncCachedModel.TOPOLOGY.sweep(plugin.frame);
+
 		frameTimer.end(Timer.MODEL_UPLOAD_COMPLETE);
 	}
 
@@ -492,7 +555,7 @@ public class ModelStreamingManager {
 		if (result == null)
 			return null;
 
-		if (result.setup(model))
+		if (result.setup(model, plugin.configShareModelTopology))
 			return result;
 
 		// We failed to reserve space to cache the model, so return the model back to the pool
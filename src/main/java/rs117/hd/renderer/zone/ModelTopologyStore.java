@@ -0,0 +1,164 @@
+package rs117.hd.renderer.zone;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.WeakHashMap;
+import javax.annotation.Nullable;
+import rs117.hd.utils.collections.PooledArrayType;
+
+/**
+ * Reference-counted store of immutable model arrays, keyed by the array they were copied from. Face topology, colors
+ * and textures are the same array objects across animation frames of the same model, so async model processing can
+ * share a single copy of them between all draws of the model, instead of copying them out of the model for every draw.
+ * <p>
+ * Since the client may reuse a source array for a different model, the contents are compared before a copy is shared.
+ * Comparing and copying happen outside the store's lock, which only guards the lookup and reference counts. Source
+ * arrays are only weakly referenced, and copies which are no longer referenced are kept around for a few frames, since
+ * the same model is most likely drawn again in the next frame.
+ */
+public final class ModelTopologyStore {
+	private static final int MAX_UNUSED_FRAMES = 10;
+
+	public static final class Entry {
+		private final PooledArrayType arrayType;
+		private final WeakReference<Object> source;
+		private final int length;
+		// Never written to after the entry has been stored
+		public final Object array;
+		private int refCount = 1;
+		private int lastUsedFrame;
+		// Whether the entry can no longer be found by its source, and only awaits being released
+		private boolean detached;
+
+		private Entry(PooledArrayType arrayType, Object source, int length, Object array) {
+			this.arrayType = arrayType;
+			this.source = new WeakReference<>(source);
+			this.length = length;
+			this.array = array;
+		}
+	}
+
+	// Arrays don't override equals or hashCode, so this is keyed by identity
+	private final WeakHashMap<Object, Entry> entriesBySource = new WeakHashMap<>();
+	// Every entry, including detached ones, so they can be swept without allocating an iterator
+	private final ArrayList<Entry> entries = new ArrayList<>();
+	private int currentFrame;
+
+	/**
+	 * Get a shared copy of the first {@code length} elements of the array, copying it into the store unless a copy of
+	 * the same array with identical contents is stored already. The entry must be released once the caller is done
+	 * with it.
+	 *
+	 * @return the shared entry, or null if the array could not be allocated
+	 */
+	@Nullable
+	public Entry acquire(PooledArrayType arrayType, Object src, int length) {
+		Entry entry;
+		synchronized (this) {
+			entry = entriesBySource.get(src);
+			if (entry != null) {
+				entry.refCount++;
+				entry.lastUsedFrame = currentFrame;
+			}
+		}
+
+		// A referenced copy can't be swept or modified, so it's safe to compare without holding the lock
+		if (entry != null) {
+			if (entry.length == length && contentEquals(arrayType, entry.array, src, length))
+				return entry;
+
+			// The source array has been overwritten since it was copied, so the copy will be replaced below
+			synchronized (this) {
+				entry.refCount--;
+				detach(entry, src);
+			}
+		}
+
+		Object array = arrayType.borrow(length);
+		if (array == null)
+			return null;
+		// noinspection SuspiciousSystemArraycopy
+		System.arraycopy(src, 0, array, 0, length);
+		entry = new Entry(arrayType, src, length, array);
+
+		synchronized (this) {
+			// Another thread may have stored a copy of the same array in the meantime, which the newest copy replaces
+			Entry previous = entriesBySource.put(src, entry);
+			if (previous != null)
+				previous.detached = true;
+			entry.lastUsedFrame = currentFrame;
+			entries.add(entry);
+		}
+		return entry;
+	}
+
+	public synchronized void release(Entry entry) {
+		assert entry.refCount > 0;
+		entry.refCount--;
+	}
+
+	/**
+	 * Return arrays which haven't been used in a while, have been replaced by a newer copy, or whose source array has
+	 * been garbage collected, to the pool.
+	 */
+	public synchronized void sweep(int frame) {
+		if (frame == currentFrame)
+			return;
+		currentFrame = frame;
+
+		for (int i = entries.size() - 1; i >= 0; i--) {
+			Entry entry = entries.get(i);
+			if (entry.refCount > 0)
+				continue;
+			if (!entry.detached && entry.source.get() != null && frame - entry.lastUsedFrame <= MAX_UNUSED_FRAMES)
+				continue;
+			remove(i);
+		}
+	}
+
+	public synchronized void clear() {
+		for (int i = entries.size() - 1; i >= 0; i--)
+			if (entries.get(i).refCount == 0)
+				remove(i);
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private void detach(Entry entry, Object src) {
+		if (entriesBySource.get(src) == entry)
+			entriesBySource.remove(src);
+		entry.detached = true;
+	}
+
+	private void remove(int index) {
+		Entry entry = entries.get(index);
+		// Swap with the last entry to avoid shifting the list
+		Entry last = entries.remove(entries.size() - 1);
+		if (last != entry)
+			entries.set(index, last);
+		if (!entry.detached) {
+			Object src = entry.source.get();
+			if (src != null)
+				detach(entry, src);
+		}
+		entry.arrayType.release(entry.array);
+	}
+
+	private static boolean contentEquals(PooledArrayType arrayType, Object a, Object b, int length) {
+		switch (arrayType) {
+			case BYTE:
+				return Arrays.equals((byte[]) a, 0, length, (byte[]) b, 0, length);
+			case SHORT:
+				return Arrays.equals((short[]) a, 0, length, (short[]) b, 0, length);
+			case INT:
+				return Arrays.equals((int[]) a, 0, length, (int[]) b, 0, length);
+			case FLOAT:
+				return Arrays.equals((float[]) a, 0, length, (float[]) b, 0, length);
+			default:
+				throw new IllegalArgumentException("Unsupported array type: " + arrayType);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package rs117.hd.renderer.zone;
+
+import static rs117.hd.utils.MathUtils.*;
+
+/**
+ * Compact alternative to the regular static zone vertex format, along with CPU-side decoding matching what the GPU
+ * sees, for checking the precision of the format. Positions are already zone-relative, so they fit in shorts as-is.
+ * Zero normals cannot be represented, and are written as pointing up instead.
+ */
+public final class PackedVertexFormat {
+	// Packed zone vertex format, with position and UVW back to back in the first 12 bytes, without any padding
+	// pos short vec3(x, y, z)
+	// uvw half vec3(u, v, w), starting 2-byte aligned at offset 6
+	// normal snorm16 vec2 octahedral-encoded
+	// texturedFaceIdx int
+	public static final int VERT_SIZE = 20;
+	public static final int VERT_SIZE_INTS = VERT_SIZE / Integer.BYTES;
+
+	private PackedVertexFormat() {}
+
+	public static void pack(
+		int[] out, int offset,
+		int x, int y, int z,
+		float u, float v, float w,
+		int nx, int ny, int nz,
+		int textureFaceIdx, boolean windingReversed
+	) {
+		out[offset] = (y & 0xFFFF) << 16 | x & 0xFFFF;
+		out[offset + 1] = float16(u) << 16 | z & 0xFFFF;
+		out[offset + 2] = float16(w) << 16 | float16(v);
+		out[offset + 3] = octEncode(nx, ny, nz);
+		out[offset + 4] = (windingReversed ? 1 << 31 : 0) | textureFaceIdx;
+	}
+
+	/**
+	 * Encode a normal of any length as two snorm16 components, by projecting it onto an octahedron which is then
+	 * unfolded onto a square.
+	 */
+	public static int octEncode(float x, float y, float z) {
+		float l1 = abs(x) + abs(y) + abs(z);
+		if (l1 == 0) {
+			// Negative Y points up
+			y = -1;
+			l1 = 1;
+		}
+		float ox = x / l1;
+		float oy = y / l1;
+		if (z < 0) {
+			float tmp = ox;
+			ox = (1 - abs(oy)) * signNotZero(ox);
+			oy = (1 - abs(tmp)) * signNotZero(oy);
+		}
+		return (normShort(oy) & 0xFFFF) << 16 | normShort(ox) & 0xFFFF;
+	}
+
+	/**
+	 * Decode a normal encoded with {@link #octEncode}, the same way {@code scene_vert.glsl} does.
+	 */
+	public static void octDecode(int packed, float[] out) {
+		float x = snorm16((short) packed);
+		float y = snorm16((short) (packed >> 16));
+		float z = 1 - abs(x) - abs(y);
+		if (z < 0) {
+			float tmp = x;
+			x = (1 - abs(y)) * signNotZero(x);
+			y = (1 - abs(tmp)) * signNotZero(y);
+		}
+		float invLength = 1 / (float) Math.sqrt(x * x + y * y + z * z);
+		out[0] = x * invLength;
+		out[1] = y * invLength;
+		out[2] = z * invLength;
+	}
+
+	/**
+	 * Decode the vertex at the specified offset into a position, UVW and unit normal.
+	 *
+	 * @return the textured face index, with the sign bit set if the winding order is reversed
+	 */
+	public static int unpack(int[] in, int offset, int[] position, float[] uvw, float[] normal) {
+		position[0] = (short) in[offset];
+		position[1] = (short) (in[offset] >> 16);
+		position[2] = (short) in[offset + 1];
+		uvw[0] = float16ToFloat(in[offset + 1] >>> 16);
+		uvw[1] = float16ToFloat(in[offset + 2] & 0xFFFF);
+		uvw[2] = float16ToFloat(in[offset + 2] >>> 16);
+		octDecode(in[offset + 3], normal);
+		return in[offset + 4];
+	}
+
+	private static float snorm16(short value) {
+		return max(value / (float) Short.MAX_VALUE, -1);
+	}
+
+	private static float signNotZero(float value) {
+		return value >= 0 ? 1 : -1;
+	}
+}
@@ -36,6 +36,7 @@ import rs117.hd.utils.NpcDisplacementCache;
 import rs117.hd.utils.collections.Int2IntHashMap;
 import rs117.hd.utils.collections.PooledArrayType;
 import rs117.hd.utils.jobs.GenericJob;
+import rs117.hd.utils.jobs.JobPriority;
 
 import static net.runelite.api.Constants.*;
 import static net.runelite.api.Perspective.SCENE_SIZE;
@@ -98,10 +99,13 @@ public class SceneManager {
 	private final WorldViewContext[] subs = new WorldViewContext[MAX_WORLDVIEWS];
 
 	private final Int2IntHashMap nextRoofChanges = new Int2IntHashMap();
+	private final int[] areaHidingWorldPos = new int[3];
 	private ZoneSceneContext nextSceneContext;
 	private Zone[][] nextZones;
 	private final List<SortedZone> sortedZones = new ArrayList<>();
 	private boolean reloadRequested;
+	// Either Zone.UNPACKED_VERT_SIZE or PackedVertexFormat.VERT_SIZE, fixed until the renderer restarts
+	private int zoneVertSize = Zone.UNPACKED_VERT_SIZE;
 
 	public boolean isZoneStreamingEnabled() {
 		return plugin.configZoneStreaming;
@@ -139,10 +143,21 @@ public class SceneManager {
 
 	public void initialize(UBOWorldViews uboWorldViews) {
 		this.uboWorldViews = uboWorldViews;
+		zoneVertSize = config.packedVertices() ? PackedVertexFormat.VERT_SIZE : Zone.UNPACKED_VERT_SIZE;
 		root.initialize(injector);
 		eventBus.register(this);
 	}
 
+	public boolean isPackedVertices() {
+		return zoneVertSize == PackedVertexFormat.VERT_SIZE;
+	}
+
+	Zone createZone() {
+		Zone zone = new Zone(zoneVertSize);
+		injector.injectMembers(zone);
+		return zone;
+	}
+
 	public void destroy() {
 		eventBus.unregister(this);
 
@@ -200,7 +215,7 @@ public class SceneManager {
 
 				root.sceneContext.fillGaps = config.fillGapsInTerrain();
 
-				generateSceneDataTask.queue();
+				generateSceneDataTask.queue(JobPriority.FRAME_DEFERRED);
 
 				root.invalidate();
 				for (var sub : subs)
@@ -230,7 +245,9 @@ public class SceneManager {
 			}
 		}
 
-		for (int objectId : root.sceneContext.animatedDynamicObjectIds) {
+		var objectIds = root.sceneContext.animatedDynamicObjectIds;
+		for (int i = objectIds.nextIndex(-1); i != -1; i = objectIds.nextIndex(i)) {
+			int objectId = objectIds.keyAt(i);
 			int impostorId = objectId;
 			var def = client.getObjectDefinition(objectId);
 			if (def != null && def.getImpostorIds() != null) {
@@ -253,11 +270,10 @@ public class SceneManager {
 		if (root.sceneContext.enableAreaHiding) {
 			var base = root.sceneContext.sceneBase;
 			assert base != null;
-			int[] worldPos = {
-				base[0] + lp.getSceneX(),
-				base[1] + lp.getSceneY(),
-				base[2] + client.getTopLevelWorldView().getPlane()
-			};
+			int[] worldPos = areaHidingWorldPos;
+			worldPos[0] = base[0] + lp.getSceneX();
+			worldPos[1] = base[1] + lp.getSceneY();
+			worldPos[2] = base[2] + client.getTopLevelWorldView().getPlane();
 
 			// We need to check all areas contained in the scene in the order they appear in the list,
 			// in order to ensure lower floors can take precedence over higher floors which include tiny
@@ -480,8 +496,8 @@ public class SceneManager {
 			loadSceneLightsTask.cancel();
 			calculateRoofChangesTask.cancel();
 
-			generateSceneDataTask.queue();
-			loadSceneLightsTask.queue();
+			generateSceneDataTask.queue(JobPriority.FRAME_DEFERRED);
+			loadSceneLightsTask.queue(JobPriority.FRAME_DEFERRED);
 
 			if (nextSceneContext.enableAreaHiding) {
 				assert nextSceneContext.sceneBase != null;
@@ -532,7 +548,7 @@ public class SceneManager {
 			}
 
 			// Queue after ensuring previous scene has been cancelled
-			calculateRoofChangesTask.queue();
+			calculateRoofChangesTask.queue(JobPriority.FRAME_DEFERRED);
 
 			final int dx = scene.getBaseX() - prev.getBaseX() >> 3;
 			final int dy = scene.getBaseY() - prev.getBaseY() >> 3;
@@ -581,7 +597,7 @@ public class SceneManager {
 				for (int z = 0; z < NUM_ZONES; ++z) {
 					Zone zone = nextZones[x][z];
 					if (zone == null)
-						zone = nextZones[x][z] = injector.getInstance(Zone.class);
+						zone = nextZones[x][z] = createZone();
 
 					if (!zone.initialized) {
 						float dist = distance(vec(x, z), vec(NUM_ZONES / 2, NUM_ZONES / 2));
@@ -600,7 +616,7 @@ public class SceneManager {
 
 			long timeMs = System.currentTimeMillis();
 			for (SortedZone sorted : sortedZones) {
-				Zone newZone = injector.getInstance(Zone.class);
+				Zone newZone = createZone();
 				newZone.dirty = sorted.zone.dirty;
 				if (staggerLoad) {
 					// Reuse the old zone while uploading a correct one
@@ -685,10 +701,13 @@ public class SceneManager {
 
 		int totalOpaque = 0;
 		int totalAlpha = 0;
+		long totalTextureFaces = 0;
 		for (int x = 0; x < NUM_ZONES; ++x) {
 			for (int z = 0; z < NUM_ZONES; ++z) {
 				totalOpaque += nextZones[x][z].bufLen;
 				totalAlpha += nextZones[x][z].bufLenA;
+				if (nextZones[x][z].tboF != null)
+					totalTextureFaces += nextZones[x][z].sizeF;
 			}
 		}
 
@@ -701,10 +720,34 @@ public class SceneManager {
 			nextSceneContext.totalMapZones,
 			blockingCount,
 			totalOpaque,
-			(totalOpaque * Zone.VERT_SIZE * 3L) / KiB,
+			(totalOpaque * (long) zoneVertSize) / KiB,
 			totalAlpha,
-			(totalAlpha * Zone.VERT_SIZE * 3L) / KiB
+			(totalAlpha * (long) zoneVertSize) / KiB
 		);
+		if (log.isDebugEnabled()) {
+			long vertexCount = (long) totalOpaque + totalAlpha;
+			long textureBytes = totalTextureFaces * Zone.TEXTURE_SIZE;
+			boolean packed = isPackedVertices();
+			log.debug(
+				"Scene memory - vertices: {} ({} format), texture faces: {}, total: {}, total with the {} format: {}",
+				formatBytes(vertexCount * zoneVertSize),
+				packed ? "packed" : "unpacked",
+				formatBytes(textureBytes),
+				formatBytes(vertexCount * zoneVertSize + textureBytes),
+				packed ? "unpacked" : "packed",
+				formatBytes(vertexCount * (packed ? Zone.UNPACKED_VERT_SIZE : PackedVertexFormat.VERT_SIZE) + textureBytes)
+			);
+			long uploadedFaces = nextSceneContext.totalUploadedFaces.get();
+			long deduplicatedFaces = nextSceneContext.totalDeduplicatedFaces.get();
+			log.debug(
+				"Zone uploads - total time: {} ms, faces: {}, faces sharing identical data: {} ({}%), face data saved: {}",
+				TimeUnit.NANOSECONDS.toMillis(nextSceneContext.totalZoneUploadNanos.get()),
+				uploadedFaces,
+				deduplicatedFaces,
+				uploadedFaces == 0 ? 0 : deduplicatedFaces * 100 / uploadedFaces,
+				formatBytes(deduplicatedFaces * Zone.TEXTURE_SIZE)
+			);
+		}
 
 		for (int x = 0; x < ctx.sizeX; ++x) {
 			for (int z = 0; z < ctx.sizeZ; ++z) {
@@ -24,6 +24,8 @@
  */
 package rs117.hd.renderer.zone;
 
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
@@ -54,6 +56,8 @@ import rs117.hd.utils.collections.PrimitiveIntArray;
 
 import static net.runelite.api.Constants.*;
 import static net.runelite.api.Perspective.*;
+import static rs117.hd.renderer.zone.WorldViewContext.VAO_ALPHA;
+import static rs117.hd.renderer.zone.WorldViewContext.VAO_OPAQUE;
 import static rs117.hd.scene.SceneContext.TILE_OVERRIDE_MAIN;
 import static rs117.hd.scene.SceneContext.TILE_OVERRIDE_OVERLAY;
 import static rs117.hd.scene.SceneContext.TILE_OVERRIDE_UNDERLAY;
@@ -83,6 +87,8 @@ public class SceneUploader implements AutoCloseable {
 	private static final float LIGHTNESS_MULTIPLIER = 3;
 	// the minimum amount by which each color will be lightened
 	private static final int BASE_LIGHTEN = 10;
+	// Only models up to this radius may be culled when they're too small on screen
+	private static final int MAX_DETAIL_MODEL_RADIUS = 2 * LOCAL_TILE_SIZE;
 
 	static {
 		for (int i = 0; i < 8; i++) {
@@ -109,6 +115,9 @@ public class SceneUploader implements AutoCloseable {
 	@Inject
 	private ProceduralGenerator proceduralGenerator;
 
+	@Inject
+	private SceneManager sceneManager;
+
 	@FunctionalInterface
 	public interface OnBeforeProcessTileFunc {
 		void invoke(Tile t, boolean isEstimate) throws InterruptedException;
@@ -135,6 +144,11 @@ public class SceneUploader implements AutoCloseable {
 
 	private int[] modelVertices;
 	public int tempModelAlphaFaces = 0;
+	// Highest point of the static geometry uploaded for the current zone, with Y pointing down
+	private int zoneMinY;
+	private final int[] levelBounds = new int[Zone.BOUNDS_SIZE];
+	// Bounds of the level or roof being uploaded, set aside while measuring a single detail model
+	private final int[] outerBounds = new int[Zone.BOUNDS_SIZE];
 
 	private final PooledObjectArray<ModelOverride> faceOverrides = new PooledObjectArray<>();
 	private final PooledObjectArray<Material> faceMaterials = new PooledObjectArray<>();
@@ -142,6 +156,7 @@ public class SceneUploader implements AutoCloseable {
 
 	private final int[] tzHaarRecolored = new int[3];
 	private final float[] projected = new float[4];
+	private final int[] instanceVertices = new int[DynamicModelInstanceCache.FACE_SIZE_INTS];
 
 	private final GpuIntBuffer zoneVboO = new GpuIntBuffer(false);
 	private final GpuIntBuffer zoneVboA = new GpuIntBuffer(false);
@@ -150,6 +165,14 @@ public class SceneUploader implements AutoCloseable {
 	// Lazily initialized staging buffers
 	public VertexWriteCache.Collection writeCache;
 
+	// Faces written by the last zone upload, and how many of them reused the data of an identical face
+	public int uploadedFaceCount, deduplicatedFaceCount;
+
+	// Simplified levels of the last uploaded zone, if any were generated
+	@Nullable
+	ZoneLodGenerator lodGenerator;
+	public boolean hasZoneLods;
+
 	public void setScene(Scene scene) {
 		if (scene == currentScene)
 			return;
@@ -210,12 +233,18 @@ public class SceneUploader implements AutoCloseable {
 			estimateZoneGapFillers(ctx, zone, mzx, mzz);
 	}
 
-	public void uploadZone(ZoneSceneContext ctx, Zone zone, int mzx, int mzz) throws InterruptedException {
+	public void uploadZone(ZoneSceneContext ctx, Zone zone, int mzx, int mzz, boolean generateLods) throws InterruptedException {
 		var vb = zone.vboO != null ? zoneVboO.setBuffer(zone.vboO.mapped()) : null;
 		var ab = zone.vboA != null ? zoneVboA.setBuffer(zone.vboA.mapped()) : null;
 		var fb = zone.tboF != null ? zoneTboF.setBuffer(zone.tboF.mapped()) : null;
 		assert zone.tboF != null;
 
+		zoneMinY = Integer.MAX_VALUE;
+		for (int level = 0; level <= 3; ++level)
+			for (int xoff = 0; xoff <= CHUNK_SIZE; ++xoff)
+				for (int zoff = 0; zoff <= CHUNK_SIZE; ++zoff)
+					zoneMinY = min(zoneMinY, tileHeights[level][(mzx << 3) + xoff][(mzz << 3) + zoff]);
+
 		roofIds.length = 0;
 		for (int level = 0; level <= 3; ++level) {
 			for (int xoff = 0; xoff < CHUNK_SIZE; ++xoff) {
@@ -233,33 +262,73 @@ public class SceneUploader implements AutoCloseable {
 		zone.rids = new int[4][roofIds.length];
 		zone.roofStart = new int[4][roofIds.length];
 		zone.roofEnd = new int[4][roofIds.length];
+		zone.roofBounds = new int[4][roofIds.length * Zone.BOUNDS_SIZE];
+		zone.levelBounds = new int[4 * Zone.BOUNDS_SIZE];
+		zone.detailModels = null;
+		zone.detailModelCount = 0;
+		zone.culledDetailModels = null;
 
-		for (int z = 0; z <= 3; ++z) {
-			this.level = z;
+		if (writeCache == null)
+			writeCache = new VertexWriteCache.Collection();
+		writeCache.setPackedVertices(zone.vertSize == PackedVertexFormat.VERT_SIZE);
+		writeCache.opaqueTex.resetFaceCounts();
+		if (plugin.configDeduplicateFaceData)
+			writeCache.opaqueTex.beginFaceDeduplication();
+		boolean captureVertices = generateLods && plugin.configZoneLods && vb != null;
+		if (captureVertices)
+			writeCache.opaque.beginCapture(vb.getBuffer().capacity());
+		int[] capturedVertices = null;
 
-			if (z == 0) {
-				uploadZoneLevel(ctx, zone, mzx, mzz, 0, false, vb, ab, fb);
-				uploadZoneLevel(ctx, zone, mzx, mzz, 0, true, vb, ab, fb);
-				uploadZoneLevel(ctx, zone, mzx, mzz, 1, true, vb, ab, fb);
-				uploadZoneLevel(ctx, zone, mzx, mzz, 2, true, vb, ab, fb);
-				uploadZoneLevel(ctx, zone, mzx, mzz, 3, true, vb, ab, fb);
-			} else {
-				uploadZoneLevel(ctx, zone, mzx, mzz, z, false, vb, ab, fb);
+		try {
+			for (int z = 0; z <= 3; ++z) {
+				this.level = z;
+				Zone.resetBounds(levelBounds, 0);
+
+				if (z == 0) {
+					uploadZoneLevel(ctx, zone, mzx, mzz, 0, false, vb, ab, fb);
+					uploadZoneLevel(ctx, zone, mzx, mzz, 0, true, vb, ab, fb);
+					uploadZoneLevel(ctx, zone, mzx, mzz, 1, true, vb, ab, fb);
+					uploadZoneLevel(ctx, zone, mzx, mzz, 2, true, vb, ab, fb);
+					uploadZoneLevel(ctx, zone, mzx, mzz, 3, true, vb, ab, fb);
+				} else {
+					uploadZoneLevel(ctx, zone, mzx, mzz, z, false, vb, ab, fb);
+				}
+
+				if (vb != null)
+					zone.levelOffsets[z] = vb.position();
+				System.arraycopy(levelBounds, 0, zone.levelBounds, z * Zone.BOUNDS_SIZE, Zone.BOUNDS_SIZE);
 			}
 
-			if (vb != null)
-				zone.levelOffsets[z] = vb.position();
-		}
+			if (vb != null) {
+				// Upload water surface tiles to be drawn after everything else
+				if (zone.hasWater)
+					uploadZoneWater(ctx, zone, mzx, mzz, vb, fb);
+				zone.levelOffsets[Zone.LEVEL_WATER_SURFACE] = vb.position();
 
-		if (vb != null) {
-			// Upload water surface tiles to be drawn after everything else
-			if (zone.hasWater)
-				uploadZoneWater(ctx, zone, mzx, mzz, vb, fb);
-			zone.levelOffsets[Zone.LEVEL_WATER_SURFACE] = vb.position();
+				if (zone.hasGapFiller)
+					uploadZoneGapFillers(ctx, mzx, mzz, vb, fb);
+				zone.levelOffsets[Zone.LEVEL_GAP_FILLER] = vb.position();
+			}
+		} finally {
+			writeCache.opaqueTex.endFaceDeduplication();
+			if (captureVertices)
+				capturedVertices = writeCache.opaque.endCapture();
+		}
 
-			if (zone.hasGapFiller)
-				uploadZoneGapFillers(ctx, mzx, mzz, vb, fb);
-			zone.levelOffsets[Zone.LEVEL_GAP_FILLER] = vb.position();
+		zone.minY = zoneMinY;
+		if (zone.detailModelCount > 0) {
+			assert zone.detailModels != null;
+			zone.detailModels = Arrays.copyOf(zone.detailModels, zone.detailModelCount * Zone.DETAIL_MODEL_SIZE);
+			zone.culledDetailModels = new long[zone.detailModelCount + 63 >> 6];
+		}
+		uploadedFaceCount = writeCache.opaqueTex.faceCount;
+		deduplicatedFaceCount = writeCache.opaqueTex.deduplicatedFaceCount;
+
+		hasZoneLods = false;
+		if (capturedVertices != null) {
+			if (lodGenerator == null)
+				lodGenerator = new ZoneLodGenerator();
+			hasZoneLods = lodGenerator.generate(zone, capturedVertices);
 		}
 	}
 
@@ -281,7 +350,9 @@ public class SceneUploader implements AutoCloseable {
 			final int id = roofIds.array[i];
 			int pos = vb != null ? vb.position() : 0;
 
+			writeCache.opaque.resetBounds();
 			uploadZoneLevelRoof(ctx, zone, mzx, mzz, level, id, visbelow, vb, ab, fb);
+			mergeBounds(levelBounds, writeCache.opaque);
 
 			int endpos = vb != null ? vb.position() : 0;
 
@@ -289,12 +360,70 @@ public class SceneUploader implements AutoCloseable {
 				zone.rids[level][ridx] = id;
 				zone.roofStart[level][ridx] = pos;
 				zone.roofEnd[level][ridx] = endpos;
+				Zone.resetBounds(zone.roofBounds[level], ridx * Zone.BOUNDS_SIZE);
+				mergeBounds(zone.roofBounds[level], ridx * Zone.BOUNDS_SIZE, writeCache.opaque);
 				++ridx;
 			}
 		}
 
 		// upload everything else
+		writeCache.opaque.resetBounds();
 		uploadZoneLevelRoof(ctx, zone, mzx, mzz, level, 0, visbelow, vb, ab, fb);
+		mergeBounds(levelBounds, writeCache.opaque);
+	}
+
+	private static void mergeBounds(int[] bounds, VertexWriteCache cache) {
+		mergeBounds(bounds, 0, cache);
+	}
+
+	private static void mergeBounds(int[] bounds, int offset, VertexWriteCache cache) {
+		bounds[offset] = min(bounds[offset], cache.minX);
+		bounds[offset + 1] = min(bounds[offset + 1], cache.minY);
+		bounds[offset + 2] = min(bounds[offset + 2], cache.minZ);
+		bounds[offset + 3] = max(bounds[offset + 3], cache.maxX);
+		bounds[offset + 4] = max(bounds[offset + 4], cache.maxY);
+		bounds[offset + 5] = max(bounds[offset + 5], cache.maxZ);
+	}
+
+	private static void mergeBounds(VertexWriteCache cache, int[] bounds) {
+		cache.minX = min(cache.minX, bounds[0]);
+		cache.minY = min(cache.minY, bounds[1]);
+		cache.minZ = min(cache.minZ, bounds[2]);
+		cache.maxX = max(cache.maxX, bounds[3]);
+		cache.maxY = max(cache.maxY, bounds[4]);
+		cache.maxZ = max(cache.maxZ, bounds[5]);
+	}
+
+	/**
+	 * Record the opaque buffer range of a small model along with its bounding sphere, so it can be culled once it
+	 * covers too few pixels.
+	 */
+	private static void addDetailModel(Zone zone, int startpos, int endpos, VertexWriteCache bounds) {
+		if (bounds.minX > bounds.maxX)
+			return;
+
+		int dx = bounds.maxX - bounds.minX;
+		int dy = bounds.maxY - bounds.minY;
+		int dz = bounds.maxZ - bounds.minZ;
+		int radius = (int) Math.ceil(Math.sqrt((double) dx * dx + (double) dy * dy + (double) dz * dz) / 2);
+		if (radius > MAX_DETAIL_MODEL_RADIUS)
+			return;
+
+		int offset = zone.detailModelCount * Zone.DETAIL_MODEL_SIZE;
+		if (zone.detailModels == null) {
+			zone.detailModels = new int[64 * Zone.DETAIL_MODEL_SIZE];
+		} else if (offset == zone.detailModels.length) {
+			zone.detailModels = Arrays.copyOf(zone.detailModels, offset * 2);
+		}
+
+		int[] models = zone.detailModels;
+		models[offset] = startpos;
+		models[offset + 1] = endpos;
+		models[offset + 2] = bounds.minX + dx / 2;
+		models[offset + 3] = bounds.minY + dy / 2;
+		models[offset + 4] = bounds.minZ + dz / 2;
+		models[offset + 5] = radius + 1; // account for rounding the center
+		zone.detailModelCount++;
 	}
 
 	private void uploadZoneLevelRoof(
@@ -785,6 +914,18 @@ public class SceneUploader implements AutoCloseable {
 			return;
 
 		int alphaStart = alphaBuffer != null ? alphaBuffer.position() : 0;
+		int opaqueStart = opaqueBuffer != null ? opaqueBuffer.position() : 0;
+		final boolean isDetailModel =
+			plugin.configDetailCullingPixels > 0 &&
+			opaqueBuffer != null &&
+			writeCache != null &&
+			modelOverrideManager.allowDetailCulling(uuid);
+		if (isDetailModel) {
+			// Measure the bounds of this model alone, and merge the rest back in afterwards
+			Zone.resetBounds(outerBounds, 0);
+			mergeBounds(outerBounds, writeCache.opaque);
+			writeCache.opaque.resetBounds();
+		}
 		try {
 			uploadStaticModel(
 				ctx, tile, model, modelOverride, uuid,
@@ -812,6 +953,13 @@ public class SceneUploader implements AutoCloseable {
 			}
 		}
 
+		if (isDetailModel) {
+			int opaqueEnd = opaqueBuffer.position();
+			if (opaqueEnd > opaqueStart)
+				addDetailModel(zone, opaqueStart, opaqueEnd, writeCache.opaque);
+			mergeBounds(writeCache.opaque, outerBounds);
+		}
+
 		int alphaEnd = alphaBuffer != null ? alphaBuffer.position() : 0;
 		if (alphaEnd > alphaStart) {
 			if (lx > -1) {
@@ -1584,6 +1732,7 @@ public class SceneUploader implements AutoCloseable {
 			modelVertices[vertexOffset++] = vx;
 			modelVertices[vertexOffset++] = vy;
 			modelVertices[vertexOffset++] = vz;
+			zoneMinY = min(zoneMinY, vy);
 		}
 
 		boolean isVanillaTextured = faceTextures != null;
@@ -2144,13 +2293,142 @@ public class SceneUploader implements AutoCloseable {
 	) {
 		if (writeCache == null)
 			writeCache = new VertexWriteCache.Collection();
+		writeCache.setPackedVertices(sceneManager.isPackedVertices());
 		writeCache.setOutputBuffers(
 			opaqueView.vbo.getBuffer(),
 			alphaView.vbo.getBuffer(),
 			opaqueView.tbo.getBuffer(),
 			alphaView.tbo.getBuffer()
 		);
+		writeTempModel(faces, model, modelOverride, preOrientation, orientation, isShadow);
+	}
+
+	/**
+	 * Process every face of a dynamic model which may be drawn, positioned at the origin, into a template which later
+	 * draws of the same model can copy from. The face data is written to the current frame's dynamic model buffers.
+	 *
+	 * @return false if the model has no faces to draw
+	 */
+	boolean buildTempModelTemplate(
+		DynamicModelInstanceCache.Template template,
+		WorldViewContext ctx,
+		Projection proj,
+		PrimitiveCharArray visibleFaces,
+		PrimitiveCharArray culledFaces,
+		ModelOverride modelOverride,
+		Model model,
+		boolean hasAlphaModel,
+		int preOrientation,
+		int orientation,
+		boolean isShadow
+	) {
+		preprocessTempModel(
+			proj,
+			plugin.cameraFrustum,
+			null,
+			visibleFaces,
+			culledFaces,
+			false,
+			modelOverride,
+			model,
+			false,
+			orientation,
+			0, 0, 0
+		);
+
+		// Faces which are culled from the origin may be visible elsewhere, so the template must include both
+		for (int f = 0; f < culledFaces.length; f++)
+			visibleFaces.put(culledFaces.array[f]);
+		final int faceCount = visibleFaces.length;
+		if (faceCount == 0)
+			return false;
+
+		final byte modelTransparency = model.getTransparency();
+		final byte[] transparencies = model.getFaceTransparencies();
+		int alphaFaceCount = 0;
+		if (hasAlphaModel)
+			for (int f = 0; f < faceCount; f++)
+				if (isTempFaceAlpha(visibleFaces.array[f], modelTransparency, transparencies))
+					alphaFaceCount++;
+		final int opaqueFaceCount = faceCount - alphaFaceCount;
+
+		template.allocate(model.getFaceCount(), opaqueFaceCount, alphaFaceCount);
+		final var opaqueFaceData = ctx.reserveFaceData(VAO_OPAQUE, opaqueFaceCount);
+		final var alphaFaceData = alphaFaceCount > 0 ? ctx.reserveFaceData(VAO_ALPHA, alphaFaceCount) : opaqueFaceData;
+		final IntBuffer opaqueVertices = IntBuffer.wrap(template.opaqueVertices);
+		final IntBuffer alphaVertices = alphaFaceCount > 0 ? IntBuffer.wrap(template.alphaVertices) : opaqueVertices;
+
+		if (writeCache == null)
+			writeCache = new VertexWriteCache.Collection();
+		writeCache.setPackedVertices(sceneManager.isPackedVertices());
+		writeCache.setOutputBuffers(opaqueVertices, alphaVertices, opaqueFaceData.getBuffer(), alphaFaceData.getBuffer());
+		writeTempModel(visibleFaces, model, modelOverride, preOrientation, orientation, isShadow);
+
+		// Faces are written in order, split between the opaque and alpha templates
+		final int faceSize = DynamicModelInstanceCache.FACE_SIZE_INTS;
+		Arrays.fill(template.faceOffsets, 0, model.getFaceCount(), -1);
+		for (int f = 0, opaqueOffset = 0, alphaOffset = 0; f < faceCount; f++) {
+			final int face = visibleFaces.array[f];
+			final boolean isAlpha = alphaFaceCount > 0 && isTempFaceAlpha(face, modelTransparency, transparencies);
+			template.alphaFaces[face] = isAlpha;
+			if (isAlpha) {
+				template.faceOffsets[face] = alphaOffset;
+				alphaOffset += faceSize;
+			} else {
+				template.faceOffsets[face] = opaqueOffset;
+				opaqueOffset += faceSize;
+			}
+		}
+		return true;
+	}
+
+	private boolean isTempFaceAlpha(int face, byte modelTransparency, byte[] transparencies) {
+		final ModelOverride faceOverride = faceOverrides.get(face);
+		int transparency = readFaceTransparency(modelTransparency, transparencies, face);
+		if (faceOverride.modifiesAlpha)
+			transparency = 255 - faceOverride.modifyAlpha(255 - transparency);
+		return faceMaterials.get(face).hasTransparency || transparency != 0;
+	}
+
+	/**
+	 * Copy the vertices of the specified faces from a template, translated into place.
+	 */
+	void writeTempModelInstance(
+		DynamicModelInstanceCache.Template template,
+		PrimitiveCharArray faces,
+		float x, float y, float z,
+		DynamicModelVAO.View opaqueView,
+		DynamicModelVAO.View alphaView
+	) {
+		final int faceSize = DynamicModelInstanceCache.FACE_SIZE_INTS;
+		final int[] vertices = instanceVertices;
+		final IntBuffer opaqueBuffer = opaqueView.vbo.getBuffer();
+		final IntBuffer alphaBuffer = alphaView.vbo.getBuffer();
+		for (int f = 0; f < faces.length; f++) {
+			final int face = faces.array[f];
+			final int offset = template.faceOffsets[face];
+			if (offset < 0)
+				continue;
 
+			final boolean isAlpha = template.alphaFaces[face];
+			System.arraycopy(isAlpha ? template.alphaVertices : template.opaqueVertices, offset, vertices, 0, faceSize);
+			for (int i = 0; i < faceSize; i += DynamicModelVAO.VERT_SIZE_INTS) {
+				vertices[i] = Float.floatToRawIntBits(Float.intBitsToFloat(vertices[i]) + x);
+				vertices[i + 1] = Float.floatToRawIntBits(Float.intBitsToFloat(vertices[i + 1]) + y);
+				vertices[i + 2] = Float.floatToRawIntBits(Float.intBitsToFloat(vertices[i + 2]) + z);
+			}
+			(isAlpha ? alphaBuffer : opaqueBuffer).put(vertices, 0, faceSize);
+		}
+	}
+
+	private void writeTempModel(
+		PrimitiveCharArray faces,
+		Model model,
+		ModelOverride modelOverride,
+		int preOrientation,
+		int orientation,
+		boolean isShadow
+	) {
 		final int[] indices1 = model.getFaceIndices1();
 		final int[] indices2 = model.getFaceIndices2();
 		final int[] indices3 = model.getFaceIndices3();
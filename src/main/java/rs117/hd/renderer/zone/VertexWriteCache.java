@@ -1,11 +1,14 @@
 package rs117.hd.renderer.zone;
 
 import java.nio.IntBuffer;
+import java.util.Arrays;
+import javax.annotation.Nullable;
 import lombok.extern.slf4j.Slf4j;
 import rs117.hd.utils.buffer.GpuIntBuffer;
 import rs117.hd.utils.collections.PooledArrayType;
 
 import static rs117.hd.utils.MathUtils.*;
+import static rs117.hd.utils.collections.Util.murmurHash3;
 
 @Slf4j
 public final class VertexWriteCache {
@@ -17,6 +20,22 @@ public final class VertexWriteCache {
 	private int[] stagingBuffer;
 	private int stagingPosition;
 
+	// Bounds of the static vertices written since bounds were last reset
+	public int minX, minY, minZ, maxX, maxY, maxZ;
+
+	@Nullable
+	private FaceTable faceTable;
+	private boolean deduplicateFaces;
+	// Faces written since the counts were last reset, and how many of them reused the data of an identical face
+	public int faceCount, deduplicatedFaceCount;
+
+	// Whether static vertices use PackedVertexFormat, and dynamic vertices octahedral-encoded normals
+	private boolean packedVertices;
+
+	// CPU-side copy of the output buffer at matching positions, since mapped buffers are write-only
+	private int[] captureBuffer = new int[0];
+	private boolean capturing;
+
 	public VertexWriteCache(String name, int initialCapacity) {
 		this(name, initialCapacity, initialCapacity);
 	}
@@ -41,6 +60,49 @@ public final class VertexWriteCache {
 		stagingBuffer = null;
 	}
 
+	/**
+	 * Start reusing the index of identical faces written to the same output buffer, until
+	 * {@link #endFaceDeduplication()} is called. The output buffer must not be rewound in the meantime.
+	 */
+	public void beginFaceDeduplication() {
+		if (faceTable == null)
+			faceTable = new FaceTable();
+		faceTable.clear();
+		deduplicateFaces = true;
+	}
+
+	public void endFaceDeduplication() {
+		deduplicateFaces = false;
+	}
+
+	/**
+	 * Start keeping a copy of everything flushed to the output buffer, at the same positions, until
+	 * {@link #endCapture()} is called. Positions which were never flushed to hold stale data.
+	 */
+	public void beginCapture(int expectedSize) {
+		if (captureBuffer.length < expectedSize)
+			captureBuffer = new int[expectedSize];
+		capturing = true;
+	}
+
+	/**
+	 * @return the captured output, which is only valid until the next capture begins
+	 */
+	public int[] endCapture() {
+		flush();
+		capturing = false;
+		return captureBuffer;
+	}
+
+	public void resetFaceCounts() {
+		faceCount = deduplicatedFaceCount = 0;
+	}
+
+	public void resetBounds() {
+		minX = minY = minZ = Integer.MAX_VALUE;
+		maxX = maxY = maxZ = Integer.MIN_VALUE;
+	}
+
 	private void flushAndGrow() {
 		// Flush buffer and then resize to avoid flushing mid put
 		flush();
@@ -73,6 +135,15 @@ public final class VertexWriteCache {
 		stagingBuffer[stagingPosition + 7] = terrainDataB;
 		stagingBuffer[stagingPosition + 8] = terrainDataC;
 
+		faceCount++;
+		if (deduplicateFaces) {
+			int existingFaceIdx = faceTable.findOrAdd(stagingBuffer, stagingPosition, textureFaceIdx);
+			if (existingFaceIdx != -1) {
+				deduplicatedFaceCount++;
+				return existingFaceIdx;
+			}
+		}
+
 		this.stagingPosition += 9;
 
 		return textureFaceIdx;
@@ -95,8 +166,13 @@ public final class VertexWriteCache {
 		stagingBuffer[stagingPosition + 2] = z;
 		stagingBuffer[stagingPosition + 3] = float16(v) << 16 | float16(u);
 		stagingBuffer[stagingPosition + 4] = float16(w);
-		stagingBuffer[stagingPosition + 5] = (ny & 0xFFFF) << 16 | nx & 0xFFFF;
-		stagingBuffer[stagingPosition + 6] = nz & 0xFFFF;
+		if (packedVertices) {
+			stagingBuffer[stagingPosition + 5] = PackedVertexFormat.octEncode(nx, ny, nz);
+			stagingBuffer[stagingPosition + 6] = 0;
+		} else {
+			stagingBuffer[stagingPosition + 5] = (ny & 0xFFFF) << 16 | nx & 0xFFFF;
+			stagingBuffer[stagingPosition + 6] = nz & 0xFFFF;
+		}
 		stagingBuffer[stagingPosition + 7] = textureFaceIdx;
 
 		this.stagingPosition += 8;
@@ -108,22 +184,34 @@ public final class VertexWriteCache {
 		int nx, int ny, int nz,
 		int textureFaceIdx, boolean windingReversed
 	) {
-		if (stagingPosition + 7 > stagingBuffer.length)
+		final int intsPerVertex = packedVertices ? PackedVertexFormat.VERT_SIZE_INTS : Zone.UNPACKED_VERT_SIZE >> 2;
+		if (stagingPosition + intsPerVertex > stagingBuffer.length)
 			flushAndGrow();
 
 		final int[] stagingBuffer = this.stagingBuffer;
 		final int stagingPosition = this.stagingPosition;
 
-		stagingBuffer[stagingPosition] = (y & 0xFFFF) << 16 | x & 0xFFFF;
-		stagingBuffer[stagingPosition + 1] = z & 0xFFFF;
-		stagingBuffer[stagingPosition + 2] = float16(v) << 16 | float16(u);
-		stagingBuffer[stagingPosition + 3] = float16(w);
-		// Unnormalized normals, assumed to be within short max
-		stagingBuffer[stagingPosition + 4] = (ny & 0xFFFF) << 16 | nx & 0xFFFF;
-		stagingBuffer[stagingPosition + 5] = nz & 0xFFFF;
-		stagingBuffer[stagingPosition + 6] = (windingReversed ? 1 << 31 : 0) | textureFaceIdx;
+		if (packedVertices) {
+			PackedVertexFormat.pack(stagingBuffer, stagingPosition, x, y, z, u, v, w, nx, ny, nz, textureFaceIdx, windingReversed);
+		} else {
+			stagingBuffer[stagingPosition] = (y & 0xFFFF) << 16 | x & 0xFFFF;
+			stagingBuffer[stagingPosition + 1] = z & 0xFFFF;
+			stagingBuffer[stagingPosition + 2] = float16(v) << 16 | float16(u);
+			stagingBuffer[stagingPosition + 3] = float16(w);
+			// Unnormalized normals, assumed to be within short max
+			stagingBuffer[stagingPosition + 4] = (ny & 0xFFFF) << 16 | nx & 0xFFFF;
+			stagingBuffer[stagingPosition + 5] = nz & 0xFFFF;
+			stagingBuffer[stagingPosition + 6] = (windingReversed ? 1 << 31 : 0) | textureFaceIdx;
+		}
+
+		this.stagingPosition += intsPerVertex;
 
-		this.stagingPosition += 7;
+		minX = min(minX, x);
+		minY = min(minY, y);
+		minZ = min(minZ, z);
+		maxX = max(maxX, x);
+		maxY = max(maxY, y);
+		maxZ = max(maxZ, z);
 	}
 
 	public void flush() {
@@ -131,6 +219,12 @@ public final class VertexWriteCache {
 			return;
 
 		try {
+			if (capturing) {
+				int position = outputBuffer.position();
+				if (position + stagingPosition > captureBuffer.length)
+					captureBuffer = Arrays.copyOf(captureBuffer, max(captureBuffer.length * 2, position + stagingPosition));
+				System.arraycopy(stagingBuffer, 0, captureBuffer, position, stagingPosition);
+			}
 			outputBuffer.put(stagingBuffer, 0, stagingPosition);
 		} catch (Exception e) {
 			log.error("Failed to flush vertex write cache {} written: {} remaining: {}", name, stagingPosition, outputBuffer.remaining(), e);
@@ -139,6 +233,78 @@ public final class VertexWriteCache {
 		}
 	}
 
+	/**
+	 * Open addressing table from the data of each face to the index it was first written at.
+	 */
+	private static final class FaceTable {
+		private static final int FACE_INTS = 9;
+		private static final int INITIAL_CAPACITY = 1024;
+		// Stop adding faces beyond this point, to bound the memory used by zones with lots of unique faces
+		private static final int MAX_SIZE = 1 << 15;
+
+		private int[] faces = new int[INITIAL_CAPACITY * FACE_INTS];
+		private int[] indices = new int[INITIAL_CAPACITY];
+		private int size;
+
+		FaceTable() {
+			Arrays.fill(indices, -1);
+		}
+
+		void clear() {
+			if (size > 0)
+				Arrays.fill(indices, -1);
+			size = 0;
+		}
+
+		/**
+		 * @return the index of an identical face, or -1 if the face is new
+		 */
+		int findOrAdd(int[] face, int offset, int faceIdx) {
+			final int mask = indices.length - 1;
+			int slot = hash(face, offset) & mask;
+			while (indices[slot] != -1) {
+				if (Arrays.equals(faces, slot * FACE_INTS, (slot + 1) * FACE_INTS, face, offset, offset + FACE_INTS))
+					return indices[slot];
+				slot = slot + 1 & mask;
+			}
+
+			if (size >= MAX_SIZE)
+				return -1;
+
+			System.arraycopy(face, offset, faces, slot * FACE_INTS, FACE_INTS);
+			indices[slot] = faceIdx;
+			if (++size > indices.length >> 1)
+				grow();
+			return -1;
+		}
+
+		private void grow() {
+			final int[] oldFaces = faces;
+			final int[] oldIndices = indices;
+			faces = new int[oldFaces.length * 2];
+			indices = new int[oldIndices.length * 2];
+			Arrays.fill(indices, -1);
+
+			final int mask = indices.length - 1;
+			for (int i = 0; i < oldIndices.length; i++) {
+				if (oldIndices[i] == -1)
+					continue;
+				int slot = hash(oldFaces, i * FACE_INTS) & mask;
+				while (indices[slot] != -1)
+					slot = slot + 1 & mask;
+				System.arraycopy(oldFaces, i * FACE_INTS, faces, slot * FACE_INTS, FACE_INTS);
+				indices[slot] = oldIndices[i];
+			}
+		}
+
+		private static int hash(int[] face, int offset) {
+			int h = 0;
+			for (int i = 0; i < FACE_INTS; i++)
+				h = h * 31 + face[offset + i];
+			return murmurHash3(h);
+		}
+	}
+
 	public static class Collection {
 		private static final int CAPACITY = (int) (32 * KiB / Integer.BYTES);
 
@@ -148,6 +314,11 @@ public final class VertexWriteCache {
 		public final VertexWriteCache alphaTex = new VertexWriteCache("ALPHA_TEX", CAPACITY);
 		public boolean useAlphaBuffer;
 
+		public void setPackedVertices(boolean packedVertices) {
+			opaque.packedVertices = packedVertices;
+			alpha.packedVertices = packedVertices;
+		}
+
 		public void setOutputBuffers(IntBuffer opaque, IntBuffer alpha, IntBuffer opaqueTex, IntBuffer alphaTex) {
 			this.opaque.setOutputBuffer(opaque);
 			this.opaqueTex.setOutputBuffer(opaqueTex);
@@ -19,9 +19,13 @@ import rs117.hd.utils.Camera;
 import rs117.hd.utils.CommandBuffer;
 import rs117.hd.utils.DestructibleHandler;
 import rs117.hd.utils.buffer.GLBuffer;
+import rs117.hd.utils.buffer.GLMappedBufferIntWriter;
 import rs117.hd.utils.collections.ConcurrentPool;
 import rs117.hd.utils.jobs.JobGroup;
+import rs117.hd.utils.jobs.JobPriority;
 
+import static net.runelite.api.Constants.*;
+import static net.runelite.api.Perspective.*;
 import static org.lwjgl.opengl.GL33C.*;
 import static rs117.hd.renderer.zone.DynamicModelVAO.METADATA_SIZE;
 import static rs117.hd.renderer.zone.SceneManager.NUM_ZONES;
@@ -42,9 +46,6 @@ public class WorldViewContext {
 	public static final ConcurrentPool<DynamicModelVAO> DYNAMIC_MODEL_VAO_POOL =
 		new ConcurrentPool<>(() -> new DynamicModelVAO("DynamicModelVAO", false));
 
-	@Inject
-	private Injector injector;
-
 	@Inject
 	private ClientThread clientThread;
 
@@ -72,14 +73,15 @@ public class WorldViewContext {
 	CommandBuffer vaoSceneCmd;
 	CommandBuffer vaoDirectionalCmd;
 	final DynamicModelVAO[][] dynamicModelVaos = new DynamicModelVAO[FRAMES_IN_FLIGHT][VAO_COUNT];
+	final DynamicModelInstanceCache instanceCache = new DynamicModelInstanceCache();
 
 	public long loadTime;
 	public long uploadTime;
 	public long sceneSwapTime;
 
-	final JobGroup<ZoneUploadJob> sceneLoadGroup = new JobGroup<>(true, true);
-	final JobGroup<ZoneUploadJob> streamingGroup = new JobGroup<>(false, false);
-	final JobGroup<ZoneUploadJob> invalidationGroup = new JobGroup<>(true, false);
+	final JobGroup<ZoneUploadJob> sceneLoadGroup = new JobGroup<>(JobPriority.FRAME_DEFERRED, true);
+	final JobGroup<ZoneUploadJob> streamingGroup = new JobGroup<>(JobPriority.BACKGROUND, false);
+	final JobGroup<ZoneUploadJob> invalidationGroup = new JobGroup<>(JobPriority.FRAME_CRITICAL, false);
 
 	WorldViewContext(
 		@Nullable WorldView worldView,
@@ -103,7 +105,7 @@ public class WorldViewContext {
 
 		for (int x = 0; x < sizeX; ++x)
 			for (int z = 0; z < sizeZ; ++z)
-				zones[x][z] = injector.getInstance(Zone.class);
+				zones[x][z] = sceneManager.createZone();
 	}
 
 	void initBuffers() {
@@ -127,7 +129,7 @@ public class WorldViewContext {
 			for (int k = 0; k < FRAMES_IN_FLIGHT; k++) {
 				DynamicModelVAO dynamicModelVao = dynamicModelVaos[k][i] = POOL.acquire();
 				if (dynamicModelVao.getVao() == 0)
-					dynamicModelVao.initialize();
+					dynamicModelVao.initialize(sceneManager.isPackedVertices());
 				dynamicModelVao.bindMetadataVAO(vboM);
 			}
 		}
@@ -137,6 +139,7 @@ public class WorldViewContext {
 	void map() {
 		for (int i = 0; i < VAO_COUNT; i++)
 			dynamicModelVaos[plugin.frame % FRAMES_IN_FLIGHT][i].map();
+		instanceCache.clear();
 	}
 
 	DynamicModelVAO.View beginDraw(int type, int faces) {
@@ -147,6 +150,14 @@ public class WorldViewContext {
 		return dynamicModelVaos[plugin.frame % FRAMES_IN_FLIGHT][type].beginDraw(playerDrawIndex, faces);
 	}
 
+	DynamicModelVAO.View beginDraw(int type, int drawIndex, int faces, int faceDataCount) {
+		return dynamicModelVaos[plugin.frame % FRAMES_IN_FLIGHT][type].beginDraw(drawIndex, faces, faceDataCount);
+	}
+
+	GLMappedBufferIntWriter.ReservedView reserveFaceData(int type, int faces) {
+		return dynamicModelVaos[plugin.frame % FRAMES_IN_FLIGHT][type].reserveFaceData(faces);
+	}
+
 	int obtainDrawIndex(int type) {
 		return dynamicModelVaos[plugin.frame % FRAMES_IN_FLIGHT][type].obtainDrawIndex();
 	}
@@ -162,9 +173,16 @@ public class WorldViewContext {
 		}
 	}
 
-	void sortStaticAlphaModels(Camera camera) {
+	/**
+	 * Queue depth sorting of static transparent models in zones within the specified distance from the camera.
+	 */
+	void sortStaticAlphaModels(Camera camera, int maxDistance) {
 		alphaZones.clear();
 
+		// Measure from the zone center, and leave room for the corners of the zone
+		final long maxDist = (long) maxDistance + (CHUNK_SIZE * LOCAL_TILE_SIZE * 3 / 4);
+		final long maxDistSquared = maxDistance == Integer.MAX_VALUE ? Long.MAX_VALUE : maxDist * maxDist;
+
 		final int offset = sceneContext.sceneOffset >> 3;
 		final int camPosX = (int) camera.getPositionX();
 		final int camPosZ = (int) camera.getPositionZ();
@@ -177,6 +195,10 @@ public class WorldViewContext {
 				final int dx = camPosX - ((zx - offset) << 10);
 				final int dz = camPosZ - ((zz - offset) << 10);
 				z.dist = dx * dx + dz * dz;
+				final long cx = dx - (CHUNK_SIZE * LOCAL_HALF_TILE_SIZE);
+				final long cz = dz - (CHUNK_SIZE * LOCAL_HALF_TILE_SIZE);
+				if (cx * cx + cz * cz > maxDistSquared)
+					continue;
 				alphaZones.add(z);
 			}
 		}
@@ -291,6 +313,7 @@ public class WorldViewContext {
 				POOL.recycle(dynamicModelVaos[k][i]);
 			}
 		}
+		instanceCache.clear();
 
 		for (int x = 0; x < sizeX; ++x)
 			for (int z = 0; z < sizeZ; ++z)
@@ -331,7 +354,7 @@ public class WorldViewContext {
 				DestructibleHandler.destroy(pendingZone);
 		}
 
-		Zone newZone = injector.getInstance(Zone.class);
+		Zone newZone = sceneManager.createZone();
 		newZone.dirty = zones[zx][zz].dirty;
 
 		curZone.uploadJob = ZoneUploadJob.build(this, sceneContext, newZone, false, zx, zz);
@@ -14,6 +14,7 @@ import net.runelite.api.*;
 import org.lwjgl.system.MemoryStack;
 import rs117.hd.HdPlugin;
 import rs117.hd.scene.MaterialManager;
+import rs117.hd.scene.ProceduralGenerator;
 import rs117.hd.scene.SceneContext;
 import rs117.hd.scene.materials.Material;
 import rs117.hd.scene.model_overrides.ModelOverride;
@@ -30,6 +31,7 @@ import rs117.hd.utils.collections.IntHashSet;
 import rs117.hd.utils.collections.PooledArrayType;
 
 import static net.runelite.api.Constants.*;
+import static net.runelite.api.Perspective.*;
 import static org.lwjgl.opengl.GL33C.*;
 import static rs117.hd.HdPlugin.GL_CAPS;
 import static rs117.hd.HdPlugin.SUPPORTS_INDIRECT_DRAW;
@@ -37,6 +39,7 @@ import static rs117.hd.HdPlugin.checkGLErrors;
 import static rs117.hd.renderer.zone.ZoneRenderer.TEXTURE_UNIT_TEXTURED_FACES;
 import static rs117.hd.renderer.zone.ZoneRenderer.eboAlpha;
 import static rs117.hd.utils.MathUtils.*;
+import static rs117.hd.utils.buffer.GLBuffer.MAP_WRITE;
 import static rs117.hd.utils.collections.Util.quickSort;
 
 @Slf4j
@@ -51,7 +54,7 @@ public class Zone implements Destructible {
 	// uvw short vec3(u, v, w)
 	// normal short vec3(nx, ny, nz)
 	// texturedFaceIdx int
-	public static final int VERT_SIZE = 28;
+	public static final int UNPACKED_VERT_SIZE = 28;
 
 	// alphaBiasHsl ivec3
 	// materialData ivec3
@@ -67,6 +70,16 @@ public class Zone implements Destructible {
 	public static final int LEVEL_WATER_SURFACE = LEVEL_COUNT++;
 	public static final int LEVEL_GAP_FILLER = LEVEL_COUNT++;
 
+	// Simplified copies of the regular levels, drawn in place of whole levels beyond each LOD's distance
+	public static final int LOD_COUNT = 2;
+	public static final int LOD_LEVELS = MAX_Z;
+	private static final int[] LOD_DISTANCES = { 48 * LOCAL_TILE_SIZE, 96 * LOCAL_TILE_SIZE };
+	// Avoid flickering between LODs when the camera moves back and forth across a threshold
+	private static final int LOD_HYSTERESIS = 4 * LOCAL_TILE_SIZE;
+
+	// Either UNPACKED_VERT_SIZE or PackedVertexFormat.VERT_SIZE, matching the format the renderer was started with
+	public final int vertSize;
+
 	public int glVao;
 	int bufLen;
 	int dist;
@@ -74,9 +87,12 @@ public class Zone implements Destructible {
 	public int glVaoA;
 	public int bufLenA;
 
+	public int glVaoL;
+	int lod; // the LOD to draw whole levels with, where 0 is full detail
+
 	public int sizeO, sizeA, sizeF;
 	@Nullable
-	public GLBuffer vboO, vboA, vboM;
+	public GLBuffer vboO, vboA, vboM, vboL;
 	public GLTextureBuffer tboF;
 
 	public boolean initialized; // whether the zone vao and vbos are ready
@@ -89,6 +105,7 @@ public class Zone implements Destructible {
 	public boolean hasGapFiller; // whether the zone has any gap filler geometry
 	public boolean inSceneFrustum; // whether the zone is visible to the scene camera
 	public boolean inShadowFrustum; // whether the zone casts shadows into the visible scene
+	public int minY; // the highest point of the zone's static geometry, with Y pointing down
 	public boolean isFirstLoadingAttempt = true;
 
 	public IntHashSet animatedDynamicObjectIds = new IntHashSet();
@@ -97,14 +114,38 @@ public class Zone implements Destructible {
 	ZoneUploadJob uploadJob;
 
 	int[] levelOffsets = new int[LEVEL_COUNT]; // buffer pos in ints for the end of the level
+	@Nullable
+	int[] lodLevelOffsets; // LOD buffer pos in ints for the end of the level, LOD_LEVELS per LOD
 
 	int[][] rids;
 	int[][] roofStart;
 	int[][] roofEnd;
 
+	// Zone-local bounds of the opaque geometry in each level and roof range, as (minX, minY, minZ, maxX, maxY, maxZ)
+	static final int BOUNDS_SIZE = 6;
+	int[] levelBounds;
+	int[][] roofBounds;
+
+	// Opaque buffer ranges and zone-local bounding spheres of small static models, which may be skipped once they cover
+	// too few pixels, as (startpos, endpos, x, y, z, radius) in ascending buffer order
+	public static final int DETAIL_MODEL_SIZE = 6;
+	@Nullable
+	int[] detailModels;
+	int detailModelCount;
+	// One bit per detail model, set by ZoneDetailCuller when the model is too small on screen to be worth drawing
+	@Nullable
+	long[] culledDetailModels;
+
 	final List<AlphaModel> alphaModels = new ArrayList<>(0);
+	// Temp alpha models may be requested from multiple render threads at once, so they're appended to a lock-free queue,
+	// and only merged into alphaModels on the client thread before the zone's alpha is drawn
+	private final ConcurrentLinkedQueue<AlphaModel> pendingTempAlphaModels = new ConcurrentLinkedQueue<>();
 	final ConcurrentLinkedQueue<AsyncCachedModel> pendingModelJobs = new ConcurrentLinkedQueue<>();
 
+	public Zone(int vertSize) {
+		this.vertSize = vertSize;
+	}
+
 	public void initialize(GLBuffer o, GLBuffer a, GLTextureBuffer f) {
 		assert glVao == 0;
 		assert glVaoA == 0;
@@ -129,6 +170,21 @@ public class Zone implements Destructible {
 		tboF = f;
 	}
 
+	/**
+	 * Create and map a vertex buffer for simplified levels, which share the zone's metadata and texture buffer.
+	 */
+	public void initializeLod(int numBytes) {
+		assert glVaoL == 0;
+		if (vboM == null || numBytes == 0)
+			return;
+
+		vboL = new GLBuffer("Zone::VBO::LOD", GL_ARRAY_BUFFER, GL_STATIC_DRAW);
+		vboL.initialize(numBytes);
+		vboL.map(MAP_WRITE);
+		glVaoL = glGenVertexArrays();
+		setupVao(glVaoL, vboL.id, vboM.id);
+	}
+
 	public static void freeZones(@Nullable Zone[][] zones) {
 		if (zones == null)
 			return;
@@ -142,7 +198,7 @@ public class Zone implements Destructible {
 	@Override
 	@SuppressWarnings("deprecation")
 	protected void finalize() {
-		if (glVao != 0 || glVaoA != 0)
+		if (glVao != 0 || glVaoA != 0 || glVaoL != 0)
 			DestructibleHandler.queueLeakedDestruction(this);
 	}
 
@@ -163,6 +219,11 @@ public class Zone implements Destructible {
 			vboM = null;
 		}
 
+		if (vboL != null) {
+			vboL.destroy();
+			vboL = null;
+		}
+
 		if (tboF != null) {
 			tboF.destroy();
 			tboF = null;
@@ -178,6 +239,11 @@ public class Zone implements Destructible {
 			glVaoA = 0;
 		}
 
+		if (glVaoL != 0) {
+			glDeleteVertexArrays(glVaoL);
+			glVaoL = 0;
+		}
+
 		if (uploadJob != null) {
 			uploadJob.cancel();
 			DestructibleHandler.destroy(uploadJob.zone);
@@ -201,13 +267,21 @@ public class Zone implements Destructible {
 		inShadowFrustum = false;
 
 		Arrays.fill(levelOffsets, 0);
+		lodLevelOffsets = null;
+		lod = 0;
 		rids = null;
 		roofStart = null;
 		roofEnd = null;
+		levelBounds = null;
+		roofBounds = null;
+		detailModels = null;
+		detailModelCount = 0;
+		culledDetailModels = null;
 
 		// don't add permanent alphamodels to the cache as permanent alphamodels are always allocated
 		// to avoid having to synchronize the cache
 		alphaModels.clear();
+		pendingTempAlphaModels.clear();
 	}
 
 	@Override
@@ -221,41 +295,67 @@ public class Zone implements Destructible {
 	public void unmap() {
 		assert client.isClientThread();
 
+		long textureBytes = tboF != null ? tboF.mapped().getPositionBytes() : 0;
+
 		if (vboO != null)
 			vboO.unmap();
 		if (vboA != null)
 			vboA.unmap();
+		if (vboL != null)
+			vboL.unmap();
 		if (tboF != null)
 			tboF.unmap();
 
 		if (vboO != null) {
-			this.bufLen = vboO.mapped().byteView().position() / VERT_SIZE;
+			this.bufLen = vboO.mapped().byteView().position() / vertSize;
 		}
 
 		if (vboA != null) {
-			this.bufLenA = vboA.mapped().byteView().position() / VERT_SIZE;
+			this.bufLenA = vboA.mapped().byteView().position() / vertSize;
 		}
+
+		// Faces sharing identical data may leave much of the texture buffer unused
+		if (tboF != null)
+			tboF.shrinkToFit(textureBytes);
 	}
 
 	private void setupVao(int vao, int buffer, int metadata) {
 		glBindVertexArray(vao);
 		glBindBuffer(GL_ARRAY_BUFFER, buffer);
 
-		// Position
-		glEnableVertexAttribArray(0);
-		glVertexAttribPointer(0, 4, GL_SHORT, false, VERT_SIZE, 0);
+		if (vertSize == PackedVertexFormat.VERT_SIZE) {
+			// Position
+			glEnableVertexAttribArray(0);
+			glVertexAttribPointer(0, 3, GL_SHORT, false, vertSize, 0);
 
-		// UVs
-		glEnableVertexAttribArray(1);
-		glVertexAttribPointer(1, 4, GL_HALF_FLOAT, false, VERT_SIZE, 8);
+			// UVs, directly following the position
+			glEnableVertexAttribArray(1);
+			glVertexAttribPointer(1, 3, GL_HALF_FLOAT, false, vertSize, 6);
 
-		// Normals
-		glEnableVertexAttribArray(2);
-		glVertexAttribPointer(2, 4, GL_SHORT, false, VERT_SIZE, 16);
+			// Octahedral normals, which the shader decodes when compiled with PACKED_VERTICES
+			glEnableVertexAttribArray(2);
+			glVertexAttribPointer(2, 2, GL_SHORT, true, vertSize, 12);
 
-		// TextureFaceIdx
-		glEnableVertexAttribArray(3);
-		glVertexAttribIPointer(3, 1, GL_INT, VERT_SIZE, 24);
+			// TextureFaceIdx
+			glEnableVertexAttribArray(3);
+			glVertexAttribIPointer(3, 1, GL_INT, vertSize, 16);
+		} else {
+			// Position
+			glEnableVertexAttribArray(0);
+			glVertexAttribPointer(0, 4, GL_SHORT, false, vertSize, 0);
+
+			// UVs
+			glEnableVertexAttribArray(1);
+			glVertexAttribPointer(1, 4, GL_HALF_FLOAT, false, vertSize, 8);
+
+			// Normals
+			glEnableVertexAttribArray(2);
+			glVertexAttribPointer(2, 4, GL_SHORT, false, vertSize, 16);
+
+			// TextureFaceIdx
+			glEnableVertexAttribArray(3);
+			glVertexAttribIPointer(3, 1, GL_INT, vertSize, 24);
+		}
 
 		glBindBuffer(GL_ARRAY_BUFFER, metadata);
 
@@ -292,6 +392,28 @@ public class Zone implements Destructible {
 		}
 	}
 
+	/**
+	 * Pick the LOD to draw whole levels with, based on the distance from the camera to the center of the zone.
+	 *
+	 * @param camera if null, the zone is drawn at full detail
+	 * @param baseX  the world X coordinate of the zone's origin
+	 * @param baseZ  the world Z coordinate of the zone's origin
+	 */
+	void updateLod(@Nullable Camera camera, int baseX, int baseZ) {
+		if (camera == null || lodLevelOffsets == null) {
+			lod = 0;
+			return;
+		}
+
+		float dx = camera.getPositionX() - (baseX + (CHUNK_SIZE * LOCAL_HALF_TILE_SIZE));
+		float dz = camera.getPositionZ() - (baseZ + (CHUNK_SIZE * LOCAL_HALF_TILE_SIZE));
+		float dist = (float) Math.sqrt(dx * dx + dz * dz);
+		while (lod < LOD_COUNT && dist > LOD_DISTANCES[lod] + LOD_HYSTERESIS)
+			lod++;
+		while (lod > 0 && dist < LOD_DISTANCES[lod - 1] - LOD_HYSTERESIS)
+			lod--;
+	}
+
 	void updateRoofs(Int2IntHashMap updates) {
 		for (int level = 0; level < 4; ++level) {
 			for (int i = 0; i < rids[level].length; ++i) {
@@ -304,6 +426,7 @@ public class Zone implements Destructible {
 	}
 
 	private static final int NUM_DRAW_RANGES = 512;
+	private static final int SPARE_DRAW_RANGES = 64;
 	private static final int[] drawOff = new int[NUM_DRAW_RANGES];
 	private static final int[] drawEnd = new int[NUM_DRAW_RANGES];
 
@@ -326,8 +449,53 @@ public class Zone implements Destructible {
 		copyTo(glDrawLength, drawEnd, 0, drawIdx);
 	}
 
-	void renderOpaque(CommandBuffer cmd, WorldViewContext ctx, boolean roofShadows) {
+	static void resetBounds(int[] bounds, int offset) {
+		for (int i = 0; i < 3; i++) {
+			bounds[offset + i] = Integer.MAX_VALUE;
+			bounds[offset + 3 + i] = Integer.MIN_VALUE;
+		}
+	}
+
+	/**
+	 * Check whether the geometry within the specified bounds may be visible to the camera. Bounds are padded by half a
+	 * tile to account for vertex displacement in the shaders, and extended downwards for water depth.
+	 */
+	private boolean isVisible(@Nullable Camera camera, int[] bounds, int offset, int baseX, int baseZ) {
+		if (camera == null || bounds == null)
+			return true;
+		if (bounds[offset] > bounds[offset + 3])
+			return false; // empty
+
+		final int PADDING = LOCAL_HALF_TILE_SIZE;
+		return camera.intersectsAABB(
+			baseX + bounds[offset] - PADDING,
+			bounds[offset + 1] - PADDING,
+			baseZ + bounds[offset + 2] - PADDING,
+			baseX + bounds[offset + 3] + PADDING,
+			bounds[offset + 4] + PADDING + (hasWater ? ProceduralGenerator.MAX_DEPTH : 0),
+			baseZ + bounds[offset + 5] + PADDING
+		);
+	}
+
+	/**
+	 * Draw the opaque geometry of the zone's visible levels and roofs.
+	 *
+	 * @param cullingCamera    if not null, levels and roofs outside this camera's frustum are skipped
+	 * @param cullDetailModels whether to skip the detail models which were culled for the current frame
+	 * @param baseX            the world X coordinate of the zone's origin
+	 * @param baseZ            the world Z coordinate of the zone's origin
+	 */
+	void renderOpaque(
+		CommandBuffer cmd,
+		WorldViewContext ctx,
+		boolean roofShadows,
+		@Nullable Camera cullingCamera,
+		boolean cullDetailModels,
+		int baseX,
+		int baseZ
+	) {
 		drawIdx = 0;
+		int lodLevels = 0;
 
 		int currentLevel = ctx.level;
 		int maxLevel = ctx.maxLevel;
@@ -342,11 +510,20 @@ public class Zone implements Destructible {
 			int[] roofStart = this.roofStart[level];
 			int[] roofEnd = this.roofEnd[level];
 
+			if (!isVisible(cullingCamera, levelBounds, level * BOUNDS_SIZE, baseX, baseZ))
+				continue;
+
 			if (rids.length == 0 || hiddenRoofIds.isEmpty() || level <= currentLevel) {
+				if (lod > 0 && level < LOD_LEVELS) {
+					// draw the simplified level afterwards
+					lodLevels |= 1 << level;
+					continue;
+				}
+
 				// draw the whole level
 				int start = level == 0 ? 0 : this.levelOffsets[level - 1];
 				int end = this.levelOffsets[level];
-				pushRange(start, end);
+				pushRange(start, end, cullDetailModels);
 				continue;
 			}
 
@@ -355,8 +532,9 @@ public class Zone implements Destructible {
 				if (rid > 0 && !hiddenRoofIds.contains(rid)) {
 					// draw the roof
 					assert roofEnd[roofIdx] >= roofStart[roofIdx];
-					if (roofEnd[roofIdx] > roofStart[roofIdx]) {
-						pushRange(roofStart[roofIdx], roofEnd[roofIdx]);
+					if (roofEnd[roofIdx] > roofStart[roofIdx] &&
+						isVisible(cullingCamera, roofBounds == null ? null : roofBounds[level], roofIdx * BOUNDS_SIZE, baseX, baseZ)) {
+						pushRange(roofStart[roofIdx], roofEnd[roofIdx], cullDetailModels);
 					}
 				}
 			}
@@ -371,14 +549,32 @@ public class Zone implements Destructible {
 				}
 			}
 			// draw the non roofs
-			pushRange(endpos, this.levelOffsets[level]);
+			pushRange(endpos, this.levelOffsets[level], cullDetailModels);
+		}
+
+		if (drawIdx > 0) {
+			lastDrawMode = STATIC_UNSORTED;
+			lastVao = glVao;
+			lastTboF = tboF.getTexId();
+			flush(cmd);
+		}
+
+		if (lodLevels == 0)
+			return;
+
+		assert lodLevelOffsets != null;
+		for (int level = 0; level < LOD_LEVELS; ++level) {
+			if ((lodLevels & 1 << level) != 0) {
+				int i = (lod - 1) * LOD_LEVELS + level;
+				pushRange(i == 0 ? 0 : lodLevelOffsets[i - 1], lodLevelOffsets[i]);
+			}
 		}
 
 		if (drawIdx == 0)
 			return;
 
 		lastDrawMode = STATIC_UNSORTED;
-		lastVao = glVao;
+		lastVao = glVaoL;
 		lastTboF = tboF.getTexId();
 		flush(cmd);
 	}
@@ -397,6 +593,49 @@ public class Zone implements Destructible {
 		flush(cmd);
 	}
 
+	/**
+	 * Push the range, leaving out any detail models within it which have been culled.
+	 */
+	private void pushRange(int start, int end, boolean cullDetailModels) {
+		if (!cullDetailModels || detailModelCount == 0) {
+			pushRange(start, end);
+			return;
+		}
+
+		final int[] models = detailModels;
+		final long[] culled = culledDetailModels;
+		assert models != null && culled != null;
+
+		// Find the first detail model within the range
+		int lo = 0, hi = detailModelCount;
+		while (lo < hi) {
+			int mid = lo + hi >>> 1;
+			if (models[mid * DETAIL_MODEL_SIZE] < start) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+
+		int pos = start;
+		for (int i = lo; i < detailModelCount; i++) {
+			int o = i * DETAIL_MODEL_SIZE;
+			if (models[o] >= end)
+				break;
+			if ((culled[i >> 6] & 1L << i) == 0)
+				continue;
+			// Leave enough draw ranges for the rest of the zone, since each skipped model may split the range
+			if (drawIdx >= NUM_DRAW_RANGES - SPARE_DRAW_RANGES)
+				break;
+			if (models[o] > pos)
+				pushRange(pos, models[o]);
+			pos = models[o + 1];
+		}
+
+		if (end > pos)
+			pushRange(pos, end);
+	}
+
 	private static void pushRange(int start, int end) {
 		assert end >= start;
 
@@ -415,6 +654,7 @@ public class Zone implements Destructible {
 		int id;
 		ModelOverride modelOverride;
 		int startpos, endpos;
+		byte intsPerVertex; // vertex stride of the buffer startpos and endpos refer to
 		short x, y, z; // local position
 		short rid;
 		int vao;
@@ -490,6 +730,7 @@ public class Zone implements Destructible {
 		m.modelOverride = modelOverride;
 		m.startpos = startpos;
 		m.endpos = endpos;
+		m.intsPerVertex = (byte) (vertSize / Integer.BYTES);
 		m.x = (short) x;
 		m.y = (short) y;
 		m.z = (short) z;
@@ -560,7 +801,7 @@ public class Zone implements Destructible {
 			shift++;
 		}
 
-		final int intsPerVertex = VERT_SIZE / Integer.BYTES;
+		final int intsPerVertex = vertSize / Integer.BYTES;
 		final int writtenAlphaFaceCount = (endpos - startpos) / (3 * intsPerVertex);
 		final int bucketCapacity = ceil(writtenAlphaFaceCount / 32.0f);
 
@@ -655,7 +896,7 @@ public class Zone implements Destructible {
 		PooledArrayType.INT.release(doubleSidedBitSet);
 	}
 
-	synchronized AlphaModel requestTempAlphaModel(ModelOverride modelOverride, int level, int x, int y, int z) {
+	AlphaModel requestTempAlphaModel(ModelOverride modelOverride, int level, int x, int y, int z) {
 		AlphaModel m = ALPHA_MODEL_POOL.acquire();
 		m.id = -1;
 		m.modelOverride = modelOverride;
@@ -666,13 +907,24 @@ public class Zone implements Destructible {
 		m.vao = m.tboF = m.rid = m.lx = m.lz = m.ux = m.uz = -1;
 		m.flags = 0;
 		m.zofx = m.zofz = 0;
-		alphaModels.add(m);
+		pendingTempAlphaModels.add(m);
 		return m;
 	}
 
-	synchronized void postAlphaPass() {
+	/**
+	 * Merge temp alpha models requested since the last call into the zone's alpha models. Must be called from the
+	 * client thread, once all temp models for the zone have been requested.
+	 */
+	void mergeTempAlphaModels() {
+		AlphaModel m;
+		while ((m = pendingTempAlphaModels.poll()) != null)
+			alphaModels.add(m);
+	}
+
+	void postAlphaPass() {
 		sortedAlphaFacesUpload.waitForCompletion();
 		alphaSortingJob.waitForCompletion();
+		mergeTempAlphaModels();
 
 		for (int i = alphaModels.size() - 1; i >= 0; --i) {
 			AlphaModel m = alphaModels.get(i);
@@ -719,7 +971,7 @@ public class Zone implements Destructible {
 	private static final AlphaModelComparator alphaModelComparator = new AlphaModelComparator();
 	private final EboAlphaWriterJob sortedAlphaFacesUpload = new EboAlphaWriterJob();
 
-	synchronized void alphaSort(int zx, int zz, Camera camera) {
+	void alphaSort(int zx, int zz, Camera camera) {
 		final int alphaModelCount = alphaModels.size();
 		if (alphaModelCount <= 1)
 			return;
@@ -850,7 +1102,7 @@ public class Zone implements Destructible {
 			}
 			alphaFaceCount = 0;
 		} else if (drawIdx != 0) {
-			convertForDraw(lastDrawMode == STATIC_UNSORTED ? VERT_SIZE : DynamicModelVAO.VERT_SIZE);
+			convertForDraw(lastDrawMode == STATIC_UNSORTED ? vertSize : DynamicModelVAO.VERT_SIZE);
 			cmd.BindVertexArray(lastVao);
 			cmd.BindTextureUnit(GL_TEXTURE_BUFFER, lastTboF, TEXTURE_UNIT_TEXTURED_FACES);
 			if (drawIdx == 1) {
@@ -870,7 +1122,7 @@ public class Zone implements Destructible {
 		}
 	}
 
-	synchronized void multizoneLocs(SceneContext ctx, int zx, int zz, Camera camera, Zone[][] zones) {
+	void multizoneLocs(SceneContext ctx, int zx, int zz, Camera camera, Zone[][] zones) {
 		int offset = ctx.sceneOffset >> 3;
 		int cx = (int) camera.getPositionX();
 		int cz = (int) camera.getPositionZ();
@@ -917,6 +1169,7 @@ public class Zone implements Destructible {
 				m2.modelOverride = m.modelOverride;
 				m2.startpos = m.startpos;
 				m2.endpos = m.endpos;
+				m2.intsPerVertex = m.intsPerVertex;
 				m2.x = m.x;
 				m2.y = m.y;
 				m2.z = m.z;
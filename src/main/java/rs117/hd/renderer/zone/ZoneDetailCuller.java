@@ -0,0 +1,160 @@
+package rs117.hd.renderer.zone;
+
+import java.util.Arrays;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import rs117.hd.HdPlugin;
+import rs117.hd.overlays.FrameTimer;
+import rs117.hd.overlays.Timer;
+import rs117.hd.utils.Camera;
+import rs117.hd.utils.jobs.GenericJob;
+
+import static rs117.hd.renderer.zone.Zone.DETAIL_MODEL_SIZE;
+import static rs117.hd.utils.MathUtils.*;
+
+/**
+ * Culls small static models, like grass, rocks and debris, once they would only cover a few pixels on screen. Each
+ * frame, the projected radius of every detail model recorded during scene upload is checked on a worker thread, while
+ * the client thread carries on with the rest of the frame setup. The resulting bitmasks decide which parts of each zone's
+ * opaque geometry are drawn.
+ */
+@Singleton
+public class ZoneDetailCuller {
+	@Inject
+	private HdPlugin plugin;
+
+	@Inject
+	private FrameTimer frameTimer;
+
+	private final GenericJob cullJob = GenericJob.build("DetailCulling", t -> cullZones());
+
+	private WorldViewContext ctx;
+	private final float[] cameraPos = new float[3];
+	private float zoom;
+	private float minPixelRadius;
+	private boolean isCulling;
+	private boolean isValid;
+	private int culledCount;
+
+	/**
+	 * Start culling detail models for the current frame, or disable culling if it isn't possible from this viewpoint.
+	 *
+	 * @param minPixelRadius the projected radius in pixels below which detail models are culled
+	 */
+	public void update(WorldViewContext ctx, Camera camera, float minPixelRadius) {
+		waitForCulling();
+		isValid = false;
+		// The projected size of models doesn't change with distance in orthographic projection
+		if (ctx.sceneContext == null || camera.isOrthographic() || minPixelRadius <= 0)
+			return;
+
+		frameTimer.begin(Timer.DETAIL_CULLING);
+		this.ctx = ctx;
+		copyTo(cameraPos, camera.getPosition());
+		zoom = camera.getZoom();
+		this.minPixelRadius = minPixelRadius;
+		cullJob.queue();
+		isCulling = true;
+		isValid = true;
+		frameTimer.end(Timer.DETAIL_CULLING);
+	}
+
+	public void invalidate() {
+		waitForCulling();
+		isValid = false;
+		ctx = null;
+	}
+
+	/**
+	 * Wait for the current frame's culling to finish if necessary.
+	 *
+	 * @return whether the culled detail models of each zone are valid for the current frame
+	 */
+	public boolean hasResults() {
+		if (!isValid)
+			return false;
+		if (isCulling) {
+			frameTimer.begin(Timer.DETAIL_CULLING);
+			waitForCulling();
+			frameTimer.end(Timer.DETAIL_CULLING);
+		}
+		return isValid;
+	}
+
+	private void waitForCulling() {
+		if (!isCulling)
+			return;
+		cullJob.waitForCompletion();
+		isCulling = false;
+		if (cullJob.encounteredError())
+			isValid = false;
+		plugin.culledDetailModelCount = culledCount;
+	}
+
+	private void cullZones() {
+		long start = System.nanoTime();
+		int zoneOffset = ctx.sceneContext.sceneOffset >> 3;
+		int count = 0;
+		for (int zx = 0; zx < ctx.sizeX; zx++) {
+			for (int zz = 0; zz < ctx.sizeZ; zz++) {
+				Zone zone = ctx.zones[zx][zz];
+				if (zone == null || zone.detailModels == null || zone.culledDetailModels == null)
+					continue;
+				count += cull(
+					zone.detailModels,
+					zone.detailModelCount,
+					zone.culledDetailModels,
+					cameraPos,
+					(zx - zoneOffset) << 10,
+					(zz - zoneOffset) << 10,
+					zoom,
+					minPixelRadius
+				);
+			}
+		}
+		culledCount = count;
+		frameTimer.add(Timer.CULL_DETAIL_MODELS, System.nanoTime() - start);
+	}
+
+	/**
+	 * Set the bit of each detail model whose bounding sphere projects to a smaller radius than the specified minimum,
+	 * and clear the rest.
+	 *
+	 * @param models         detail models as recorded by the scene uploader, in zone-local coordinates
+	 * @param count          the number of detail models
+	 * @param culled         one bit per detail model
+	 * @param cameraPos      the camera position in local coordinates
+	 * @param baseX          the local X coordinate of the zone's origin
+	 * @param baseZ          the local Z coordinate of the zone's origin
+	 * @param zoom           the camera zoom, which is the distance at which one local unit covers one pixel
+	 * @param minPixelRadius the projected radius in pixels below which detail models are culled
+	 * @return the number of culled detail models
+	 */
+	public static int cull(
+		int[] models,
+		int count,
+		long[] culled,
+		float[] cameraPos,
+		int baseX,
+		int baseZ,
+		float zoom,
+		float minPixelRadius
+	) {
+		Arrays.fill(culled, 0, count + 63 >> 6, 0);
+		int culledCount = 0;
+		for (int i = 0; i < count; i++) {
+			int o = i * DETAIL_MODEL_SIZE;
+			float dx = baseX + models[o + 2] - cameraPos[0];
+			float dy = models[o + 3] - cameraPos[1];
+			float dz = baseZ + models[o + 4] - cameraPos[2];
+			float radius = models[o + 5];
+			// Measure from the closest point of the sphere, so models are never culled while the camera is close to them
+			float distance = sqrt(dx * dx + dy * dy + dz * dz) - radius;
+			if (distance <= 0 || radius * zoom >= minPixelRadius * distance)
+				continue;
+			culled[i >> 6] |= 1L << i;
+			culledCount++;
+		}
+		return culledCount;
+	}
+}
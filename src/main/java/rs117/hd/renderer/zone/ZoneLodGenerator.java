@@ -0,0 +1,108 @@
+package rs117.hd.renderer.zone;
+
+import java.nio.IntBuffer;
+import rs117.hd.utils.MeshSimplifier;
+
+import static rs117.hd.utils.MathUtils.*;
+
+/**
+ * Builds simplified copies of a zone's opaque levels from its captured vertex data. Triangles which survive
+ * simplification keep their original vertex attributes and face data, and only have their positions moved,
+ * so the simplified levels can share the zone's texture buffer.
+ */
+final class ZoneLodGenerator {
+	// Fraction of each level's triangles to aim for, and how far in local units the surface may move, per LOD
+	private static final float[] TRIANGLE_RATIOS = { .5f, .25f };
+	private static final float[] MAX_ERRORS = { 16, 64 };
+	// Zones which barely simplify aren't worth the extra memory
+	private static final float MIN_REDUCTION = .2f;
+
+	private final MeshSimplifier simplifier = new MeshSimplifier();
+	private int[] positions = new int[0];
+	private int[] triangles = new int[0];
+	private int[] simplifiedPositions = new int[0];
+	private int[] lodVertices = new int[0];
+
+	// Size in ints of the generated LODs, and the end position of each level, Zone.LOD_LEVELS per LOD
+	int size;
+	final int[] levelOffsets = new int[Zone.LOD_COUNT * Zone.LOD_LEVELS];
+
+	/**
+	 * @param vertices the zone's opaque vertex data, at the same positions as in the zone's vertex buffer
+	 * @return whether the zone simplified well enough to be worth drawing the generated LODs
+	 */
+	boolean generate(Zone zone, int[] vertices) {
+		final int intsPerVertex = zone.vertSize >> 2;
+		final int intsPerTriangle = intsPerVertex * 3;
+		final int fullSize = zone.levelOffsets[Zone.LOD_LEVELS - 1];
+		size = 0;
+		if (fullSize == 0)
+			return false;
+
+		// The simplifier never adds triangles, so each LOD fits in the size of the original levels
+		if (lodVertices.length < fullSize * Zone.LOD_COUNT)
+			lodVertices = new int[fullSize * Zone.LOD_COUNT];
+
+		for (int lod = 0; lod < Zone.LOD_COUNT; lod++) {
+			for (int level = 0; level < Zone.LOD_LEVELS; level++) {
+				int start = level == 0 ? 0 : zone.levelOffsets[level - 1];
+				int triangleCount = (zone.levelOffsets[level] - start) / intsPerTriangle;
+				if (positions.length < triangleCount * 9) {
+					positions = new int[triangleCount * 9];
+					simplifiedPositions = new int[triangleCount * 9];
+					triangles = new int[triangleCount];
+				}
+
+				// Both vertex formats start with x and y packed into the first int, and z in the low half of the second
+				for (int c = 0; c < triangleCount * 3; c++) {
+					int i = start + c * intsPerVertex;
+					positions[c * 3] = (short) vertices[i];
+					positions[c * 3 + 1] = (short) (vertices[i] >> 16);
+					positions[c * 3 + 2] = (short) vertices[i + 1];
+				}
+
+				int count = simplifier.simplify(
+					positions,
+					triangleCount,
+					(int) (triangleCount * TRIANGLE_RATIOS[lod]),
+					MAX_ERRORS[lod],
+					triangles,
+					simplifiedPositions
+				);
+
+				for (int t = 0; t < count; t++) {
+					System.arraycopy(vertices, start + triangles[t] * intsPerTriangle, lodVertices, size, intsPerTriangle);
+					for (int c = 0; c < 3; c++) {
+						int i = size + c * intsPerVertex;
+						int p = t * 9 + c * 3;
+						lodVertices[i] = (simplifiedPositions[p + 1] & 0xFFFF) << 16 | simplifiedPositions[p] & 0xFFFF;
+						lodVertices[i + 1] = lodVertices[i + 1] & 0xFFFF0000 | simplifiedPositions[p + 2] & 0xFFFF;
+					}
+					size += intsPerTriangle;
+				}
+				levelOffsets[lod * Zone.LOD_LEVELS + level] = size;
+			}
+
+			if (lod == 0 && size > fullSize * (1 - MIN_REDUCTION)) {
+				size = 0;
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Copy the generated LODs to the start of the output buffer.
+	 */
+	void write(IntBuffer out) {
+		out.put(lodVertices, 0, size);
+	}
+
+	/**
+	 * @return how many times fewer vertices the most detailed LOD has compared to the original levels
+	 */
+	float getReduction(Zone zone) {
+		return zone.levelOffsets[Zone.LOD_LEVELS - 1] / (float) max(1, levelOffsets[Zone.LOD_LEVELS - 1]);
+	}
+}
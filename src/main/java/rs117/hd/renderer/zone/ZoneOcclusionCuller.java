@@ -0,0 +1,161 @@
+package rs117.hd.renderer.zone;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import net.runelite.api.*;
+import rs117.hd.HdPlugin;
+import rs117.hd.overlays.FrameTimer;
+import rs117.hd.overlays.Timer;
+import rs117.hd.scene.SceneContext;
+import rs117.hd.utils.OcclusionBuffer;
+import rs117.hd.utils.jobs.GenericJob;
+
+import static net.runelite.api.Constants.*;
+import static net.runelite.api.Perspective.*;
+import static rs117.hd.scene.SceneContext.TILE_SKIP_FLAG;
+import static rs117.hd.scene.SceneContext.TILE_WATER_FLAG;
+import static rs117.hd.utils.HDUtils.HIDDEN_HSL;
+import static rs117.hd.utils.MathUtils.*;
+
+/**
+ * Culls zones hidden behind the terrain of the top-level scene. Each frame, the ground plane of every zone which is
+ * drawn is rasterized into a coarse {@link OcclusionBuffer} on a worker thread, while the client thread carries on with
+ * the rest of the frame setup. Zones which pass the frustum check are then tested against the buffer.
+ */
+@Singleton
+public class ZoneOcclusionCuller {
+	private static final int BUFFER_WIDTH = 256;
+
+	@Inject
+	private HdPlugin plugin;
+
+	@Inject
+	private FrameTimer frameTimer;
+
+	private final OcclusionBuffer buffer = new OcclusionBuffer();
+	private final GenericJob rasterizeJob = GenericJob.build("OcclusionCulling", t -> rasterize());
+
+	private SceneContext sceneContext;
+	// Ground plane heights and which tiles are drawn as opaque ground, captured when the scene changes
+	private int[][] tileHeights;
+	private boolean[][] groundTiles;
+	private boolean[][] occluders;
+	private boolean[][] zoneDrawn;
+	private boolean isRasterizing;
+	private boolean isValid;
+	// Written by the rasterization job, and reported by the client thread once the job has completed
+	private long rasterizeNanos;
+
+	/**
+	 * Start rasterizing the terrain for the current frame, or disable culling if it isn't possible from this viewpoint.
+	 */
+	public void update(WorldViewContext ctx, float[] viewProjMatrix, float[] cameraPos, int[] viewport) {
+		waitForRasterization();
+		isValid = false;
+		if (ctx.sceneContext == null || plugin.orthographicProjection)
+			return;
+
+		frameTimer.begin(Timer.OCCLUSION_CULLING);
+		if (ctx.sceneContext != sceneContext)
+			captureGround(ctx.sceneContext);
+
+		// Only zones which are going to be drawn can hide anything
+		for (int zx = 0; zx < zoneDrawn.length; zx++) {
+			for (int zz = 0; zz < zoneDrawn[zx].length; zz++) {
+				Zone zone = ctx.zones[zx][zz];
+				zoneDrawn[zx][zz] =
+					zone != null &&
+					zone.initialized &&
+					!zone.cull &&
+					ZoneRenderer.isZoneInCurrentArea(sceneContext, zx, zz);
+			}
+		}
+
+		buffer.setViewport(BUFFER_WIDTH, max(1, round((float) BUFFER_WIDTH * viewport[3] / max(1, viewport[2]))));
+		buffer.setCamera(viewProjMatrix, cameraPos);
+		rasterizeNanos = 0;
+		rasterizeJob.queue();
+		isRasterizing = true;
+		isValid = true;
+		frameTimer.end(Timer.OCCLUSION_CULLING);
+	}
+
+	public void invalidate() {
+		waitForRasterization();
+		isValid = false;
+		sceneContext = null;
+		tileHeights = null;
+		groundTiles = null;
+		occluders = null;
+		zoneDrawn = null;
+	}
+
+	public boolean isOccluded(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		if (!isValid)
+			return false;
+		if (isRasterizing) {
+			frameTimer.begin(Timer.OCCLUSION_CULLING);
+			waitForRasterization();
+			frameTimer.end(Timer.OCCLUSION_CULLING);
+		}
+		return buffer.isOccluded(minX, minY, minZ, maxX, maxY, maxZ);
+	}
+
+	private void waitForRasterization() {
+		if (!isRasterizing)
+			return;
+		rasterizeJob.waitForCompletion();
+		isRasterizing = false;
+		frameTimer.add(Timer.RASTERIZE_OCCLUDERS, rasterizeNanos);
+		if (rasterizeJob.encounteredError())
+			isValid = false;
+	}
+
+	private void captureGround(SceneContext sceneContext) {
+		this.sceneContext = sceneContext;
+		int sizeX = sceneContext.sizeX;
+		int sizeZ = sceneContext.sizeZ;
+		int[][] heights = sceneContext.scene.getTileHeights()[0];
+		Tile[][] tiles = sceneContext.scene.getExtendedTiles()[0];
+
+		tileHeights = new int[sizeX + 1][];
+		for (int x = 0; x <= sizeX; x++)
+			tileHeights[x] = heights[x].clone();
+
+		groundTiles = new boolean[sizeX][sizeZ];
+		for (int x = 0; x < sizeX; x++) {
+			for (int z = 0; z < sizeZ; z++) {
+				Tile tile = tiles[x][z];
+				if (tile == null || tile.getBridge() != null)
+					continue;
+				SceneTilePaint paint = tile.getSceneTilePaint();
+				if (paint == null || paint.getNeColor() == HIDDEN_HSL)
+					continue;
+				if (sceneContext.tileFlags != null && (
+					sceneContext.isTileFlagSet(0, x, z, TILE_WATER_FLAG) ||
+					sceneContext.isTileFlagSet(0, x, z, TILE_SKIP_FLAG)
+				)) {
+					continue;
+				}
+				groundTiles[x][z] = true;
+			}
+		}
+
+		occluders = new boolean[sizeX][sizeZ];
+		zoneDrawn = new boolean[sizeX / CHUNK_SIZE][sizeZ / CHUNK_SIZE];
+	}
+
+	private void rasterize() {
+		long start = System.nanoTime();
+		for (int x = 0; x < occluders.length; x++) {
+			boolean[] drawn = zoneDrawn[min(x / CHUNK_SIZE, zoneDrawn.length - 1)];
+			for (int z = 0; z < occluders[x].length; z++)
+				occluders[x][z] = groundTiles[x][z] && drawn[min(z / CHUNK_SIZE, drawn.length - 1)];
+		}
+
+		buffer.clear();
+		buffer.rasterizeHeightmap(tileHeights, occluders, sceneContext.sceneOffset, LOCAL_TILE_SIZE);
+		buffer.buildHierarchy();
+		rasterizeNanos = System.nanoTime() - start;
+	}
+}
@@ -28,6 +28,7 @@ import com.google.inject.Injector;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
@@ -57,6 +58,7 @@ import rs117.hd.scene.LightManager;
 import rs117.hd.scene.ProceduralGenerator;
 import rs117.hd.scene.SceneContext;
 import rs117.hd.scene.lights.Light;
+import rs117.hd.scene.lights.TiledLightBinner;
 import rs117.hd.scene.model_overrides.ModelOverride;
 import rs117.hd.utils.Camera;
 import rs117.hd.utils.ColorUtils;
@@ -69,6 +71,8 @@ import rs117.hd.utils.buffer.GLBuffer;
 import rs117.hd.utils.buffer.GLMappedBufferIntWriter;
 import rs117.hd.utils.buffer.GpuIntBuffer;
 import rs117.hd.utils.collections.ConcurrentPool;
+import rs117.hd.utils.jobs.GenericJob;
+import rs117.hd.utils.jobs.JobGroup;
 import rs117.hd.utils.jobs.JobSystem;
 
 import static net.runelite.api.Constants.*;
@@ -79,6 +83,8 @@ import static rs117.hd.HdPlugin.APPLE;
 import static rs117.hd.HdPlugin.COLOR_FILTER_FADE_DURATION;
 import static rs117.hd.HdPlugin.NEAR_PLANE;
 import static rs117.hd.HdPlugin.ORTHOGRAPHIC_ZOOM;
+import static rs117.hd.HdPlugin.TEXTURE_UNIT_TILED_LIGHTING_MAP;
+import static rs117.hd.HdPlugin.TILED_LIGHTING_TILE_SIZE;
 import static rs117.hd.HdPlugin.checkGLErrors;
 import static rs117.hd.HdPluginConfig.*;
 import static rs117.hd.renderer.zone.WorldViewContext.VAO_OPAQUE;
@@ -146,6 +152,12 @@ public class ZoneRenderer implements Renderer {
 	@Inject
 	private UBOWorldViews uboWorldViews;
 
+	@Inject
+	private ZoneOcclusionCuller occlusionCuller;
+
+	@Inject
+	private ZoneDetailCuller detailCuller;
+
 	public final Camera sceneCamera = new Camera().setReverseZ(true);
 	public final Camera directionalCamera = new Camera().setOrthographic(true);
 	public final ShadowCasterVolume directionalShadowCasterVolume = new ShadowCasterVolume(directionalCamera);
@@ -154,6 +166,7 @@ public class ZoneRenderer implements Renderer {
 	public final CommandBuffer sceneCmd = new CommandBuffer("Scene");
 	public final CommandBuffer directionalCmd = new CommandBuffer("Directional");
 	public final CommandBuffer gapFillerCmd = new CommandBuffer("GapFiller");
+	private final CommandBuffer.OptimizationStats commandBufferStats = new CommandBuffer.OptimizationStats();
 
 	private GLBuffer indirectDrawCmds;
 	public static GpuIntBuffer indirectDrawCmdsStaging;
@@ -161,11 +174,35 @@ public class ZoneRenderer implements Renderer {
 	public static GLBuffer.EBO eboAlpha;
 	public static GLMappedBufferIntWriter eboAlphaWriter;
 
+	// Scratch arrays reused every frame to avoid garbage
+	private final float[] sceneCenter = new float[3];
+	private final float[] lightPosition = new float[4];
+	private final float[] lightColor = new float[4];
+	private final float[] fogColorSrgb = new float[3];
+	private final float[] waterColorHsv = new float[3];
+	private final float[] waterColorLight = new float[3];
+	private final float[] waterColorMid = new float[3];
+	private final float[] waterColorDark = new float[3];
+
+	private static final int TILED_LIGHT_BINNING_BANDS = 4;
+
+	private final TiledLightBinner tiledLightBinner = new TiledLightBinner(TILED_LIGHTING_TILE_SIZE, UBOLights.MAX_LIGHTS);
+	private final GenericJob[] tiledLightBinningJobs = buildTiledLightBinningJobs();
+
+	// Binning only depends on the camera and lights, so it may be started on workers as soon as those are known,
+	// and overlap with the client drawing the scene, instead of being started once the frame is submitted
+	private final JobGroup<GenericJob> earlyTiledLightBinningJobs = new JobGroup<>(true, false);
+	private final AtomicLong earlyTiledLightBinningNanos = new AtomicLong();
+	private final AtomicLong earlyTiledLightBinningEndNanos = new AtomicLong();
+	private long earlyTiledLightBinningStartNanos;
+	private volatile boolean tiledLightsBinnedEarly;
+
 	private boolean sceneFboValid;
 	private boolean shouldRenderSkybox;
 	private boolean shouldRenderScene;
 	private boolean shouldClearShadowFbo;
 	private boolean shouldDrawRoofShadows;
+	private int lastShadowDrawDistance;
 
 	@Override
 	public boolean supportsGpu(GLCapabilities glCaps) {
@@ -208,6 +245,10 @@ public class ZoneRenderer implements Renderer {
 	public void destroy() {
 		destroyBuffers();
 
+		occlusionCuller.invalidate();
+		detailCuller.invalidate();
+		earlyTiledLightBinningJobs.cancel();
+		tiledLightsBinnedEarly = false;
 		jobSystem.shutDown();
 		modelStreamingManager.destroy();
 		sceneManager.destroy();
@@ -230,6 +271,7 @@ public class ZoneRenderer implements Renderer {
 	public void addShaderIncludes(ShaderIncludes includes) {
 		includes
 			.define("MAX_SIMULTANEOUS_WORLD_VIEWS", UBOWorldViews.MAX_SIMULTANEOUS_WORLD_VIEWS)
+			.define("PACKED_VERTICES", sceneManager.isPackedVertices())
 			.addInclude("WORLD_VIEW_GETTER", () -> plugin.generateGetter("WorldView", UBOWorldViews.MAX_SIMULTANEOUS_WORLD_VIEWS))
 			.addUniformBuffer(uboWorldViews);
 	}
@@ -320,7 +362,11 @@ public class ZoneRenderer implements Renderer {
 				for (int zz = 0; zz < ctx.sizeZ; ++zz)
 					ctx.zones[zx][zz].multizoneLocs(ctx.sceneContext, zx - offset, zz - offset, sceneCamera, ctx.zones);
 
-			ctx.sortStaticAlphaModels(sceneCamera);
+			// Beyond the sort distance, transparent scenery is drawn in its original face order
+			int alphaSortDistance = Integer.MAX_VALUE;
+			if (plugin.qualityGovernor.getLevel() > 0 && scene.getWorldViewId() == WorldView.TOPLEVEL)
+				alphaSortDistance = round(plugin.getDrawDistance() * LOCAL_TILE_SIZE * plugin.qualityGovernor.getAlphaSortDistanceScale());
+			ctx.sortStaticAlphaModels(sceneCamera, alphaSortDistance);
 
 			ctx.map();
 
@@ -383,11 +429,17 @@ public class ZoneRenderer implements Renderer {
 		if (!plugin.enableFreezeFrame && !plugin.redrawPreviousFrame) {
 			plugin.drawnTempRenderableCount = 0;
 			plugin.drawnDynamicRenderableCount = 0;
+			plugin.instancedDynamicModelCount = 0;
+			plugin.occludedZoneCount = 0;
 
-			copyTo(plugin.cameraPosition, vec(cameraX, cameraY, cameraZ));
-			copyTo(plugin.cameraOrientation, vec(cameraYaw, cameraPitch));
+			plugin.cameraPosition[0] = cameraX;
+			plugin.cameraPosition[1] = cameraY;
+			plugin.cameraPosition[2] = cameraZ;
+			plugin.cameraOrientation[0] = cameraYaw;
+			plugin.cameraOrientation[1] = cameraPitch;
 
-			copyTo(plugin.cameraFocalPoint, ivec((int) client.getCameraFocalPointX(), (int) client.getCameraFocalPointZ()));
+			plugin.cameraFocalPoint[0] = (int) client.getCameraFocalPointX();
+			plugin.cameraFocalPoint[1] = (int) client.getCameraFocalPointZ();
 			Arrays.fill(plugin.cameraShift, 0);
 
 			float zoom = client.get3dZoom();
@@ -432,20 +484,36 @@ public class ZoneRenderer implements Renderer {
 				return;
 			}
 
+			if (plugin.configOcclusionCulling && !plugin.freezeCulling) {
+				// Rasterize occluders on a worker thread, while the rest of the frame is being set up
+				occlusionCuller.update(ctx, plugin.viewProjMatrix, plugin.cameraPosition, plugin.sceneViewport);
+			} else if (!plugin.configOcclusionCulling) {
+				occlusionCuller.invalidate();
+			}
+
+			if (plugin.configDetailCullingPixels > 0 && !plugin.freezeCulling) {
+				// Measure how large small models appear on a worker thread, while the rest of the frame is being set up
+				detailCuller.update(ctx, sceneCamera, plugin.configDetailCullingPixels / 2f);
+			} else if (plugin.configDetailCullingPixels == 0) {
+				detailCuller.invalidate();
+			}
+
 			directionalCamera.setPitch(environmentManager.currentSunAngles[0]);
 			directionalCamera.setYaw(PI - environmentManager.currentSunAngles[1]);
 			boolean hasDirectionalCameraChanged = directionalCamera.isViewDirty() || directionalCamera.isProjDirty();
+			int shadowDrawDistance = round(90 * LOCAL_TILE_SIZE * plugin.qualityGovernor.getShadowDistanceScale());
+			boolean hasShadowDrawDistanceChanged = shadowDrawDistance != lastShadowDrawDistance;
+			lastShadowDrawDistance = shadowDrawDistance;
 
 			if (plugin.configShadowsEnabled &&
-				(hasSceneCameraChanged || hasDirectionalCameraChanged) &&
+				(hasSceneCameraChanged || hasDirectionalCameraChanged || hasShadowDrawDistanceChanged) &&
 				!sceneCamera.isOrthographic()
 			) {
-				int shadowDrawDistance = 90 * LOCAL_TILE_SIZE;
 
 				final float[][] volumeCorners = directionalShadowCasterVolume
 					.build(sceneCamera, drawDistance * LOCAL_TILE_SIZE, shadowDrawDistance);
 
-				final float[] sceneCenter = new float[3];
+				Arrays.fill(sceneCenter, 0);
 				for (float[] corner : volumeCorners)
 					add(sceneCenter, sceneCenter, corner);
 				divide(sceneCenter, sceneCenter, (float) volumeCorners.length);
@@ -522,8 +590,7 @@ public class ZoneRenderer implements Renderer {
 				assert ctx.sceneContext.numVisibleLights <= UBOLights.MAX_LIGHTS;
 
 				frameTimer.begin(Timer.UPDATE_LIGHTS);
-				final float[] lightPosition = new float[4];
-				final float[] lightColor = new float[4];
+				tiledLightBinner.clearLights();
 				for (int i = 0; i < ctx.sceneContext.numVisibleLights; i++) {
 					final Light light = ctx.sceneContext.lights.get(i);
 					final float lightRadiusSq = light.radius * light.radius;
@@ -539,7 +606,9 @@ public class ZoneRenderer implements Renderer {
 
 					plugin.uboLights.setLight(i, lightPosition, lightColor);
 
-					if (plugin.configTiledLighting) {
+					if (plugin.configTiledLighting && plugin.configTiledLightingCpuBinning) {
+						tiledLightBinner.addLight(lightPosition[0], lightPosition[1], lightPosition[2], light.radius);
+					} else if (plugin.configTiledLighting) {
 						// Pre-calculate the view space position of the light, to save having to do the multiplication in the culling shader
 						lightPosition[3] = 1.0f;
 						Mat4.mulVec(lightPosition, plugin.viewMatrix, lightPosition);
@@ -552,6 +621,16 @@ public class ZoneRenderer implements Renderer {
 				plugin.uboLightsCulling.upload();
 				plugin.uboGlobal.pointLightsCount.set(ctx.sceneContext.numVisibleLights);
 				frameTimer.end(Timer.UPDATE_LIGHTS);
+
+				// The camera and lights won't change for the rest of the frame, so binning can overlap with drawing the scene
+				if (
+					plugin.configEarlyTiledLightBinning &&
+					plugin.configTiledLighting &&
+					plugin.configTiledLightingCpuBinning &&
+					plugin.configDynamicLights != DynamicLights.NONE
+				) {
+					queueTiledLightBinning();
+				}
 			}
 		}
 
@@ -575,31 +654,13 @@ public class ZoneRenderer implements Renderer {
 		}
 		plugin.uboGlobal.useFog.set(fogDepth > 0 ? 1 : 0);
 		plugin.uboGlobal.fogDepth.set(fogDepth);
-		plugin.uboGlobal.fogColor.set(ColorUtils.linearToSrgb(environmentManager.currentFogColor));
+		updateEnvironmentColors();
+		plugin.uboGlobal.fogColor.set(fogColorSrgb);
 
 		plugin.uboGlobal.drawDistance.set((float) plugin.getDrawDistance());
 		plugin.uboGlobal.expandedMapLoadingChunks.set(ctx.sceneContext.expandedMapLoadingChunks);
 		plugin.uboGlobal.colorBlindnessIntensity.set(config.colorBlindnessIntensity() / 100.f);
 
-		float[] waterColorHsv = ColorUtils.srgbToHsv(environmentManager.currentWaterColor);
-		float lightBrightnessMultiplier = 0.8f;
-		float midBrightnessMultiplier = 0.45f;
-		float darkBrightnessMultiplier = 0.05f;
-		float[] waterColorLight = ColorUtils.linearToSrgb(ColorUtils.hsvToSrgb(new float[] {
-			waterColorHsv[0],
-			waterColorHsv[1],
-			waterColorHsv[2] * lightBrightnessMultiplier
-		}));
-		float[] waterColorMid = ColorUtils.linearToSrgb(ColorUtils.hsvToSrgb(new float[] {
-			waterColorHsv[0],
-			waterColorHsv[1],
-			waterColorHsv[2] * midBrightnessMultiplier
-		}));
-		float[] waterColorDark = ColorUtils.linearToSrgb(ColorUtils.hsvToSrgb(new float[] {
-			waterColorHsv[0],
-			waterColorHsv[1],
-			waterColorHsv[2] * darkBrightnessMultiplier
-		}));
 		plugin.uboGlobal.waterColorLight.set(waterColorLight);
 		plugin.uboGlobal.waterColorMid.set(waterColorMid);
 		plugin.uboGlobal.waterColorDark.set(waterColorDark);
@@ -659,6 +720,28 @@ public class ZoneRenderer implements Renderer {
 		checkGLErrors();
 	}
 
+	/**
+	 * Convert the current environment's fog and water colors into the sRGB shades used by the shaders.
+	 */
+	public void updateEnvironmentColors() {
+		ColorUtils.linearToSrgb(fogColorSrgb, environmentManager.currentFogColor);
+
+		ColorUtils.srgbToHsv(waterColorHsv, environmentManager.currentWaterColor);
+		float lightBrightnessMultiplier = 0.8f;
+		float midBrightnessMultiplier = 0.45f;
+		float darkBrightnessMultiplier = 0.05f;
+		waterColorShade(waterColorLight, lightBrightnessMultiplier);
+		waterColorShade(waterColorMid, midBrightnessMultiplier);
+		waterColorShade(waterColorDark, darkBrightnessMultiplier);
+	}
+
+	private void waterColorShade(float[] out, float brightnessMultiplier) {
+		out[0] = waterColorHsv[0];
+		out[1] = waterColorHsv[1];
+		out[2] = waterColorHsv[2] * brightnessMultiplier;
+		ColorUtils.linearToSrgb(out, ColorUtils.hsvToSrgb(out, out));
+	}
+
 	@Override
 	public void postSceneDraw(Scene scene) {
 		if (plugin.isPluginStopPending())
@@ -706,6 +789,8 @@ public class ZoneRenderer implements Renderer {
 
 		// TODO: Add proper support for stat tracking to the FrameTimer or elsewhere
 		plugin.drawnDynamicRenderableCount += modelStreamingManager.getDrawnDynamicRenderableCount();
+		plugin.tempAlphaModelCount = modelStreamingManager.getTempAlphaModelCount(false);
+		plugin.concurrentTempAlphaModelCount = modelStreamingManager.getTempAlphaModelCount(true);
 
 		checkGLErrors();
 	}
@@ -718,6 +803,12 @@ public class ZoneRenderer implements Renderer {
 		assert plugin.fboTiledLighting != 0;
 
 		frameTimer.begin(Timer.DRAW_TILED_LIGHTING);
+		if (plugin.configTiledLightingCpuBinning) {
+			binTiledLights();
+			frameTimer.end(Timer.DRAW_TILED_LIGHTING);
+			return;
+		}
+
 		frameTimer.begin(Timer.RENDER_TILED_LIGHTING);
 
 		renderState.framebuffer.set(GL_FRAMEBUFFER, plugin.fboTiledLighting);
@@ -744,6 +835,107 @@ public class ZoneRenderer implements Renderer {
 		frameTimer.end(Timer.DRAW_TILED_LIGHTING);
 	}
 
+	private void prepareTiledLightBinner() {
+		var binner = tiledLightBinner;
+		binner.setViewport(
+			plugin.sceneResolution[0],
+			plugin.sceneResolution[1],
+			plugin.tiledLightingResolution[0],
+			plugin.tiledLightingResolution[1],
+			plugin.tiledLightingLayerCount
+		);
+		binner.setCamera(plugin.viewMatrix, plugin.viewProjMatrix, plugin.invViewProjMatrix, plugin.cameraPosition);
+		binner.prepare(TILED_LIGHT_BINNING_BANDS);
+	}
+
+	private GenericJob[] buildTiledLightBinningJobs() {
+		var jobs = new GenericJob[TILED_LIGHT_BINNING_BANDS];
+		for (int i = 0; i < TILED_LIGHT_BINNING_BANDS; i++) {
+			final int band = i;
+			jobs[i] = GenericJob.build("TiledLightBinning", t -> {
+				if (!tiledLightsBinnedEarly) {
+					tiledLightBinner.binBand(band);
+					return;
+				}
+
+				long start = System.nanoTime();
+				tiledLightBinner.binBand(band);
+				long end = System.nanoTime();
+				earlyTiledLightBinningNanos.addAndGet(end - start);
+				earlyTiledLightBinningEndNanos.accumulateAndGet(end, Math::max);
+			});
+		}
+		return jobs;
+	}
+
+	private void queueTiledLightBinning() {
+		// Complete any binning left over from a frame which was never submitted
+		earlyTiledLightBinningJobs.complete();
+
+		plugin.updateTiledLightingFbo();
+		prepareTiledLightBinner();
+
+		earlyTiledLightBinningStartNanos = System.nanoTime();
+		earlyTiledLightBinningNanos.set(0);
+		earlyTiledLightBinningEndNanos.set(earlyTiledLightBinningStartNanos);
+		// Set before queueing, so the jobs know to time themselves
+		tiledLightsBinnedEarly = true;
+		for (var job : tiledLightBinningJobs)
+			job.queue(earlyTiledLightBinningJobs);
+	}
+
+	private void binTiledLights() {
+		frameTimer.begin(Timer.BIN_TILED_LIGHTS);
+		var binner = tiledLightBinner;
+		if (tiledLightsBinnedEarly) {
+			long waitStart = System.nanoTime();
+			earlyTiledLightBinningJobs.complete();
+			long waitNanos = System.nanoTime() - waitStart;
+			// Only cleared once the jobs are done, so none of them skip their timing
+			tiledLightsBinnedEarly = false;
+
+			// Without overlap, the client thread would have waited for roughly the entire duration of the work
+			long workDurationNanos = earlyTiledLightBinningEndNanos.get() - earlyTiledLightBinningStartNanos;
+			plugin.overlappedTiledLightBinningMs = max(0, workDurationNanos - waitNanos) / 1e6f;
+			frameTimer.add(Timer.BIN_TILED_LIGHTS_ASYNC, earlyTiledLightBinningNanos.get());
+		} else {
+			// Bin the first band on the client thread, while the remaining bands are binned by workers
+			prepareTiledLightBinner();
+			for (int i = 1; i < TILED_LIGHT_BINNING_BANDS; i++)
+				tiledLightBinningJobs[i].queue();
+			binner.binBand(0);
+			for (int i = 1; i < TILED_LIGHT_BINNING_BANDS; i++)
+				tiledLightBinningJobs[i].waitForCompletion();
+			plugin.overlappedTiledLightBinningMs = 0;
+		}
+		frameTimer.end(Timer.BIN_TILED_LIGHTS);
+
+		glActiveTexture(TEXTURE_UNIT_TILED_LIGHTING_MAP);
+		glBindTexture(GL_TEXTURE_2D_ARRAY, plugin.texTiledLighting);
+		glTexSubImage3D(
+			GL_TEXTURE_2D_ARRAY, 0, 0, 0, 0,
+			binner.getTilesX(),
+			binner.getTilesY(),
+			binner.getLayerCount(),
+			GL_RGBA_INTEGER,
+			GL_UNSIGNED_SHORT,
+			binner.getTileData()
+		);
+	}
+
+	private void optimizeCommandBuffers() {
+		frameTimer.begin(Timer.OPTIMIZE_COMMAND_BUFFERS);
+		commandBufferStats.reset();
+		directionalCmd.optimize(commandBufferStats);
+		gapFillerCmd.optimize(commandBufferStats);
+		sceneCmd.optimize(commandBufferStats);
+		plugin.recordedCommandCount = commandBufferStats.commandsBefore;
+		plugin.optimizedCommandCount = commandBufferStats.commandsAfter;
+		plugin.recordedDrawCount = commandBufferStats.drawsBefore;
+		plugin.optimizedDrawCount = commandBufferStats.drawsAfter;
+		frameTimer.end(Timer.OPTIMIZE_COMMAND_BUFFERS);
+	}
+
 	private void directionalShadowPass() {
 		final boolean shouldRenderShadows =
 			plugin.configShadowsEnabled &&
@@ -847,18 +1039,12 @@ public class ZoneRenderer implements Renderer {
 
 			WorldViewContext ctx = sceneManager.getRoot();
 			if (plugin.enableDetailedTimers) frameTimer.begin(Timer.VISIBILITY_CHECK);
+			if (!isZoneInCurrentArea(ctx.sceneContext, zx, zz)) {
+				if (plugin.enableDetailedTimers) frameTimer.end(Timer.VISIBILITY_CHECK);
+				return false;
+			}
 			int minX = zx * CHUNK_SIZE - ctx.sceneContext.sceneOffset;
 			int minZ = zz * CHUNK_SIZE - ctx.sceneContext.sceneOffset;
-			if (ctx.sceneContext.currentArea != null) {
-				var base = ctx.sceneContext.sceneBase;
-				assert base != null;
-				boolean inArea = ctx.sceneContext.currentArea.intersects(
-					true, base[0] + minX, base[1] + minZ, base[0] + minX + 7, base[1] + minZ + 7);
-				if (!inArea) {
-					if (plugin.enableDetailedTimers) frameTimer.end(Timer.VISIBILITY_CHECK);
-					return false;
-				}
-			}
 
 			Zone zone = ctx.zones[zx][zz];
 			if (plugin.freezeCulling)
@@ -877,6 +1063,16 @@ public class ZoneRenderer implements Renderer {
 			zone.inSceneFrustum = sceneCamera.intersectsAABB(
 				minX - PADDING, minY, minZ - PADDING, maxX + PADDING, maxY, maxZ + PADDING);
 
+			// Leave room above the zone for actors and projectiles, which aren't part of its static geometry
+			final int DYNAMIC_HEIGHT_MARGIN = 4 * LOCAL_TILE_SIZE;
+			if (zone.inSceneFrustum && zone.initialized && plugin.configOcclusionCulling && occlusionCuller.isOccluded(
+				minX - PADDING, min(minY, zone.minY) - DYNAMIC_HEIGHT_MARGIN, minZ - PADDING, maxX + PADDING, maxY, maxZ + PADDING
+			)) {
+				// Treat the zone the same as if it were outside the frustum, since it may still cast visible shadows
+				zone.inSceneFrustum = false;
+				plugin.occludedZoneCount++;
+			}
+
 			if (zone.inSceneFrustum) {
 				if (plugin.enableDetailedTimers)
 					frameTimer.end(Timer.VISIBILITY_CHECK);
@@ -907,6 +1103,18 @@ public class ZoneRenderer implements Renderer {
 		return false;
 	}
 
+	static boolean isZoneInCurrentArea(SceneContext sceneContext, int zx, int zz) {
+		if (sceneContext.currentArea == null)
+			return true;
+
+		var base = sceneContext.sceneBase;
+		assert base != null;
+		int minX = zx * CHUNK_SIZE - sceneContext.sceneOffset;
+		int minZ = zz * CHUNK_SIZE - sceneContext.sceneOffset;
+		return sceneContext.currentArea.intersects(
+			true, base[0] + minX, base[1] + minZ, base[0] + minX + 7, base[1] + minZ + 7);
+	}
+
 	@Override
 	public void drawZoneOpaque(Projection entityProjection, Scene scene, int zx, int zz) {
 		if (plugin.isPluginStopPending())
@@ -921,9 +1129,19 @@ public class ZoneRenderer implements Renderer {
 			if (!z.initialized || z.sizeO == 0)
 				return;
 
+			// Levels and roofs of root zones are culled individually, unless culling is frozen for debugging
+			final boolean cullLevels = sceneManager.isRoot(ctx) && !plugin.freezeCulling && ctx.sceneContext != null;
+			final int zoneOffset = cullLevels ? ctx.sceneContext.sceneOffset >> 3 : 0;
+			final int baseX = (zx - zoneOffset) << 10;
+			final int baseZ = (zz - zoneOffset) << 10;
+			// Shadows are drawn at the same LOD, to avoid self-shadowing artifacts
+			z.updateLod(cullLevels && !plugin.orthographicProjection ? sceneCamera : null, baseX, baseZ);
+
 			frameTimer.begin(Timer.DRAW_ZONE_OPAQUE);
 			if (!sceneManager.isRoot(ctx) || z.inSceneFrustum) {
-				z.renderOpaque(sceneCmd, ctx, false);
+				var cullingCamera = cullLevels && !plugin.orthographicProjection ? sceneCamera : null;
+				boolean cullDetailModels = cullLevels && z.detailModelCount > 0 && detailCuller.hasResults();
+				z.renderOpaque(sceneCmd, ctx, false, cullingCamera, cullDetailModels, baseX, baseZ);
 
 				if (z.hasGapFiller)
 					z.renderOpaqueLevel(gapFillerCmd, Zone.LEVEL_GAP_FILLER);
@@ -932,7 +1150,9 @@ public class ZoneRenderer implements Renderer {
 			final boolean isSquashed = ctx.uboWorldViewStruct != null && ctx.uboWorldViewStruct.isSquashed();
 			if (!isSquashed && (!sceneManager.isRoot(ctx) || z.inShadowFrustum)) {
 				directionalCmd.SetShader(fastShadowProgram);
-				z.renderOpaque(directionalCmd, ctx, shouldDrawRoofShadows);
+				var cullingCamera = cullLevels && plugin.configShadowsEnabled ? directionalCamera : null;
+				// Shadows of culled detail models can stretch far beyond the models themselves, so they are still drawn
+				z.renderOpaque(directionalCmd, ctx, shouldDrawRoofShadows, cullingCamera, false, baseX, baseZ);
 			}
 			frameTimer.end(Timer.DRAW_ZONE_OPAQUE);
 
@@ -963,6 +1183,7 @@ public class ZoneRenderer implements Renderer {
 				z.renderOpaqueLevel(sceneCmd, Zone.LEVEL_WATER_SURFACE);
 
 			modelStreamingManager.ensureAsyncUploadsComplete(z);
+			z.mergeTempAlphaModels();
 
 			final boolean hasAlpha = z.sizeA != 0 || !z.alphaModels.isEmpty();
 			if (hasAlpha) {
@@ -1039,6 +1260,7 @@ public class ZoneRenderer implements Renderer {
 						frameTimer.begin(Timer.UNMAP_ROOT_CTX);
 
 					ctx.unmap();
+					plugin.instancedDynamicModelCount += ctx.instanceCache.instancedDrawCount.get();
 
 					if (sceneManager.isRoot(ctx))
 						frameTimer.end(Timer.UNMAP_ROOT_CTX);
@@ -1140,6 +1362,8 @@ public class ZoneRenderer implements Renderer {
 
 			frameTimer.begin(Timer.DRAW_SUBMIT);
 			if (shouldRenderScene) {
+				if (plugin.configOptimizeCommandBuffers)
+					optimizeCommandBuffers();
 				tiledLightingPass();
 				directionalShadowPass();
 				scenePass();
@@ -1212,6 +1436,7 @@ public class ZoneRenderer implements Renderer {
 
 			glBindFramebuffer(GL_FRAMEBUFFER, plugin.awtContext.getFramebuffer(false));
 
+			jobSystem.endFrame();
 			frameTimer.endFrameAndReset();
 			checkGLErrors();
 
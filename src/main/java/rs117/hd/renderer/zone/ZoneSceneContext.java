@@ -1,5 +1,6 @@
 package rs117.hd.renderer.zone;
 
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 import net.runelite.api.*;
 import rs117.hd.scene.SceneContext;
@@ -11,6 +12,11 @@ public class ZoneSceneContext extends SceneContext {
 	public int totalDeferred;
 	public int totalMapZones;
 
+	// Accumulated by zone upload jobs running in parallel
+	public final AtomicLong totalZoneUploadNanos = new AtomicLong();
+	public final AtomicLong totalUploadedFaces = new AtomicLong();
+	public final AtomicLong totalDeduplicatedFaces = new AtomicLong();
+
 	public final IntHashSet animatedDynamicObjectIds = new IntHashSet();
 	public final Int2IntHashMap animatedDynamicObjectImpostors;
 
@@ -1,5 +1,6 @@
 package rs117.hd.renderer.zone;
 
+import javax.annotation.Nullable;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.*;
 import rs117.hd.utils.DestructibleHandler;
@@ -15,6 +16,11 @@ import static rs117.hd.utils.buffer.GLBuffer.MAP_WRITE;
 public final class ZoneUploadJob extends Job {
 	private static final ConcurrentPool<ZoneUploadJob> POOL = new ConcurrentPool<>(ZoneUploadJob::new);
 
+	private static final int PHASE_ESTIMATE = 0;
+	private static final int PHASE_UPLOAD = 1;
+	private static final int PHASE_WRITE_LODS = 2;
+	private static final int PHASE_UNMAP = 3;
+
 	private WorldViewContext viewContext;
 	private ZoneSceneContext sceneContext;
 
@@ -23,28 +29,108 @@ public final class ZoneUploadJob extends Job {
 	long revealAfterTimestampMs;
 	boolean shouldUnmap;
 
+	private int phase;
+	private boolean hasZoneLods;
+	// Kept with the pooled job, so it can be reused by later uploads
+	@Nullable
+	private ZoneLodGenerator lodGenerator;
+
 	@Override
 	protected void onRun() throws InterruptedException {
-		try (SceneUploader sceneUploader = SceneUploader.POOL.acquire()) {
-			workerHandleCancel();
-
-			sceneUploader.onBeforeProcessTile = this::onBeforeProcessTile;
-			sceneUploader.setScene(sceneContext.scene);
-			sceneUploader.estimateZoneSize(sceneContext, zone, x, z);
-
-			if (zone.sizeO > 0 || zone.sizeA > 0) {
+		// The job suspends itself whenever buffers need to be mapped or unmapped on the client thread, instead of blocking
+		// the worker, and continues from the next phase once the client thread has processed its batch of callbacks
+		switch (phase) {
+			case PHASE_ESTIMATE:
+				try (SceneUploader sceneUploader = SceneUploader.POOL.acquire()) {
+					workerHandleCancel();
+
+					sceneUploader.onBeforeProcessTile = this::onBeforeProcessTile;
+					sceneUploader.setScene(sceneContext.scene);
+					sceneUploader.estimateZoneSize(sceneContext, zone, x, z);
+				}
+
+				if (zone.sizeO == 0 && zone.sizeA == 0)
+					break;
 				workerHandleCancel();
 
-				invokeClientCallback(this::mapZoneVertexBuffers);
+				phase = PHASE_UPLOAD;
+				if (suspendForClientCallback(this::mapZoneVertexBuffers))
+					return;
+				// fall through
+			case PHASE_UPLOAD:
 				workerHandleCancel();
-
-				sceneUploader.uploadZone(sceneContext, zone, x, z);
+				uploadZone();
 				workerHandleCancel();
 
-				if (shouldUnmap)
-					invokeClientCallback(zone::unmap);
+				phase = PHASE_WRITE_LODS;
+				if (hasZoneLods) {
+					int lodSize = lodGenerator.size;
+					if (suspendForClientCallback(() -> zone.initializeLod(lodSize * Integer.BYTES)))
+						return;
+				}
+				// fall through
+			case PHASE_WRITE_LODS:
+				if (hasZoneLods) {
+					workerHandleCancel();
+					writeZoneLods();
+					workerHandleCancel();
+				}
+
+				phase = PHASE_UNMAP;
+				if (shouldUnmap && suspendForClientCallback(zone::unmap))
+					return;
+				// fall through
+			case PHASE_UNMAP:
+				break;
+		}
+		zone.initialized = true;
+	}
+
+	private void uploadZone() throws InterruptedException {
+		try (SceneUploader sceneUploader = SceneUploader.POOL.acquire()) {
+			sceneUploader.onBeforeProcessTile = this::onBeforeProcessTile;
+			sceneUploader.setScene(sceneContext.scene);
+			// Lend the job's LOD generator to the uploader, and take it back along with its output, since it needs to
+			// outlive the uploader while the job is suspended to map the LOD buffer
+			sceneUploader.lodGenerator = lodGenerator;
+
+			long uploadStart = System.nanoTime();
+			// Only the top-level scene is large enough for distant zones to be worth simplifying
+			sceneUploader.uploadZone(sceneContext, zone, x, z, viewContext.worldViewId == WorldView.TOPLEVEL);
+			long uploadTime = System.nanoTime() - uploadStart;
+
+			lodGenerator = sceneUploader.lodGenerator;
+			hasZoneLods = sceneUploader.hasZoneLods;
+			sceneUploader.lodGenerator = null;
+
+			sceneContext.totalZoneUploadNanos.addAndGet(uploadTime);
+			sceneContext.totalUploadedFaces.addAndGet(sceneUploader.uploadedFaceCount);
+			sceneContext.totalDeduplicatedFaces.addAndGet(sceneUploader.deduplicatedFaceCount);
+			if (log.isTraceEnabled()) {
+				log.trace(
+					"Zone [{}, {}] uploaded in {} ms, {} of {} faces reused the data of an identical face",
+					x, z,
+					String.format("%.3f", uploadTime / 1e6),
+					sceneUploader.deduplicatedFaceCount,
+					sceneUploader.uploadedFaceCount
+				);
 			}
-			zone.initialized = true;
+		}
+	}
+
+	private void writeZoneLods() {
+		assert lodGenerator != null;
+		if (zone.vboL == null)
+			return;
+
+		lodGenerator.write(zone.vboL.mapped().intView());
+		zone.lodLevelOffsets = lodGenerator.levelOffsets.clone();
+		if (log.isTraceEnabled()) {
+			log.trace(
+				"Zone [{}, {}] simplified to {} times fewer vertices at the first LOD",
+				x, z,
+				String.format("%.2f", lodGenerator.getReduction(zone))
+			);
 		}
 	}
 
@@ -55,14 +141,14 @@ public final class ZoneUploadJob extends Job {
 	private void mapZoneVertexBuffers() {
 		try {
 			GLBuffer o = null, a = null;
-			int sz = zone.sizeO * Zone.VERT_SIZE * 3;
+			int sz = zone.sizeO * zone.vertSize * 3;
 			if (sz > 0) {
 				o = new GLBuffer("Zone::VBO::Opaque", GL_ARRAY_BUFFER, GL_STATIC_DRAW);
 				o.initialize(sz);
 				o.map(MAP_WRITE);
 			}
 
-			sz = zone.sizeA * Zone.VERT_SIZE * 3;
+			sz = zone.sizeA * zone.vertSize * 3;
 			if (sz > 0) {
 				a = new GLBuffer("Zone::VBO::Alpha", GL_ARRAY_BUFFER, GL_STATIC_DRAW);
 				a.initialize(sz);
@@ -88,7 +174,8 @@ public final class ZoneUploadJob extends Job {
 				isHighPriority(),
 				ex
 			);
-			cancel();
+			// Cancels the job once the client thread has processed the callback
+			throw ex;
 		}
 	}
 
@@ -132,6 +219,8 @@ public final class ZoneUploadJob extends Job {
 		newTask.shouldUnmap = shouldUnmap;
 		newTask.x = x;
 		newTask.z = z;
+		newTask.phase = PHASE_ESTIMATE;
+		newTask.hasZoneLods = false;
 		newTask.isReleased = false;
 
 		return newTask;
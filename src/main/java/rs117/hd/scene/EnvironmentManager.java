@@ -25,11 +25,13 @@
 package rs117.hd.scene;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Objects;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import lombok.Getter;
@@ -69,19 +71,26 @@ public class EnvironmentManager {
 	// distance in tiles to skip transition (e.g. entering cave, teleporting)
 	// walking across a loading line causes a movement of 40-41 tiles
 	private static final int SKIP_TRANSITION_DISTANCE = 41;
+	private static final int MAX_INDEXED_REGIONS = 64;
 
 	// when the current transition began, relative to plugin startup
 	private boolean transitionComplete = true;
 	private double transitionStartTime = 0;
-	private int[] previousPosition = new int[3];
+	private final int[] focalPoint = new int[3];
+	private final int[] previousPosition = new int[3];
 
-	private float[] startFogColor = new float[] { 0, 0, 0 };
-	public float[] currentFogColor = new float[] { 0, 0, 0 };
-	private float[] targetFogColor = new float[] { 0, 0, 0 };
+	// The environment lookup only needs to be repeated when the focal point moves to a different tile
+	private SceneContext lookupSceneContext;
+	private final int[] lookupPosition = new int[3];
+	private Environment lookupEnvironment;
 
-	private float[] startWaterColor = new float[] { 0, 0, 0 };
-	public float[] currentWaterColor = new float[] { 0, 0, 0 };
-	private float[] targetWaterColor = new float[] { 0, 0, 0 };
+	private final float[] startFogColor = new float[] { 0, 0, 0 };
+	public final float[] currentFogColor = new float[] { 0, 0, 0 };
+	private final float[] targetFogColor = new float[] { 0, 0, 0 };
+
+	private final float[] startWaterColor = new float[] { 0, 0, 0 };
+	public final float[] currentWaterColor = new float[] { 0, 0, 0 };
+	private final float[] targetWaterColor = new float[] { 0, 0, 0 };
 
 	private float startFogDepth = 0;
 	public float currentFogDepth = 0;
@@ -91,33 +100,33 @@ public class EnvironmentManager {
 	public float currentAmbientStrength = 0f;
 	private float targetAmbientStrength = 0f;
 
-	private float[] startAmbientColor = new float[] { 0, 0, 0 };
-	public float[] currentAmbientColor = new float[] { 0, 0, 0 };
-	private float[] targetAmbientColor = new float[] { 0, 0, 0 };
+	private final float[] startAmbientColor = new float[] { 0, 0, 0 };
+	public final float[] currentAmbientColor = new float[] { 0, 0, 0 };
+	private final float[] targetAmbientColor = new float[] { 0, 0, 0 };
 
 	private float startDirectionalStrength = 0f;
 	public float currentDirectionalStrength = 0f;
 	private float targetDirectionalStrength = 0f;
 
-	private float[] startUnderwaterCausticsColor = new float[] { 0, 0, 0 };
-	public float[] currentUnderwaterCausticsColor = new float[] { 0, 0, 0 };
-	private float[] targetUnderwaterCausticsColor = new float[] { 0, 0, 0 };
+	private final float[] startUnderwaterCausticsColor = new float[] { 0, 0, 0 };
+	public final float[] currentUnderwaterCausticsColor = new float[] { 0, 0, 0 };
+	private final float[] targetUnderwaterCausticsColor = new float[] { 0, 0, 0 };
 
 	private float startUnderwaterCausticsStrength = 1f;
 	public float currentUnderwaterCausticsStrength = 1f;
 	private float targetUnderwaterCausticsStrength = 1f;
 
-	private float[] startDirectionalColor = new float[] { 0, 0, 0 };
-	public float[] currentDirectionalColor = new float[] { 0, 0, 0 };
-	private float[] targetDirectionalColor = new float[] { 0, 0, 0 };
+	private final float[] startDirectionalColor = new float[] { 0, 0, 0 };
+	public final float[] currentDirectionalColor = new float[] { 0, 0, 0 };
+	private final float[] targetDirectionalColor = new float[] { 0, 0, 0 };
 
 	private float startUnderglowStrength = 0f;
 	public float currentUnderglowStrength = 0f;
 	private float targetUnderglowStrength = 0f;
 
-	private float[] startUnderglowColor = new float[] { 0, 0, 0 };
-	public float[] currentUnderglowColor = new float[] { 0, 0, 0 };
-	private float[] targetUnderglowColor = new float[] { 0, 0, 0 };
+	private final float[] startUnderglowColor = new float[] { 0, 0, 0 };
+	public final float[] currentUnderglowColor = new float[] { 0, 0, 0 };
+	private final float[] targetUnderglowColor = new float[] { 0, 0, 0 };
 
 	private float startGroundFogStart = 0f;
 	public float currentGroundFogStart = 0f;
@@ -217,6 +226,7 @@ public class EnvironmentManager {
 	public void reset() {
 		currentEnvironment = Environment.NONE;
 		forceNextTransition = false;
+		lookupSceneContext = null;
 	}
 
 	public void reload() {
@@ -235,52 +245,57 @@ public class EnvironmentManager {
 	public void update(SceneContext sceneContext) {
 		assert client.isClientThread();
 
-		int[] focalPoint = sceneContext.localToWorld(
+		sceneContext.localToWorld(
 			plugin.cameraFocalPoint[0],
 			plugin.cameraFocalPoint[1],
-			client.getPlane()
+			client.getPlane(),
+			focalPoint
 		);
 
 		// skip the transitional fade if the player has moved too far
 		// since the previous frame. results in an instant transition when
 		// teleporting, entering dungeons, etc.
-		int tileChange = (int) max(abs(subtract(vec(focalPoint), vec(previousPosition))));
-		previousPosition = focalPoint;
+		int tileChange = max(
+			max(abs(focalPoint[0] - previousPosition[0]), abs(focalPoint[1] - previousPosition[1])),
+			abs(focalPoint[2] - previousPosition[2])
+		);
+		copyTo(previousPosition, focalPoint);
 
 		boolean skipTransition = tileChange >= SKIP_TRANSITION_DISTANCE;
-		for (var environment : sceneContext.environments) {
-			if (environment.area.containsPoint(focalPoint)) {
-				changeEnvironment(environment, skipTransition);
-				break;
-			}
+		if (lookupSceneContext != sceneContext || !Arrays.equals(lookupPosition, focalPoint)) {
+			lookupSceneContext = sceneContext;
+			copyTo(lookupPosition, focalPoint);
+			lookupEnvironment = findEnvironment(sceneContext, focalPoint);
 		}
+		if (lookupEnvironment != null)
+			changeEnvironment(lookupEnvironment, skipTransition);
 
 		updateTargetSkyColor(); // Update every frame, since other plugins may control it
 
 		if (transitionComplete) {
 			// Always write fog and water color, since they're affected by lightning
-			currentFogColor = targetFogColor;
-			currentWaterColor = targetWaterColor;
+			copyTo(currentFogColor, targetFogColor);
+			copyTo(currentWaterColor, targetWaterColor);
 		} else {
 			// interpolate between start and target values
 			float t = smoothstep(0, 1, (float) (plugin.elapsedTime - transitionStartTime) / TRANSITION_DURATION);
 			if (t >= 1)
 				transitionComplete = true;
-			currentFogColor = mix(startFogColor, targetFogColor, t);
-			currentWaterColor = mix(startWaterColor, targetWaterColor, t);
+			mix(currentFogColor, startFogColor, targetFogColor, t);
+			mix(currentWaterColor, startWaterColor, targetWaterColor, t);
 			currentFogDepth = mix(startFogDepth, targetFogDepth, t);
 			currentAmbientStrength = mix(startAmbientStrength, targetAmbientStrength, t);
-			currentAmbientColor = mix(startAmbientColor, targetAmbientColor, t);
+			mix(currentAmbientColor, startAmbientColor, targetAmbientColor, t);
 			currentDirectionalStrength = mix(startDirectionalStrength, targetDirectionalStrength, t);
-			currentDirectionalColor = mix(startDirectionalColor, targetDirectionalColor, t);
+			mix(currentDirectionalColor, startDirectionalColor, targetDirectionalColor, t);
 			currentUnderglowStrength = mix(startUnderglowStrength, targetUnderglowStrength, t);
-			currentUnderglowColor = mix(startUnderglowColor, targetUnderglowColor, t);
+			mix(currentUnderglowColor, startUnderglowColor, targetUnderglowColor, t);
 			currentGroundFogStart = mix(startGroundFogStart, targetGroundFogStart, t);
 			currentGroundFogEnd = mix(startGroundFogEnd, targetGroundFogEnd, t);
 			currentGroundFogOpacity = mix(startGroundFogOpacity, targetGroundFogOpacity, t);
 			for (int i = 0; i < 2; i++)
 				currentSunAngles[i] = mix(startSunAngles[i], targetSunAngles[i], t);
-			currentUnderwaterCausticsColor = mix(startUnderwaterCausticsColor, targetUnderwaterCausticsColor, t);
+			mix(currentUnderwaterCausticsColor, startUnderwaterCausticsColor, targetUnderwaterCausticsColor, t);
 			currentUnderwaterCausticsStrength = mix(startUnderwaterCausticsStrength, targetUnderwaterCausticsStrength, t);
 			currentWindAngle = mix(startWindAngle, targetWindAngle, t);
 			currentWindSpeed = mix(startWindSpeed, targetWindSpeed, t);
@@ -291,6 +306,23 @@ public class EnvironmentManager {
 		updateLightning();
 	}
 
+	@Nullable
+	private static Environment findEnvironment(SceneContext sceneContext, int[] worldPoint) {
+		// Only check environments overlapping the focal point's region, falling back to every environment in the scene
+		var candidates = sceneContext.environmentsByRegion.get(worldPoint[0] >> 6 << 8 | worldPoint[1] >> 6);
+		if (candidates != null) {
+			for (var environment : candidates)
+				if (environment.area.containsPoint(worldPoint))
+					return environment;
+			return null;
+		}
+
+		for (var environment : sceneContext.environments)
+			if (environment.area.containsPoint(worldPoint))
+				return environment;
+		return null;
+	}
+
 	/**
 	 * Updates variables used in transition effects
 	 *
@@ -319,19 +351,19 @@ public class EnvironmentManager {
 		transitionStartTime = plugin.elapsedTime - (skipTransition ? TRANSITION_DURATION : 0);
 
 		// Start transitioning from the current values
-		startFogColor = currentFogColor;
-		startWaterColor = currentWaterColor;
+		copyTo(startFogColor, currentFogColor);
+		copyTo(startWaterColor, currentWaterColor);
 		startFogDepth = currentFogDepth;
 		startAmbientStrength = currentAmbientStrength;
-		startAmbientColor = currentAmbientColor;
+		copyTo(startAmbientColor, currentAmbientColor);
 		startDirectionalStrength = currentDirectionalStrength;
-		startDirectionalColor = currentDirectionalColor;
+		copyTo(startDirectionalColor, currentDirectionalColor);
 		startUnderglowStrength = currentUnderglowStrength;
-		startUnderglowColor = currentUnderglowColor;
+		copyTo(startUnderglowColor, currentUnderglowColor);
 		startGroundFogStart = currentGroundFogStart;
 		startGroundFogEnd = currentGroundFogEnd;
 		startGroundFogOpacity = currentGroundFogOpacity;
-		startUnderwaterCausticsColor = currentUnderwaterCausticsColor;
+		copyTo(startUnderwaterCausticsColor, currentUnderwaterCausticsColor);
 		startUnderwaterCausticsStrength = currentUnderwaterCausticsStrength;
 		startWindAngle = currentWindAngle;
 		startWindSpeed = currentWindSpeed;
@@ -358,12 +390,12 @@ public class EnvironmentManager {
 		if (!config.atmosphericLighting() && !env.force)
 			env = overworldEnv;
 		targetAmbientStrength = env.ambientStrength;
-		targetAmbientColor = env.ambientColor;
+		copyTo(targetAmbientColor, env.ambientColor);
 		targetDirectionalStrength = env.directionalStrength;
-		targetDirectionalColor = env.directionalColor;
+		copyTo(targetDirectionalColor, env.directionalColor);
 		targetUnderglowStrength = env.underglowStrength;
-		targetUnderglowColor = env.underglowColor;
-		targetUnderwaterCausticsColor = env.waterCausticsColor;
+		copyTo(targetUnderglowColor, env.underglowColor);
+		copyTo(targetUnderwaterCausticsColor, env.waterCausticsColor);
 		targetUnderwaterCausticsStrength = env.waterCausticsStrength;
 		targetWindAngle = env.windAngle;
 		targetWindSpeed = env.windSpeed;
@@ -383,19 +415,20 @@ public class EnvironmentManager {
 
 		if (env.fogColor == null || env.allowSkyOverride && config.overrideSky()) {
 			DefaultSkyColor sky = config.defaultSkyColor();
-			targetFogColor = sky.getRgb(client);
+			sky.getRgb(client, targetFogColor);
 			if (sky == DefaultSkyColor.OSRS)
 				sky = DefaultSkyColor.DEFAULT;
-			targetWaterColor = sky.getRgb(client);
+			sky.getRgb(client, targetWaterColor);
 		} else {
-			targetFogColor = targetWaterColor = env.fogColor;
+			copyTo(targetFogColor, env.fogColor);
+			copyTo(targetWaterColor, env.fogColor);
 		}
 
 		// Override with decoupled water/sky color if present
 		if (env.waterColor != null) {
-			targetWaterColor = env.waterColor;
+			copyTo(targetWaterColor, env.waterColor);
 		} else if (config.decoupleSkyAndWaterColor()) {
-			targetWaterColor = DefaultSkyColor.DEFAULT.getRgb(client);
+			DefaultSkyColor.DEFAULT.getRgb(client, targetWaterColor);
 		}
 	}
 
@@ -416,6 +449,29 @@ public class EnvironmentManager {
 
 		// Fall back to the default environment
 		sceneContext.environments.add(Environment.DEFAULT);
+
+		// Index the environments by region, preserving their priority order
+		sceneContext.environmentsByRegion.clear();
+		var bounds = sceneContext.sceneBounds;
+		int regionCount = ((bounds.maxX >> 6) - (bounds.minX >> 6) + 1) * ((bounds.maxY >> 6) - (bounds.minY >> 6) + 1);
+		// Instances may be assembled from chunks far apart, in which case every lookup falls back to a linear search
+		if (regionCount > MAX_INDEXED_REGIONS)
+			regionCount = 0;
+		var candidates = new ArrayList<Environment>();
+		for (int regionX = bounds.minX >> 6; regionCount > 0 && regionX <= bounds.maxX >> 6; regionX++) {
+			for (int regionY = bounds.minY >> 6; regionY <= bounds.maxY >> 6; regionY++) {
+				int minX = regionX << 6;
+				int minY = regionY << 6;
+				candidates.clear();
+				for (var environment : sceneContext.environments)
+					if (environment.area.intersects(true, minX, minY, minX + 63, minY + 63))
+						candidates.add(environment);
+				sceneContext.environmentsByRegion.put(regionX << 8 | regionY, candidates.toArray(Environment[]::new));
+			}
+		}
+
+		// Force the environment lookup to be repeated for the new scene
+		lookupSceneContext = null;
 	}
 
 	/* lightning */
@@ -453,8 +509,8 @@ public class EnvironmentManager {
 
 		if (lightningEnabled && config.flashingEffects()) {
 			float t = clamp(lightningBrightness, 0, 1);
-			currentFogColor = mix(currentFogColor, LIGHTNING_COLOR, t);
-			currentWaterColor = mix(currentWaterColor, LIGHTNING_COLOR, t);
+			mix(currentFogColor, currentFogColor, LIGHTNING_COLOR, t);
+			mix(currentWaterColor, currentWaterColor, LIGHTNING_COLOR, t);
 		} else {
 			lightningBrightness = 0f;
 		}
@@ -30,7 +30,6 @@ import com.google.common.collect.ListMultimap;
 import com.google.gson.Gson;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.function.Predicate;
 import javax.annotation.Nonnull;
@@ -52,6 +51,7 @@ import rs117.hd.HdPlugin;
 import rs117.hd.config.DynamicLights;
 import rs117.hd.data.ObjectType;
 import rs117.hd.opengl.uniforms.UBOLights;
+import rs117.hd.scene.areas.AABB;
 import rs117.hd.scene.lights.Alignment;
 import rs117.hd.scene.lights.Light;
 import rs117.hd.scene.lights.LightDefinition;
@@ -108,6 +108,7 @@ public class LightManager {
 	private final ListMultimap<Integer, LightDefinition> GRAPHICS_OBJECT_LIGHTS = ArrayListMultimap.create();
 
 	private final Renderable[] imposterRenderables = new Renderable[2];
+	private final int[] worldPos = new int[3];
 	private boolean reloadLights;
 	private EntityHiderConfig entityHiderConfig;
 	private int currentPlane;
@@ -185,10 +186,10 @@ public class LightManager {
 			loadSceneLights(sceneContext);
 			swapSceneLights(sceneContext, null);
 
-			client.getNpcs().forEach(npc -> {
+			for (NPC npc : client.getNpcs()) {
 				addNpcLights(npc);
 				addSpotanimLights(npc);
-			});
+			}
 		}
 
 		// These should never occur, but just in case...
@@ -245,7 +246,7 @@ public class LightManager {
 						if (anim != null)
 							animationId = anim.getId();
 					}
-					parentExists = light.def.animationIds.contains(animationId);
+					parentExists = light.def.animationIdSet.contains(animationId);
 				}
 			} else if (light.projectile != null) {
 				light.origin[0] = (int) light.projectile.getX();
@@ -260,7 +261,7 @@ public class LightManager {
 							parentExists = false;
 						} else if (!light.def.animationIds.isEmpty()) {
 							var animation = light.projectile.getAnimation();
-							parentExists = animation != null && light.def.animationIds.contains(animation.getId());
+							parentExists = animation != null && light.def.animationIdSet.contains(animation.getId());
 						}
 					}
 					light.orientation = light.projectile.getOrientation();
@@ -276,7 +277,7 @@ public class LightManager {
 						parentExists = false;
 					} else if (!light.def.animationIds.isEmpty()) {
 						var animation = light.graphicsObject.getAnimation();
-						parentExists = animation != null && light.def.animationIds.contains(animation.getId());
+						parentExists = animation != null && light.def.animationIdSet.contains(animation.getId());
 					}
 				}
 			} else if (light.actor != null && !light.markedForRemoval) {
@@ -306,7 +307,7 @@ public class LightManager {
 								}
 							}
 						} else {
-							parentExists = light.def.animationIds.contains(light.actor.getAnimation());
+							parentExists = light.def.animationIdSet.contains(light.actor.getAnimation());
 						}
 					}
 
@@ -568,6 +569,13 @@ public class LightManager {
 		}
 	}
 
+	private static boolean isInAnyArea(AABB[] areas, int[] worldPos) {
+		for (var aabb : areas)
+			if (aabb.contains(worldPos))
+				return true;
+		return false;
+	}
+
 	private boolean isActorLightVisible(@Nonnull Actor actor) {
 		try {
 			// getModel may throw an exception from vanilla client code
@@ -707,27 +715,29 @@ public class LightManager {
 		if (sceneContext == null)
 			return;
 
-		int[] worldPos = sceneContext.localToWorld(actor.getLocalLocation());
+		sceneContext.localToWorld(actor.getLocalLocation(), client.getPlane(), worldPos);
 
 		for (var spotAnim : actor.getSpotAnims()) {
 			int spotAnimId = spotAnim.getId();
 			for (var def : GRAPHICS_OBJECT_LIGHTS.get(spotAnim.getId())) {
 				if (def.areas.length > 0) {
-					boolean isInArea = Arrays.stream(def.areas).anyMatch(aabb -> aabb.contains(worldPos));
+					boolean isInArea = isInAnyArea(def.areas, worldPos);
 					if (!isInArea)
 						continue;
 				}
 				if (def.excludeAreas.length > 0) {
-					boolean isInArea = Arrays.stream(def.excludeAreas).anyMatch(aabb -> aabb.contains(worldPos));
+					boolean isInArea = isInAnyArea(def.excludeAreas, worldPos);
 					if (isInArea)
 						continue;
 				}
 
-				boolean isDuplicate = sceneContext.lights.stream()
-					.anyMatch(light ->
-						light.spotanimId == spotAnimId &&
-						light.actor == actor &&
-						light.def == def);
+				boolean isDuplicate = false;
+				for (var light : sceneContext.lights) {
+					if (light.spotanimId == spotAnimId && light.actor == actor && light.def == def) {
+						isDuplicate = true;
+						break;
+					}
+				}
 				if (isDuplicate)
 					continue;
 
@@ -747,7 +757,7 @@ public class LightManager {
 			return;
 
 		int uuid = ModelHash.packUuid(ModelHash.TYPE_NPC, npc.getId());
-		int[] worldPos = sceneContext.localToWorld(npc.getLocalLocation());
+		sceneContext.localToWorld(npc.getLocalLocation(), client.getPlane(), worldPos);
 
 		var modelOverride = modelOverrideManager.getOverride(uuid, worldPos);
 		if (modelOverride.hide)
@@ -755,22 +765,24 @@ public class LightManager {
 
 		for (LightDefinition def : NPC_LIGHTS.get(npc.getId())) {
 			if (def.areas.length > 0) {
-				boolean isInArea = Arrays.stream(def.areas).anyMatch(aabb -> aabb.contains(worldPos));
+				boolean isInArea = isInAnyArea(def.areas, worldPos);
 				if (!isInArea)
 					continue;
 			}
 			if (def.excludeAreas.length > 0) {
-				boolean isInArea = Arrays.stream(def.excludeAreas).anyMatch(aabb -> aabb.contains(worldPos));
+				boolean isInArea = isInAnyArea(def.excludeAreas, worldPos);
 				if (isInArea)
 					continue;
 			}
 
 			// Prevent duplicate lights from being spawned for the same NPC
-			boolean isDuplicate = sceneContext.lights.stream()
-				.anyMatch(light ->
-					light.actor == npc &&
-					light.def == def &&
-					!light.markedForRemoval);
+			boolean isDuplicate = false;
+			for (var light : sceneContext.lights) {
+				if (light.actor == npc && light.def == def && !light.markedForRemoval) {
+					isDuplicate = true;
+					break;
+				}
+			}
 			if (isDuplicate)
 				continue;
 
@@ -935,17 +947,17 @@ public class LightManager {
 
 			int lightX = lp.getX() + offsets[2 * i];
 			int lightZ = lp.getY() + offsets[2 * i + 1];
+			// May be called during scene loading off the client thread, so don't use the shared worldPos
+			int[] worldPos = sceneContext.localToWorld(lightX, lightZ, plane);
 
 			for (LightDefinition def : lights) {
 				if (def.areas.length > 0) {
-					int[] worldPos = sceneContext.localToWorld(lightX, lightZ, plane);
-					boolean isInArea = Arrays.stream(def.areas).anyMatch(aabb -> aabb.contains(worldPos));
+					boolean isInArea = isInAnyArea(def.areas, worldPos);
 					if (!isInArea)
 						continue;
 				}
 				if (def.excludeAreas.length > 0) {
-					int[] worldPos = sceneContext.localToWorld(lightX, lightZ, plane);
-					boolean isInArea = Arrays.stream(def.excludeAreas).anyMatch(aabb -> aabb.contains(worldPos));
+					boolean isInArea = isInAnyArea(def.excludeAreas, worldPos);
 					if (isInArea)
 						continue;
 				}
@@ -1022,17 +1034,17 @@ public class LightManager {
 		if (!sceneContext.knownProjectiles.add(projectile))
 			return;
 
-		int[] worldPos = sceneContext.localToWorld((int) projectile.getX(), (int) projectile.getY(), projectile.getFloor());
+		sceneContext.localToWorld((int) projectile.getX(), (int) projectile.getY(), projectile.getFloor(), worldPos);
 
 		int[] refCounter = { 0 };
 		for (LightDefinition def : PROJECTILE_LIGHTS.get(projectile.getId())) {
 			if (def.areas.length > 0) {
-				boolean isInArea = Arrays.stream(def.areas).anyMatch(aabb -> aabb.contains(worldPos));
+				boolean isInArea = isInAnyArea(def.areas, worldPos);
 				if (!isInArea)
 					continue;
 			}
 			if (def.excludeAreas.length > 0) {
-				boolean isInArea = Arrays.stream(def.excludeAreas).anyMatch(aabb -> aabb.contains(worldPos));
+				boolean isInArea = isInAnyArea(def.excludeAreas, worldPos);
 				if (isInArea)
 					continue;
 			}
@@ -1100,16 +1112,16 @@ public class LightManager {
 
 		GraphicsObject graphicsObject = graphicsObjectCreated.getGraphicsObject();
 		var lp = graphicsObject.getLocation();
-		int[] worldPos = sceneContext.localToWorld(lp, graphicsObject.getLevel());
+		sceneContext.localToWorld(lp, graphicsObject.getLevel(), worldPos);
 
 		for (LightDefinition def : GRAPHICS_OBJECT_LIGHTS.get(graphicsObject.getId())) {
 			if (def.areas.length > 0) {
-				boolean isInArea = Arrays.stream(def.areas).anyMatch(aabb -> aabb.contains(worldPos));
+				boolean isInArea = isInAnyArea(def.areas, worldPos);
 				if (!isInArea)
 					continue;
 			}
 			if (def.excludeAreas.length > 0) {
-				boolean isInArea = Arrays.stream(def.excludeAreas).anyMatch(aabb -> aabb.contains(worldPos));
+				boolean isInArea = isInAnyArea(def.excludeAreas, worldPos);
 				if (isInArea)
 					continue;
 			}
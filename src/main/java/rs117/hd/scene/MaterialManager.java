@@ -378,7 +378,9 @@ public class MaterialManager {
 				textureLayers.add(layer);
 			} else {
 				layer = textureLayers.get(textureLayerIndex);
-				layer.needsUpload |= !Objects.equals(mat.getTextureName(), layer.material.getTextureName());
+				layer.needsUpload |=
+					!Objects.equals(mat.getTextureName(), layer.material.getTextureName()) ||
+					mat.vanillaTextureIndex != layer.material.vanillaTextureIndex;
 			}
 			layer.material = mat;
 			mat.textureLayer = textureLayerIndex++;
@@ -484,33 +486,45 @@ public class MaterialManager {
 		double vanillaBrightness = textureProvider.getBrightness();
 		textureProvider.setBrightness(1);
 
-		boolean uploadedAnything = false;
+		// Decode or load each changed texture from the cache first, so mipmaps can be generated in parallel
+		var uploads = new ArrayList<TextureManager.TextureUpload>();
 		for (var layer : textureLayers) {
 			if (!layer.needsUpload)
 				continue;
 
 			var material = layer.material;
-			var image = textureManager.loadTexture(material.getTextureName(), material.vanillaTextureIndex);
-			if (image == null)
-				continue;
-
 			try {
-				if (!uploadedAnything) {
-					glActiveTexture(TEXTURE_UNIT_GAME);
-					glBindTexture(GL_TEXTURE_2D_ARRAY, texMaterialTextureArray);
-					uploadedAnything = true;
+				var upload = textureManager.prepareTexture(
+					material.getTextureName(),
+					material.vanillaTextureIndex,
+					material.textureLayer,
+					textureResolution
+				);
+				if (upload != null) {
+					uploads.add(upload);
+					layer.needsUpload = false;
 				}
-				textureManager.uploadTexture(GL_TEXTURE_2D_ARRAY, material.textureLayer, textureResolution, image);
 			} catch (Exception ex) {
-				log.error("Failed to upload texture {}:", material, ex);
+				log.error("Failed to load texture {}:", material, ex);
 			}
 		}
 
 		// Reset the texture brightness
 		textureProvider.setBrightness(vanillaBrightness);
 
-		if (uploadedAnything)
-			glGenerateMipmap(GL_TEXTURE_2D_ARRAY);
+		if (uploads.isEmpty())
+			return;
+
+		// Upload every mip level of only the layers which changed
+		glActiveTexture(TEXTURE_UNIT_GAME);
+		glBindTexture(GL_TEXTURE_2D_ARRAY, texMaterialTextureArray);
+		for (var upload : uploads) {
+			try {
+				textureManager.uploadTexture(GL_TEXTURE_2D_ARRAY, textureResolution, upload);
+			} catch (Exception ex) {
+				log.error("Failed to upload texture:", ex);
+			}
+		}
 	}
 
 	private static void checkForReplacementLoops(Material[] materials) {
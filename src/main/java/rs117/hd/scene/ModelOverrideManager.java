@@ -14,6 +14,7 @@ import net.runelite.api.gameval.*;
 import net.runelite.client.callback.ClientThread;
 import rs117.hd.HdPlugin;
 import rs117.hd.renderer.zone.SceneManager;
+import rs117.hd.scene.areas.AABB;
 import rs117.hd.scene.model_overrides.ModelOverride;
 import rs117.hd.utils.FileWatcher;
 import rs117.hd.utils.ModelHash;
@@ -91,6 +92,7 @@ public class ModelOverrideManager {
 					if (entry.getValue().disableDetailCulling)
 						detailCullingBlacklist.add(entry.getKey());
 					override.clearIds();
+					flattenAreaOverrides(override);
 				}
 
 				log.debug("Loaded {} model overrides", modelOverrides.size());
@@ -233,6 +235,27 @@ public class ModelOverrideManager {
 		}
 	}
 
+	/**
+	 * Area overrides are looked up for every model in every frame, so store them as flat arrays
+	 * to avoid allocating a map iterator on each lookup.
+	 */
+	public static void flattenAreaOverrides(ModelOverride override) {
+		if (override.areaOverrides == null) {
+			override.areaOverrideAabbs = null;
+			override.areaOverrideValues = null;
+			return;
+		}
+
+		int n = override.areaOverrides.size();
+		override.areaOverrideAabbs = new AABB[n];
+		override.areaOverrideValues = new ModelOverride[n];
+		int i = 0;
+		for (var entry : override.areaOverrides.entrySet()) {
+			override.areaOverrideAabbs[i] = entry.getKey();
+			override.areaOverrideValues[i++] = entry.getValue();
+		}
+	}
+
 	public boolean allowDetailCulling(int uuid) {
 		return !detailCullingBlacklist.contains(uuid);
 	}
@@ -243,10 +266,11 @@ public class ModelOverrideManager {
 		if (override == null)
 			return ModelOverride.NONE;
 
-		if (override.areaOverrides != null)
-			for (var entry : override.areaOverrides.entrySet())
-				if (entry.getKey().contains(worldPos))
-					return entry.getValue();
+		var areas = override.areaOverrideAabbs;
+		if (areas != null)
+			for (int i = 0; i < areas.length; i++)
+				if (areas[i].contains(worldPos))
+					return override.areaOverrideValues[i];
 
 		return override;
 	}
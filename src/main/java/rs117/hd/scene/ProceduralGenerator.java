@@ -160,6 +160,15 @@ public class ProceduralGenerator {
 			log.debug("-- calculateTerrainNormals: {}ms", timerCalculateTerrainNormals);
 			log.debug("-- generateTerrainData: {}ms", timerGenerateTerrainData);
 			log.debug("-- generateUnderwaterTerrain: {}ms", timerGenerateUnderwaterTerrain);
+			if (prevSceneCtx != null) {
+				var overrides = ctx.mainTileOverridesGenerator;
+				log.debug(
+					"-- reused tile overrides: {}/{} ({}%)",
+					overrides.reusedTileCount,
+					overrides.tileCount,
+					String.format("%.1f", overrides.tileCount == 0 ? 0 : 100f * overrides.reusedTileCount / overrides.tileCount)
+				);
+			}
 		}
 	}
 
@@ -486,9 +495,16 @@ public class ProceduralGenerator {
 		private final int[] worldPos = new int[3];
 		private final int[] ids = new int[2];
 
+		private int tileCount;
+		private int reusedTileCount;
+
 		private void generate(SceneContext sceneContext, SceneContext preSceneCtx) {
+			tileCount = reusedTileCount = 0;
+
 			final boolean canReuseScene =
 				preSceneCtx != null &&
+				preSceneCtx != sceneContext &&
+				preSceneCtx.tileOverrideIndices != null &&
 				sceneContext.scene.isInstance() == preSceneCtx.scene.isInstance() &&
 				sceneContext.currentArea == preSceneCtx.currentArea;
 			final Tile[][][] prevTiles = canReuseScene ? preSceneCtx.scene.getExtendedTiles() : null;
@@ -506,18 +522,19 @@ public class ProceduralGenerator {
 				final Tile[][] prevZTiles = canReuseScene ? prevTiles[z] : null;
 				final Tile[][] zTiles = tiles[z];
 				for (int x = 0; x < sceneContext.sizeX; ++x) {
-					final Tile[] prevXTiles = canReuseScene ? prevZTiles[z] : null;
+					final int oX = x + dX;
+					final Tile[] prevXTiles =
+						canReuseScene && oX >= SCENE_EDGE_PADDING && oX < sceneContext.sizeX - SCENE_EDGE_PADDING ?
+							prevZTiles[oX] : null;
 					final Tile[] xTiles = zTiles[x];
 					for (int y = 0; y < sceneContext.sizeZ; ++y) {
 						final Tile tile = xTiles[y];
 						if (tile == null)
 							continue;
 
-						final int oX = x + dX;
 						final int oY = y + dY;
 						final boolean canReuseTile =
-							canReuseScene &&
-							oX >= SCENE_EDGE_PADDING && oX < sceneContext.sizeX - SCENE_EDGE_PADDING &&
+							prevXTiles != null &&
 							oY >= SCENE_EDGE_PADDING && oY < sceneContext.sizeZ - SCENE_EDGE_PADDING &&
 							prevXTiles[oY] != null;
 
@@ -548,8 +565,10 @@ public class ProceduralGenerator {
 			int prevTileExX,
 			int prevTileExY
 		) {
+			tileCount++;
 			if (prevSceneContext != null && prevSceneContext.getTileOverrides(tileZ, prevTileExX, prevTileExY, overrides)) {
 				sceneContext.setTileOverride(tileZ, tileExX, tileExY, overrides);
+				reusedTileCount++;
 				return;
 			}
 
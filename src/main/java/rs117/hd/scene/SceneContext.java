@@ -51,6 +51,7 @@ public class SceneContext {
 	public final int[] sceneBase;
 	public final AABB sceneBounds;
 	public final ArrayList<Environment> environments = new ArrayList<>();
+	public final Int2ObjectHashMap<Environment[]> environmentsByRegion = new Int2ObjectHashMap<>();
 	public final ArrayList<Light> lights = new ArrayList<>();
 	public final HashSet<Projectile> knownProjectiles = new HashSet<>();
 	public final ArrayList<TileObject> lightSpawnsToHandleOnClientThread = new ArrayList<>();
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2025, Hooder <ahooder@protonmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package rs117.hd.scene;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+import rs117.hd.utils.ResourcePath;
+
+/**
+ * Disk cache of texture layers which have already been decoded, scaled, flipped and mipmapped for a specific texture
+ * resolution. Entries are keyed by the texture name, target size and a hash of the source image file, and are stored
+ * as raw pixels in the same layout that {@link TextureManager} uploads, so a cache hit can be memory-mapped and handed
+ * straight to OpenGL without decoding the source image.
+ */
+@Slf4j
+public class TextureCache {
+	private static final int MAGIC = 0x54373131; // "117T" when written in little-endian byte order
+	private static final int VERSION = 2;
+	private static final int HEADER_INTS = 5;
+	private static final String EXTENSION = "bin";
+
+	private final ResourcePath directory;
+
+	public TextureCache(ResourcePath directory) {
+		this.directory = directory;
+	}
+
+	public static long hash(byte[] sourceBytes) {
+		var crc = new CRC32();
+		crc.update(sourceBytes);
+		return (long) sourceBytes.length << 32 | crc.getValue();
+	}
+
+	/**
+	 * Memory-map a cached texture, returning each stored mip level as a separate buffer.
+	 *
+	 * @return the mip levels, starting with the full-size image, or null if there's no valid cache entry
+	 */
+	@Nullable
+	public IntBuffer[] load(String textureName, long sourceHash, int[] size) {
+		Path file = getFile(textureName, sourceHash, size);
+		if (!Files.exists(file))
+			return null;
+
+		try (var raf = new RandomAccessFile(file.toFile(), "r"); var channel = raf.getChannel()) {
+			var mapped = channel
+				.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+				.order(ByteOrder.nativeOrder());
+			var header = mapped.asIntBuffer();
+			if (header.remaining() < HEADER_INTS ||
+				header.get(0) != MAGIC ||
+				header.get(1) != VERSION ||
+				header.get(2) != size[0] ||
+				header.get(3) != size[1]
+			) {
+				log.debug("Discarding invalid texture cache entry: {}", file);
+				delete(file);
+				return null;
+			}
+
+			int levelCount = header.get(4);
+			var levels = new IntBuffer[levelCount];
+			int offset = HEADER_INTS;
+			for (int i = 0; i < levelCount; i++) {
+				int numPixels = levelSize(size[0], i) * levelSize(size[1], i);
+				if (offset + numPixels > header.limit()) {
+					log.debug("Discarding truncated texture cache entry: {}", file);
+					delete(file);
+					return null;
+				}
+				levels[i] = header.duplicate().position(offset).limit(offset + numPixels).slice();
+				offset += numPixels;
+			}
+			return levels;
+		} catch (IOException ex) {
+			log.debug("Failed to read texture cache entry: {}", file, ex);
+			return null;
+		}
+	}
+
+	/**
+	 * Write a texture and its mip levels to the cache, replacing any stale entries for the same texture and size.
+	 */
+	public void store(String textureName, long sourceHash, int[] size, IntBuffer... levels) {
+		int totalPixels = 0;
+		for (var level : levels)
+			totalPixels += level.remaining();
+
+		var buffer = ByteBuffer
+			.allocateDirect((HEADER_INTS + totalPixels) * Integer.BYTES)
+			.order(ByteOrder.nativeOrder());
+		var ints = buffer.asIntBuffer();
+		ints.put(MAGIC).put(VERSION).put(size[0]).put(size[1]).put(levels.length);
+		for (var level : levels)
+			ints.put(level.duplicate());
+
+		try {
+			directory.mkdirs();
+			deleteMatching(Pattern.quote(textureName) + "\\." + size[0] + "x" + size[1] + "\\.[0-9a-f]{16}\\." + EXTENSION);
+
+			// Write to a temporary file first, so a partially written entry is never picked up
+			Path file = getFile(textureName, sourceHash, size);
+			Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+			try (var raf = new RandomAccessFile(tempFile.toFile(), "rw"); var channel = raf.getChannel()) {
+				raf.setLength(0);
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+			}
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException ex) {
+			log.debug("Failed to write texture cache entry for '{}'", textureName, ex);
+		}
+	}
+
+	/**
+	 * Remove all cached entries for the specified texture, regardless of size or source hash.
+	 */
+	public void invalidate(String textureName) {
+		deleteMatching(Pattern.quote(textureName) + "\\.\\d+x\\d+\\.[0-9a-f]{16}\\." + EXTENSION);
+	}
+
+	public void clear() {
+		deleteMatching(".*\\." + EXTENSION);
+	}
+
+	private Path getFile(String textureName, long sourceHash, int[] size) {
+		return directory
+			.resolve(String.format("%s.%dx%d.%016x.%s", textureName, size[0], size[1], sourceHash, EXTENSION))
+			.toPath();
+	}
+
+	private void deleteMatching(String filenameRegex) {
+		Path dir = directory.toPath();
+		if (!Files.isDirectory(dir))
+			return;
+
+		var pattern = Pattern.compile(filenameRegex);
+		try (var stream = Files.newDirectoryStream(dir, p -> pattern.matcher(p.getFileName().toString()).matches())) {
+			for (var file : stream)
+				delete(file);
+		} catch (IOException ex) {
+			log.debug("Failed to list texture cache directory: {}", dir, ex);
+		}
+	}
+
+	private static void delete(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException ex) {
+			// Deletion may fail on Windows while the file is still memory-mapped, in which case it'll be replaced later
+			log.debug("Failed to delete texture cache entry: {}", file, ex);
+		}
+	}
+
+	public static int levelSize(int size, int level) {
+		return Math.max(1, size >> level);
+	}
+}
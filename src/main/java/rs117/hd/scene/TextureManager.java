@@ -28,6 +28,8 @@ import java.awt.geom.AffineTransform;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.IntBuffer;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -40,9 +42,13 @@ import net.runelite.api.*;
 import net.runelite.client.callback.ClientThread;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.*;
+import rs117.hd.HdPlugin;
 import rs117.hd.HdPluginConfig;
+import rs117.hd.utils.MipmapGenerator;
 import rs117.hd.utils.Props;
 import rs117.hd.utils.ResourcePath;
+import rs117.hd.utils.jobs.GenericJob;
+import rs117.hd.utils.jobs.JobSystem;
 
 import static org.lwjgl.opengl.GL33C.*;
 import static rs117.hd.utils.MathUtils.*;
@@ -54,6 +60,8 @@ public class TextureManager {
 	private static final String[] SUPPORTED_IMAGE_EXTENSIONS = { "png", "jpg" };
 	private static final ResourcePath TEXTURE_PATH = Props
 		.getFolder("rlhd.texture-path", () -> path(TextureManager.class, "textures"));
+	private static final ResourcePath TEXTURE_CACHE_PATH = Props
+		.getFolder("rlhd.texture-cache-path", () -> HdPlugin.PLUGIN_DIR.resolve("texture-cache"));
 
 	@Inject
 	private Client client;
@@ -70,16 +78,24 @@ public class TextureManager {
 	@Inject
 	private MaterialManager materialManager;
 
+	@Inject
+	private JobSystem jobSystem;
+
 	// Temporary variables for texture loading and generating material uniforms
 	private IntBuffer pixelBuffer;
 	private BufferedImage scaledImage;
 	private BufferedImage vanillaImage;
 
+	@Nullable
+	private TextureCache textureCache;
+
 	private ScheduledFuture<?> debounce;
 
 	public void startUp() {
 		assert vanillaTexturesAvailable();
 		vanillaImage = new BufferedImage(128, 128, BufferedImage.TYPE_INT_ARGB);
+		if (!Props.getBoolean("rlhd.disable-texture-cache"))
+			textureCache = new TextureCache(TEXTURE_CACHE_PATH);
 
 		TEXTURE_PATH.watch((path, first) -> {
 			if (first) return;
@@ -94,6 +110,8 @@ public class TextureManager {
 						break;
 					}
 				}
+				if (textureCache != null)
+					textureCache.invalidate(textureName);
 			}
 
 			// Debounce texture loading in case the same file change is triggered multiple times
@@ -106,6 +124,7 @@ public class TextureManager {
 		pixelBuffer = null;
 		scaledImage = null;
 		vanillaImage = null;
+		textureCache = null;
 	}
 
 	public boolean vanillaTexturesAvailable() {
@@ -188,13 +207,86 @@ public class TextureManager {
 		return null;
 	}
 
-	public void uploadTexture(int target, int textureLayer, int[] textureSize, BufferedImage image) {
+	/**
+	 * A texture layer which has been decoded and scaled, or loaded from the texture cache,
+	 * along with its mip chain, which may still be in the process of being generated on a worker thread.
+	 */
+	public static class TextureUpload {
+		private final int textureLayer;
+		@Nullable
+		private final String filename;
+		private final long sourceHash;
+		@Nullable
+		private IntBuffer[] cachedLevels;
+		@Nullable
+		private int[][] levels;
+		@Nullable
+		private GenericJob mipmapJob;
+
+		private TextureUpload(int textureLayer, @Nullable String filename, long sourceHash) {
+			this.textureLayer = textureLayer;
+			this.filename = filename;
+			this.sourceHash = sourceHash;
+		}
+	}
+
+	/**
+	 * Load the texture for the specified layer, preferring a pre-scaled copy from the texture cache, which skips image
+	 * decoding entirely. On a cache miss, the image is decoded and scaled, and its mip chain is generated on a worker.
+	 *
+	 * @return the pending upload, or null if the texture couldn't be loaded
+	 */
+	@Nullable
+	public TextureUpload prepareTexture(@Nullable String filename, int fallbackVanillaIndex, int textureLayer, int[] textureSize) {
 		assert client.isClientThread() : "Not thread safe";
 
-		// Allocate resources for storing temporary image data
-		int numPixels = product(textureSize);
-		if (pixelBuffer == null || pixelBuffer.capacity() < numPixels)
-			pixelBuffer = BufferUtils.createIntBuffer(numPixels);
+		long sourceHash = 0;
+		if (textureCache != null && filename != null) {
+			sourceHash = hashTextureSource(filename);
+			if (sourceHash != 0) {
+				var cachedLevels = textureCache.load(filename, sourceHash, textureSize);
+				if (cachedLevels != null && cachedLevels.length == MipmapGenerator.getLevelCount(textureSize[0], textureSize[1])) {
+					var upload = new TextureUpload(textureLayer, filename, sourceHash);
+					upload.cachedLevels = cachedLevels;
+					return upload;
+				}
+			}
+		}
+
+		var image = loadTexture(filename, fallbackVanillaIndex);
+		if (image == null)
+			return null;
+
+		// Vanilla textures are already in memory, so there's nothing to gain from caching them
+		if (image == vanillaImage)
+			sourceHash = 0;
+
+		var upload = new TextureUpload(textureLayer, filename, sourceHash);
+		int[] pixels = scaleTexture(textureSize, image);
+		if (jobSystem.isActive()) {
+			upload.mipmapJob = GenericJob
+				.build("MipmapGenerator", t -> upload.levels = MipmapGenerator.generate(pixels, textureSize[0], textureSize[1]))
+				.queue();
+		} else {
+			upload.levels = MipmapGenerator.generate(pixels, textureSize[0], textureSize[1]);
+		}
+		return upload;
+	}
+
+	private long hashTextureSource(String filename) {
+		for (String ext : SUPPORTED_IMAGE_EXTENSIONS) {
+			ResourcePath path = TEXTURE_PATH.resolve(filename + "." + ext);
+			try (InputStream is = path.toInputStream()) {
+				return TextureCache.hash(is.readAllBytes());
+			} catch (IOException ex) {
+				log.trace("Unable to read texture: {}", path, ex);
+			}
+		}
+
+		return 0;
+	}
+
+	private int[] scaleTexture(int[] textureSize, BufferedImage image) {
 		if (scaledImage == null || scaledImage.getWidth() != textureSize[0] || scaledImage.getHeight() != textureSize[1])
 			scaledImage = new BufferedImage(textureSize[0], textureSize[1], BufferedImage.TYPE_INT_ARGB);
 
@@ -209,15 +301,54 @@ public class TextureManager {
 		AffineTransformOp scaleOp = new AffineTransformOp(t, AffineTransformOp.TYPE_BICUBIC);
 		scaleOp.filter(image, scaledImage);
 
-		int[] pixels = ((DataBufferInt) scaledImage.getRaster().getDataBuffer()).getData();
-		pixelBuffer.clear().put(pixels).flip();
+		// Copy the pixels, since the scaled image is reused for the next texture while mipmaps are being generated
+		return ((DataBufferInt) scaledImage.getRaster().getDataBuffer()).getData().clone();
+	}
+
+	/**
+	 * Upload every mip level of the texture to its layer, waiting for mipmap generation to finish if necessary.
+	 * Newly generated textures are also written to the texture cache.
+	 */
+	public void uploadTexture(int target, int[] textureSize, TextureUpload upload) {
+		assert client.isClientThread() : "Not thread safe";
+
+		if (upload.mipmapJob != null) {
+			upload.mipmapJob.waitForCompletion(true);
+			upload.mipmapJob = null;
+		}
+
+		IntBuffer[] levels = upload.cachedLevels;
+		if (levels == null) {
+			if (upload.levels == null)
+				throw new IllegalStateException("Failed to generate mipmaps for texture layer " + upload.textureLayer);
+
+			// Allocate resources for storing temporary image data
+			int numPixels = product(textureSize);
+			if (pixelBuffer == null || pixelBuffer.capacity() < numPixels)
+				pixelBuffer = BufferUtils.createIntBuffer(numPixels);
+
+			levels = new IntBuffer[upload.levels.length];
+			for (int i = 0; i < levels.length; i++)
+				levels[i] = IntBuffer.wrap(upload.levels[i]);
+		}
+
+		for (int level = 0; level < levels.length; level++) {
+			IntBuffer pixels = levels[level];
+			if (!pixels.isDirect()) {
+				pixelBuffer.clear().put(pixels.duplicate()).flip();
+				pixels = pixelBuffer;
+			}
+
+			// Go from TYPE_4BYTE_ABGR in the BufferedImage to RGBA
+			glTexSubImage3D(
+				target, level, 0, 0, upload.textureLayer,
+				TextureCache.levelSize(textureSize[0], level), TextureCache.levelSize(textureSize[1], level), 1,
+				GL_BGRA, GL_UNSIGNED_INT_8_8_8_8_REV, pixels
+			);
+		}
 
-		// Go from TYPE_4BYTE_ABGR in the BufferedImage to RGBA
-		glTexSubImage3D(
-			target, 0, 0, 0,
-			textureLayer, textureSize[0], textureSize[1], 1,
-			GL_BGRA, GL_UNSIGNED_INT_8_8_8_8_REV, pixelBuffer
-		);
+		if (textureCache != null && upload.cachedLevels == null && upload.filename != null && upload.sourceHash != 0)
+			textureCache.store(upload.filename, upload.sourceHash, textureSize, levels);
 	}
 
 	public void setAnisotropicFilteringLevel() {
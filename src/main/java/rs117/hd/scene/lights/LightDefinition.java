@@ -6,6 +6,7 @@ import javax.annotation.Nullable;
 import rs117.hd.scene.GamevalManager;
 import rs117.hd.scene.areas.AABB;
 import rs117.hd.utils.ColorUtils;
+import rs117.hd.utils.collections.IntHashSet;
 
 public class LightDefinition {
 	public String description;
@@ -48,6 +49,9 @@ public class LightDefinition {
 	@JsonAdapter(GamevalManager.AnimationAdapter.class)
 	public HashSet<Integer> animationIds = new HashSet<>();
 
+	// Primitive copy of animationIds, since they're checked every frame, and boxing the IDs would allocate
+	public transient IntHashSet animationIdSet = new IntHashSet();
+
 	public void normalize() {
 		if (description == null)
 			description = "N/A";
@@ -62,5 +66,9 @@ public class LightDefinition {
 			color = new float[3];
 		if (type == null)
 			type = LightType.STATIC;
+		animationIdSet.clear();
+		if (animationIds != null)
+			for (int id : animationIds)
+				animationIdSet.add(id);
 	}
 }
@@ -0,0 +1,380 @@
+package rs117.hd.scene.lights;
+
+import java.util.Arrays;
+import lombok.Getter;
+
+import static rs117.hd.utils.MathUtils.*;
+
+/**
+ * Assigns lights to screen tiles on the CPU, as an alternative to the tiled lighting shader pass.
+ * <p>
+ * Each light's bounding sphere is first projected to a conservative range of tiles, and only tiles within that range
+ * are tested using the same cone intersection test and scoring as {@code tiled_lighting_frag.glsl}. The resulting
+ * per-tile light lists are packed into the same 16-bit format the shader writes to the tiled lighting texture array,
+ * so scene shaders are unaffected by which of the two produced them.
+ * <p>
+ * Lights may be added before the viewport and camera are known. Tile rows are then split into bands, which can be
+ * binned concurrently once {@link #prepare(int)} has been called.
+ */
+public class TiledLightBinner {
+	private static final float PROXIMITY_WEIGHT = .75f;
+	// Accounts for tile corners being snapped to the pixel grid, and for tile cones being wider than the tiles
+	private static final int TILE_MARGIN = 1;
+
+	private final int tileSize;
+	private final int maxLights;
+
+	// World space position and radius per light
+	private final float[] lights;
+	// View space position and radius squared per light
+	private final float[] lightData;
+	// Conservative tile range per light: minX, minY, maxX, maxY
+	private final int[] lightTiles;
+	private int lightCount;
+
+	private final float[] viewMatrix = new float[16];
+	private final float[] viewProjMatrix = new float[16];
+	private final float[] invViewProjMatrix = new float[16];
+	private final float[] cameraPos = new float[3];
+
+	private int sceneWidth;
+	private int sceneHeight;
+	@Getter
+	private int tilesX;
+	@Getter
+	private int tilesY;
+	@Getter
+	private int layerCount;
+	private int maxTileLights;
+
+	@Getter
+	private short[] tileData = new short[0];
+	private Band[] bands = new Band[0];
+	private int bandCount;
+
+	public TiledLightBinner(int tileSize, int maxLights) {
+		this.tileSize = tileSize;
+		this.maxLights = maxLights;
+		lights = new float[maxLights * 4];
+		lightData = new float[maxLights * 4];
+		lightTiles = new int[maxLights * 4];
+	}
+
+	public void setViewport(int sceneWidth, int sceneHeight, int tilesX, int tilesY, int layerCount) {
+		this.sceneWidth = sceneWidth;
+		this.sceneHeight = sceneHeight;
+		this.tilesX = tilesX;
+		this.tilesY = tilesY;
+		this.layerCount = layerCount;
+		// Each layer holds four 16-bit slots, each of which may contain up to two light indices
+		maxTileLights = layerCount * 4 * 2;
+
+		int size = tilesX * tilesY * layerCount * 4;
+		if (tileData.length != size)
+			tileData = new short[size];
+	}
+
+	public void setCamera(float[] viewMatrix, float[] viewProjMatrix, float[] invViewProjMatrix, float[] cameraPos) {
+		copyTo(this.viewMatrix, viewMatrix);
+		copyTo(this.viewProjMatrix, viewProjMatrix);
+		copyTo(this.invViewProjMatrix, invViewProjMatrix);
+		copyTo(this.cameraPos, cameraPos);
+	}
+
+	public void clearLights() {
+		lightCount = 0;
+	}
+
+	/**
+	 * Add a light in world space. Lights must be added in the same order as they are uploaded to the lights UBO.
+	 */
+	public void addLight(float x, float y, float z, float radius) {
+		if (lightCount >= maxLights)
+			return;
+
+		int i = lightCount++ * 4;
+		lights[i] = x;
+		lights[i + 1] = y;
+		lights[i + 2] = z;
+		lights[i + 3] = radius;
+	}
+
+	public int getLightCount() {
+		return lightCount;
+	}
+
+	/**
+	 * Transform lights into view space and find the tiles they may affect, then split the tile rows into the specified
+	 * number of bands, each of which must then be binned with {@link #binBand(int)}.
+	 */
+	public void prepare(int bandCount) {
+		final float[] m = viewMatrix;
+		for (int i = 0; i < lightCount * 4; i += 4) {
+			float x = lights[i];
+			float y = lights[i + 1];
+			float z = lights[i + 2];
+			float radius = lights[i + 3];
+			lightData[i] = m[0] * x + m[4] * y + m[8] * z + m[12];
+			lightData[i + 1] = m[1] * x + m[5] * y + m[9] * z + m[13];
+			lightData[i + 2] = m[2] * x + m[6] * y + m[10] * z + m[14];
+			lightData[i + 3] = radius * radius;
+			calculateTileRange(i, x, y, z, radius);
+		}
+
+		this.bandCount = max(1, min(bandCount, tilesY));
+		if (bands.length < this.bandCount)
+			bands = Arrays.copyOf(bands, this.bandCount);
+		for (int i = 0; i < this.bandCount; i++) {
+			if (bands[i] == null || bands[i].tilesX != tilesX || bands[i].capacity != maxTileLights)
+				bands[i] = new Band(tilesX, maxTileLights);
+		}
+	}
+
+	public int getBandCount() {
+		return bandCount;
+	}
+
+	/**
+	 * Bin all lights for the tile rows belonging to the specified band. Distinct bands may be binned concurrently.
+	 */
+	public void binBand(int bandIndex) {
+		final Band band = bands[bandIndex];
+		int rowStart = tilesY * bandIndex / bandCount;
+		int rowEnd = tilesY * (bandIndex + 1) / bandCount;
+		for (int y = rowStart; y < rowEnd; y++)
+			binRow(band, y);
+	}
+
+	/**
+	 * Bin all lights on the calling thread.
+	 */
+	public void bin() {
+		prepare(1);
+		binBand(0);
+	}
+
+	private void calculateTileRange(int i, float x, float y, float z, float radius) {
+		// Match the angular padding the shader adds to each light's cone, by using a radius which
+		// results in the same tangent cone at the light's current distance
+		float distSq = lightData[i] * lightData[i] + lightData[i + 1] * lightData[i + 1] + lightData[i + 2] * lightData[i + 2];
+		float r = sqrt(radius * radius + .001f * distSq) + 1;
+
+		final float[] m = viewProjMatrix;
+		boolean orthographic = m[3] == 0 && m[7] == 0 && m[11] == 0;
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+		int cornersBehind = 0;
+		for (int c = 0; c < 8 && !orthographic; c++) {
+			float cx = (c & 1) == 0 ? x - r : x + r;
+			float cy = (c & 2) == 0 ? y - r : y + r;
+			float cz = (c & 4) == 0 ? z - r : z + r;
+			float w = m[3] * cx + m[7] * cy + m[11] * cz + m[15];
+			if (w <= EPSILON) {
+				cornersBehind++;
+				continue;
+			}
+			float ndcX = (m[0] * cx + m[4] * cy + m[8] * cz + m[12]) / w;
+			float ndcY = (m[1] * cx + m[5] * cy + m[9] * cz + m[13]) / w;
+			minX = min(minX, ndcX);
+			minY = min(minY, ndcY);
+			maxX = max(maxX, ndcX);
+			maxY = max(maxY, ndcY);
+		}
+
+		if (cornersBehind == 8) {
+			// Entirely behind the camera, so the light's cone can't intersect any tile
+			lightTiles[i] = 0;
+			lightTiles[i + 1] = 0;
+			lightTiles[i + 2] = -1;
+			lightTiles[i + 3] = -1;
+			return;
+		}
+
+		if (orthographic || cornersBehind > 0) {
+			// The projection of a box crossing the camera plane is unbounded
+			lightTiles[i] = 0;
+			lightTiles[i + 1] = 0;
+			lightTiles[i + 2] = tilesX - 1;
+			lightTiles[i + 3] = tilesY - 1;
+			return;
+		}
+
+		// NDC to tile coordinates, leaving an empty range if the light is entirely off-screen
+		lightTiles[i] = max(0, floor((minX * .5f + .5f) * tilesX) - TILE_MARGIN);
+		lightTiles[i + 1] = max(0, floor((minY * .5f + .5f) * tilesY) - TILE_MARGIN);
+		lightTiles[i + 2] = min(tilesX - 1, floor((maxX * .5f + .5f) * tilesX) + TILE_MARGIN);
+		lightTiles[i + 3] = min(tilesY - 1, floor((maxY * .5f + .5f) * tilesY) + TILE_MARGIN);
+	}
+
+	private void binRow(Band band, int y) {
+		for (int x = 0; x < tilesX; x++)
+			calculateTileCone(band, x, y);
+		Arrays.fill(band.counts, 0);
+
+		for (int lightIdx = 0; lightIdx < lightCount; lightIdx++) {
+			int t = lightIdx * 4;
+			if (y < lightTiles[t + 1] || y > lightTiles[t + 3])
+				continue;
+
+			float lx = lightData[t];
+			float ly = lightData[t + 1];
+			float lz = lightData[t + 2];
+			float lightRadiusSqr = lightData[t + 3];
+
+			float lightDistSqr = lx * lx + ly * ly + lz * lz;
+			float invDist = lightDistSqr > 0 ? 1 / sqrt(lightDistSqr) : 0;
+			float cx = lx * invDist;
+			float cy = ly * invDist;
+			float cz = lz * invDist;
+
+			float lightSinSqr = clamp(lightRadiusSqr / max(lightDistSqr, 1e-6f), 0, 1);
+			float lightCos = sqrt(.999f - lightSinSqr);
+			float lightSin = sqrt(lightSinSqr);
+			float distanceScore = clamp(1 - sqrt(lightDistSqr) / (sqrt(lightRadiusSqr) + 1e-6f), 0, 1);
+			boolean containsCamera = lightRadiusSqr > lightDistSqr;
+
+			for (int x = lightTiles[t], maxX = lightTiles[t + 2]; x <= maxX; x++) {
+				int k = x * 3;
+				float lightTileCos = cx * band.tileCenters[k] + cy * band.tileCenters[k + 1] + cz * band.tileCenters[k + 2];
+				float sumCos = containsCamera ? -1 : band.tileCos[x] * lightCos - band.tileSin[x] * lightSin;
+				if (lightTileCos < sumCos)
+					continue;
+
+				float score = lightTileCos * PROXIMITY_WEIGHT + distanceScore * (1 - PROXIMITY_WEIGHT);
+				band.insert(x, lightIdx, score);
+			}
+		}
+
+		for (int x = 0; x < tilesX; x++)
+			packTile(band, x, y);
+	}
+
+	/**
+	 * Calculate the bounding cone of a tile in view space, in the same way as the tiled lighting shader.
+	 */
+	private void calculateTileCone(Band band, int x, int y) {
+		float originX = floor(((x + .5f) / tilesX * sceneWidth) / tileSize) * tileSize;
+		float originY = floor(((y + .5f) / tilesY * sceneHeight) / tileSize) * tileSize;
+
+		final float[] r = band.rays;
+		for (int c = 0; c < 4; c++) {
+			// Top-left, top-right, bottom-left, bottom-right
+			float px = c == 1 || c == 3 ? originX + tileSize : originX;
+			float py = c < 2 ? originY + tileSize : originY;
+			tileRay(r, c * 3, px / sceneWidth * 2 - 1, py / sceneHeight * 2 - 1);
+		}
+
+		float sx = r[0] + r[3] + r[6] + r[9];
+		float sy = r[1] + r[4] + r[7] + r[10];
+		float sz = r[2] + r[5] + r[8] + r[11];
+		float invLength = 1 / sqrt(sx * sx + sy * sy + sz * sz);
+		sx *= invLength;
+		sy *= invLength;
+		sz *= invLength;
+
+		float tileCos = 1;
+		for (int c = 0; c < 12; c += 3)
+			tileCos = min(tileCos, sx * r[c] + sy * r[c + 1] + sz * r[c + 2]);
+
+		int k = x * 3;
+		band.tileCenters[k] = sx;
+		band.tileCenters[k + 1] = sy;
+		band.tileCenters[k + 2] = sz;
+		band.tileCos[x] = tileCos;
+		band.tileSin[x] = sqrt(max(0, 1 - tileCos * tileCos));
+	}
+
+	private void tileRay(float[] out, int offset, float ndcX, float ndcY) {
+		final float eps = 1e-10f;
+		final float[] m = invViewProjMatrix;
+		float w = m[3] * ndcX + m[7] * ndcY + m[11] * eps + m[15];
+		float px = (m[0] * ndcX + m[4] * ndcY + m[8] * eps + m[12]) / w - cameraPos[0];
+		float py = (m[1] * ndcX + m[5] * ndcY + m[9] * eps + m[13]) / w - cameraPos[1];
+		float pz = (m[2] * ndcX + m[6] * ndcY + m[10] * eps + m[14]) / w - cameraPos[2];
+
+		final float[] v = viewMatrix;
+		float rx = v[0] * px + v[4] * py + v[8] * pz + v[12];
+		float ry = v[1] * px + v[5] * py + v[9] * pz + v[13];
+		float rz = v[2] * px + v[6] * py + v[10] * pz + v[14];
+		float invLength = 1 / sqrt(rx * rx + ry * ry + rz * rz);
+		out[offset] = rx * invLength;
+		out[offset + 1] = ry * invLength;
+		out[offset + 2] = rz * invLength;
+	}
+
+	private void packTile(Band band, int x, int y) {
+		int base = x * band.capacity;
+		int count = band.counts[x];
+		int binIdx = 0;
+		for (int layer = 0; layer < layerCount; layer++) {
+			int offset = ((layer * tilesY + y) * tilesX + x) * 4;
+			for (int c = 0; c < 4; c++) {
+				int packed = 0;
+				if (binIdx < count) {
+					int idx0 = band.lights[base + binIdx++] + 1;
+					packed = idx0 <= 0x7FFF ? idx0 : 0;
+					if (binIdx < count) {
+						// Try to fit two light indices into a single slot, 7 bits for one and 8 bits for the other
+						int idx1 = band.lights[base + binIdx] + 1;
+						if (idx0 <= 127 && idx1 <= 255) {
+							packed = 0x8000 | idx1 << 7 | idx0;
+							binIdx++;
+						} else if (idx1 <= 127 && idx0 <= 255) {
+							packed = 0x8000 | idx0 << 7 | idx1;
+							binIdx++;
+						}
+					}
+				}
+				tileData[offset + c] = (short) packed;
+			}
+		}
+	}
+
+	/**
+	 * Scratch space for binning a single row of tiles at a time.
+	 */
+	private static class Band {
+		final int tilesX;
+		final int capacity;
+		final float[] rays = new float[12];
+		final float[] tileCenters;
+		final float[] tileCos;
+		final float[] tileSin;
+		final int[] counts;
+		final int[] lights;
+		final float[] scores;
+
+		Band(int tilesX, int capacity) {
+			this.tilesX = tilesX;
+			this.capacity = capacity;
+			tileCenters = new float[tilesX * 3];
+			tileCos = new float[tilesX];
+			tileSin = new float[tilesX];
+			counts = new int[tilesX];
+			lights = new int[tilesX * capacity];
+			scores = new float[tilesX * capacity];
+		}
+
+		/**
+		 * Insert a light into the tile's list, which is kept sorted by descending score and truncated to its capacity.
+		 */
+		void insert(int x, int lightIdx, float score) {
+			int base = x * capacity;
+			int count = counts[x];
+			int idx = 0;
+			while (idx < count && score <= scores[base + idx])
+				idx++;
+			if (idx >= capacity)
+				return;
+
+			for (int j = min(count, capacity - 1); j > idx; j--) {
+				lights[base + j] = lights[base + j - 1];
+				scores[base + j] = scores[base + j - 1];
+			}
+			lights[base + idx] = lightIdx;
+			scores[base + idx] = score;
+			if (count < capacity)
+				counts[x] = count + 1;
+		}
+	}
+}
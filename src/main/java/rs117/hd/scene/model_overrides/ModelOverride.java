@@ -118,6 +118,8 @@ public class ModelOverride
 	public transient boolean isDummy;
 	public transient boolean isGenerated;
 	public transient Map<AABB, ModelOverride> areaOverrides;
+	public transient AABB[] areaOverrideAabbs;
+	public transient ModelOverride[] areaOverrideValues;
 	public transient AhslPredicate ahslCondition;
 	public transient boolean mightHaveTransparency;
 	public transient boolean mightBeDoubleSided;
@@ -346,6 +348,8 @@ public class ModelOverride
 			isDummy,
 			isGenerated,
 			areaOverrides,
+			areaOverrideAabbs,
+			areaOverrideValues,
 			ahslCondition,
 			mightHaveTransparency,
 			mightBeDoubleSided,
@@ -114,10 +114,13 @@ public class ColorUtils {
 	}
 
 	public static float[] linearToSrgb(float... c) {
-		float[] result = new float[c.length];
+		return linearToSrgb(new float[c.length], c);
+	}
+
+	public static float[] linearToSrgb(float[] out, float[] c) {
 		for (int i = 0; i < c.length; i++)
-			result[i] = linearToSrgb(c[i]);
-		return result;
+			out[i] = linearToSrgb(c[i]);
+		return out;
 	}
 
 	public static float[] srgbToLinear(float... c) {
@@ -135,6 +138,10 @@ public class ColorUtils {
 	 * @link <a href="https://web.archive.org/web/20230619214343/https://en.wikipedia.org/wiki/HSL_and_HSV#Color_conversion_formulae">Wikipedia: HSL and HSV</a>
 	 */
 	public static float[] srgbToHsl(float[] srgb) {
+		return srgbToHsl(new float[3], srgb);
+	}
+
+	public static float[] srgbToHsl(float[] out, float[] srgb) {
 		float V = max(srgb);
 		float X_min = min(srgb);
 		float C = V - X_min;
@@ -154,7 +161,10 @@ public class ColorUtils {
 		float L = (V + X_min) / 2;
 		float divisor = 1 - abs(2 * L - 1);
 		float S_L = abs(divisor) < EPS ? 0 : C / divisor;
-		return new float[] { H / 6, S_L, L };
+		out[0] = H / 6;
+		out[1] = S_L;
+		out[2] = L;
+		return out;
 	}
 
 	/**
@@ -165,6 +175,10 @@ public class ColorUtils {
 	 * @link <a href="https://web.archive.org/web/20230619214343/https://en.wikipedia.org/wiki/HSL_and_HSV#Color_conversion_formulae">Wikipedia: HSL and HSV</a>
 	 */
 	public static float[] hslToSrgb(float[] hsl) {
+		return hslToSrgb(new float[3], hsl);
+	}
+
+	public static float[] hslToSrgb(float[] out, float[] hsl) {
 		float C = hsl[1] * (1 - abs(2 * hsl[2] - 1));
 		float H_prime = fract(hsl[0]) * 6;
 		float m = hsl[2] - C / 2;
@@ -172,7 +186,10 @@ public class ColorUtils {
 		float r = clamp(abs(H_prime - 3) - 1, 0, 1) * C + m;
 		float g = clamp(2 - abs(H_prime - 2), 0, 1) * C + m;
 		float b = clamp(2 - abs(H_prime - 4), 0, 1) * C + m;
-		return new float[] { r, g, b };
+		out[0] = r;
+		out[1] = g;
+		out[2] = b;
+		return out;
 	}
 
 	/**
@@ -182,8 +199,16 @@ public class ColorUtils {
 	 * @return hsv float[3]
 	 */
 	public static float[] hslToHsv(float[] hsl) {
+		return hslToHsv(new float[3], hsl);
+	}
+
+	public static float[] hslToHsv(float[] out, float[] hsl) {
 		float v = hsl[2] + hsl[1] * min(hsl[2], 1 - hsl[2]);
-		return vec(hsl[0], abs(v) < EPS ? 0 : 2 * (1 - hsl[2] / v), v);
+		float s = abs(v) < EPS ? 0 : 2 * (1 - hsl[2] / v);
+		out[0] = hsl[0];
+		out[1] = s;
+		out[2] = v;
+		return out;
 	}
 
 	/**
@@ -193,9 +218,17 @@ public class ColorUtils {
 	 * @return hsl float[3]
 	 */
 	public static float[] hsvToHsl(float[] hsv) {
+		return hsvToHsl(new float[3], hsv);
+	}
+
+	public static float[] hsvToHsl(float[] out, float[] hsv) {
 		float l = hsv[2] * (1 - hsv[1] / 2);
 		float divisor = min(l, 1 - l);
-		return vec(hsv[0], abs(divisor) < EPS ? 0 : (hsv[2] - l) / divisor, l);
+		float s = abs(divisor) < EPS ? 0 : (hsv[2] - l) / divisor;
+		out[0] = hsv[0];
+		out[1] = s;
+		out[2] = l;
+		return out;
 	}
 
 	/**
@@ -206,7 +239,11 @@ public class ColorUtils {
 	 * @link <a href="https://web.archive.org/web/20230619214343/https://en.wikipedia.org/wiki/HSL_and_HSV#Color_conversion_formulae">Wikipedia: HSL and HSV</a>
 	 */
 	public static float[] srgbToHsv(float[] srgb) {
-		return hslToHsv(srgbToHsl(srgb));
+		return srgbToHsv(new float[3], srgb);
+	}
+
+	public static float[] srgbToHsv(float[] out, float[] srgb) {
+		return hslToHsv(out, srgbToHsl(out, srgb));
 	}
 
 	/**
@@ -217,7 +254,11 @@ public class ColorUtils {
 	 * @link <a href="https://web.archive.org/web/20230619214343/https://en.wikipedia.org/wiki/HSL_and_HSV#Color_conversion_formulae">Wikipedia: HSL and HSV</a>
 	 */
 	public static float[] hsvToSrgb(float[] hsv) {
-		return hslToSrgb(hsvToHsl(hsv));
+		return hsvToSrgb(new float[3], hsv);
+	}
+
+	public static float[] hsvToSrgb(float[] out, float[] hsv) {
+		return hslToSrgb(out, hsvToHsl(out, hsv));
 	}
 
 	// Convenience functions for converting different formats into linear RGB, sRGB or packed HSL
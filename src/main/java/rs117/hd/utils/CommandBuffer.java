@@ -4,9 +4,11 @@ import java.nio.IntBuffer;
 import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.lwjgl.system.MemoryStack;
+import org.lwjgl.BufferUtils;
+import rs117.hd.opengl.GLDispatch;
 import rs117.hd.opengl.GLFence;
 import rs117.hd.opengl.shader.ShaderProgram;
 import rs117.hd.overlays.FrameTimer;
@@ -15,9 +17,6 @@ import rs117.hd.utils.buffer.GLBuffer;
 import rs117.hd.utils.buffer.GpuIntBuffer;
 
 import static org.lwjgl.opengl.GL33C.*;
-import static org.lwjgl.opengl.GL40.glDrawArraysIndirect;
-import static org.lwjgl.opengl.GL40.glDrawElementsIndirect;
-import static org.lwjgl.opengl.GL43.glMultiDrawArraysIndirect;
 import static rs117.hd.utils.MathUtils.*;
 
 @Slf4j
@@ -58,6 +57,10 @@ public class CommandBuffer {
 	private long[] cmd = new long[(int) KiB];
 	private int writeHead = 0;
 
+	private Optimizer optimizer;
+	private IntBuffer multiDrawOffsets;
+	private IntBuffer multiDrawCounts;
+
 	public CommandBuffer(String name) {
 		this.name = name;
 	}
@@ -279,161 +282,277 @@ public class CommandBuffer {
 
 		if (frameTimer != null)
 			frameTimer.begin(Timer.EXECUTE_COMMAND_BUFFER);
-		try (MemoryStack stack = MemoryStack.stackPush()) {
-			IntBuffer offsets = null, counts = null;
-			int readHead = 0;
-			while (readHead < writeHead) {
-				// Casting from long to int keeps the lower 32 bits
-				long data = cmd[readHead++];
-				int type = (int) data & 0xFF;
-				if (type < GL_DRAW_CALL_TYPE_COUNT)
-					renderState.apply();
-
-				switch (type) {
-					case GL_DEPTH_MASK_TYPE: {
-						int state = (int) (data >> 8) & 1;
-						renderState.depthMask.set(state == 1);
-						break;
-					}
-					case GL_COLOR_MASK_TYPE: {
-						boolean red = ((data >> 8) & 1) == 1;
-						boolean green = ((data >> 9) & 1) == 1;
-						boolean blue = ((data >> 10) & 1) == 1;
-						boolean alpha = ((data >> 11) & 1) == 1;
-						renderState.colorMask.set(red, green, blue, alpha);
-						break;
-					}
-					case GL_BIND_VERTEX_ARRAY_TYPE: {
-						long packed = cmd[readHead++];
-						int eboIdx = (int) (packed >> 32);
-						int vao = (int) packed;
-						int ebo = eboIdx >= 0 ? ((GLBuffer) objects[eboIdx]).id : 0;
-						renderState.vao.setVaoAndEbo(vao, ebo);
-						break;
-					}
-					case GL_BIND_INDIRECT_ARRAY_TYPE: {
-						renderState.ido.set((int) (data >> 8));
-						break;
-					}
-					case GL_BIND_TEXTURE_UNIT_TYPE: {
-						long packed = cmd[readHead++];
-						int texType = (int) (data >> 8);
-						int texUnit = (int) (packed >> 32);
-						int texId = (int) packed;
-
-						glActiveTexture(texUnit);
-						glBindTexture(texType, texId);
-						break;
-					}
-					case GL_USE_PROGRAM: {
-						int objectIdx = (int) (data >> 8);
-						renderState.program.set((ShaderProgram) objects[objectIdx]);
-						break;
-					}
-					case GL_TOGGLE_TYPE: {
-						long packed = cmd[readHead++];
-						int capability = (int) (packed & INT_MASK);
-						if ((packed >> 32) != 0) {
-							renderState.enable.set(capability);
-						} else {
-							renderState.disable.set(capability);
-						}
-						break;
-					}
-					case GL_FENCE_SYNC: {
-						int condition = (int) (data >> 8);
-						GLFence fence = (GLFence) objects[(int) cmd[readHead++]];
-						fence.handle = glFenceSync(condition, 0);
-						break;
+		final GLDispatch gl = renderState.gl;
+		int readHead = 0;
+		while (readHead < writeHead) {
+			// Casting from long to int keeps the lower 32 bits
+			long data = cmd[readHead++];
+			int type = (int) data & 0xFF;
+			if (type < GL_DRAW_CALL_TYPE_COUNT)
+				renderState.apply();
+
+			switch (type) {
+				case GL_DEPTH_MASK_TYPE: {
+					int state = (int) (data >> 8) & 1;
+					renderState.depthMask.set(state == 1);
+					break;
+				}
+				case GL_COLOR_MASK_TYPE: {
+					boolean red = ((data >> 8) & 1) == 1;
+					boolean green = ((data >> 9) & 1) == 1;
+					boolean blue = ((data >> 10) & 1) == 1;
+					boolean alpha = ((data >> 11) & 1) == 1;
+					renderState.colorMask.set(red, green, blue, alpha);
+					break;
+				}
+				case GL_BIND_VERTEX_ARRAY_TYPE: {
+					long packed = cmd[readHead++];
+					int eboIdx = (int) (packed >> 32);
+					int vao = (int) packed;
+					int ebo = eboIdx >= 0 ? ((GLBuffer) objects[eboIdx]).id : 0;
+					renderState.vao.setVaoAndEbo(vao, ebo);
+					break;
+				}
+				case GL_BIND_INDIRECT_ARRAY_TYPE: {
+					renderState.ido.set((int) (data >> 8));
+					break;
+				}
+				case GL_BIND_TEXTURE_UNIT_TYPE: {
+					long packed = cmd[readHead++];
+					int texType = (int) (data >> 8);
+					int texUnit = (int) (packed >> 32);
+					int texId = (int) packed;
+
+					gl.bindTextureUnit(texUnit, texType, texId);
+					break;
+				}
+				case GL_USE_PROGRAM: {
+					int objectIdx = (int) (data >> 8);
+					renderState.program.set((ShaderProgram) objects[objectIdx]);
+					break;
+				}
+				case GL_TOGGLE_TYPE: {
+					long packed = cmd[readHead++];
+					int capability = (int) (packed & INT_MASK);
+					if ((packed >> 32) != 0) {
+						renderState.enable.set(capability);
+					} else {
+						renderState.disable.set(capability);
 					}
-					case GL_DRAW_ARRAYS_TYPE: {
-						long packed = cmd[readHead++];
-						int mode = (int) data >> 8;
-						int offset = (int) (packed >> 32);
-						int count = (int) packed;
+					break;
+				}
+				case GL_FENCE_SYNC: {
+					int condition = (int) (data >> 8);
+					GLFence fence = (GLFence) objects[(int) cmd[readHead++]];
+					fence.handle = gl.fenceSync(condition);
+					break;
+				}
+				case GL_DRAW_ARRAYS_TYPE: {
+					long packed = cmd[readHead++];
+					int mode = (int) data >> 8;
+					int offset = (int) (packed >> 32);
+					int count = (int) packed;
+
+					gl.drawArrays(mode, offset, count);
+					break;
+				}
+				case GL_DRAW_ELEMENTS_TYPE: {
+					int mode = (int) data >> 8;
+					int vertexCount = (int) (data >> 32);
+					long byteOffset = cmd[readHead++];
 
-						glDrawArrays(mode, offset, count);
-						break;
+					gl.drawElements(mode, vertexCount, GL_UNSIGNED_INT, byteOffset);
+					break;
+				}
+				case GL_MULTI_DRAW_ARRAYS_TYPE: {
+					int mode = (int) data >> 8;
+					int drawCount = (int) (data >> 32);
+
+					if (multiDrawOffsets == null || multiDrawOffsets.capacity() < drawCount) {
+						int capacity = max(64, ceilPow2(drawCount));
+						multiDrawOffsets = BufferUtils.createIntBuffer(capacity);
+						multiDrawCounts = BufferUtils.createIntBuffer(capacity);
 					}
-					case GL_DRAW_ELEMENTS_TYPE: {
-						int mode = (int) data >> 8;
-						int vertexCount = (int) (data >> 32);
-						long byteOffset = cmd[readHead++];
 
-						glDrawElements(mode, vertexCount, GL_UNSIGNED_INT, byteOffset);
-						break;
+					for (int i = 0; i < drawCount; i++) {
+						long packed = cmd[readHead++];
+						multiDrawOffsets.put((int) (packed >> 32));
+						multiDrawCounts.put((int) packed);
 					}
-					case GL_MULTI_DRAW_ARRAYS_TYPE: {
-						int mode = (int) data >> 8;
-						int drawCount = (int) (data >> 32);
 
-						if (offsets == null || offsets.capacity() < drawCount) {
-							offsets = stack.callocInt(drawCount);
-							counts = stack.callocInt(drawCount);
-						}
+					multiDrawOffsets.flip();
+					multiDrawCounts.flip();
 
-						for (int i = 0; i < drawCount; i++) {
-							long packed = cmd[readHead++];
-							offsets.put((int) (packed >> 32));
-							counts.put((int) packed);
-						}
-
-						offsets.flip();
-						counts.flip();
+					gl.multiDrawArrays(mode, multiDrawOffsets, multiDrawCounts);
 
-						glMultiDrawArrays(mode, offsets, counts);
-
-						offsets.clear();
-						counts.clear();
-						break;
-					}
-					case GL_DRAW_ARRAYS_INDIRECT_TYPE: {
-						int mode = (int) data >> 8;
-						glDrawArraysIndirect(mode, cmd[readHead++]);
-						break;
-					}
-					case GL_DRAW_ELEMENTS_INDIRECT_TYPE: {
-						int mode = (int) data >> 8;
-						glDrawElementsIndirect(mode, GL_UNSIGNED_INT, cmd[readHead++]);
-						break;
-					}
-					case GL_MULTI_DRAW_ARRAYS_INDIRECT_TYPE: {
-						int mode = (int) data >> 8;
-						int drawCount = (int) (data >> 32);
-						long offset = cmd[readHead++];
-						glMultiDrawArraysIndirect(mode, offset, drawCount, 0);
-						break;
-					}
-					case GL_EXECUTE_SUB_COMMAND_BUFFER: {
-						final CommandBuffer subCmd = (CommandBuffer) objects[(int) (data >> 8)];
-						var callStack = CALL_STACK.get();
-						if (callStack.contains(subCmd))
-							throw new IllegalStateException(String.format(
-								"Command buffer recursion error: [%s, %s]",
-								callStack
-									.stream()
-									.map(Object::toString)
-									.collect(Collectors.joining(", ")),
-								this
-							));
-						callStack.push(this);
-						try {
-							subCmd.execute(renderState);
-						} finally {
-							callStack.pop();
-						}
-						break;
+					multiDrawOffsets.clear();
+					multiDrawCounts.clear();
+					break;
+				}
+				case GL_DRAW_ARRAYS_INDIRECT_TYPE: {
+					int mode = (int) data >> 8;
+					gl.drawArraysIndirect(mode, cmd[readHead++]);
+					break;
+				}
+				case GL_DRAW_ELEMENTS_INDIRECT_TYPE: {
+					int mode = (int) data >> 8;
+					gl.drawElementsIndirect(mode, GL_UNSIGNED_INT, cmd[readHead++]);
+					break;
+				}
+				case GL_MULTI_DRAW_ARRAYS_INDIRECT_TYPE: {
+					int mode = (int) data >> 8;
+					int drawCount = (int) (data >> 32);
+					long offset = cmd[readHead++];
+					gl.multiDrawArraysIndirect(mode, offset, drawCount);
+					break;
+				}
+				case GL_EXECUTE_SUB_COMMAND_BUFFER: {
+					final CommandBuffer subCmd = (CommandBuffer) objects[(int) (data >> 8)];
+					var callStack = CALL_STACK.get();
+					if (callStack.contains(subCmd))
+						throw new IllegalStateException(String.format(
+							"Command buffer recursion error: [%s, %s]",
+							callStack
+								.stream()
+								.map(Object::toString)
+								.collect(Collectors.joining(", ")),
+							this
+						));
+					callStack.push(this);
+					try {
+						subCmd.execute(renderState);
+					} finally {
+						callStack.pop();
 					}
-					default:
-						throw new IllegalArgumentException("Encountered an unknown DrawCall type: " + type);
+					break;
 				}
+				default:
+					throw new IllegalArgumentException("Encountered an unknown DrawCall type: " + type);
 			}
-			renderState.apply();
 		}
+		renderState.apply();
 		if (frameTimer != null)
 			frameTimer.end(Timer.EXECUTE_COMMAND_BUFFER);
 	}
 
+	/**
+	 * Decode the recorded commands in order, without issuing any GL calls. Sub command buffers are passed to the
+	 * visitor as-is, and are not visited recursively.
+	 */
+	public void visit(Visitor visitor) {
+		int[] offsets = null, counts = null;
+		int readHead = 0;
+		while (readHead < writeHead) {
+			long data = cmd[readHead++];
+			int type = (int) data & 0xFF;
+			switch (type) {
+				case GL_DEPTH_MASK_TYPE:
+					visitor.depthMask(((data >> 8) & 1) == 1);
+					break;
+				case GL_COLOR_MASK_TYPE:
+					visitor.colorMask(
+						((data >> 8) & 1) == 1,
+						((data >> 9) & 1) == 1,
+						((data >> 10) & 1) == 1,
+						((data >> 11) & 1) == 1
+					);
+					break;
+				case GL_BIND_VERTEX_ARRAY_TYPE: {
+					long packed = cmd[readHead++];
+					int eboIdx = (int) (packed >> 32);
+					visitor.bindVertexArray((int) packed, eboIdx >= 0 ? (GLBuffer) objects[eboIdx] : null);
+					break;
+				}
+				case GL_BIND_INDIRECT_ARRAY_TYPE:
+					visitor.bindIndirectArray((int) (data >> 8));
+					break;
+				case GL_BIND_TEXTURE_UNIT_TYPE: {
+					long packed = cmd[readHead++];
+					visitor.bindTextureUnit((int) (data >> 8), (int) packed, (int) (packed >> 32));
+					break;
+				}
+				case GL_USE_PROGRAM:
+					visitor.useProgram((ShaderProgram) objects[(int) (data >> 8)]);
+					break;
+				case GL_TOGGLE_TYPE: {
+					long packed = cmd[readHead++];
+					visitor.toggle((int) (packed & INT_MASK), (packed >> 32) != 0);
+					break;
+				}
+				case GL_FENCE_SYNC:
+					visitor.fenceSync((GLFence) objects[(int) cmd[readHead++]], (int) (data >> 8));
+					break;
+				case GL_DRAW_ARRAYS_TYPE: {
+					long packed = cmd[readHead++];
+					visitor.drawArrays((int) data >> 8, (int) (packed >> 32), (int) packed);
+					break;
+				}
+				case GL_DRAW_ELEMENTS_TYPE:
+					visitor.drawElements((int) data >> 8, (int) (data >> 32), cmd[readHead++]);
+					break;
+				case GL_MULTI_DRAW_ARRAYS_TYPE: {
+					int drawCount = (int) (data >> 32);
+					if (offsets == null || offsets.length < drawCount) {
+						offsets = new int[drawCount];
+						counts = new int[drawCount];
+					}
+					for (int i = 0; i < drawCount; i++) {
+						long packed = cmd[readHead++];
+						offsets[i] = (int) (packed >> 32);
+						counts[i] = (int) packed;
+					}
+					visitor.multiDrawArrays((int) data >> 8, offsets, counts, drawCount);
+					break;
+				}
+				case GL_DRAW_ARRAYS_INDIRECT_TYPE:
+					visitor.drawArraysIndirect((int) data >> 8, cmd[readHead++]);
+					break;
+				case GL_DRAW_ELEMENTS_INDIRECT_TYPE:
+					visitor.drawElementsIndirect((int) data >> 8, cmd[readHead++]);
+					break;
+				case GL_MULTI_DRAW_ARRAYS_INDIRECT_TYPE:
+					visitor.multiDrawArraysIndirect((int) data >> 8, cmd[readHead++], (int) (data >> 32));
+					break;
+				case GL_EXECUTE_SUB_COMMAND_BUFFER:
+					visitor.executeSubCommandBuffer((CommandBuffer) objects[(int) (data >> 8)]);
+					break;
+				default:
+					throw new IllegalArgumentException("Encountered an unknown DrawCall type: " + type);
+			}
+		}
+	}
+
+	/**
+	 * Rewrite the recorded commands in place, dropping state changes which cannot affect any draw, and merging
+	 * consecutive draws which share the same state into single multi-draw calls. Sub command buffers are optimized
+	 * first, since they're executed in place.
+	 */
+	public void optimize(OptimizationStats stats) {
+		for (int i = 0; i < objectCount; i++)
+			if (objects[i] instanceof CommandBuffer)
+				((CommandBuffer) objects[i]).optimize(stats);
+
+		if (optimizer == null)
+			optimizer = new Optimizer();
+		optimizer.optimize(this, stats);
+	}
+
+	private static int commandLength(long[] cmd, int pos) {
+		long data = cmd[pos];
+		switch ((int) data & 0xFF) {
+			case GL_MULTI_DRAW_ARRAYS_TYPE:
+				return 1 + (int) (data >> 32);
+			case GL_BIND_INDIRECT_ARRAY_TYPE:
+			case GL_DEPTH_MASK_TYPE:
+			case GL_COLOR_MASK_TYPE:
+			case GL_USE_PROGRAM:
+			case GL_EXECUTE_SUB_COMMAND_BUFFER:
+				return 1;
+			default:
+				return 2;
+		}
+	}
+
 	private int writeObject(Object obj) {
 		if (obj == null)
 			return -1;
@@ -454,4 +573,283 @@ public class CommandBuffer {
 		writeHead = 0;
 		objectCount = 0;
 	}
+
+	public interface Visitor {
+		default void bindVertexArray(int vao, @Nullable GLBuffer ebo) {}
+
+		default void bindIndirectArray(int ido) {}
+
+		default void bindTextureUnit(int type, int texId, int textureUnit) {}
+
+		default void useProgram(ShaderProgram program) {}
+
+		default void depthMask(boolean writeDepth) {}
+
+		default void colorMask(boolean writeRed, boolean writeGreen, boolean writeBlue, boolean writeAlpha) {}
+
+		default void toggle(int capability, boolean enabled) {}
+
+		default void fenceSync(GLFence fence, int condition) {}
+
+		default void drawArrays(int mode, int offset, int vertexCount) {}
+
+		default void drawElements(int mode, int vertexCount, long byteOffset) {}
+
+		/**
+		 * The arrays are reused between calls, and only the first {@code drawCount} elements are valid.
+		 */
+		default void multiDrawArrays(int mode, int[] offsets, int[] counts, int drawCount) {}
+
+		default void drawArraysIndirect(int mode, long indirectByteOffset) {}
+
+		default void drawElementsIndirect(int mode, long indirectByteOffset) {}
+
+		default void multiDrawArraysIndirect(int mode, long indirectByteOffset, int drawCount) {}
+
+		default void executeSubCommandBuffer(CommandBuffer subCommandBuffer) {}
+	}
+
+	public static final class OptimizationStats {
+		public int commandsBefore;
+		public int commandsAfter;
+		public int drawsBefore;
+		public int drawsAfter;
+
+		public void reset() {
+			commandsBefore = commandsAfter = drawsBefore = drawsAfter = 0;
+		}
+	}
+
+	/**
+	 * Since state changes are only applied to the {@link RenderState} before the next draw, only the last value of
+	 * each kind of state before a draw matters, and only if it differs from the value already applied. State changes
+	 * are therefore held back until the next draw, and merged draws can't be separated by any state change.
+	 */
+	private static final class Optimizer {
+		private static final int INDIRECT_DRAW_ARRAYS_STRIDE = 4 * Integer.BYTES;
+
+		private long[] output = new long[0];
+		private int outputHead;
+		// Start of the last draw in the output, as long as nothing has been written after it
+		private int lastDrawPos;
+
+		// Each kind of state, such as the program or a specific capability toggle, has its own slot
+		private long[] slotKeys = new long[16];
+		private long[] appliedHeaders = new long[16];
+		private long[] appliedPayloads = new long[16];
+		private long[] pendingHeaders = new long[16];
+		private long[] pendingPayloads = new long[16];
+		private boolean[] isApplied = new boolean[16];
+		private boolean[] isPending = new boolean[16];
+		private int slotCount;
+
+		void optimize(CommandBuffer buffer, OptimizationStats stats) {
+			final long[] cmd = buffer.cmd;
+			if (output.length < cmd.length)
+				output = new long[cmd.length];
+			outputHead = 0;
+			lastDrawPos = -1;
+			slotCount = 0;
+
+			int readHead = 0;
+			while (readHead < buffer.writeHead) {
+				long data = cmd[readHead];
+				int type = (int) data & 0xFF;
+				int length = commandLength(cmd, readHead);
+				long payload = length > 1 ? cmd[readHead + 1] : 0;
+				stats.commandsBefore++;
+				if (type < GL_DRAW_CALL_TYPE_COUNT)
+					stats.drawsBefore++;
+
+				switch (type) {
+					case GL_BIND_VERTEX_ARRAY_TYPE:
+					case GL_BIND_INDIRECT_ARRAY_TYPE:
+					case GL_DEPTH_MASK_TYPE:
+					case GL_COLOR_MASK_TYPE:
+					case GL_USE_PROGRAM:
+						setState((long) type << 56, data, payload);
+						break;
+					case GL_BIND_TEXTURE_UNIT_TYPE:
+						// Each texture target of each unit is bound separately
+						setState((long) type << 56 | (data >> 8) << 32 | payload >>> 32, data, payload);
+						break;
+					case GL_TOGGLE_TYPE:
+						setState((long) type << 56 | payload & INT_MASK, data, payload);
+						break;
+					case GL_MULTI_DRAW_ARRAYS_TYPE:
+					case GL_DRAW_ARRAYS_TYPE:
+					case GL_MULTI_DRAW_ARRAYS_INDIRECT_TYPE:
+					case GL_DRAW_ARRAYS_INDIRECT_TYPE:
+						if (applyPendingState(stats) || !mergeDraw(cmd, readHead)) {
+							lastDrawPos = outputHead;
+							if (type == GL_MULTI_DRAW_ARRAYS_TYPE) {
+								// Start with the first draw, so the remaining draws can be merged into it
+								copy(cmd, readHead, 2, stats);
+								output[lastDrawPos] = data & INT_MASK | 1L << 32;
+								for (int i = 2; i < length; i++)
+									appendDrawRange((int) (data >> 8) & 0xFFFFFF, cmd[readHead + i]);
+							} else {
+								copy(cmd, readHead, length, stats);
+							}
+						}
+						break;
+					case GL_DRAW_ELEMENTS_TYPE:
+					case GL_DRAW_ELEMENTS_INDIRECT_TYPE:
+						applyPendingState(stats);
+						copy(cmd, readHead, length, stats);
+						lastDrawPos = -1;
+						break;
+					case GL_FENCE_SYNC:
+						// The fence must still follow every draw recorded before it
+						copy(cmd, readHead, length, stats);
+						lastDrawPos = -1;
+						break;
+					case GL_EXECUTE_SUB_COMMAND_BUFFER:
+						applyPendingState(stats);
+						copy(cmd, readHead, length, stats);
+						lastDrawPos = -1;
+						// The sub command buffer may leave any state behind
+						Arrays.fill(isApplied, 0, slotCount, false);
+						break;
+					default:
+						throw new IllegalArgumentException("Encountered an unknown DrawCall type: " + type);
+				}
+				readHead += length;
+			}
+			// State is left applied after execution, so the final values must be kept
+			applyPendingState(stats);
+
+			buffer.cmd = output;
+			buffer.writeHead = outputHead;
+			output = cmd;
+		}
+
+		private void setState(long key, long header, long payload) {
+			int slot = 0;
+			while (slot < slotCount && slotKeys[slot] != key)
+				slot++;
+
+			if (slot == slotCount) {
+				if (slotCount == slotKeys.length) {
+					int capacity = slotCount * 2;
+					slotKeys = Arrays.copyOf(slotKeys, capacity);
+					appliedHeaders = Arrays.copyOf(appliedHeaders, capacity);
+					appliedPayloads = Arrays.copyOf(appliedPayloads, capacity);
+					pendingHeaders = Arrays.copyOf(pendingHeaders, capacity);
+					pendingPayloads = Arrays.copyOf(pendingPayloads, capacity);
+					isApplied = Arrays.copyOf(isApplied, capacity);
+					isPending = Arrays.copyOf(isPending, capacity);
+				}
+				slotKeys[slot] = key;
+				isApplied[slot] = false;
+				slotCount++;
+			}
+
+			pendingHeaders[slot] = header;
+			pendingPayloads[slot] = payload;
+			isPending[slot] = true;
+		}
+
+		/**
+		 * Write out pending state which differs from the state already applied.
+		 *
+		 * @return whether any state was written
+		 */
+		private boolean applyPendingState(OptimizationStats stats) {
+			boolean changed = false;
+			for (int slot = 0; slot < slotCount; slot++) {
+				if (!isPending[slot])
+					continue;
+				isPending[slot] = false;
+
+				long header = pendingHeaders[slot];
+				long payload = pendingPayloads[slot];
+				if (isApplied[slot] && appliedHeaders[slot] == header && appliedPayloads[slot] == payload)
+					continue;
+
+				output[outputHead++] = header;
+				if (commandLength(pendingHeaders, slot) > 1)
+					output[outputHead++] = payload;
+				stats.commandsAfter++;
+
+				appliedHeaders[slot] = header;
+				appliedPayloads[slot] = payload;
+				isApplied[slot] = true;
+				changed = true;
+			}
+			if (changed)
+				lastDrawPos = -1;
+			return changed;
+		}
+
+		private void copy(long[] cmd, int pos, int length, OptimizationStats stats) {
+			System.arraycopy(cmd, pos, output, outputHead, length);
+			outputHead += length;
+			stats.commandsAfter++;
+			if (((int) cmd[pos] & 0xFF) < GL_DRAW_CALL_TYPE_COUNT)
+				stats.drawsAfter++;
+		}
+
+		/**
+		 * Try to append the draw to the last draw written, which is only possible if they use the same primitive mode,
+		 * and are either both direct draws, or indirect draws with consecutive indirect commands.
+		 */
+		private boolean mergeDraw(long[] cmd, int pos) {
+			if (lastDrawPos < 0)
+				return false;
+
+			long last = output[lastDrawPos];
+			long data = cmd[pos];
+			int lastType = (int) last & 0xFF;
+			int type = (int) data & 0xFF;
+			int mode = (int) (data >> 8) & 0xFFFFFF;
+			if (((int) (last >> 8) & 0xFFFFFF) != mode)
+				return false;
+
+			boolean lastIsDirect = lastType == GL_MULTI_DRAW_ARRAYS_TYPE || lastType == GL_DRAW_ARRAYS_TYPE;
+			boolean isDirect = type == GL_MULTI_DRAW_ARRAYS_TYPE || type == GL_DRAW_ARRAYS_TYPE;
+			if (lastIsDirect != isDirect)
+				return false;
+
+			if (isDirect) {
+				// A single draw's offset and count are packed the same way as each draw of a multi-draw
+				if (lastType == GL_DRAW_ARRAYS_TYPE)
+					output[lastDrawPos] = GL_MULTI_DRAW_ARRAYS_TYPE | (long) mode << 8 | 1L << 32;
+				int drawCount = type == GL_MULTI_DRAW_ARRAYS_TYPE ? (int) (data >> 32) : 1;
+				for (int i = 1; i <= drawCount; i++)
+					appendDrawRange(mode, cmd[pos + i]);
+				return true;
+			}
+
+			// Indirect single draws can only be merged with multi-draws, which may not be supported otherwise
+			if (lastType != GL_MULTI_DRAW_ARRAYS_INDIRECT_TYPE && type != GL_MULTI_DRAW_ARRAYS_INDIRECT_TYPE)
+				return false;
+
+			int lastDrawCount = lastType == GL_MULTI_DRAW_ARRAYS_INDIRECT_TYPE ? (int) (last >> 32) : 1;
+			int drawCount = type == GL_MULTI_DRAW_ARRAYS_INDIRECT_TYPE ? (int) (data >> 32) : 1;
+			if (output[lastDrawPos + 1] + (long) lastDrawCount * INDIRECT_DRAW_ARRAYS_STRIDE != cmd[pos + 1])
+				return false;
+
+			output[lastDrawPos] = GL_MULTI_DRAW_ARRAYS_INDIRECT_TYPE | (long) mode << 8 | (long) (lastDrawCount + drawCount) << 32;
+			return true;
+		}
+
+		private void appendDrawRange(int mode, long range) {
+			long lastRange = output[outputHead - 1];
+			int lastOffset = (int) (lastRange >> 32);
+			int lastCount = (int) lastRange;
+			int offset = (int) (range >> 32);
+			int count = (int) range;
+
+			// Contiguous ranges of independent primitives can be drawn as a single range
+			int verticesPerPrimitive = mode == GL_TRIANGLES ? 3 : mode == GL_LINES ? 2 : mode == GL_POINTS ? 1 : 0;
+			if (verticesPerPrimitive != 0 && lastOffset + lastCount == offset && lastCount % verticesPerPrimitive == 0) {
+				output[outputHead - 1] = (long) lastOffset << 32 | (lastCount + count) & INT_MASK;
+				return;
+			}
+
+			output[outputHead++] = range;
+			output[lastDrawPos] += 1L << 32;
+		}
+	}
 }
@@ -1,9 +1,12 @@
 package rs117.hd.utils;
 
 import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import javax.inject.Inject;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.*;
 import net.runelite.api.events.*;
 import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.Keybind;
@@ -17,6 +20,7 @@ import rs117.hd.overlays.LightGizmoOverlay;
 import rs117.hd.overlays.ShadowMapOverlay;
 import rs117.hd.overlays.TileInfoOverlay;
 import rs117.hd.overlays.TiledLightingOverlay;
+import rs117.hd.utils.jobs.JobSystem;
 
 import static java.awt.event.InputEvent.CTRL_DOWN_MASK;
 import static java.awt.event.InputEvent.SHIFT_DOWN_MASK;
@@ -34,6 +38,12 @@ public class DeveloperTools implements KeyListener {
 	private static final Keybind KEY_TOGGLE_ORTHOGRAPHIC = new Keybind(KeyEvent.VK_TAB, SHIFT_DOWN_MASK);
 	private static final Keybind KEY_TOGGLE_HIDE_UI = new Keybind(KeyEvent.VK_H, CTRL_DOWN_MASK);
 	private static final Keybind KEY_RELOAD_SCENE = new Keybind(KeyEvent.VK_R, CTRL_DOWN_MASK);
+	private static final Keybind KEY_TOGGLE_JOB_TRACE = new Keybind(KeyEvent.VK_F8, CTRL_DOWN_MASK);
+
+	private static final ResourcePath TRACES_PATH = HdPlugin.PLUGIN_DIR.resolve("traces");
+
+	@Inject
+	private Client client;
 
 	@Inject
 	private ClientThread clientThread;
@@ -65,6 +75,9 @@ public class DeveloperTools implements KeyListener {
 	@Inject
 	private TiledLightingOverlay tiledLightingOverlay;
 
+	@Inject
+	private JobSystem jobSystem;
+
 	private boolean keyBindingsEnabled;
 	private boolean tileInfoOverlayEnabled;
 	@Getter
@@ -104,6 +117,7 @@ public class DeveloperTools implements KeyListener {
 		shadowMapOverlay.setActive(false);
 		lightGizmoOverlay.setActive(false);
 		tiledLightingOverlay.setActive(false);
+		jobSystem.tracer.stop();
 		hideUiEnabled = false;
 	}
 
@@ -153,6 +167,9 @@ public class DeveloperTools implements KeyListener {
 			case "culling":
 				plugin.freezeCulling = !plugin.freezeCulling;
 				break;
+			case "trace":
+				toggleJobTrace();
+				break;
 		}
 	}
 
@@ -178,12 +195,42 @@ public class DeveloperTools implements KeyListener {
 			hideUiEnabled = !hideUiEnabled;
 		} else if (KEY_RELOAD_SCENE.matches(e)) {
 			plugin.renderer.reloadScene();
+		} else if (KEY_TOGGLE_JOB_TRACE.matches(e)) {
+			toggleJobTrace();
 		} else {
 			return;
 		}
 		e.consume();
 	}
 
+	private void toggleJobTrace() {
+		clientThread.invoke(() -> {
+			var tracer = jobSystem.tracer;
+			if (!tracer.isEnabled()) {
+				tracer.start();
+				sendGameMessage("Recording job trace... Toggle again to save it.");
+				return;
+			}
+
+			tracer.stop();
+			String timestamp = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(System.currentTimeMillis());
+			var path = TRACES_PATH.resolve("trace-" + timestamp).setExtension("json");
+			try {
+				TRACES_PATH.mkdirs();
+				try (var writer = path.toWriter()) {
+					tracer.writeChromeTrace(writer);
+				}
+				sendGameMessage(String.format("Saved %d trace events to: %s", tracer.getEventCount(), path));
+			} catch (IOException ex) {
+				log.error("Error while saving job trace:", ex);
+			}
+		});
+	}
+
+	private void sendGameMessage(String message) {
+		client.addChatMessage(ChatMessageType.GAMEMESSAGE, "117 HD", "<col=ffff00>[117 HD] " + message + "</col>", "117 HD");
+	}
+
 	@Override
 	public void keyReleased(KeyEvent e) {}
 
@@ -842,6 +842,12 @@ public final class MathUtils {
 		return v0 * (1 - factor) + v1 * factor;
 	}
 
+	public static float[] mix(float[] out, float[] v0, float[] v1, float factor) {
+		for (int i = 0; i < out.length; i++)
+			out[i] = mix(v0[i % v0.length], v1[i % v1.length], factor);
+		return out;
+	}
+
 	public static float[] mix(float[] out, float[] v0, float[] v1, float... factor) {
 		for (int i = 0; i < out.length; i++)
 			out[i] = mix(v0[i % v0.length], v1[i % v1.length], factor[i % factor.length]);
@@ -916,9 +922,9 @@ public final class MathUtils {
 		}
 
 		if (exponent >= 0x1F) { // Too large to represent
-			if (mantissa == 0)
-				return sign | 0x7C00; // Infinity
-			return 0x7E00; // NaN
+			if (exponent == 0xFF - 127 + 15 && mantissa != 0)
+				return 0x7E00; // NaN
+			return sign | 0x7C00; // Infinity
 		}
 
 		// Round based on the last bit, before shifting it away
@@ -938,6 +944,22 @@ public final class MathUtils {
 		return sign | exponent << 10 | mantissa >> 13;
 	}
 
+	public static float float16ToFloat(int value) {
+		int sign = (value & 0x8000) << 16;
+		int exponent = value >> 10 & 0x1F;
+		int mantissa = value & 0x3FF;
+
+		if (exponent == 0) { // Zero or subnormal
+			float f = mantissa * 0x1p-24f;
+			return sign == 0 ? f : -f;
+		}
+
+		if (exponent == 0x1F) // Infinity or NaN
+			return Float.intBitsToFloat(sign | 0x7F800000 | mantissa << 13);
+
+		return Float.intBitsToFloat(sign | (exponent - 15 + 127) << 23 | mantissa << 13);
+	}
+
 	public static String formatBytes(long bytes) {
 		if (bytes < 0)
 			return "-" + formatBytes(bytes == Long.MIN_VALUE ? Long.MAX_VALUE : -bytes);
@@ -0,0 +1,468 @@
+package rs117.hd.utils;
+
+import java.util.Arrays;
+
+import static rs117.hd.utils.MathUtils.*;
+import static rs117.hd.utils.collections.Util.murmurHash3;
+
+/**
+ * Simplifies triangle meshes by repeatedly collapsing the edge which adds the least quadric error, as described by
+ * Garland and Heckbert. Vertices are only ever moved onto one of their neighbors, so every output position is also an
+ * input position. Vertices along open edges are never moved, so meshes split into separate pieces, like zones, still
+ * line up after being simplified independently.
+ * <p>
+ * Instances reuse their working memory between calls, and are not thread-safe.
+ */
+public final class MeshSimplifier {
+	private static final long EMPTY = Long.MIN_VALUE;
+	// Reject collapses which would rotate any triangle by more than about 78 degrees, which also prevents flips
+	private static final double MIN_NORMAL_COS = .2;
+
+	// Per welded vertex
+	private int vertexCount;
+	private int[] positions = new int[0];
+	private double[] quadrics = new double[0];
+	private int[] stamps = new int[0];
+	private boolean[] locked = new boolean[0];
+	private int[] marks = new int[0];
+	private int markGeneration;
+	// Singly linked lists of the triangles around each vertex, which may include removed triangles
+	private int[] incidenceHead = new int[0];
+	private int[] incidenceTriangle = new int[0];
+	private int[] incidenceNext = new int[0];
+
+	// Per triangle
+	private int[] corners = new int[0];
+	private boolean[] removed = new boolean[0];
+
+	// Open addressing tables for welding vertices and counting the triangles around each edge
+	private long[] weldKeys = new long[0];
+	private int[] weldValues = new int[0];
+	private long[] edgeKeys = new long[0];
+	private int[] edgeCounts = new int[0];
+
+	// Binary min-heap of candidate collapses, which are discarded once either vertex has changed since
+	private int heapSize;
+	private double[] heapErrors = new double[0];
+	private int[] heapFrom = new int[0];
+	private int[] heapTo = new int[0];
+	private int[] heapStampFrom = new int[0];
+	private int[] heapStampTo = new int[0];
+
+	private double maxErrorSquared;
+
+	/**
+	 * Simplify a triangle soup with three vertices per triangle, stored as (x, y, z) triplets in {@code input}.
+	 * Simplification stops once no more than {@code targetTriangleCount} triangles remain, or when collapsing any
+	 * more edges would move the surface further than {@code maxError} away from any of the original triangle planes
+	 * around a vertex.
+	 *
+	 * @param outTriangles the index of each remaining input triangle, which must fit {@code triangleCount} elements
+	 * @param outPositions the new positions of each remaining triangle, which must fit {@code triangleCount * 9}
+	 * @return the number of remaining triangles, excluding any degenerate input triangles
+	 */
+	public int simplify(
+		int[] input,
+		int triangleCount,
+		int targetTriangleCount,
+		float maxError,
+		int[] outTriangles,
+		int[] outPositions
+	) {
+		maxErrorSquared = (double) maxError * maxError;
+		ensureCapacity(triangleCount);
+		weld(input, triangleCount);
+		int liveTriangleCount = buildQuadrics(triangleCount);
+		lockOpenEdges(triangleCount);
+
+		heapSize = 0;
+		for (int t = 0; t < triangleCount; t++) {
+			if (removed[t])
+				continue;
+			for (int i = 0; i < 3; i++) {
+				int a = corners[t * 3 + i];
+				int b = corners[t * 3 + (i + 1) % 3];
+				// Interior edges are shared by two triangles winding in opposite directions, so this visits each once
+				if (a < b) {
+					push(a, b);
+					push(b, a);
+				}
+			}
+		}
+
+		while (liveTriangleCount > targetTriangleCount && heapSize > 0) {
+			int from = heapFrom[0];
+			int to = heapTo[0];
+			boolean stale = heapStampFrom[0] != stamps[from] || heapStampTo[0] != stamps[to];
+			pop();
+			if (stale || !canCollapse(from, to))
+				continue;
+			liveTriangleCount -= collapse(from, to);
+		}
+
+		int count = 0;
+		for (int t = 0; t < triangleCount; t++) {
+			if (removed[t])
+				continue;
+			outTriangles[count] = t;
+			for (int i = 0; i < 3; i++) {
+				int v = corners[t * 3 + i] * 3;
+				int o = count * 9 + i * 3;
+				outPositions[o] = positions[v];
+				outPositions[o + 1] = positions[v + 1];
+				outPositions[o + 2] = positions[v + 2];
+			}
+			count++;
+		}
+		return count;
+	}
+
+	private void ensureCapacity(int triangleCount) {
+		int cornerCount = triangleCount * 3;
+		if (corners.length < cornerCount) {
+			corners = new int[cornerCount];
+			removed = new boolean[triangleCount];
+			positions = new int[cornerCount * 3];
+			incidenceTriangle = new int[cornerCount];
+			incidenceNext = new int[cornerCount];
+		}
+
+		int tableSize = ceilPow2(cornerCount * 2);
+		if (weldKeys.length < tableSize) {
+			weldKeys = new long[tableSize];
+			weldValues = new int[tableSize];
+			edgeKeys = new long[tableSize];
+			edgeCounts = new int[tableSize];
+		}
+	}
+
+	private void weld(int[] input, int triangleCount) {
+		Arrays.fill(weldKeys, EMPTY);
+		final int mask = weldKeys.length - 1;
+		vertexCount = 0;
+		for (int c = 0; c < triangleCount * 3; c++) {
+			int x = input[c * 3], y = input[c * 3 + 1], z = input[c * 3 + 2];
+			long key = (x & 0xFFFFL) << 32 | (y & 0xFFFFL) << 16 | z & 0xFFFFL;
+			int slot = (int) murmurHash3(key) & mask;
+			while (weldKeys[slot] != EMPTY && weldKeys[slot] != key)
+				slot = slot + 1 & mask;
+
+			if (weldKeys[slot] == EMPTY) {
+				int v = vertexCount++;
+				weldKeys[slot] = key;
+				weldValues[slot] = v;
+				positions[v * 3] = x;
+				positions[v * 3 + 1] = y;
+				positions[v * 3 + 2] = z;
+			}
+			corners[c] = weldValues[slot];
+		}
+
+		// Welded meshes usually have far fewer vertices than corners, so size the per-vertex state after welding
+		if (stamps.length < vertexCount) {
+			int capacity = max(vertexCount, stamps.length * 3 / 2);
+			quadrics = new double[capacity * 10];
+			stamps = new int[capacity];
+			locked = new boolean[capacity];
+			marks = new int[capacity];
+			incidenceHead = new int[capacity];
+		}
+		Arrays.fill(quadrics, 0, vertexCount * 10, 0);
+		Arrays.fill(stamps, 0, vertexCount, 0);
+		Arrays.fill(locked, 0, vertexCount, false);
+		Arrays.fill(marks, 0, vertexCount, 0);
+		Arrays.fill(incidenceHead, 0, vertexCount, -1);
+		markGeneration = 0;
+
+		// Start with room for each edge in both directions, growing as needed
+		if (heapErrors.length < vertexCount * 6) {
+			int capacity = vertexCount * 6;
+			heapErrors = new double[capacity];
+			heapFrom = new int[capacity];
+			heapTo = new int[capacity];
+			heapStampFrom = new int[capacity];
+			heapStampTo = new int[capacity];
+		}
+	}
+
+	private int buildQuadrics(int triangleCount) {
+		int liveTriangleCount = 0;
+		int incidences = 0;
+		for (int t = 0; t < triangleCount; t++) {
+			int a = corners[t * 3], b = corners[t * 3 + 1], c = corners[t * 3 + 2];
+			removed[t] = true;
+			if (a == b || b == c || c == a)
+				continue;
+
+			double[] n = normal(a, b, c);
+			double length = Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+			if (length == 0)
+				continue;
+
+			removed[t] = false;
+			liveTriangleCount++;
+			double nx = n[0] / length, ny = n[1] / length, nz = n[2] / length;
+			double d = -(nx * positions[a * 3] + ny * positions[a * 3 + 1] + nz * positions[a * 3 + 2]);
+			for (int i = 0; i < 3; i++) {
+				int v = corners[t * 3 + i];
+				int q = v * 10;
+				quadrics[q] += nx * nx;
+				quadrics[q + 1] += nx * ny;
+				quadrics[q + 2] += nx * nz;
+				quadrics[q + 3] += nx * d;
+				quadrics[q + 4] += ny * ny;
+				quadrics[q + 5] += ny * nz;
+				quadrics[q + 6] += ny * d;
+				quadrics[q + 7] += nz * nz;
+				quadrics[q + 8] += nz * d;
+				quadrics[q + 9] += d * d;
+
+				incidenceTriangle[incidences] = t;
+				incidenceNext[incidences] = incidenceHead[v];
+				incidenceHead[v] = incidences++;
+			}
+		}
+		return liveTriangleCount;
+	}
+
+	private void lockOpenEdges(int triangleCount) {
+		Arrays.fill(edgeKeys, EMPTY);
+		final int mask = edgeKeys.length - 1;
+		for (int t = 0; t < triangleCount; t++) {
+			if (removed[t])
+				continue;
+			for (int i = 0; i < 3; i++) {
+				int slot = findEdge(corners[t * 3 + i], corners[t * 3 + (i + 1) % 3], mask);
+				edgeCounts[slot]++;
+			}
+		}
+
+		for (int t = 0; t < triangleCount; t++) {
+			if (removed[t])
+				continue;
+			for (int i = 0; i < 3; i++) {
+				int a = corners[t * 3 + i];
+				int b = corners[t * 3 + (i + 1) % 3];
+				// Open edges have one triangle, and edges shared by more than two triangles are left alone too
+				if (edgeCounts[findEdge(a, b, mask)] != 2)
+					locked[a] = locked[b] = true;
+			}
+		}
+	}
+
+	private int findEdge(int a, int b, int mask) {
+		long key = (long) min(a, b) << 32 | max(a, b);
+		int slot = (int) murmurHash3(key) & mask;
+		while (edgeKeys[slot] != EMPTY && edgeKeys[slot] != key)
+			slot = slot + 1 & mask;
+		if (edgeKeys[slot] == EMPTY) {
+			edgeKeys[slot] = key;
+			edgeCounts[slot] = 0;
+		}
+		return slot;
+	}
+
+	private double error(int from, int to) {
+		int p = from * 10, q = to * 10;
+		double x = positions[to * 3], y = positions[to * 3 + 1], z = positions[to * 3 + 2];
+		double[] Q = quadrics;
+		return
+			(Q[p] + Q[q]) * x * x +
+			2 * (Q[p + 1] + Q[q + 1]) * x * y +
+			2 * (Q[p + 2] + Q[q + 2]) * x * z +
+			2 * (Q[p + 3] + Q[q + 3]) * x +
+			(Q[p + 4] + Q[q + 4]) * y * y +
+			2 * (Q[p + 5] + Q[q + 5]) * y * z +
+			2 * (Q[p + 6] + Q[q + 6]) * y +
+			(Q[p + 7] + Q[q + 7]) * z * z +
+			2 * (Q[p + 8] + Q[q + 8]) * z +
+			(Q[p + 9] + Q[q + 9]);
+	}
+
+	private boolean canCollapse(int from, int to) {
+		// Only collapse edges where the vertices have exactly the two triangles along the edge in common,
+		// since anything else would pinch the surface or close up holes
+		int generation = ++markGeneration;
+		for (int i = incidenceHead[from]; i != -1; i = incidenceNext[i]) {
+			int t = incidenceTriangle[i];
+			if (removed[t])
+				continue;
+			for (int c = 0; c < 3; c++)
+				marks[corners[t * 3 + c]] = generation;
+		}
+
+		int sharedTriangles = 0;
+		generation = ++markGeneration;
+		int sharedVertices = 0;
+		for (int i = incidenceHead[to]; i != -1; i = incidenceNext[i]) {
+			int t = incidenceTriangle[i];
+			if (removed[t])
+				continue;
+			boolean hasFrom = false;
+			for (int c = 0; c < 3; c++) {
+				int v = corners[t * 3 + c];
+				hasFrom |= v == from;
+				if (v != from && v != to && marks[v] == generation - 1) {
+					marks[v] = generation;
+					sharedVertices++;
+				}
+			}
+			if (hasFrom)
+				sharedTriangles++;
+		}
+		if (sharedTriangles != 2 || sharedVertices != 2)
+			return false;
+
+		// Reject collapses which would fold any of the remaining triangles around the removed vertex
+		for (int i = incidenceHead[from]; i != -1; i = incidenceNext[i]) {
+			int t = incidenceTriangle[i];
+			if (removed[t])
+				continue;
+			int a = corners[t * 3], b = corners[t * 3 + 1], c = corners[t * 3 + 2];
+			if (a == to || b == to || c == to)
+				continue;
+
+			double[] before = normal(a, b, c);
+			double bx = before[0], by = before[1], bz = before[2];
+			double[] after = normal(a == from ? to : a, b == from ? to : b, c == from ? to : c);
+			double dot = bx * after[0] + by * after[1] + bz * after[2];
+			double lengths = Math.sqrt((bx * bx + by * by + bz * bz) *
+				(after[0] * after[0] + after[1] * after[1] + after[2] * after[2]));
+			if (lengths == 0 || dot < MIN_NORMAL_COS * lengths)
+				return false;
+		}
+		return true;
+	}
+
+	private final double[] normal = new double[3];
+
+	private double[] normal(int a, int b, int c) {
+		double ax = positions[a * 3], ay = positions[a * 3 + 1], az = positions[a * 3 + 2];
+		double ux = positions[b * 3] - ax, uy = positions[b * 3 + 1] - ay, uz = positions[b * 3 + 2] - az;
+		double vx = positions[c * 3] - ax, vy = positions[c * 3 + 1] - ay, vz = positions[c * 3 + 2] - az;
+		normal[0] = uy * vz - uz * vy;
+		normal[1] = uz * vx - ux * vz;
+		normal[2] = ux * vy - uy * vx;
+		return normal;
+	}
+
+	/**
+	 * @return the number of triangles removed by the collapse
+	 */
+	private int collapse(int from, int to) {
+		int removedCount = 0;
+		int last = -1;
+		for (int i = incidenceHead[from]; i != -1; i = incidenceNext[i]) {
+			last = i;
+			int t = incidenceTriangle[i];
+			if (removed[t])
+				continue;
+			int base = t * 3;
+			if (corners[base] == to || corners[base + 1] == to || corners[base + 2] == to) {
+				removed[t] = true;
+				removedCount++;
+				continue;
+			}
+			for (int c = 0; c < 3; c++)
+				if (corners[base + c] == from)
+					corners[base + c] = to;
+		}
+
+		// Move the remaining triangles over to the vertex being kept
+		if (last != -1) {
+			incidenceNext[last] = incidenceHead[to];
+			incidenceHead[to] = incidenceHead[from];
+			incidenceHead[from] = -1;
+		}
+
+		for (int i = 0; i < 10; i++)
+			quadrics[to * 10 + i] += quadrics[from * 10 + i];
+		stamps[from]++;
+		stamps[to]++;
+
+		// Drop removed triangles from the list while queueing new candidates around the kept vertex
+		int prev = -1;
+		for (int i = incidenceHead[to]; i != -1; i = incidenceNext[i]) {
+			int t = incidenceTriangle[i];
+			if (removed[t]) {
+				if (prev == -1) {
+					incidenceHead[to] = incidenceNext[i];
+				} else {
+					incidenceNext[prev] = incidenceNext[i];
+				}
+				continue;
+			}
+			prev = i;
+			for (int c = 0; c < 3; c++) {
+				int v = corners[t * 3 + c];
+				if (v != to) {
+					push(to, v);
+					push(v, to);
+				}
+			}
+		}
+		return removedCount;
+	}
+
+	private void push(int from, int to) {
+		if (locked[from])
+			return;
+
+		// Quadrics only ever accumulate more planes, so skipped candidates never become valid later
+		double error = Math.max(0, error(from, to));
+		if (error > maxErrorSquared)
+			return;
+
+		if (heapSize == heapErrors.length) {
+			int capacity = heapSize * 2;
+			heapErrors = Arrays.copyOf(heapErrors, capacity);
+			heapFrom = Arrays.copyOf(heapFrom, capacity);
+			heapTo = Arrays.copyOf(heapTo, capacity);
+			heapStampFrom = Arrays.copyOf(heapStampFrom, capacity);
+			heapStampTo = Arrays.copyOf(heapStampTo, capacity);
+		}
+
+		int i = heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (heapErrors[parent] <= error)
+				break;
+			moveHeapEntry(parent, i);
+			i = parent;
+		}
+		heapErrors[i] = error;
+		heapFrom[i] = from;
+		heapTo[i] = to;
+		heapStampFrom[i] = stamps[from];
+		heapStampTo[i] = stamps[to];
+	}
+
+	private void pop() {
+		int last = --heapSize;
+		if (last == 0)
+			return;
+
+		double error = heapErrors[last];
+		int i = 0;
+		while (true) {
+			int child = i * 2 + 1;
+			if (child >= last)
+				break;
+			if (child + 1 < last && heapErrors[child + 1] < heapErrors[child])
+				child++;
+			if (heapErrors[child] >= error)
+				break;
+			moveHeapEntry(child, i);
+			i = child;
+		}
+		moveHeapEntry(last, i);
+	}
+
+	private void moveHeapEntry(int src, int dst) {
+		heapErrors[dst] = heapErrors[src];
+		heapFrom[dst] = heapFrom[src];
+		heapTo[dst] = heapTo[src];
+		heapStampFrom[dst] = heapStampFrom[src];
+		heapStampTo[dst] = heapStampTo[src];
+	}
+}
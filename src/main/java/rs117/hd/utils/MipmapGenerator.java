@@ -0,0 +1,113 @@
+package rs117.hd.utils;
+
+import static rs117.hd.utils.MathUtils.*;
+
+/**
+ * Generates mipmap chains for sRGB textures on the CPU.
+ * <p>
+ * Each level is produced by a 2x2 box filter applied in linear color space, with colors weighted by alpha to avoid
+ * dark fringes around transparent texels. Intermediate results are kept as separate float planes at full precision,
+ * so each level is filtered from unquantized data, and the inner loops are simple enough for the JIT to vectorize.
+ * Pixels are packed as 0xAARRGGBB, matching {@link java.awt.image.BufferedImage#TYPE_INT_ARGB}.
+ */
+public final class MipmapGenerator {
+	private static final int LINEAR_TO_SRGB_LUT_SIZE = 8192;
+	private static final float[] SRGB_TO_LINEAR = new float[256];
+	private static final byte[] LINEAR_TO_SRGB = new byte[LINEAR_TO_SRGB_LUT_SIZE];
+
+	static {
+		for (int i = 0; i < SRGB_TO_LINEAR.length; i++)
+			SRGB_TO_LINEAR[i] = ColorUtils.srgbToLinear(i / 255f);
+		for (int i = 0; i < LINEAR_TO_SRGB.length; i++)
+			LINEAR_TO_SRGB[i] = (byte) round(ColorUtils.linearToSrgb((float) i / (LINEAR_TO_SRGB_LUT_SIZE - 1)) * 255);
+	}
+
+	private MipmapGenerator() {}
+
+	public static int getLevelCount(int width, int height) {
+		return 1 + floor(log2(max(width, height)));
+	}
+
+	/**
+	 * Generate the full mip chain for the specified image.
+	 *
+	 * @param argb   pixels of the base level, which will be returned as the first level without being copied
+	 * @param width  width of the base level
+	 * @param height height of the base level
+	 * @return an array containing every mip level, down to 1x1
+	 */
+	public static int[][] generate(int[] argb, int width, int height) {
+		int levelCount = getLevelCount(width, height);
+		int[][] levels = new int[levelCount][];
+		levels[0] = argb;
+		if (levelCount == 1)
+			return levels;
+
+		// Unpack the base level into premultiplied linear planes
+		int n = width * height;
+		float[] r = new float[n];
+		float[] g = new float[n];
+		float[] b = new float[n];
+		float[] a = new float[n];
+		for (int i = 0; i < n; i++) {
+			int c = argb[i];
+			float alpha = (c >>> 24) / 255f;
+			a[i] = alpha;
+			r[i] = SRGB_TO_LINEAR[c >>> 16 & 0xFF] * alpha;
+			g[i] = SRGB_TO_LINEAR[c >>> 8 & 0xFF] * alpha;
+			b[i] = SRGB_TO_LINEAR[c & 0xFF] * alpha;
+		}
+
+		int w = width;
+		int h = height;
+		for (int level = 1; level < levelCount; level++) {
+			int w2 = max(1, w >> 1);
+			int h2 = max(1, h >> 1);
+			// Downsampling in-place is safe, since each destination index is always
+			// smaller than every source index which still remains to be read
+			downsample(r, w, h, w2, h2);
+			downsample(g, w, h, w2, h2);
+			downsample(b, w, h, w2, h2);
+			downsample(a, w, h, w2, h2);
+			levels[level] = pack(r, g, b, a, w2 * h2);
+			w = w2;
+			h = h2;
+		}
+
+		return levels;
+	}
+
+	private static void downsample(float[] plane, int w, int h, int w2, int h2) {
+		// When a dimension is already 1 texel wide, the same texel is sampled twice
+		int dx = w > 1 ? 1 : 0;
+		int dy = h > 1 ? w : 0;
+		for (int y = 0; y < h2; y++) {
+			int dst = y * w2;
+			int src = 2 * y * w;
+			for (int x = 0; x < w2; x++, src += 2)
+				plane[dst + x] = (plane[src] + plane[src + dx] + plane[src + dy] + plane[src + dy + dx]) * .25f;
+		}
+	}
+
+	private static int[] pack(float[] r, float[] g, float[] b, float[] a, int n) {
+		int[] out = new int[n];
+		for (int i = 0; i < n; i++) {
+			float alpha = a[i];
+			if (alpha <= 0) {
+				out[i] = 0;
+				continue;
+			}
+			float invAlpha = 1 / alpha;
+			out[i] =
+				round(min(alpha, 1) * 255) << 24 |
+				linearToSrgb(r[i] * invAlpha) << 16 |
+				linearToSrgb(g[i] * invAlpha) << 8 |
+				linearToSrgb(b[i] * invAlpha);
+		}
+		return out;
+	}
+
+	private static int linearToSrgb(float c) {
+		return LINEAR_TO_SRGB[clamp(round(c * (LINEAR_TO_SRGB_LUT_SIZE - 1)), 0, LINEAR_TO_SRGB_LUT_SIZE - 1)] & 0xFF;
+	}
+}
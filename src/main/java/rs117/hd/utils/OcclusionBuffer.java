@@ -0,0 +1,337 @@
+package rs117.hd.utils;
+
+import java.util.Arrays;
+import lombok.Getter;
+
+import static rs117.hd.utils.MathUtils.*;
+
+/**
+ * A coarse software depth buffer for occlusion culling.
+ * <p>
+ * Occluders are rasterized with pixel center sampling and a top-left fill rule, storing the reciprocal of clip space W
+ * per pixel, where larger values are closer to the camera and zero means nothing was drawn. The depth buffer is then
+ * eroded by one pixel, so pixels along occluder silhouettes which are only partially covered never occlude anything,
+ * and reduced into a hierarchical-Z pyramid holding the farthest depth of each block. Bounding boxes can then be tested
+ * against a handful of texels from a single pyramid level, regardless of their size on screen.
+ */
+public class OcclusionBuffer {
+	private static final int SUBPIXEL_BITS = 4;
+	private static final int SUBPIXEL_SCALE = 1 << SUBPIXEL_BITS;
+	private static final int HALF_PIXEL = SUBPIXEL_SCALE >> 1;
+	// Keeps snapped coordinates well within range of the 64-bit edge functions
+	private static final float MAX_SCREEN_COORD = 1 << 20;
+	// Geometry closer than this to the camera plane is neither rasterized nor culled
+	private static final float MIN_W = 1;
+	// Bounding boxes must be this much farther away than the occluders in front of them to be culled
+	private static final float DEPTH_BIAS = 1.001f;
+	// Largest number of texels to sample per axis when testing bounding boxes
+	private static final int MAX_TEST_TEXELS = 4;
+
+	private final float[] viewProjMatrix = new float[16];
+	private final float[] cameraPos = new float[3];
+	private final float[] corner = new float[4];
+
+	@Getter
+	private int width;
+	@Getter
+	private int height;
+	private float[] depth = new float[0];
+	private float[][] hiZ = new float[0][];
+	private int[] levelWidths = new int[0];
+	private int[] levelHeights = new int[0];
+
+	// Projected heightmap vertices, in subpixel screen coordinates and 1/W
+	private int[] gridX = new int[0];
+	private int[] gridY = new int[0];
+	private float[] gridInvW = new float[0];
+
+	public void setViewport(int width, int height) {
+		width = max(1, width);
+		height = max(1, height);
+		if (this.width == width && this.height == height)
+			return;
+
+		this.width = width;
+		this.height = height;
+		depth = new float[width * height];
+
+		int levelCount = 1;
+		while ((width >> levelCount - 1) > 1 || (height >> levelCount - 1) > 1)
+			levelCount++;
+		hiZ = new float[levelCount][];
+		levelWidths = new int[levelCount];
+		levelHeights = new int[levelCount];
+		for (int i = 0, w = width, h = height; i < levelCount; i++) {
+			levelWidths[i] = w;
+			levelHeights[i] = h;
+			hiZ[i] = new float[w * h];
+			w = w + 1 >> 1;
+			h = h + 1 >> 1;
+		}
+	}
+
+	public void setCamera(float[] viewProjMatrix, float[] cameraPos) {
+		copyTo(this.viewProjMatrix, viewProjMatrix);
+		copyTo(this.cameraPos, cameraPos);
+	}
+
+	public void clear() {
+		Arrays.fill(depth, 0);
+	}
+
+	/**
+	 * Rasterize the upwards facing side of the terrain as an occluder. Each tile is split into two triangles along the
+	 * same diagonal as the game's own tile paints.
+	 *
+	 * @param tileHeights heights of tile corners, indexed by [x][z]
+	 * @param occluders   which tiles to rasterize, indexed by [x][z]
+	 * @param tileOffset  tile coordinate which corresponds to the world origin
+	 * @param tileSize    size of a tile in world units
+	 */
+	public void rasterizeHeightmap(int[][] tileHeights, boolean[][] occluders, int tileOffset, int tileSize) {
+		int sizeX = occluders.length;
+		int sizeZ = sizeX == 0 ? 0 : occluders[0].length;
+		int vertsZ = sizeZ + 1;
+		int vertexCount = (sizeX + 1) * vertsZ;
+		if (gridX.length < vertexCount) {
+			gridX = new int[vertexCount];
+			gridY = new int[vertexCount];
+			gridInvW = new float[vertexCount];
+		}
+
+		for (int x = 0; x <= sizeX; x++) {
+			for (int z = 0; z <= sizeZ; z++) {
+				int i = x * vertsZ + z;
+				projectVertex(i, (x - tileOffset) * tileSize, tileHeights[x][z], (z - tileOffset) * tileSize);
+			}
+		}
+
+		for (int x = 0; x < sizeX; x++) {
+			for (int z = 0; z < sizeZ; z++) {
+				if (!occluders[x][z])
+					continue;
+
+				int sw = x * vertsZ + z;
+				int se = sw + vertsZ;
+				int nw = sw + 1;
+				int ne = se + 1;
+				float worldX = (x - tileOffset) * tileSize;
+				float worldZ = (z - tileOffset) * tileSize;
+				int swHeight = tileHeights[x][z];
+				int seHeight = tileHeights[x + 1][z];
+				int nwHeight = tileHeights[x][z + 1];
+				int neHeight = tileHeights[x + 1][z + 1];
+
+				if (isFacingCamera(worldX + tileSize, neHeight, worldZ + tileSize, neHeight - nwHeight, neHeight - seHeight, tileSize))
+					rasterizeTriangle(ne, nw, se);
+				if (isFacingCamera(worldX, swHeight, worldZ, seHeight - swHeight, nwHeight - swHeight, tileSize))
+					rasterizeTriangle(sw, se, nw);
+			}
+		}
+	}
+
+	/**
+	 * Check whether the camera is above the plane of a terrain triangle, given one of its corners, and how much the
+	 * height changes per tile along the X and Z axes.
+	 */
+	private boolean isFacingCamera(float x, float y, float z, int dyX, int dyZ, int tileSize) {
+		// Upwards facing normal of the triangle, with Y pointing down
+		float nx = dyX * tileSize;
+		float ny = -tileSize * tileSize;
+		float nz = dyZ * tileSize;
+		return nx * (cameraPos[0] - x) + ny * (cameraPos[1] - y) + nz * (cameraPos[2] - z) > 0;
+	}
+
+	private void projectVertex(int i, float x, float y, float z) {
+		float[] m = viewProjMatrix;
+		float clipX = m[0] * x + m[4] * y + m[8] * z + m[12];
+		float clipY = m[1] * x + m[5] * y + m[9] * z + m[13];
+		float w = m[3] * x + m[7] * y + m[11] * z + m[15];
+		if (w < MIN_W) {
+			gridInvW[i] = -1;
+			return;
+		}
+
+		float invW = 1 / w;
+		float sx = (clipX * invW * .5f + .5f) * width;
+		float sy = (clipY * invW * .5f + .5f) * height;
+		if (abs(sx) > MAX_SCREEN_COORD || abs(sy) > MAX_SCREEN_COORD) {
+			gridInvW[i] = -1;
+			return;
+		}
+
+		gridX[i] = round(sx * SUBPIXEL_SCALE);
+		gridY[i] = round(sy * SUBPIXEL_SCALE);
+		gridInvW[i] = invW;
+	}
+
+	private void rasterizeTriangle(int a, int b, int c) {
+		float invWa = gridInvW[a];
+		float invWb = gridInvW[b];
+		float invWc = gridInvW[c];
+		if (invWa < 0 || invWb < 0 || invWc < 0)
+			return;
+
+		long ax = gridX[a], ay = gridY[a];
+		long bx = gridX[b], by = gridY[b];
+		long cx = gridX[c], cy = gridY[c];
+
+		long area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+		if (area == 0)
+			return;
+		if (area < 0) {
+			// Flip the winding, so all edge functions are positive inside the triangle
+			long tx = bx, ty = by;
+			bx = cx;
+			by = cy;
+			cx = tx;
+			cy = ty;
+			float tw = invWb;
+			invWb = invWc;
+			invWc = tw;
+			area = -area;
+		}
+
+		int minPx = max(0, (int) ((min(ax, min(bx, cx)) - HALF_PIXEL) >> SUBPIXEL_BITS));
+		int minPy = max(0, (int) ((min(ay, min(by, cy)) - HALF_PIXEL) >> SUBPIXEL_BITS));
+		int maxPx = min(width - 1, (int) ((max(ax, max(bx, cx)) - HALF_PIXEL) >> SUBPIXEL_BITS) + 1);
+		int maxPy = min(height - 1, (int) ((max(ay, max(by, cy)) - HALF_PIXEL) >> SUBPIXEL_BITS) + 1);
+		if (minPx > maxPx || minPy > maxPy)
+			return;
+
+		// Edge functions for the edges opposite of each vertex, with a bias implementing the top-left fill rule
+		long e0dx = cx - bx, e0dy = cy - by;
+		long e1dx = ax - cx, e1dy = ay - cy;
+		long e2dx = bx - ax, e2dy = by - ay;
+		long bias0 = isTopLeft(e0dx, e0dy) ? 0 : -1;
+		long bias1 = isTopLeft(e1dx, e1dy) ? 0 : -1;
+		long bias2 = isTopLeft(e2dx, e2dy) ? 0 : -1;
+
+		long px = ((long) minPx << SUBPIXEL_BITS) + HALF_PIXEL;
+		long py = ((long) minPy << SUBPIXEL_BITS) + HALF_PIXEL;
+		long row0 = e0dx * (py - by) - e0dy * (px - bx);
+		long row1 = e1dx * (py - cy) - e1dy * (px - cx);
+		long row2 = e2dx * (py - ay) - e2dy * (px - ax);
+		long stepX0 = -e0dy << SUBPIXEL_BITS, stepY0 = e0dx << SUBPIXEL_BITS;
+		long stepX1 = -e1dy << SUBPIXEL_BITS, stepY1 = e1dx << SUBPIXEL_BITS;
+		long stepX2 = -e2dy << SUBPIXEL_BITS, stepY2 = e2dx << SUBPIXEL_BITS;
+
+		float invArea = 1f / area;
+		for (int y = minPy; y <= maxPy; y++) {
+			long w0 = row0, w1 = row1, w2 = row2;
+			int offset = y * width;
+			for (int x = minPx; x <= maxPx; x++) {
+				if ((w0 + bias0 | w1 + bias1 | w2 + bias2) >= 0) {
+					float invW = (w0 * invWa + w1 * invWb + w2 * invWc) * invArea;
+					if (invW > depth[offset + x])
+						depth[offset + x] = invW;
+				}
+				w0 += stepX0;
+				w1 += stepX1;
+				w2 += stepX2;
+			}
+			row0 += stepY0;
+			row1 += stepY1;
+			row2 += stepY2;
+		}
+	}
+
+	private static boolean isTopLeft(long dx, long dy) {
+		// Shared edges run in opposite directions in the two triangles, so exactly one of them owns the edge
+		return dy > 0 || dy == 0 && dx < 0;
+	}
+
+	/**
+	 * Build the hierarchical-Z pyramid from everything rasterized since the last {@link #clear()}.
+	 */
+	public void buildHierarchy() {
+		// Erode the depth buffer, keeping the farthest depth within each pixel's immediate neighbourhood
+		float[] level0 = hiZ[0];
+		for (int y = 0; y < height; y++) {
+			int y0 = max(0, y - 1) * width;
+			int y1 = y * width;
+			int y2 = min(height - 1, y + 1) * width;
+			for (int x = 0; x < width; x++) {
+				int x0 = max(0, x - 1);
+				int x2 = min(width - 1, x + 1);
+				float d = min(min(depth[y0 + x0], depth[y0 + x]), depth[y0 + x2]);
+				d = min(d, min(min(depth[y1 + x0], depth[y1 + x]), depth[y1 + x2]));
+				d = min(d, min(min(depth[y2 + x0], depth[y2 + x]), depth[y2 + x2]));
+				level0[y1 + x] = d;
+			}
+		}
+
+		for (int i = 1; i < hiZ.length; i++) {
+			float[] src = hiZ[i - 1];
+			float[] dst = hiZ[i];
+			int srcWidth = levelWidths[i - 1];
+			int srcHeight = levelHeights[i - 1];
+			int dstWidth = levelWidths[i];
+			int dstHeight = levelHeights[i];
+			for (int y = 0; y < dstHeight; y++) {
+				int sy0 = y * 2 * srcWidth;
+				int sy1 = min(y * 2 + 1, srcHeight - 1) * srcWidth;
+				for (int x = 0; x < dstWidth; x++) {
+					int sx0 = x * 2;
+					int sx1 = min(x * 2 + 1, srcWidth - 1);
+					dst[y * dstWidth + x] = min(
+						min(src[sy0 + sx0], src[sy0 + sx1]),
+						min(src[sy1 + sx0], src[sy1 + sx1])
+					);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check whether an axis-aligned bounding box is completely hidden behind the rasterized occluders. Boxes which are
+	 * partially behind the camera or entirely off-screen are never considered occluded.
+	 */
+	public boolean isOccluded(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		if (hiZ.length == 0)
+			return false;
+
+		float minSx = Float.POSITIVE_INFINITY, minSy = Float.POSITIVE_INFINITY;
+		float maxSx = Float.NEGATIVE_INFINITY, maxSy = Float.NEGATIVE_INFINITY;
+		float nearestInvW = 0;
+		float[] m = viewProjMatrix;
+		for (int i = 0; i < 8; i++) {
+			corner[0] = (i & 1) == 0 ? minX : maxX;
+			corner[1] = (i & 2) == 0 ? minY : maxY;
+			corner[2] = (i & 4) == 0 ? minZ : maxZ;
+			float w = m[3] * corner[0] + m[7] * corner[1] + m[11] * corner[2] + m[15];
+			if (w < MIN_W)
+				return false;
+
+			float invW = 1 / w;
+			float sx = ((m[0] * corner[0] + m[4] * corner[1] + m[8] * corner[2] + m[12]) * invW * .5f + .5f) * width;
+			float sy = ((m[1] * corner[0] + m[5] * corner[1] + m[9] * corner[2] + m[13]) * invW * .5f + .5f) * height;
+			minSx = min(minSx, sx);
+			minSy = min(minSy, sy);
+			maxSx = max(maxSx, sx);
+			maxSy = max(maxSy, sy);
+			nearestInvW = max(nearestInvW, invW);
+		}
+
+		// Include every pixel the box touches, plus one to account for rounding
+		int x0 = max(0, floor(minSx) - 1);
+		int y0 = max(0, floor(minSy) - 1);
+		int x1 = min(width - 1, floor(maxSx) + 1);
+		int y1 = min(height - 1, floor(maxSy) + 1);
+		if (x0 > x1 || y0 > y1)
+			return false;
+
+		int level = 0;
+		while (level < hiZ.length - 1 && ((x1 >> level) - (x0 >> level) >= MAX_TEST_TEXELS || (y1 >> level) - (y0 >> level) >= MAX_TEST_TEXELS))
+			level++;
+
+		float[] texels = hiZ[level];
+		int levelWidth = levelWidths[level];
+		float threshold = nearestInvW * DEPTH_BIAS;
+		for (int y = y0 >> level; y <= y1 >> level; y++)
+			for (int x = x0 >> level; x <= x1 >> level; x++)
+				if (texels[y * levelWidth + x] <= threshold)
+					return false;
+		return true;
+	}
+}
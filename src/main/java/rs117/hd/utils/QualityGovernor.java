@@ -0,0 +1,140 @@
+package rs117.hd.utils;
+
+import java.util.Arrays;
+import javax.inject.Singleton;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Adapts quality settings to keep frame times within a target budget. Frame times are gathered in windows, and the
+ * median of each full window decides whether to lower or raise quality by a step. Quality is lowered as soon as a
+ * window goes over budget, but is only raised again after several windows well under budget, so the governor doesn't
+ * oscillate around settings which are just barely affordable.
+ */
+@Slf4j
+@Singleton
+public class QualityGovernor {
+	// Multipliers for each quality level, from full quality down to the lowest the governor may go
+	private static final float[] DRAW_DISTANCE_SCALES = { 1, .9f, .8f, .7f, .6f, .5f };
+	private static final float[] SHADOW_DISTANCE_SCALES = { 1, .85f, .7f, .55f, .45f, .35f };
+	private static final float[] DETAIL_DISTANCE_SCALES = { 1, .8f, .65f, .5f, .4f, .3f };
+	// Fraction of the draw distance within which transparent scenery is depth sorted every frame
+	private static final float[] ALPHA_SORT_DISTANCE_SCALES = { 1, .75f, .5f, .4f, .3f, .25f };
+	public static final int MAX_LEVEL = DRAW_DISTANCE_SCALES.length - 1;
+
+	public static final int WINDOW_SIZE = 60;
+	// Median frame times above this fraction of the budget lower quality, and below the other raise it
+	private static final float OVER_BUDGET = 1.1f;
+	private static final float UNDER_BUDGET = .75f;
+	// Windows far over budget skip straight past the next quality level
+	private static final float FAR_OVER_BUDGET = 1.5f;
+	private static final int RECOVERY_WINDOWS = 3;
+
+	private final long[] samples = new long[WINDOW_SIZE];
+	private final long[] sortedSamples = new long[WINDOW_SIZE];
+	private int sampleCount;
+	private int underBudgetWindows;
+
+	@Getter
+	private long targetFrameTime; // 0 if disabled
+	@Getter
+	private int level;
+
+	/**
+	 * Set the frame time budget in nanoseconds, or 0 to disable the governor and return to full quality.
+	 */
+	public void setTargetFrameTime(long nanos) {
+		if (targetFrameTime == nanos)
+			return;
+		targetFrameTime = nanos;
+		reset();
+	}
+
+	public void setTargetFps(int fps) {
+		setTargetFrameTime(fps <= 0 ? 0 : 1_000_000_000L / fps);
+	}
+
+	public void reset() {
+		if (level != 0)
+			log.info("Restoring full quality, since the frame time budget changed");
+		level = 0;
+		sampleCount = 0;
+		underBudgetWindows = 0;
+	}
+
+	/**
+	 * Record the duration of a frame, and adjust quality once enough frames have been gathered.
+	 *
+	 * @param frameTime the duration of the frame in nanoseconds, which is ignored if not positive
+	 * @return whether the quality level changed
+	 */
+	public boolean update(long frameTime) {
+		if (targetFrameTime <= 0 || frameTime <= 0)
+			return false;
+
+		samples[sampleCount++] = frameTime;
+		if (sampleCount < WINDOW_SIZE)
+			return false;
+		sampleCount = 0;
+
+		// The median ignores short hitches, like garbage collection or scene loading
+		System.arraycopy(samples, 0, sortedSamples, 0, WINDOW_SIZE);
+		Arrays.sort(sortedSamples);
+		long median = sortedSamples[WINDOW_SIZE / 2];
+
+		if (median > targetFrameTime * OVER_BUDGET) {
+			underBudgetWindows = 0;
+			if (level == MAX_LEVEL)
+				return false;
+			int previousLevel = level;
+			level = Math.min(MAX_LEVEL, level + (median > targetFrameTime * FAR_OVER_BUDGET ? 2 : 1));
+			logDecision("over", median, previousLevel);
+			return true;
+		}
+
+		if (median < targetFrameTime * UNDER_BUDGET) {
+			if (level == 0 || ++underBudgetWindows < RECOVERY_WINDOWS)
+				return false;
+			underBudgetWindows = 0;
+			int previousLevel = level;
+			level--;
+			logDecision("under", median, previousLevel);
+			return true;
+		}
+
+		underBudgetWindows = 0;
+		return false;
+	}
+
+	private void logDecision(String comparison, long median, int previousLevel) {
+		log.info(
+			"Median frame time {} ms is {} the {} ms budget, changing quality level from {} to {} " +
+			"(draw distance {}%, shadow distance {}%, detail distance {}%, alpha sort distance {}%)",
+			String.format("%.2f", median / 1e6),
+			comparison,
+			String.format("%.2f", targetFrameTime / 1e6),
+			previousLevel,
+			level,
+			Math.round(getDrawDistanceScale() * 100),
+			Math.round(getShadowDistanceScale() * 100),
+			Math.round(getDetailDistanceScale() * 100),
+			Math.round(getAlphaSortDistanceScale() * 100)
+		);
+	}
+
+	public float getDrawDistanceScale() {
+		return DRAW_DISTANCE_SCALES[level];
+	}
+
+	public float getShadowDistanceScale() {
+		return SHADOW_DISTANCE_SCALES[level];
+	}
+
+	public float getDetailDistanceScale() {
+		return DETAIL_DISTANCE_SCALES[level];
+	}
+
+	public float getAlphaSortDistanceScale() {
+		return ALPHA_SORT_DISTANCE_SCALES[level];
+	}
+}
@@ -3,15 +3,19 @@ package rs117.hd.utils;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Supplier;
+import rs117.hd.opengl.GLDispatch;
 import rs117.hd.opengl.GLState;
 import rs117.hd.opengl.shader.ShaderProgram;
 
-import static org.lwjgl.opengl.GL33C.*;
+import static org.lwjgl.opengl.GL33C.GL_ELEMENT_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL33C.GL_UNIFORM_BUFFER;
 import static org.lwjgl.opengl.GL40.GL_DRAW_INDIRECT_BUFFER;
 
 public final class RenderState {
 	private final List<GLState> states = new ArrayList<>();
 
+	public final GLDispatch gl;
+
 	public final GLFramebuffer framebuffer = addState(GLFramebuffer::new);
 	public final GLFramebufferTextureLayer framebufferTextureLayer = addState(GLFramebufferTextureLayer::new);
 	public final GLDrawBuffer drawBuffer = addState(GLDrawBuffer::new);
@@ -27,6 +31,14 @@ public final class RenderState {
 	public final GLEnable enable = addState(GLEnable::new);
 	public final GLDisable disable = addState(GLDisable::new);
 
+	public RenderState() {
+		this(GLDispatch.LWJGL);
+	}
+
+	public RenderState(GLDispatch gl) {
+		this.gl = gl;
+	}
+
 	public void apply() {
 		for (GLState state : states)
 			state.apply();
@@ -43,44 +55,44 @@ public final class RenderState {
 		return state;
 	}
 
-	public static final class GLFramebuffer extends GLState.IntArray {
+	public final class GLFramebuffer extends GLState.IntArray {
 		private GLFramebuffer() {
 			super(2);
 		}
 
 		@Override
-		protected void applyValues(int[] values) { glBindFramebuffer(values[0], values[1]); }
+		protected void applyValues(int[] values) { gl.bindFramebuffer(values[0], values[1]); }
 	}
 
-	public static final class GLFramebufferTextureLayer extends GLState.IntArray {
+	public final class GLFramebufferTextureLayer extends GLState.IntArray {
 		private GLFramebufferTextureLayer() { super(5); }
 
 		@Override
 		protected void applyValues(int[] values) {
-			glFramebufferTextureLayer(values[0], values[1], values[2], values[3], values[4]);
+			gl.framebufferTextureLayer(values[0], values[1], values[2], values[3], values[4]);
 		}
 	}
 
-	public static final class GLViewport extends GLState.IntArray {
+	public final class GLViewport extends GLState.IntArray {
 		private GLViewport() {
 			super(4);
 		}
 
 		@Override
-		protected void applyValues(int[] values) { glViewport(values[0], values[1], values[2], values[3]); }
+		protected void applyValues(int[] values) { gl.viewport(values[0], values[1], values[2], values[3]); }
 	}
 
-	public static final class GLShaderProgram extends GLState.Object<ShaderProgram> {
+	public final class GLShaderProgram extends GLState.Object<ShaderProgram> {
 		@Override
-		protected void applyValue(ShaderProgram program) { program.use(); }
+		protected void applyValue(ShaderProgram program) { gl.useProgram(program); }
 	}
 
-	public static final class GLDrawBuffer extends GLState.Int {
+	public final class GLDrawBuffer extends GLState.Int {
 		@Override
-		protected void applyValue(int buf) { glDrawBuffer(buf); }
+		protected void applyValue(int buf) { gl.drawBuffer(buf); }
 	}
 
-	public static final class GLVao extends GLState {
+	public final class GLVao extends GLState {
 		int vao, ebo;
 		int appliedVao, appliedEbo;
 
@@ -97,53 +109,53 @@ public final class RenderState {
 		@Override
 		protected void internalApply() {
 			if (!hasApplied || vao != appliedVao)
-				glBindVertexArray(vao);
+				gl.bindVertexArray(vao);
 			if (ebo != 0 && (!hasApplied || ebo != appliedEbo))
-				glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ebo);
+				gl.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, ebo);
 		}
 	}
 
-	public static final class GLIdo extends GLState.Int {
+	public final class GLIdo extends GLState.Int {
 		@Override
-		protected void applyValue(int ebo) { glBindBuffer(GL_DRAW_INDIRECT_BUFFER, ebo); }
+		protected void applyValue(int ebo) { gl.bindBuffer(GL_DRAW_INDIRECT_BUFFER, ebo); }
 	}
 
-	public static final class GLUbo extends GLState.Int {
+	public final class GLUbo extends GLState.Int {
 		@Override
-		protected void applyValue(int ubo) { glBindBuffer(GL_UNIFORM_BUFFER, ubo); }
+		protected void applyValue(int ubo) { gl.bindBuffer(GL_UNIFORM_BUFFER, ubo); }
 	}
 
-	public static final class GLDepthMask extends GLState.Bool {
+	public final class GLDepthMask extends GLState.Bool {
 		@Override
-		protected void applyValue(boolean enabled) { glDepthMask(enabled); }
+		protected void applyValue(boolean enabled) { gl.depthMask(enabled); }
 	}
 
-	public static final class GLDepthFunc extends GLState.Int {
+	public final class GLDepthFunc extends GLState.Int {
 		@Override
-		protected void applyValue(int func) { glDepthFunc(func); }
+		protected void applyValue(int func) { gl.depthFunc(func); }
 	}
 
-	public static final class GLBlendFunc extends GLState.IntArray {
+	public final class GLBlendFunc extends GLState.IntArray {
 		private GLBlendFunc() {
 			super(4);
 		}
 
 		@Override
-		protected void applyValues(int[] values) { glBlendFuncSeparate(values[0], values[1], values[2], values[3]); }
+		protected void applyValues(int[] values) { gl.blendFuncSeparate(values[0], values[1], values[2], values[3]); }
 	}
 
-	public static final class GLColorMask extends GLState.BoolArray {
+	public final class GLColorMask extends GLState.BoolArray {
 		private GLColorMask() {
 			super(4);
 		}
 
 		@Override
-		protected void applyValues(boolean[] values) { glColorMask(values[0], values[1], values[2], values[3]); }
+		protected void applyValues(boolean[] values) { gl.colorMask(values[0], values[1], values[2], values[3]); }
 	}
 
 	public final class GLEnable extends GLState.IntSet {
 		@Override
-		protected void applyTarget(int target) { glEnable(target); }
+		protected void applyTarget(int target) { gl.enable(target); }
 
 		public void set(int target) {
 			add(target);
@@ -153,7 +165,7 @@ public final class RenderState {
 
 	public final class GLDisable extends GLState.IntSet {
 		@Override
-		protected void applyTarget(int target) { glDisable(target); }
+		protected void applyTarget(int target) { gl.disable(target); }
 
 		public void set(int target) {
 			add(target);
@@ -520,6 +520,31 @@ public class GLBuffer implements Destructible {
 		return true;
 	}
 
+	/**
+	 * Move the first {@code numBytes} into a smaller buffer, if they fit in at most half of the current capacity.
+	 * This changes the buffer ID, so anything referring to the old ID must be updated.
+	 *
+	 * @return whether the buffer was reallocated
+	 */
+	public boolean shrinkToFit(long numBytes) {
+		assert !isMapped();
+		long newSize = ceilPow2(max(1, numBytes));
+		if (newSize >= size || isStorageBuffer())
+			return false;
+
+		int oldBuffer = id;
+		id = glGenBuffers();
+		bind();
+		glBufferData(target, newSize, usage);
+		unbind();
+		size = newSize;
+
+		if (numBytes > 0)
+			copyRangeTo(oldBuffer, id, 0, 0, numBytes);
+		glDeleteBuffers(oldBuffer);
+		return true;
+	}
+
 	public boolean isStorageBuffer() {
 		return storageFlags != STORAGE_NONE && SUPPORTS_STORAGE_BUFFERS;
 	}
@@ -43,6 +43,17 @@ public class GLTextureBuffer extends GLBuffer {
 		return resized;
 	}
 
+	@Override
+	public boolean shrinkToFit(long numBytes) {
+		if (!super.shrinkToFit(numBytes))
+			return false;
+
+		glBindTexture(target, texId);
+		glTexBuffer(target, GL_RGB32I, id);
+		glBindTexture(target, 0);
+		return true;
+	}
+
 	@Override
 	public void destroy() {
 		if (texId != 0) {
@@ -192,6 +192,23 @@ public final class IntHashSet implements Iterable<Integer> {
 		size = 0;
 	}
 
+	/**
+	 * Find the next occupied slot after the specified index, allowing iteration without boxing or allocating an iterator:
+	 * {@code for (int i = set.nextIndex(-1); i != -1; i = set.nextIndex(i)) set.keyAt(i);}
+	 *
+	 * @return the next occupied index, or -1 if there are no more keys
+	 */
+	public int nextIndex(int index) {
+		while (++index < keys.length)
+			if (keys[index] != EMPTY)
+				return index;
+		return -1;
+	}
+
+	public int keyAt(int index) {
+		return keys[index];
+	}
+
 	public boolean isEmpty() {
 		return size == 0;
 	}
@@ -13,4 +13,5 @@ public final class ClientCallbackJob {
 
 	final Semaphore semaphore = new Semaphore(0);
 	public Runnable callback;
+	long traceFlowId;
 }
@@ -36,6 +36,11 @@ public final class GenericJob extends Job {
 		POOL.recycle(this);
 	}
 
+	@Override
+	String getTraceName() {
+		return context;
+	}
+
 	@Override
 	public String toString() {
 		return super.toString() + " " + context;
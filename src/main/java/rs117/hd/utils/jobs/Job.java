@@ -1,6 +1,7 @@
 package rs117.hd.utils.jobs;
 
 import com.google.inject.Injector;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -22,6 +23,8 @@ public abstract class Job {
 
 	boolean executeAsync = true;
 	JobHandle handle;
+	// Set by suspendForClientCallback, and run by the client thread once onRun has returned
+	Runnable pendingClientCallback;
 
 	public final void waitForCompletion() {
 		waitForCompletion(false);
@@ -103,7 +106,7 @@ public abstract class Job {
 	}
 
 	public final boolean isHighPriority() {
-		return (group != null && group.highPriority) || (handle != null && handle.highPriority);
+		return (group != null && group.isHighPriority()) || (handle != null && handle.isHighPriority());
 	}
 
 	protected static Injector getInjector() { return JOB_SYSTEM.injector; }
@@ -112,6 +115,27 @@ public abstract class Job {
 		JOB_SYSTEM.invokeClientCallback(callback);
 	}
 
+	/**
+	 * Suspend the job until the callback has been run on the client thread, without blocking the worker in the meantime.
+	 * Callbacks are batched, and run at fixed points each frame, or shortly after being requested if no frame is drawn.
+	 * <p>
+	 * onRun must return right after calling this, and will be called again by a worker once the callback has run, so the
+	 * job needs to keep track of where it should continue from. If the callback throws, the job is cancelled instead.
+	 * Jobs which aren't executed asynchronously run the callback immediately, and continue without returning.
+	 *
+	 * @return true if onRun should return, or false if the callback has already run
+	 */
+	protected final boolean suspendForClientCallback(Runnable callback) throws InterruptedException {
+		if (handle == null || handle.worker == null) {
+			invokeClientCallback(callback);
+			return false;
+		}
+
+		assert pendingClientCallback == null : "The job is already suspended";
+		pendingClientCallback = callback;
+		return true;
+	}
+
 	public final void workerHandleCancel() throws InterruptedException {
 		if (handle == null)
 			return;
@@ -131,7 +155,7 @@ public abstract class Job {
 	public final <T extends Job> T queue(JobGroup<T> group, Job... dependencies) {
 		assert group != null;
 		waitForCompletion();
-		JOB_SYSTEM.queue(this, group.highPriority, dependencies);
+		JOB_SYSTEM.queue(this, group.priority, 0, dependencies);
 		if (executeAsync) {
 			this.group = (JobGroup<Job>) group;
 			this.group.pending.add(this);
@@ -140,19 +164,35 @@ public abstract class Job {
 	}
 
 	public final <T extends Job> T queue(boolean highPriority, Job... dependencies) {
+		return queue(JobPriority.of(highPriority), dependencies);
+	}
+
+	public final <T extends Job> T queue(JobPriority priority, Job... dependencies) {
 		waitForCompletion();
-		JOB_SYSTEM.queue(this, highPriority, dependencies);
+		JOB_SYSTEM.queue(this, priority, 0, dependencies);
 		return (T) this;
 	}
 
-	public final <T extends Job> T queue(Job... dependencies) {
+	/**
+	 * Queue the job, and have workers pick it up ahead of higher priority work if it hasn't started within the deadline.
+	 */
+	public final <T extends Job> T queue(JobPriority priority, long deadline, TimeUnit unit, Job... dependencies) {
 		waitForCompletion();
-		JOB_SYSTEM.queue(this, true, dependencies);
+		long deadlineNanos = System.nanoTime() + unit.toNanos(deadline);
+		JOB_SYSTEM.queue(this, priority, deadlineNanos == 0 ? 1 : deadlineNanos, dependencies);
 		return (T) this;
 	}
 
+	public final <T extends Job> T queue(Job... dependencies) {
+		return queue(JobPriority.FRAME_CRITICAL, dependencies);
+	}
+
 	protected abstract void onRun() throws InterruptedException;
 
+	String getTraceName() {
+		return getClass().getSimpleName();
+	}
+
 	protected boolean canStart() { return true; }
 
 	protected void onCompletion() {}
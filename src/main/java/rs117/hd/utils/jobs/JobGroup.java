@@ -2,21 +2,30 @@ package rs117.hd.utils.jobs;
 
 import java.util.concurrent.ConcurrentLinkedQueue;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
-@RequiredArgsConstructor
 public final class JobGroup<T extends Job> {
 	@Getter
 	final ConcurrentLinkedQueue<T> pending = new ConcurrentLinkedQueue<>();
 
 	@Getter
-	final boolean highPriority;
+	final JobPriority priority;
 
 	@Getter
 	final boolean autoRelease;
 
+	public JobGroup(JobPriority priority, boolean autoRelease) {
+		this.priority = priority;
+		this.autoRelease = autoRelease;
+	}
+
+	public JobGroup(boolean highPriority, boolean autoRelease) {
+		this(JobPriority.of(highPriority), autoRelease);
+	}
+
+	public boolean isHighPriority() { return priority == JobPriority.FRAME_CRITICAL; }
+
 	public int getPendingCount() { return pending.size(); }
 
 	public void complete() {
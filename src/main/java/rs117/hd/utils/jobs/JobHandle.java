@@ -23,8 +23,9 @@ final class JobHandle extends AbstractQueuedSynchronizer {
 	public static final int STATE_RUNNING = 2;
 	public static final int STATE_CANCELLED = 3;
 	public static final int STATE_COMPLETED = 4;
+	public static final int STATE_SUSPENDED = 5;
 
-	private static final String[] STATE_NAMES = { "NONE", "QUEUED", "RUNNING", "CANCELLED", "COMPLETED" };
+	private static final String[] STATE_NAMES = { "NONE", "QUEUED", "RUNNING", "CANCELLED", "COMPLETED", "SUSPENDED" };
 	private static final long DEADLOCK_TIMEOUT_SECONDS = 10;
 	private static final ConcurrentPool<JobHandle> POOL = new ConcurrentPool<>(JobHandle::new);
 
@@ -41,7 +42,11 @@ final class JobHandle extends AbstractQueuedSynchronizer {
 	@Getter
 	Worker worker;
 	@Getter
-	boolean highPriority;
+	JobPriority priority = JobPriority.FRAME_CRITICAL;
+	// System.nanoTime() by which the work should have been started, or 0 if it has no deadline
+	long deadlineNanos;
+	long queuedNanos;
+	long traceFlowId;
 
 	static JobHandle obtain() {
 		JobHandle handle = POOL.acquire();
@@ -60,7 +65,10 @@ final class JobHandle extends AbstractQueuedSynchronizer {
 		handle.setStateAQS(0);
 
 		handle.depCount.set(0);
-		handle.highPriority = false;
+		handle.priority = JobPriority.FRAME_CRITICAL;
+		handle.deadlineNanos = 0;
+		handle.queuedNanos = 0;
+		handle.traceFlowId = 0;
 		handle.item = null;
 		handle.worker = null;
 
@@ -124,8 +132,7 @@ final class JobHandle extends AbstractQueuedSynchronizer {
 	}
 
 	synchronized boolean setRunning(Worker worker) {
-		if (isInQueue()) {
-			setJobState(STATE_RUNNING);
+		if (compareAndSetJobState(STATE_QUEUED, STATE_RUNNING)) {
 			this.worker = worker;
 			return true;
 		}
@@ -135,6 +142,25 @@ final class JobHandle extends AbstractQueuedSynchronizer {
 	synchronized void setInQueue() {
 		assert isIdle() : "State should be NONE but is " + STATE_NAMES[jobState.get()];
 		setJobState(STATE_QUEUED);
+		queuedNanos = System.nanoTime();
+	}
+
+	synchronized boolean setSuspended() {
+		// The job may have been cancelled while it was running
+		if (!compareAndSetJobState(STATE_RUNNING, STATE_SUSPENDED))
+			return false;
+		worker = null;
+		return true;
+	}
+
+	/**
+	 * Move a suspended handle back into the queue, unless it was cancelled while suspended.
+	 */
+	synchronized boolean resume() {
+		if (!compareAndSetJobState(STATE_SUSPENDED, STATE_QUEUED))
+			return false;
+		queuedNanos = System.nanoTime();
+		return true;
 	}
 
 	synchronized void setCompleted() throws InterruptedException {
@@ -143,12 +169,6 @@ final class JobHandle extends AbstractQueuedSynchronizer {
 		final boolean wasCancelled = isCancelled();
 		setJobState(STATE_COMPLETED);
 
-		if (item != null)
-			item.done.set(true);
-
-		// Signal completion via AQS
-		releaseShared(0);
-
 		if (item != null)
 			item.onCompletion();
 
@@ -168,7 +188,9 @@ final class JobHandle extends AbstractQueuedSynchronizer {
 				if (VALIDATE)
 					log.debug("Handle [{}] Adding: [{}] to queue", this, dep);
 
-				if (dep.isHighPriority()) {
+				if (worker == null) {
+					JOB_SYSTEM.addToQueue(dep);
+				} else if (dep.isHighPriority()) {
 					worker.localWorkQueue.addFirst(dep);
 				} else {
 					worker.localWorkQueue.addLast(dep);
@@ -178,8 +200,14 @@ final class JobHandle extends AbstractQueuedSynchronizer {
 			}
 		}
 
-		if (queuedWork > 1)
-			JOB_SYSTEM.signalWorkAvailable(queuedWork - 1);
+		// The completing worker picks up the first dependant itself
+		if (worker == null ? queuedWork > 0 : queuedWork > 1)
+			JOB_SYSTEM.signalWorkAvailable(worker == null ? queuedWork : queuedWork - 1);
+
+		// Signal completion last, since the handle may be released and reused as soon as waiters wake up
+		if (item != null)
+			item.done.set(true);
+		releaseShared(0);
 	}
 
 	private void setJobState(int newState) {
@@ -189,6 +217,13 @@ final class JobHandle extends AbstractQueuedSynchronizer {
 		jobState.set(newState);
 	}
 
+	private boolean compareAndSetJobState(int expectedState, int newState) {
+		if (!jobState.compareAndSet(expectedState, newState))
+			return false;
+		if (VALIDATE) log.trace("[{}] {} -> {}", hashCode(), STATE_NAMES[expectedState], STATE_NAMES[newState]);
+		return true;
+	}
+
 	private void setStateAQS(int value) {
 		setState(value); // AQS state for completion: 0 = not done, 1 = done
 	}
@@ -212,18 +247,20 @@ final class JobHandle extends AbstractQueuedSynchronizer {
 	}
 
 	void cancel(boolean block) throws InterruptedException {
-		if (item == null || isCancelled() || isCompleted())
-			return;
-
-		int prevState = jobState.get();
-		setJobState(STATE_CANCELLED);
+		// The handle may be completed or cancelled concurrently, which mustn't be overwritten
+		int prevState;
+		do {
+			if (item == null || isCancelled() || isCompleted())
+				return;
+			prevState = jobState.get();
+		} while (!compareAndSetJobState(prevState, STATE_CANCELLED));
 
 		if (item != null)
 			item.wasCancelled.set(true);
 
 		if (VALIDATE) log.debug("Cancelling [{}] state: [{}]", this, STATE_NAMES[prevState]);
 
-		if (prevState == STATE_NONE || (prevState == STATE_QUEUED && JOB_SYSTEM.workQueue.remove(this))) {
+		if (prevState == STATE_NONE || (prevState == STATE_QUEUED && JOB_SYSTEM.removeFromQueue(this))) {
 			setCompleted();
 			return;
 		}
@@ -235,11 +272,20 @@ final class JobHandle extends AbstractQueuedSynchronizer {
 			await();
 	}
 
+	boolean isHighPriority() { return priority == JobPriority.FRAME_CRITICAL; }
+
+	boolean isOverdue(long now) {
+		return
+			priority.maxWaitNanos > 0 && now - queuedNanos >= priority.maxWaitNanos ||
+			deadlineNanos != 0 && now - deadlineNanos >= 0;
+	}
+
 	boolean isReleased() { return isIdle() && refCounter.get() == 0; }
 	boolean isIdle() { return jobState.get() == STATE_NONE; }
 	boolean isInQueue() { return jobState.get() == STATE_QUEUED; }
 	boolean isCancelled() { return jobState.get() == STATE_CANCELLED; }
 	boolean isCompleted() { return jobState.get() == STATE_COMPLETED; }
+	boolean isSuspended() { return jobState.get() == STATE_SUSPENDED; }
 
 	boolean await() throws InterruptedException {
 		return await(-1);
@@ -249,6 +295,13 @@ final class JobHandle extends AbstractQueuedSynchronizer {
 		refCounter.incrementAndGet();
 
 		final boolean isClientThread = JOB_SYSTEM.client != null && JOB_SYSTEM.client.isClientThread();
+		if (isInQueue())
+			JOB_SYSTEM.promote(this);
+		final JobTracer tracer = JOB_SYSTEM.tracer;
+		final Job tracedItem = tracer.isEnabled() && !isDone() ? item : null;
+		final String traceName = tracedItem != null ? "Wait for " + tracedItem.getTraceName() : null;
+		final long traceStart = traceName != null ? System.nanoTime() : 0;
+		long blockedStart = 0;
 		try {
 			if (!isDone()) {
 				if (isClientThread) {
@@ -281,6 +334,7 @@ final class JobHandle extends AbstractQueuedSynchronizer {
 						}
 					}
 				} else {
+					blockedStart = System.nanoTime();
 					if (timeoutNanos > 0) {
 						if (!tryAcquireSharedNanos(0, timeoutNanos))
 							return false;
@@ -291,6 +345,10 @@ final class JobHandle extends AbstractQueuedSynchronizer {
 				}
 			}
 		} finally {
+			if (traceName != null)
+				tracer.complete(traceName, traceStart);
+			if (blockedStart != 0 && JOB_SYSTEM.isWorker())
+				JOB_SYSTEM.addWorkerBlockedTime(System.nanoTime() - blockedStart);
 			refCounter.decrementAndGet();
 		}
 		return true;
@@ -0,0 +1,61 @@
+package rs117.hd.utils.jobs;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lock-free histogram of queue latencies, with four logarithmic buckets per power of two nanoseconds.
+ */
+public final class JobLatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicIntegerArray buckets = new AtomicIntegerArray(BUCKET_COUNT);
+
+	public void record(long nanos) {
+		buckets.incrementAndGet(bucketIndex(Math.max(0, nanos)));
+	}
+
+	/**
+	 * Get an upper bound of the given percentile of the recorded latencies, or 0 if nothing has been recorded.
+	 *
+	 * @param percentile between 0 and 1
+	 */
+	public long getPercentile(float percentile) {
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			total += buckets.get(i);
+		if (total == 0)
+			return 0;
+
+		long target = Math.max(1, (long) Math.ceil(total * percentile));
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			count += buckets.get(i);
+			if (count >= target)
+				return bucketUpperBound(i);
+		}
+		return bucketUpperBound(BUCKET_COUNT - 1);
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			buckets.set(i, 0);
+	}
+
+	static int bucketIndex(long nanos) {
+		if (nanos < SUB_BUCKETS)
+			return (int) nanos;
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int mantissa = (int) (nanos >>> exponent - SUB_BUCKET_BITS) & SUB_BUCKETS - 1;
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+	}
+
+	static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long mantissa = index % SUB_BUCKETS + SUB_BUCKETS + 1;
+		return exponent >= 62 ? Long.MAX_VALUE : (mantissa << exponent - SUB_BUCKET_BITS) - 1;
+	}
+}
@@ -0,0 +1,36 @@
+package rs117.hd.utils.jobs;
+
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Priority classes of the job system. Workers always pick work from the highest class with work available, except for
+ * work which has been waiting for longer than its class allows, which is picked first to guarantee it isn't starved.
+ */
+@RequiredArgsConstructor
+public enum JobPriority {
+	/**
+	 * Work the current frame is waiting on, such as culling, sorting and async model processing.
+	 */
+	FRAME_CRITICAL(0),
+	/**
+	 * Work needed within the next few frames, such as scene loading and zone invalidation.
+	 */
+	FRAME_DEFERRED(TimeUnit.MILLISECONDS.toNanos(100)),
+	/**
+	 * Work nobody is waiting on yet, such as streaming in zones ahead of the player. Subject to the per-frame budget.
+	 */
+	BACKGROUND(TimeUnit.MILLISECONDS.toNanos(250)),
+	;
+
+	public static final JobPriority[] PRIORITIES = values();
+
+	/**
+	 * The longest queued work of this class may be passed over by work of a higher class, or 0 if never.
+	 */
+	public final long maxWaitNanos;
+
+	public static JobPriority of(boolean highPriority) {
+		return highPriority ? FRAME_CRITICAL : BACKGROUND;
+	}
+}
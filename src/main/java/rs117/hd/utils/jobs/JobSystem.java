@@ -3,7 +3,9 @@ package rs117.hd.utils.jobs;
 import com.google.inject.Injector;
 import java.util.HashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import lombok.Getter;
@@ -13,6 +15,7 @@ import net.runelite.client.callback.ClientThread;
 import rs117.hd.HdPlugin;
 import rs117.hd.config.CpuUsageLimit;
 import rs117.hd.overlays.FrameTimer;
+import rs117.hd.overlays.Timer;
 
 import static rs117.hd.HdPlugin.PROCESSOR_COUNT;
 import static rs117.hd.utils.MathUtils.*;
@@ -22,6 +25,12 @@ import static rs117.hd.utils.MathUtils.*;
 public final class JobSystem {
 	public static final boolean VALIDATE = false;
 
+	private static final Timer[] QUEUE_LATENCY_TIMERS = {
+		Timer.FRAME_CRITICAL_JOB_LATENCY,
+		Timer.FRAME_DEFERRED_JOB_LATENCY,
+		Timer.BACKGROUND_JOB_LATENCY
+	};
+
 	@Inject
 	public Injector injector;
 
@@ -38,20 +47,39 @@ public final class JobSystem {
 	public FrameTimer frametimer;
 
 	@Getter
-	boolean active;
+	volatile boolean active;
+
+	public final JobTracer tracer = new JobTracer();
 
 	private int workerCount;
 
-	final ConcurrentLinkedDeque<JobHandle> workQueue = new ConcurrentLinkedDeque<>();
+	@SuppressWarnings("unchecked")
+	final ConcurrentLinkedDeque<JobHandle>[] workQueues = new ConcurrentLinkedDeque[JobPriority.PRIORITIES.length];
+	private final JobLatencyHistogram[] queueLatencies = new JobLatencyHistogram[JobPriority.PRIORITIES.length];
+	private final AtomicLong backgroundNanos = new AtomicLong();
+	// The earliest explicit deadline of queued work, or 0 if there is none
+	private final AtomicLong earliestDeadlineNanos = new AtomicLong();
+	private volatile long backgroundBudgetNanos;
 	private final ConcurrentLinkedDeque<ClientCallbackJob> clientCallbacks = new ConcurrentLinkedDeque<>();
+	private final ConcurrentLinkedQueue<JobHandle> suspendedJobs = new ConcurrentLinkedQueue<>();
+	private final AtomicLong workerBlockedNanos = new AtomicLong();
+	@Getter
+	private long lastFrameWorkerBlockedNanos;
 
 	private final HashMap<Thread, Worker> threadToWorker = new HashMap<>();
 
-	private boolean clientInvokeScheduled;
+	private volatile boolean clientInvokeScheduled;
 
 	Worker[] workers;
 	Semaphore workerSemaphore;
 
+	{
+		for (int i = 0; i < workQueues.length; i++) {
+			workQueues[i] = new ConcurrentLinkedDeque<>();
+			queueLatencies[i] = new JobLatencyHistogram();
+		}
+	}
+
 	public void startUp(CpuUsageLimit cpuUsageLimit) {
 		workerCount = max(1, ceil((PROCESSOR_COUNT - 1) * cpuUsageLimit.threadRatio));
 		workers = new Worker[workerCount];
@@ -83,7 +111,152 @@ public final class JobSystem {
 	}
 
 	public int getWorkQueueSize() {
-		return workQueue.size();
+		int size = 0;
+		for (var queue : workQueues)
+			size += queue.size();
+		return size;
+	}
+
+	public int getWorkQueueSize(JobPriority priority) {
+		return workQueues[priority.ordinal()].size();
+	}
+
+	/**
+	 * Limit how much worker time may be spent on {@link JobPriority#BACKGROUND} work each frame, leaving more of the
+	 * processor to the client while it's drawing. Background work which has been waiting for too long is still picked
+	 * up once the budget has been exceeded.
+	 *
+	 * @param budgetNanos the budget per frame, or 0 for no limit
+	 */
+	public void setBackgroundFrameBudget(long budgetNanos) {
+		backgroundBudgetNanos = max(0, budgetNanos);
+	}
+
+	public boolean isBackgroundBudgetExceeded() {
+		long budget = backgroundBudgetNanos;
+		return budget > 0 && backgroundNanos.get() >= budget;
+	}
+
+	/**
+	 * Should be called by the client thread once per frame, to reset the background budget and report queue latencies.
+	 */
+	public void endFrame() {
+		for (int i = 0; i < queueLatencies.length; i++) {
+			if (frametimer != null)
+				frametimer.add(QUEUE_LATENCY_TIMERS[i], queueLatencies[i].getPercentile(.99f));
+			queueLatencies[i].reset();
+		}
+
+		lastFrameWorkerBlockedNanos = workerBlockedNanos.getAndSet(0);
+
+		boolean wasExceeded = isBackgroundBudgetExceeded();
+		backgroundNanos.set(0);
+		if (wasExceeded && active)
+			signalWorkAvailable(workQueues[JobPriority.BACKGROUND.ordinal()].size());
+	}
+
+	/**
+	 * Whether there is queued work which workers may only pick up once it becomes overdue or the next frame starts.
+	 */
+	boolean hasDeferredWork() {
+		return isBackgroundBudgetExceeded() && !workQueues[JobPriority.BACKGROUND.ordinal()].isEmpty();
+	}
+
+	JobHandle pollWork() {
+		final long now = System.nanoTime();
+		final long earliestDeadline = earliestDeadlineNanos.get();
+		if (earliestDeadline != 0 && now - earliestDeadline >= 0) {
+			JobHandle handle = pollPastDeadline(now, earliestDeadline);
+			if (handle != null)
+				return handle;
+		}
+
+		// Work which has waited for longer than its class allows is picked first, so it can't be starved.
+		// Lower priority queues are FIFO, so only the head can have been waiting for the longest.
+		for (int i = 1; i < workQueues.length; i++) {
+			JobHandle head = workQueues[i].peek();
+			if (head != null && head.isOverdue(now) && workQueues[i].remove(head))
+				return head;
+		}
+
+		for (int i = 0; i < workQueues.length; i++) {
+			if (i == JobPriority.BACKGROUND.ordinal() && isBackgroundBudgetExceeded())
+				break;
+			JobHandle handle = workQueues[i].poll();
+			if (handle != null)
+				return handle;
+		}
+		return null;
+	}
+
+	/**
+	 * Explicit deadlines may be out of order within a queue, so queues are only searched once the earliest one is due.
+	 */
+	private JobHandle pollPastDeadline(long now, long earliestDeadline) {
+		// Only one worker needs to search the queues, and the remaining deadlines are tracked again while searching
+		if (!earliestDeadlineNanos.compareAndSet(earliestDeadline, 0))
+			return null;
+
+		JobHandle found = null;
+		for (var queue : workQueues) {
+			for (JobHandle handle : queue) {
+				if (handle.deadlineNanos == 0)
+					continue;
+				if (found == null && now - handle.deadlineNanos >= 0 && queue.remove(handle)) {
+					found = handle;
+				} else {
+					trackDeadline(handle.deadlineNanos);
+				}
+			}
+		}
+		return found;
+	}
+
+	private void trackDeadline(long deadlineNanos) {
+		earliestDeadlineNanos.accumulateAndGet(
+			deadlineNanos,
+			(earliest, deadline) -> earliest == 0 || deadline - earliest < 0 ? deadline : earliest
+		);
+	}
+
+	boolean removeFromQueue(JobHandle handle) {
+		return workQueues[handle.priority.ordinal()].remove(handle);
+	}
+
+	void addToQueue(JobHandle handle) {
+		// Frame-critical work is most likely being waited on by the most recent caller, so it's picked LIFO
+		if (handle.priority == JobPriority.FRAME_CRITICAL) {
+			workQueues[handle.priority.ordinal()].addFirst(handle);
+		} else {
+			workQueues[handle.priority.ordinal()].addLast(handle);
+		}
+	}
+
+	/**
+	 * Move queued work someone is waiting on to the front of the queue, so it isn't held back by its priority class.
+	 */
+	void promote(JobHandle handle) {
+		if (handle.priority == JobPriority.FRAME_CRITICAL || !removeFromQueue(handle))
+			return;
+		handle.priority = JobPriority.FRAME_CRITICAL;
+		workQueues[JobPriority.FRAME_CRITICAL.ordinal()].addFirst(handle);
+		signalWorkAvailable(1);
+	}
+
+	void onStarted(JobHandle handle) {
+		queueLatencies[handle.priority.ordinal()].record(System.nanoTime() - handle.queuedNanos);
+	}
+
+	void onFinished(JobHandle handle, long runNanos) {
+		if (handle.priority == JobPriority.BACKGROUND)
+			backgroundNanos.addAndGet(runNanos);
+	}
+
+	/**
+	 * Account for time a worker spent blocked on the client thread or on other jobs, instead of doing work.
+	 */
+	void addWorkerBlockedTime(long nanos) {
+		workerBlockedNanos.addAndGet(nanos);
 	}
 
 	private void cancelAllWork(ConcurrentLinkedDeque<JobHandle> queue) {
@@ -101,7 +274,9 @@ public final class JobSystem {
 
 	public void shutDown() {
 		active = false;
-		cancelAllWork(workQueue);
+		for (var queue : workQueues)
+			cancelAllWork(queue);
+		cancelSuspendedJobs();
 
 		for (Worker worker : workers) {
 			cancelAllWork(worker.localWorkQueue);
@@ -157,12 +332,13 @@ public final class JobSystem {
 	}
 
 	public void printWorkersState() {
-		log.debug("WorkQueue Size: {}", workQueue.size());
+		for (var priority : JobPriority.PRIORITIES)
+			log.debug("WorkQueue Size ({}): {}", priority, workQueues[priority.ordinal()].size());
 		for (Worker worker : workers)
 			worker.printState();
 	}
 
-	void queue(Job item, boolean highPriority, Job... dependencies) {
+	void queue(Job item, JobPriority priority, long deadlineNanos, Job... dependencies) {
 		if (!item.executeAsync) {
 			try {
 				item.queued.set(true);
@@ -181,8 +357,18 @@ public final class JobSystem {
 		}
 
 		JobHandle newHandle = item.handle = JobHandle.obtain();
-		newHandle.highPriority = highPriority;
+		newHandle.priority = priority;
+		newHandle.deadlineNanos = deadlineNanos;
 		newHandle.item = item;
+		if (deadlineNanos != 0)
+			trackDeadline(deadlineNanos);
+
+		if (tracer.isEnabled()) {
+			long traceStart = System.nanoTime();
+			String name = item.getTraceName();
+			newHandle.traceFlowId = tracer.flowStart(name);
+			tracer.complete("Queue " + name, traceStart);
+		}
 
 		boolean shouldQueue = true;
 		for (Job dep : dependencies) {
@@ -197,15 +383,12 @@ public final class JobSystem {
 		item.wasCancelled.set(false);
 		item.encounteredError.set(false);
 		item.ranToCompletion.set(false);
+		item.pendingClientCallback = null;
 
 		if (shouldQueue) {
 			newHandle.setInQueue();
 			if (VALIDATE) log.debug("Handle [{}] Added to queue (Dep Count: {{}})", newHandle, dependencies);
-			if (highPriority) {
-				workQueue.addFirst(newHandle);
-			} else {
-				workQueue.addLast(newHandle);
-			}
+			addToQueue(newHandle);
 		}
 
 		signalWorkAvailable(1);
@@ -221,38 +404,134 @@ public final class JobSystem {
 		final ClientCallbackJob clientCallback = ClientCallbackJob.current();
 		clientCallback.callback = callback;
 
+		final long traceStart = tracer.isEnabled() ? System.nanoTime() : 0;
+		clientCallback.traceFlowId = tracer.flowStart("Client callback");
 		clientCallbacks.add(clientCallback);
+		scheduleClientCallbacks();
 
-		if (!clientInvokeScheduled) {
-			clientInvokeScheduled = true;
-			clientThread.invoke(() -> {
-				clientInvokeScheduled = false;
-				processPendingClientCallbacks();
-			});
-		}
-
+		final long blockedStart = System.nanoTime();
 		try {
 			clientCallback.semaphore.acquire();
 		} catch (InterruptedException e) {
 			clientCallbacks.remove(clientCallback);
 			throw new InterruptedException();
+		} finally {
+			if (isWorker())
+				addWorkerBlockedTime(System.nanoTime() - blockedStart);
+			if (traceStart != 0)
+				tracer.complete("Wait for client callback", traceStart);
 		}
 	}
 
+	/**
+	 * Hand a job which has suspended itself off to the client thread, after its worker has returned from onRun.
+	 *
+	 * @return false if the job was cancelled while running, or the job system is shutting down, in which case the worker
+	 * should cancel and complete it
+	 */
+	boolean suspend(JobHandle handle) {
+		if (!active || !handle.setSuspended())
+			return false;
+		suspendedJobs.add(handle);
+
+		// Shutting down may have started after the check above, but before the handle was added
+		if (!active) {
+			cancelSuspendedJobs();
+		} else {
+			scheduleClientCallbacks();
+		}
+		return true;
+	}
+
+	private void scheduleClientCallbacks() {
+		// Pending callbacks are also processed at fixed points each frame, this bounds the latency while no frames are drawn
+		if (clientInvokeScheduled || clientThread == null)
+			return;
+		clientInvokeScheduled = true;
+		clientThread.invoke(() -> {
+			clientInvokeScheduled = false;
+			processPendingClientCallbacks();
+		});
+	}
+
 	public void processPendingClientCallbacks() {
+		if (!suspendedJobs.isEmpty())
+			resumeSuspendedJobs();
+
 		int size = clientCallbacks.size();
 		if (size == 0)
 			return;
 
 		ClientCallbackJob pair;
 		while (size-- > 0 && (pair = clientCallbacks.poll()) != null) {
+			final long traceStart = tracer.isEnabled() ? System.nanoTime() : 0;
 			try {
+				tracer.flowEnd("Client callback", pair.traceFlowId);
 				pair.callback.run();
 			} catch (Throwable ex) {
 				log.warn("Encountered exception whilst processing client callback", ex);
 			} finally {
+				if (traceStart != 0)
+					tracer.complete("Client callback", traceStart);
 				pair.semaphore.release();
 			}
 		}
 	}
+
+	private void resumeSuspendedJobs() {
+		int resumedCount = 0;
+		JobHandle handle;
+		while ((handle = suspendedJobs.poll()) != null) {
+			final Job item = handle.item;
+			final Runnable callback = item.pendingClientCallback;
+			item.pendingClientCallback = null;
+
+			final long traceStart = tracer.isEnabled() ? System.nanoTime() : 0;
+			try {
+				if (!handle.isCancelled()) {
+					tracer.flowEnd("Client callback", handle.traceFlowId);
+					callback.run();
+				}
+
+				if (handle.resume()) {
+					handle.traceFlowId = traceStart != 0 ? tracer.flowStart(item.getTraceName()) : 0;
+					addToQueue(handle);
+					resumedCount++;
+					continue;
+				}
+			} catch (Throwable ex) {
+				log.warn("Encountered an error whilst processing client callback of: {}", item, ex);
+				item.encounteredError.set(true);
+			} finally {
+				if (traceStart != 0)
+					tracer.complete("Client callback", traceStart);
+			}
+
+			// The job was cancelled while suspended, or its callback failed, so it won't be picked up by a worker again
+			cancelSuspendedJob(handle);
+		}
+
+		if (resumedCount > 0)
+			signalWorkAvailable(resumedCount);
+	}
+
+	private void cancelSuspendedJobs() {
+		JobHandle handle;
+		while ((handle = suspendedJobs.poll()) != null) {
+			handle.item.pendingClientCallback = null;
+			cancelSuspendedJob(handle);
+		}
+	}
+
+	private void cancelSuspendedJob(JobHandle handle) {
+		final Job item = handle.item;
+		try {
+			handle.cancel(false);
+			// Suspended jobs may hold onto resources created by earlier client callbacks, which they need to clean up
+			item.onCancel();
+			handle.setCompleted();
+		} catch (InterruptedException e) {
+			log.warn("Interrupted while cancelling suspended job: {}", item, e);
+		}
+	}
 }
@@ -0,0 +1,200 @@
+package rs117.hd.utils.jobs;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records what the job system and client thread are doing, for exporting as a Chrome trace which can be viewed in
+ * Perfetto or chrome://tracing. Each thread records into its own ring buffer, so recording never contends with other
+ * threads, and only the most recent events of each thread are kept. While disabled, recording is a single field check.
+ */
+public final class JobTracer {
+	static final int RING_CAPACITY = 1 << 16;
+
+	private static final byte EVENT_COMPLETE = 0;
+	private static final byte EVENT_INSTANT = 1;
+	private static final byte EVENT_FLOW_START = 2;
+	private static final byte EVENT_FLOW_END = 3;
+
+	private static final class Ring {
+		final String threadName;
+		final int tid;
+		final byte[] types = new byte[RING_CAPACITY];
+		final String[] names = new String[RING_CAPACITY];
+		final long[] timestamps = new long[RING_CAPACITY];
+		// The duration of complete events, or the ID of flow events
+		final long[] args = new long[RING_CAPACITY];
+		volatile long written;
+
+		Ring(String threadName, int tid) {
+			this.threadName = threadName;
+			this.tid = tid;
+		}
+
+		void record(byte type, String name, long timestamp, long arg) {
+			long n = written;
+			int i = (int) (n & RING_CAPACITY - 1);
+			types[i] = type;
+			names[i] = name;
+			timestamps[i] = timestamp;
+			args[i] = arg;
+			written = n + 1;
+		}
+	}
+
+	private final CopyOnWriteArrayList<Ring> rings = new CopyOnWriteArrayList<>();
+	private final AtomicInteger nextTid = new AtomicInteger(1);
+	private final AtomicLong nextFlowId = new AtomicLong(1);
+	private final ThreadLocal<Ring> localRing = ThreadLocal.withInitial(() -> {
+		var ring = new Ring(Thread.currentThread().getName(), nextTid.getAndIncrement());
+		rings.add(ring);
+		return ring;
+	});
+
+	private volatile boolean enabled;
+	private long startNanos;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Discard previously recorded events, and start recording.
+	 */
+	public void start() {
+		enabled = false;
+		for (var ring : rings)
+			ring.written = 0;
+		startNanos = System.nanoTime();
+		enabled = true;
+	}
+
+	public void stop() {
+		enabled = false;
+	}
+
+	public long getEventCount() {
+		long count = 0;
+		for (var ring : rings)
+			count += Math.min(ring.written, RING_CAPACITY);
+		return count;
+	}
+
+	/**
+	 * Record a span on the current thread, which started at the given System.nanoTime() and ends now.
+	 */
+	public void complete(String name, long startNanos) {
+		if (enabled)
+			localRing.get().record(EVENT_COMPLETE, name, startNanos, System.nanoTime() - startNanos);
+	}
+
+	public void instant(String name) {
+		if (enabled)
+			localRing.get().record(EVENT_INSTANT, name, System.nanoTime(), 0);
+	}
+
+	/**
+	 * Record work being handed off from the current thread, returning an ID to pass to {@link #flowEnd} once the work is
+	 * picked up, or 0 if disabled.
+	 */
+	public long flowStart(String name) {
+		if (!enabled)
+			return 0;
+		long id = nextFlowId.getAndIncrement();
+		localRing.get().record(EVENT_FLOW_START, name, System.nanoTime(), id);
+		return id;
+	}
+
+	public void flowEnd(String name, long id) {
+		if (enabled && id != 0)
+			localRing.get().record(EVENT_FLOW_END, name, System.nanoTime(), id);
+	}
+
+	/**
+	 * Write the recorded events in the Chrome trace event format. Tracing should be stopped first, since events
+	 * recorded while writing may be torn.
+	 */
+	public void writeChromeTrace(Writer writer) throws IOException {
+		writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+		boolean first = true;
+		for (var ring : rings) {
+			long written = ring.written;
+			if (written == 0)
+				continue;
+
+			if (!first)
+				writer.write(',');
+			first = false;
+			writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":");
+			writer.write(Integer.toString(ring.tid));
+			writer.write(",\"args\":{\"name\":");
+			writeString(writer, ring.threadName);
+			writer.write("}}");
+
+			for (long n = Math.max(0, written - RING_CAPACITY); n < written; n++) {
+				int i = (int) (n & RING_CAPACITY - 1);
+				String name = ring.names[i];
+				long timestamp = ring.timestamps[i];
+				long arg = ring.args[i];
+				if (name == null || timestamp - startNanos < 0)
+					continue;
+
+				writer.write(",{\"name\":");
+				writeString(writer, name);
+				writer.write(",\"cat\":\"job\",\"pid\":1,\"tid\":");
+				writer.write(Integer.toString(ring.tid));
+				writer.write(",\"ts\":");
+				writeMicros(writer, timestamp - startNanos);
+				switch (ring.types[i]) {
+					case EVENT_COMPLETE:
+						writer.write(",\"ph\":\"X\",\"dur\":");
+						writeMicros(writer, arg);
+						break;
+					case EVENT_INSTANT:
+						writer.write(",\"ph\":\"i\",\"s\":\"t\"");
+						break;
+					case EVENT_FLOW_START:
+						writer.write(",\"ph\":\"s\",\"id\":");
+						writer.write(Long.toString(arg));
+						break;
+					case EVENT_FLOW_END:
+						// Bind to the span the work runs in, which starts at the same time
+						writer.write(",\"ph\":\"f\",\"bp\":\"e\",\"id\":");
+						writer.write(Long.toString(arg));
+						break;
+				}
+				writer.write('}');
+			}
+		}
+		writer.write("]}");
+		writer.flush();
+	}
+
+	private static void writeMicros(Writer writer, long nanos) throws IOException {
+		writer.write(Long.toString(nanos / 1000));
+		writer.write('.');
+		String fraction = Long.toString(Math.abs(nanos % 1000));
+		for (int i = fraction.length(); i < 3; i++)
+			writer.write('0');
+		writer.write(fraction);
+	}
+
+	private static void writeString(Writer writer, String string) throws IOException {
+		writer.write('"');
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c == '"' || c == '\\') {
+				writer.write('\\');
+				writer.write(c);
+			} else if (c < 0x20) {
+				writer.write(String.format("\\u%04x", (int) c));
+			} else {
+				writer.write(c);
+			}
+		}
+		writer.write('"');
+	}
+}
@@ -15,6 +15,7 @@ import static rs117.hd.utils.jobs.JobSystem.VALIDATE;
 @RequiredArgsConstructor
 public final class Worker {
 	private static final long SLEEP_TIME_NANOS = TimeUnit.MICROSECONDS.convert(1, TimeUnit.NANOSECONDS);
+	private static final long DEFERRED_WORK_POLL_MILLIS = 10;
 
 	String name, pausedName;
 	Thread thread;
@@ -63,7 +64,7 @@ public final class Worker {
 						if (handle == null) {
 							handle = stolenHandle;
 						} else {
-							if (handle.highPriority)
+							if (handle.isHighPriority())
 								localWorkQueue.addFirst(stolenHandle);
 							else
 								localWorkQueue.addLast(stolenHandle);
@@ -73,13 +74,18 @@ public final class Worker {
 
 				if (handle == null) {
 					// Check if any work is in the main queue before attempting to steal again
-					handle = localStalledWork.isEmpty() ? jobSystem.workQueue.poll() : localStalledWork.poll();
+					handle = localStalledWork.isEmpty() ? jobSystem.pollWork() : localStalledWork.poll();
 				}
 
 				if (handle == null && !findNextStealTarget() && System.nanoTime() - waitStart > SLEEP_TIME_NANOS) {
 					// Wait for a signal that there is work to be had
 					try {
-						jobSystem.workerSemaphore.acquire();
+						if (jobSystem.hasDeferredWork()) {
+							// Wake up in time to pick up deferred work once it's overdue, in case no new frame starts
+							jobSystem.workerSemaphore.tryAcquire(DEFERRED_WORK_POLL_MILLIS, TimeUnit.MILLISECONDS);
+						} else {
+							jobSystem.workerSemaphore.acquire();
+						}
 					} catch (InterruptedException ignored) {
 						// Interrupts are used to signal that the worker should shutdown, we'll pick this up and shutdown
 						thread.isInterrupted(); // Consume the interrupt to prevent it from cancelling the next job
@@ -87,7 +93,7 @@ public final class Worker {
 
 					if (handle == null) {
 						// We've been signaled that there is work to be had, try the main queue again
-						handle = jobSystem.workQueue.poll();
+						handle = jobSystem.pollWork();
 					}
 				}
 
@@ -107,7 +113,7 @@ public final class Worker {
 	}
 
 	void processHandle() throws InterruptedException {
-		boolean requeued = false;
+		boolean requeued = false, suspended = false;
 		try {
 			workerHandleCancel();
 
@@ -115,8 +121,25 @@ public final class Worker {
 				if (handle.item.canStart()) {
 					if (handle.setRunning(this)) {
 						inflight.set(true);
-						handle.item.onRun();
-						handle.item.ranToCompletion.set(true);
+						jobSystem.onStarted(handle);
+						final JobTracer tracer = jobSystem.tracer;
+						final String traceName = tracer.isEnabled() ? handle.item.getTraceName() : null;
+						long start = System.nanoTime();
+						try {
+							tracer.flowEnd(traceName, handle.traceFlowId);
+							handle.item.onRun();
+							if (handle.item.pendingClientCallback != null) {
+								// The job continues once its client callback has run, leaving this worker free for other work
+								suspended = true;
+								handle.traceFlowId = tracer.flowStart("Client callback");
+							} else {
+								handle.item.ranToCompletion.set(true);
+							}
+						} finally {
+							jobSystem.onFinished(handle, System.nanoTime() - start);
+							if (traceName != null)
+								tracer.complete(traceName, start);
+						}
 					}
 				} else {
 					// Requeue into stalled work queue, since adding to ConcurrentLinkedDeque continuously is costly
@@ -135,11 +158,20 @@ public final class Worker {
 			handle.item.encounteredError.set(true);
 			handle.cancel(false);
 		} finally {
-			if (!requeued) {
+			if (suspended && !jobSystem.suspend(handle)) {
+				// The callback will never run, since the job was cancelled while running, or the job system is shutting down
+				suspended = false;
+				handle.cancel(false);
+			}
+
+			// Once suspended, the handle may already have been resumed by the client thread, so it mustn't be touched
+			if (!suspended && !requeued) {
+				if (handle.item != null)
+					handle.item.pendingClientCallback = null;
 				if (handle.item != null && handle.item.wasCancelled.get())
 					handle.item.onCancel();
+				// The handle mustn't be touched once completed, since it may already have been released
 				handle.setCompleted();
-				handle.worker = null;
 			}
 			handle = null;
 		}
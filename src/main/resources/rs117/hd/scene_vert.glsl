@@ -35,7 +35,11 @@ layout (location = 0) in vec3 vPosition;
 
 #if ZONE_RENDERER
     layout (location = 1) in vec4 vUv;
-    layout (location = 2) in vec4 vNormal;
+    #if PACKED_VERTICES
+        layout (location = 2) in vec2 vNormal; // octahedral-encoded
+    #else
+        layout (location = 2) in vec4 vNormal;
+    #endif
     layout (location = 3) in int vTextureFaceIdx;
     layout (location = 6) in int vWorldViewId;
     layout (location = 7) in ivec2 vSceneBase;
@@ -66,6 +70,15 @@ layout (location = 0) in vec3 vPosition;
         vec3 texBlend;
     } OUT;
 
+    #if PACKED_VERTICES
+    vec3 octDecode(vec2 e) {
+        vec3 n = vec3(e, 1 - abs(e.x) - abs(e.y));
+        if (n.z < 0)
+            n.xy = (1 - abs(n.yx)) * vec2(n.x >= 0 ? 1 : -1, n.y >= 0 ? 1 : -1);
+        return normalize(n);
+    }
+    #endif
+
     void main() {
         int vertex = gl_VertexID % 3;
         bool isProvoking = vertex == 2;
@@ -95,7 +108,11 @@ layout (location = 0) in vec3 vPosition;
         fTerrainData = texelFetch(textureFaces, faceIdx + 2).xyz;
 
         vec3 sceneOffset = vec3(vSceneBase.x, 0, vSceneBase.y);
-        vec3 worldNormal = vNormal.xyz;
+        #if PACKED_VERTICES
+            vec3 worldNormal = octDecode(vNormal);
+        #else
+            vec3 worldNormal = vNormal.xyz;
+        #endif
         vec3 worldPosition = sceneOffset + vPosition;
         if (vWorldViewId != -1) {
             mat4x3 worldViewProjection = mat4x3(getWorldViewProjection(vWorldViewId));
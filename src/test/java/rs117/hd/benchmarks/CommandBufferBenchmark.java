@@ -0,0 +1,247 @@
+package rs117.hd.benchmarks;
+
+import java.nio.IntBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rs117.hd.opengl.HeadlessGLDispatch;
+import rs117.hd.opengl.shader.ShaderProgram;
+import rs117.hd.utils.CommandBuffer;
+import rs117.hd.utils.RenderState;
+import rs117.hd.utils.buffer.GLBuffer;
+import rs117.hd.utils.buffer.GpuIntBuffer;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * Measures how quickly frames can be recorded into command buffers and replayed, without a GPU. Frames are recorded
+ * the same way {@code ZoneRenderer} records them, from synthetic zones with several levels, roofs and alpha models.
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandBufferBenchmark {
+	private static final int LEVEL_COUNT = 4;
+	private static final int TEXTURE_UNIT_TEXTURED_FACES = GL_TEXTURE0 + 3;
+
+	@Param({ "169", "625" })
+	public int zoneCount;
+
+	@Param({ "false", "true" })
+	public boolean indirectDraw;
+
+	@Param({ "false", "true" })
+	public boolean optimize;
+
+	private final ShaderProgram sceneProgram = new ShaderProgram(t -> {});
+	private final ShaderProgram shadowProgram = new ShaderProgram(t -> {});
+	private final GLBuffer eboAlpha = new GLBuffer.EBO("Alpha EBO", GL_STREAM_DRAW);
+	private final CommandBuffer sceneCmd = new CommandBuffer("Scene");
+	private final CommandBuffer directionalCmd = new CommandBuffer("Directional");
+	private final CommandBuffer worldViewSceneCmd = new CommandBuffer("WorldViewScene");
+	private final CommandBuffer.OptimizationStats stats = new CommandBuffer.OptimizationStats();
+	private final HeadlessGLDispatch gl = new HeadlessGLDispatch();
+	private final RenderState renderState = new RenderState(gl);
+
+	private final int[] drawOffsets = new int[64];
+	private final int[] drawCounts = new int[64];
+	private GpuIntBuffer indirectBuffer;
+	private SyntheticZone[] zones;
+
+	private static final class SyntheticZone {
+		int vao;
+		int tbo;
+		boolean inSceneFrustum;
+		boolean inShadowFrustum;
+		int[] levelOffsets = new int[LEVEL_COUNT];
+		int[][] roofStart = new int[LEVEL_COUNT][];
+		int[][] roofEnd = new int[LEVEL_COUNT][];
+		boolean[][] roofHidden = new boolean[LEVEL_COUNT][];
+		int[] alphaFaceCounts = new int[LEVEL_COUNT];
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		indirectBuffer = new GpuIntBuffer(IntBuffer.allocate(1 << 20));
+		gl.setIndirectBuffer(indirectBuffer.getBuffer());
+
+		var random = new Random(117);
+		zones = new SyntheticZone[zoneCount];
+		for (int i = 0; i < zoneCount; i++) {
+			var zone = zones[i] = new SyntheticZone();
+			zone.vao = 1 + i;
+			zone.tbo = 1 + i;
+			zone.inSceneFrustum = random.nextFloat() < .6f;
+			zone.inShadowFrustum = zone.inSceneFrustum || random.nextFloat() < .3f;
+
+			int pos = 0;
+			for (int level = 0; level < LEVEL_COUNT; level++) {
+				// Most geometry is on the ground level, and upper levels are mostly roofs
+				int roofCount = level == 0 ? random.nextInt(2) : random.nextInt(5);
+				zone.roofStart[level] = new int[roofCount];
+				zone.roofEnd[level] = new int[roofCount];
+				zone.roofHidden[level] = new boolean[roofCount];
+				for (int r = 0; r < roofCount; r++) {
+					zone.roofStart[level][r] = pos;
+					pos += 3 * (20 + random.nextInt(300));
+					zone.roofEnd[level][r] = pos;
+					zone.roofHidden[level][r] = random.nextFloat() < .3f;
+				}
+				pos += 3 * (level == 0 ? 2000 + random.nextInt(4000) : random.nextInt(500));
+				zone.levelOffsets[level] = pos;
+				zone.alphaFaceCounts[level] = random.nextFloat() < .4f ? 1 + random.nextInt(200) : 0;
+			}
+		}
+	}
+
+	@Benchmark
+	public void record(Blackhole blackhole) {
+		recordFrame();
+		blackhole.consume(sceneCmd);
+		blackhole.consume(directionalCmd);
+	}
+
+	@Benchmark
+	public void recordAndReplay(Blackhole blackhole) {
+		recordFrame();
+		gl.reset();
+		renderState.reset();
+		directionalCmd.execute(renderState);
+		sceneCmd.execute(renderState);
+		blackhole.consume(gl.getDrawCallCount());
+		blackhole.consume(gl.getStateChangeCount());
+		blackhole.consume(gl.getVertexCount());
+	}
+
+	private void recordFrame() {
+		sceneCmd.reset();
+		directionalCmd.reset();
+		worldViewSceneCmd.reset();
+		indirectBuffer.clear();
+
+		sceneCmd.SetShader(sceneProgram);
+		directionalCmd.SetShader(shadowProgram);
+		for (var zone : zones) {
+			if (zone.inSceneFrustum)
+				recordOpaque(sceneCmd, zone, false);
+			if (zone.inShadowFrustum)
+				recordOpaque(directionalCmd, zone, true);
+		}
+
+		// Dynamic models of the top-level world view, drawn in a sub command buffer
+		for (int i = 0; i < 50; i++) {
+			worldViewSceneCmd.BindVertexArray(1000 + (i & 3));
+			drawRanges(worldViewSceneCmd, 1, i * 300, 300);
+		}
+		worldViewSceneCmd.DepthMask(false);
+		worldViewSceneCmd.BindVertexArray(2000);
+		drawRanges(worldViewSceneCmd, 1, 0, 900);
+		worldViewSceneCmd.DepthMask(true);
+		sceneCmd.ExecuteSubCommandBuffer(worldViewSceneCmd);
+
+		// Alpha is drawn back to front, one zone and level at a time
+		int eboOffset = 0;
+		for (int i = zones.length - 1; i >= 0; i--) {
+			var zone = zones[i];
+			for (int level = 0; level < LEVEL_COUNT; level++) {
+				int faceCount = zone.alphaFaceCounts[level];
+				if (faceCount == 0)
+					continue;
+
+				if (zone.inShadowFrustum) {
+					directionalCmd.SetShader(shadowProgram);
+					drawAlpha(directionalCmd, zone, eboOffset, faceCount);
+				}
+				if (zone.inSceneFrustum) {
+					sceneCmd.DepthMask(false);
+					drawAlpha(sceneCmd, zone, eboOffset, faceCount);
+					sceneCmd.DepthMask(true);
+				}
+				eboOffset += faceCount * 3;
+			}
+		}
+
+		if (optimize) {
+			stats.reset();
+			directionalCmd.optimize(stats);
+			sceneCmd.optimize(stats);
+		}
+	}
+
+	private void recordOpaque(CommandBuffer cmd, SyntheticZone zone, boolean roofShadows) {
+		int drawCount = 0;
+		for (int level = 0; level < LEVEL_COUNT; level++) {
+			int start = level == 0 ? 0 : zone.levelOffsets[level - 1];
+			int[] roofStart = zone.roofStart[level];
+			if (roofShadows || level == 0 || roofStart.length == 0) {
+				drawCount = pushRange(drawCount, start, zone.levelOffsets[level]);
+				continue;
+			}
+
+			int[] roofEnd = zone.roofEnd[level];
+			for (int r = 0; r < roofStart.length; r++)
+				if (!zone.roofHidden[level][r])
+					drawCount = pushRange(drawCount, roofStart[r], roofEnd[r]);
+			drawCount = pushRange(drawCount, roofEnd[roofEnd.length - 1], zone.levelOffsets[level]);
+		}
+
+		cmd.BindVertexArray(zone.vao);
+		cmd.BindTextureUnit(GL_TEXTURE_BUFFER, zone.tbo, TEXTURE_UNIT_TEXTURED_FACES);
+		if (drawCount == 1) {
+			drawRanges(cmd, 1, drawOffsets[0], drawCounts[0]);
+		} else {
+			drawRanges(cmd, drawCount, -1, -1);
+		}
+	}
+
+	private int pushRange(int drawCount, int start, int end) {
+		if (drawCount > 0 && drawOffsets[drawCount - 1] + drawCounts[drawCount - 1] == start) {
+			drawCounts[drawCount - 1] += end - start;
+			return drawCount;
+		}
+		drawOffsets[drawCount] = start;
+		drawCounts[drawCount] = end - start;
+		return drawCount + 1;
+	}
+
+	private void drawRanges(CommandBuffer cmd, int drawCount, int offset, int count) {
+		if (offset >= 0) {
+			if (indirectDraw) {
+				cmd.DrawArraysIndirect(GL_TRIANGLES, offset, count, indirectBuffer);
+			} else {
+				cmd.DrawArrays(GL_TRIANGLES, offset, count);
+			}
+		} else if (indirectDraw) {
+			cmd.MultiDrawArraysIndirect(GL_TRIANGLES, drawOffsets, drawCounts, drawCount, indirectBuffer);
+		} else {
+			cmd.MultiDrawArrays(GL_TRIANGLES, drawOffsets, drawCounts, drawCount);
+		}
+	}
+
+	private void drawAlpha(CommandBuffer cmd, SyntheticZone zone, int eboOffset, int faceCount) {
+		cmd.BindVertexArray(zone.vao, eboAlpha);
+		cmd.BindTextureUnit(GL_TEXTURE_BUFFER, zone.tbo, TEXTURE_UNIT_TEXTURED_FACES);
+		if (indirectDraw) {
+			cmd.DrawElementsIndirect(GL_TRIANGLES, faceCount * 3, eboOffset, indirectBuffer);
+		} else {
+			cmd.DrawElements(GL_TRIANGLES, faceCount * 3, 4L * eboOffset);
+		}
+	}
+}
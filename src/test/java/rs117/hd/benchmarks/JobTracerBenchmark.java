@@ -0,0 +1,70 @@
+package rs117.hd.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import rs117.hd.config.CpuUsageLimit;
+import rs117.hd.utils.jobs.GenericJob;
+import rs117.hd.utils.jobs.JobSystem;
+
+/**
+ * Measures the overhead of the job system's tracer, both per recorded event and for short jobs, which is where the
+ * tracer's overhead is the most noticeable. With tracing disabled, results should match a build without the tracer.
+ * <p>
+ * Run with {@code ./gradlew jmh -Pjmh="JobTracerBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobTracerBenchmark {
+	private static final int JOB_COUNT = 64;
+
+	@Param({ "false", "true" })
+	public boolean tracing;
+
+	private final JobSystem jobSystem = new JobSystem();
+	private final GenericJob[] jobs = new GenericJob[JOB_COUNT];
+	private final GenericJob.TaskRunnable emptyTask = t -> {};
+
+	@Setup(Level.Trial)
+	public void setup() {
+		jobSystem.startUp(CpuUsageLimit.MAX);
+		if (tracing)
+			jobSystem.tracer.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		jobSystem.tracer.stop();
+		jobSystem.shutDown();
+	}
+
+	@Benchmark
+	public void recordSpan() {
+		jobSystem.tracer.complete("Span", System.nanoTime());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(JOB_COUNT)
+	public void queueAndWait() {
+		for (int i = 0; i < JOB_COUNT; i++)
+			jobs[i] = GenericJob.build("Empty", emptyTask).queue();
+		for (int i = 0; i < JOB_COUNT; i++)
+			jobs[i].waitForCompletion(true);
+	}
+}
@@ -0,0 +1,91 @@
+package rs117.hd.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rs117.hd.renderer.zone.ModelTopologyStore;
+import rs117.hd.utils.collections.PooledArrayType;
+
+/**
+ * Measures the client thread cost of caching the topology arrays of one model for async processing, either by copying
+ * them out of the model, or by sharing them through {@link ModelTopologyStore}. Shared arrays are either unchanged since
+ * the previous draw, or overwritten by the client, in which case they're compared and copied. The store is disabled by
+ * default until sharing measures faster than copying at realistic model sizes.
+ * <p>
+ * Run with {@code ./gradlew jmh -Pjmh="ModelTopologyStoreBenchmark"}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelTopologyStoreBenchmark {
+	// Face indices, colors, transparencies, priorities, textures and so on
+	private static final int ARRAYS_PER_MODEL = 20;
+
+	@Param({ "64", "512", "4096" })
+	public int faceCount;
+
+	private final ModelTopologyStore store = new ModelTopologyStore();
+	private final ModelTopologyStore.Entry[] entries = new ModelTopologyStore.Entry[ARRAYS_PER_MODEL];
+	private int[][] sources;
+	private int[][] copies;
+	private int frame;
+
+	@Setup
+	public void setup() {
+		var random = new Random(117);
+		sources = new int[ARRAYS_PER_MODEL][faceCount];
+		copies = new int[ARRAYS_PER_MODEL][];
+		for (int[] source : sources)
+			for (int i = 0; i < faceCount; i++)
+				source[i] = random.nextInt();
+	}
+
+	@Benchmark
+	public int[][] copy() {
+		// Copies are borrowed from the array pool, and returned once the draw has been processed
+		for (int i = 0; i < ARRAYS_PER_MODEL; i++) {
+			copies[i] = PooledArrayType.INT.borrow(faceCount);
+			System.arraycopy(sources[i], 0, copies[i], 0, faceCount);
+		}
+		for (int i = 0; i < ARRAYS_PER_MODEL; i++)
+			PooledArrayType.INT.release(copies[i]);
+		return copies;
+	}
+
+	@Benchmark
+	public ModelTopologyStore.Entry[] shareUnchanged() {
+		return acquireAndRelease();
+	}
+
+	@Benchmark
+	public ModelTopologyStore.Entry[] shareOverwritten() {
+		// Differences at the end of the array are the most expensive to detect
+		for (int[] source : sources)
+			source[faceCount - 1]++;
+		acquireAndRelease();
+		// Return the replaced copies to the pool, like at the end of every frame
+		store.sweep(++frame);
+		return entries;
+	}
+
+	private ModelTopologyStore.Entry[] acquireAndRelease() {
+		for (int i = 0; i < ARRAYS_PER_MODEL; i++)
+			entries[i] = store.acquire(PooledArrayType.INT, sources[i], faceCount);
+		for (int i = 0; i < ARRAYS_PER_MODEL; i++)
+			store.release(entries[i]);
+		return entries;
+	}
+}
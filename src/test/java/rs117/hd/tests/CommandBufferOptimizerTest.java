@@ -0,0 +1,352 @@
+package rs117.hd.tests;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import rs117.hd.opengl.GLFence;
+import rs117.hd.opengl.shader.ShaderProgram;
+import rs117.hd.utils.CommandBuffer;
+import rs117.hd.utils.buffer.GLBuffer;
+import rs117.hd.utils.buffer.GpuIntBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.lwjgl.opengl.GL33C.*;
+
+public class CommandBufferOptimizerTest {
+	private final Random random = new Random(117);
+	private final ShaderProgram[] programs = { new ShaderProgram(t -> {}), new ShaderProgram(t -> {}) };
+	private final GpuIntBuffer indirectBuffer = new GpuIntBuffer(IntBuffer.allocate(1 << 16));
+
+	@Test
+	public void testRepeatedZoneStateIsDroppedAndDrawsAreMerged() {
+		var cmd = new CommandBuffer("Test");
+		for (int level = 0; level < 4; level++) {
+			cmd.SetShader(programs[0]);
+			cmd.BindVertexArray(1);
+			cmd.BindTextureUnit(GL_TEXTURE_BUFFER, 2, GL_TEXTURE0);
+			cmd.MultiDrawArrays(GL_TRIANGLES, new int[] { level * 300, level * 300 + 90 }, new int[] { 90, 210 });
+		}
+		cmd.DepthMask(false);
+		cmd.DepthMask(true);
+
+		var expected = record(cmd);
+		var stats = new CommandBuffer.OptimizationStats();
+		cmd.optimize(stats);
+		var actual = record(cmd);
+
+		assertEquals(expected.draws, actual.draws);
+		assertEquals(18, stats.commandsBefore);
+		assertEquals(4, stats.drawsBefore);
+		assertEquals(5, stats.commandsAfter);
+		assertEquals(1, stats.drawsAfter);
+		// Contiguous ranges are drawn as one
+		assertEquals(8, expected.rangeCount);
+		assertEquals(1, actual.rangeCount);
+	}
+
+	@Test
+	public void testConsecutiveIndirectDrawsAreMerged() {
+		var cmd = new CommandBuffer("Test");
+		cmd.BindVertexArray(1);
+		cmd.MultiDrawArraysIndirect(GL_TRIANGLES, new int[] { 0, 30 }, new int[] { 30, 30 }, indirectBuffer);
+		cmd.DrawArraysIndirect(GL_TRIANGLES, 60, 30, indirectBuffer);
+		cmd.BindVertexArray(1);
+		cmd.MultiDrawArraysIndirect(GL_TRIANGLES, new int[] { 90 }, new int[] { 30 }, indirectBuffer);
+
+		var expected = record(cmd);
+		var stats = new CommandBuffer.OptimizationStats();
+		cmd.optimize(stats);
+		var actual = record(cmd);
+
+		assertEquals(expected.draws, actual.draws);
+		assertEquals(1, stats.drawsAfter);
+		assertEquals(2, stats.commandsAfter);
+	}
+
+	@Test
+	public void testStateIsReappliedAfterSubCommandBuffers() {
+		var sub = new CommandBuffer("Sub");
+		sub.SetShader(programs[1]);
+		sub.DrawArrays(GL_TRIANGLES, 0, 3);
+
+		var cmd = new CommandBuffer("Test");
+		cmd.SetShader(programs[0]);
+		cmd.DrawArrays(GL_TRIANGLES, 0, 3);
+		cmd.ExecuteSubCommandBuffer(sub);
+		cmd.SetShader(programs[0]);
+		cmd.DrawArrays(GL_TRIANGLES, 3, 3);
+
+		var expected = record(cmd);
+		var stats = new CommandBuffer.OptimizationStats();
+		cmd.optimize(stats);
+		var actual = record(cmd);
+
+		assertEquals(expected.draws, actual.draws);
+		assertEquals(3, actual.programChanges);
+		assertEquals(stats.commandsBefore, stats.commandsAfter);
+	}
+
+	@Test
+	public void testRandomStreamsAreEquivalentAfterOptimization() {
+		var stats = new CommandBuffer.OptimizationStats();
+		for (int i = 0; i < 500; i++) {
+			var sub = new CommandBuffer("Sub");
+			recordRandomCommands(sub, 20, null);
+			var cmd = new CommandBuffer("Test");
+			recordRandomCommands(cmd, 100, sub);
+
+			var expected = record(cmd);
+			cmd.optimize(stats);
+			var actual = record(cmd);
+
+			assertEquals("stream " + i, expected.draws, actual.draws);
+			assertEquals("stream " + i, expected.finalState, actual.finalState);
+			assertTrue(actual.glCalls <= expected.glCalls);
+		}
+		assertTrue(stats.commandsAfter < stats.commandsBefore);
+		assertTrue(stats.drawsAfter < stats.drawsBefore);
+	}
+
+	private void recordRandomCommands(CommandBuffer cmd, int count, @Nullable CommandBuffer sub) {
+		int vertexOffset = 0;
+		for (int i = 0; i < count; i++) {
+			int mode = random.nextInt(4) == 0 ? GL_TRIANGLE_STRIP : GL_TRIANGLES;
+			switch (random.nextInt(14)) {
+				case 0:
+					cmd.SetShader(programs[random.nextInt(programs.length)]);
+					break;
+				case 1:
+					cmd.BindVertexArray(1 + random.nextInt(2));
+					break;
+				case 2:
+					cmd.BindTextureUnit(random.nextBoolean() ? GL_TEXTURE_BUFFER : GL_TEXTURE_2D, 1 + random.nextInt(2), GL_TEXTURE0 + random.nextInt(2));
+					break;
+				case 3:
+					cmd.DepthMask(random.nextBoolean());
+					break;
+				case 4:
+					cmd.ColorMask(random.nextBoolean(), true, true, random.nextBoolean());
+					break;
+				case 5:
+					cmd.Toggle(random.nextBoolean() ? GL_CULL_FACE : GL_BLEND, random.nextBoolean());
+					break;
+				case 6:
+					cmd.FenceSync(new GLFence(), GL_SYNC_GPU_COMMANDS_COMPLETE);
+					break;
+				case 7:
+					if (sub != null)
+						cmd.ExecuteSubCommandBuffer(sub);
+					break;
+				case 8:
+					cmd.DrawElements(GL_TRIANGLES, 3 * (1 + random.nextInt(10)), 4L * random.nextInt(100));
+					break;
+				case 9:
+					cmd.DrawArraysIndirect(mode, vertexOffset, 3, indirectBuffer);
+					break;
+				case 10: {
+					int drawCount = 1 + random.nextInt(3);
+					cmd.MultiDrawArraysIndirect(mode, new int[drawCount], new int[drawCount], indirectBuffer);
+					break;
+				}
+				case 11:
+					cmd.DrawArrays(mode, vertexOffset, 3 * (1 + random.nextInt(4)));
+					break;
+				default: {
+					int drawCount = 1 + random.nextInt(4);
+					int[] offsets = new int[drawCount];
+					int[] counts = new int[drawCount];
+					for (int j = 0; j < drawCount; j++) {
+						// Leave gaps between some ranges, so that not all of them are contiguous
+						offsets[j] = vertexOffset + (random.nextBoolean() ? 0 : 3);
+						counts[j] = 3 * (1 + random.nextInt(4));
+						vertexOffset = offsets[j] + counts[j];
+					}
+					cmd.MultiDrawArrays(mode, offsets, counts);
+					break;
+				}
+			}
+			if (random.nextInt(8) == 0)
+				vertexOffset += 3;
+			if (random.nextInt(50) == 0)
+				indirectBuffer.getBuffer().put(new int[8]);
+		}
+		if (indirectBuffer.getBuffer().remaining() < 1 << 12)
+			indirectBuffer.clear();
+	}
+
+	private static Recording record(CommandBuffer cmd) {
+		var recording = new Recording();
+		cmd.visit(recording);
+		recording.flushRanges();
+		recording.finalState = recording.describeState();
+		return recording;
+	}
+
+	/**
+	 * Records the draws issued by a command buffer along with the state each draw is made with, mimicking how
+	 * {@link rs117.hd.utils.RenderState} only applies state changes before each draw. Draws of independent triangles
+	 * are split into contiguous vertex ranges, so that draws which were merged still compare equal.
+	 */
+	private static class Recording implements CommandBuffer.Visitor {
+		final List<String> draws = new ArrayList<>();
+		String finalState;
+		int glCalls;
+		int rangeCount;
+		int programChanges;
+
+		private ShaderProgram program;
+		private ShaderProgram appliedProgram;
+		private int vao;
+		private int ido;
+		private boolean depthMask;
+		private int colorMask;
+		private final Map<Integer, Boolean> capabilities = new TreeMap<>();
+		private final Map<String, Integer> textures = new TreeMap<>();
+
+		private String rangeState;
+		private int rangeStart = -1;
+		private int rangeEnd = -1;
+
+		String describeState() {
+			return String.format(
+				"program=%d vao=%d ido=%d depth=%b color=%x caps=%s textures=%s",
+				System.identityHashCode(program), vao, ido, depthMask, colorMask, capabilities, textures
+			);
+		}
+
+		private String applyState() {
+			if (program != appliedProgram) {
+				appliedProgram = program;
+				programChanges++;
+			}
+			return describeState();
+		}
+
+		private void drawRange(int mode, int offset, int count) {
+			rangeCount++;
+			String state = applyState() + " mode=" + mode;
+			if (mode == GL_TRIANGLES && state.equals(rangeState) && offset == rangeEnd) {
+				rangeEnd += count;
+				return;
+			}
+			flushRanges();
+			if (mode != GL_TRIANGLES) {
+				draws.add(state + " arrays " + offset + " " + count);
+				return;
+			}
+			rangeState = state;
+			rangeStart = offset;
+			rangeEnd = offset + count;
+		}
+
+		void flushRanges() {
+			if (rangeState != null)
+				draws.add(rangeState + " arrays " + rangeStart + " " + (rangeEnd - rangeStart));
+			rangeState = null;
+		}
+
+		private void draw(String description) {
+			flushRanges();
+			draws.add(applyState() + " " + description);
+		}
+
+		@Override
+		public void bindVertexArray(int vao, @Nullable GLBuffer ebo) {
+			glCalls++;
+			this.vao = vao;
+		}
+
+		@Override
+		public void bindIndirectArray(int ido) {
+			glCalls++;
+			this.ido = ido;
+		}
+
+		@Override
+		public void bindTextureUnit(int type, int texId, int textureUnit) {
+			glCalls++;
+			textures.put(type + "@" + textureUnit, texId);
+		}
+
+		@Override
+		public void useProgram(ShaderProgram program) {
+			glCalls++;
+			this.program = program;
+		}
+
+		@Override
+		public void depthMask(boolean writeDepth) {
+			glCalls++;
+			depthMask = writeDepth;
+		}
+
+		@Override
+		public void colorMask(boolean writeRed, boolean writeGreen, boolean writeBlue, boolean writeAlpha) {
+			glCalls++;
+			colorMask = (writeRed ? 1 : 0) | (writeGreen ? 2 : 0) | (writeBlue ? 4 : 0) | (writeAlpha ? 8 : 0);
+		}
+
+		@Override
+		public void toggle(int capability, boolean enabled) {
+			glCalls++;
+			capabilities.put(capability, enabled);
+		}
+
+		@Override
+		public void fenceSync(GLFence fence, int condition) {
+			glCalls++;
+			flushRanges();
+			draws.add("fence");
+		}
+
+		@Override
+		public void drawArrays(int mode, int offset, int vertexCount) {
+			glCalls++;
+			drawRange(mode, offset, vertexCount);
+		}
+
+		@Override
+		public void drawElements(int mode, int vertexCount, long byteOffset) {
+			glCalls++;
+			draw("elements " + mode + " " + vertexCount + " " + byteOffset);
+		}
+
+		@Override
+		public void multiDrawArrays(int mode, int[] offsets, int[] counts, int drawCount) {
+			glCalls++;
+			for (int i = 0; i < drawCount; i++)
+				drawRange(mode, offsets[i], counts[i]);
+		}
+
+		@Override
+		public void drawArraysIndirect(int mode, long indirectByteOffset) {
+			glCalls++;
+			draw("indirect " + mode + " " + indirectByteOffset);
+		}
+
+		@Override
+		public void drawElementsIndirect(int mode, long indirectByteOffset) {
+			glCalls++;
+			draw("elements indirect " + mode + " " + indirectByteOffset);
+		}
+
+		@Override
+		public void multiDrawArraysIndirect(int mode, long indirectByteOffset, int drawCount) {
+			glCalls++;
+			for (int i = 0; i < drawCount; i++)
+				draw("indirect " + mode + " " + (indirectByteOffset + i * 4L * Integer.BYTES));
+		}
+
+		@Override
+		public void executeSubCommandBuffer(CommandBuffer subCommandBuffer) {
+			glCalls++;
+			subCommandBuffer.visit(this);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package rs117.hd.tests;
+
+import java.nio.IntBuffer;
+import java.util.List;
+import org.junit.Test;
+import rs117.hd.opengl.GLFence;
+import rs117.hd.opengl.HeadlessGLDispatch;
+import rs117.hd.opengl.HeadlessGLDispatch.Call;
+import rs117.hd.opengl.shader.ShaderProgram;
+import rs117.hd.utils.CommandBuffer;
+import rs117.hd.utils.RenderState;
+import rs117.hd.utils.buffer.GpuIntBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.lwjgl.opengl.GL33C.*;
+
+public class CommandBufferReplayTest {
+	private final ShaderProgram program = new ShaderProgram(t -> {});
+	private final GpuIntBuffer indirectBuffer = new GpuIntBuffer(IntBuffer.allocate(1024));
+
+	@Test
+	public void testRedundantStateIsOnlyAppliedOnce() {
+		var gl = new HeadlessGLDispatch(true);
+		var cmd = new CommandBuffer("Test");
+		for (int i = 0; i < 3; i++) {
+			cmd.SetShader(program);
+			cmd.BindVertexArray(7);
+			cmd.DepthMask(false);
+			cmd.DrawArrays(GL_TRIANGLES, i * 3, 3);
+		}
+		cmd.execute(new RenderState(gl));
+
+		assertEquals(1, gl.getCallCount(Call.USE_PROGRAM));
+		assertEquals(1, gl.getCallCount(Call.BIND_VERTEX_ARRAY));
+		assertEquals(1, gl.getCallCount(Call.DEPTH_MASK));
+		assertEquals(3, gl.getDrawCallCount());
+		assertEquals(9, gl.getVertexCount());
+		assertEquals(List.of(
+			"USE_PROGRAM " + program,
+			"BIND_VERTEX_ARRAY 7",
+			"DEPTH_MASK false",
+			"DRAW_ARRAYS 4 0 3",
+			"DRAW_ARRAYS 4 3 3",
+			"DRAW_ARRAYS 4 6 3"
+		), gl.getCallLog());
+	}
+
+	@Test
+	public void testIndirectDrawsCountVertices() {
+		var gl = new HeadlessGLDispatch();
+		gl.setIndirectBuffer(indirectBuffer.getBuffer());
+		var cmd = new CommandBuffer("Test");
+		cmd.BindVertexArray(1);
+		cmd.DrawArraysIndirect(GL_TRIANGLES, 0, 30, indirectBuffer);
+		cmd.MultiDrawArraysIndirect(GL_TRIANGLES, new int[] { 30, 90 }, new int[] { 60, 6 }, indirectBuffer);
+		cmd.DrawElementsIndirect(GL_TRIANGLES, 12, 0, indirectBuffer);
+		cmd.execute(new RenderState(gl));
+
+		assertEquals(3, gl.getDrawCallCount());
+		assertEquals(4, gl.getDrawCount());
+		assertEquals(30 + 60 + 6 + 12, gl.getVertexCount());
+	}
+
+	@Test
+	public void testOptimizedReplayDrawsTheSameVertices() {
+		var cmd = new CommandBuffer("Test");
+		var sub = new CommandBuffer("Sub");
+		sub.BindVertexArray(3);
+		sub.MultiDrawArrays(GL_TRIANGLES, new int[] { 0, 99 }, new int[] { 99, 30 });
+		for (int zone = 0; zone < 10; zone++) {
+			cmd.SetShader(program);
+			for (int level = 0; level < 4; level++) {
+				cmd.BindVertexArray(1 + zone / 3);
+				cmd.BindTextureUnit(GL_TEXTURE_BUFFER, 1 + zone / 3, GL_TEXTURE0);
+				cmd.MultiDrawArrays(GL_TRIANGLES, new int[] { level * 120, level * 120 + 60 }, new int[] { 30, 60 });
+			}
+			if (zone == 5) {
+				cmd.ExecuteSubCommandBuffer(sub);
+				cmd.FenceSync(new GLFence(), GL_SYNC_GPU_COMMANDS_COMPLETE);
+			}
+		}
+
+		var before = new HeadlessGLDispatch();
+		cmd.execute(new RenderState(before));
+		cmd.optimize(new CommandBuffer.OptimizationStats());
+		var after = new HeadlessGLDispatch();
+		cmd.execute(new RenderState(after));
+
+		assertEquals(before.getVertexCount(), after.getVertexCount());
+		assertEquals(before.getCallCount(Call.FENCE_SYNC), after.getCallCount(Call.FENCE_SYNC));
+		assertNotEquals(0, after.getDrawCallCount());
+		assertTrue(after.getDrawCallCount() < before.getDrawCallCount());
+		assertTrue(after.getCallCount(Call.BIND_TEXTURE_UNIT) < before.getCallCount(Call.BIND_TEXTURE_UNIT));
+	}
+}
@@ -0,0 +1,107 @@
+package rs117.hd.tests;
+
+import net.runelite.api.*;
+import org.junit.Test;
+import rs117.hd.renderer.zone.DynamicModelInstanceCache;
+import rs117.hd.scene.model_overrides.ModelOverride;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class DynamicModelInstanceCacheTest {
+	@Test
+	public void testBuildsOnSecondDrawAndSharesWithLaterDraws() {
+		var cache = new DynamicModelInstanceCache();
+		var model = mockModel(new float[] { 0, 1, 2, 3 }, new int[] { 5, 6 });
+
+		// Most models are only drawn once
+		assertNull(acquire(cache, model));
+
+		var template = acquire(cache, model);
+		assertNotNull(template);
+		assertTrue(template.needsBuilding());
+		cache.finishBuilding(template, true);
+		assertFalse(template.needsBuilding());
+
+		// Later draws of the same model, like async copies of its arrays, share the template
+		var copy = mockModel(new float[] { 0, 1, 2, 3 }, new int[] { 5, 6 });
+		assertSame(template, acquire(cache, copy));
+		assertSame(template, acquire(cache, model));
+		assertEquals(3, cache.instancedDrawCount.get());
+	}
+
+	@Test
+	public void testDoesNotShareDifferentModels() {
+		var cache = new DynamicModelInstanceCache();
+		var a = mockModel(new float[] { 0, 1, 2, 3 }, new int[] { 5, 6 });
+		var b = mockModel(new float[] { 0, 1, 2, 4 }, new int[] { 5, 6 });
+
+		assertNull(acquire(cache, a));
+		assertNull(acquire(cache, b));
+		assertNull(acquire(cache, b, 512));
+		assertEquals(0, cache.instancedDrawCount.get());
+	}
+
+	@Test
+	public void testDetectsKeyCollisions() {
+		var cache = new DynamicModelInstanceCache();
+		var model = mockModel(new float[] { 0, 1, 2, 3, 4 }, new int[] { 5, 6 });
+		// Only a few vertices and the first face color are sampled for the key
+		var collision = mockModel(new float[] { 0, 9, 2, 3, 4 }, new int[] { 5, 7 });
+		int key = DynamicModelInstanceCache.key(model, ModelOverride.NONE, 0, 0, false, false);
+		assertEquals(key, DynamicModelInstanceCache.key(collision, ModelOverride.NONE, 0, 0, false, false));
+
+		assertNull(acquire(cache, model));
+		var template = acquire(cache, model);
+		assertNotNull(template);
+		cache.finishBuilding(template, true);
+
+		assertNull(acquire(cache, collision));
+		assertSame(template, acquire(cache, model));
+	}
+
+	@Test
+	public void testSkipsFailedTemplatesUntilCleared() {
+		var cache = new DynamicModelInstanceCache();
+		var model = mockModel(new float[] { 0, 1, 2 }, new int[] { 5 });
+
+		assertNull(acquire(cache, model));
+		var template = acquire(cache, model);
+		assertNotNull(template);
+		// Draws while the template is being built are processed normally
+		assertNull(acquire(cache, model));
+		cache.finishBuilding(template, false);
+		assertNull(acquire(cache, model));
+
+		cache.clear();
+		assertNull(acquire(cache, model));
+		assertNotNull(acquire(cache, model));
+	}
+
+	private static DynamicModelInstanceCache.Template acquire(DynamicModelInstanceCache cache, Model model) {
+		return acquire(cache, model, 0);
+	}
+
+	private static DynamicModelInstanceCache.Template acquire(DynamicModelInstanceCache cache, Model model, int orientation) {
+		int key = DynamicModelInstanceCache.key(model, ModelOverride.NONE, 0, orientation, false, false);
+		return cache.acquire(key, model, ModelOverride.NONE, 0, orientation, false, false);
+	}
+
+	private static Model mockModel(float[] vertices, int[] faceColors) {
+		Model model = mock(Model.class, withSettings().stubOnly());
+		when(model.getVerticesCount()).thenReturn(vertices.length);
+		when(model.getFaceCount()).thenReturn(faceColors.length);
+		when(model.getVerticesX()).thenReturn(vertices);
+		when(model.getVerticesY()).thenReturn(vertices);
+		when(model.getVerticesZ()).thenReturn(vertices);
+		when(model.getFaceColors1()).thenReturn(faceColors);
+		return model;
+	}
+}
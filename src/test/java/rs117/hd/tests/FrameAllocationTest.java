@@ -0,0 +1,426 @@
+package rs117.hd.tests;
+
+import com.google.inject.Guice;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+import javax.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.implementation.StubMethod;
+import net.runelite.api.*;
+import net.runelite.api.coords.*;
+import net.runelite.client.eventbus.EventBus;
+import org.junit.Before;
+import org.junit.Test;
+import rs117.hd.HdPlugin;
+import rs117.hd.HdPluginConfig;
+import rs117.hd.config.DynamicLights;
+import rs117.hd.config.SeasonalTheme;
+import rs117.hd.overlays.FrameTimer;
+import rs117.hd.overlays.Timer;
+import rs117.hd.renderer.zone.ModelStreamingManager;
+import rs117.hd.renderer.zone.SceneManager;
+import rs117.hd.renderer.zone.Zone;
+import rs117.hd.renderer.zone.ZoneRenderer;
+import rs117.hd.renderer.zone.ZoneSceneContext;
+import rs117.hd.scene.EnvironmentManager;
+import rs117.hd.scene.LightManager;
+import rs117.hd.scene.ModelOverrideManager;
+import rs117.hd.scene.areas.AABB;
+import rs117.hd.scene.areas.Area;
+import rs117.hd.scene.environments.Environment;
+import rs117.hd.scene.lights.Light;
+import rs117.hd.scene.lights.LightDefinition;
+import rs117.hd.scene.lights.LightType;
+import rs117.hd.scene.model_overrides.ModelOverride;
+import rs117.hd.utils.ModelHash;
+import rs117.hd.utils.QualityGovernor;
+import rs117.hd.utils.collections.Int2ObjectHashMap;
+
+import static net.runelite.api.Constants.*;
+import static net.bytebuddy.matcher.ElementMatchers.isAbstract;
+import static net.runelite.api.Perspective.*;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Drives the GL-free parts of the per-frame path through the real subsystems, with a synthetic scene behind fake
+ * client interfaces, and fails if the steady state allocates anything. Any garbage produced every frame eventually
+ * shows up as GC pauses. Unlike mocks, the fakes don't allocate when called, so whatever is measured comes from the
+ * plugin.
+ */
+@Slf4j
+public class FrameAllocationTest {
+	private static final int WARMUP_FRAMES = 20_000;
+	private static final int MEASURED_FRAMES = 10_000;
+	// Less than a byte per frame on average allows for one-off allocations, like by the allocation counter itself
+	private static final long BYTES_PER_FRAME_BUDGET = 0;
+
+	private static final int NUM_MODELS = 500;
+	private static final int NUM_LIGHTS = 100;
+	private static final int NUM_ANIMATED_LIGHTS = 8;
+	private static final int NUM_ANIMATED_OBJECTS = 16;
+	private static final int BASE_X = 3200;
+	private static final int BASE_Y = 3200;
+
+	private final HdPlugin plugin = new HdPlugin();
+	private final ModelOverrideManager modelOverrideManager = new ModelOverrideManager();
+	private final LightManager lightManager = new LightManager();
+	private final EnvironmentManager environmentManager = new EnvironmentManager();
+	private final SceneManager sceneManager = new SceneManager();
+	private final ModelStreamingManager modelStreamingManager = new ModelStreamingManager();
+	private final ZoneRenderer zoneRenderer = new ZoneRenderer();
+	private final int[] worldPos = new int[3];
+	private final ArrayList<FakeAnimation> animations = new ArrayList<>();
+
+	private ZoneSceneContext sceneContext;
+	private long checksum;
+
+	@Before
+	public void setUp() throws Exception {
+		var random = new Random(117);
+
+		var worldView = fake(FakeWorldView.class);
+		worldView.worldEntities = fake(FakeWorldEntities.class);
+
+		var localPlayer = fake(FakePlayer.class);
+		localPlayer.localLocation = new LocalPoint(SCENE_SIZE / 2 * LOCAL_TILE_SIZE, SCENE_SIZE / 2 * LOCAL_TILE_SIZE, -1);
+
+		var client = fake(FakeClient.class);
+		client.topLevelWorldView = worldView;
+		client.localPlayer = localPlayer;
+		client.objectDefinition = fake(ObjectComposition.class);
+
+		var scene = fake(FakeScene.class);
+		scene.extendedTiles = new Tile[MAX_Z][EXTENDED_SCENE_SIZE][EXTENDED_SCENE_SIZE];
+		scene.tileHeights = new int[MAX_Z][EXTENDED_SCENE_SIZE + 1][EXTENDED_SCENE_SIZE + 1];
+
+		var config = new HdPluginConfig() {
+			@Override
+			public int drawDistance() {
+				return 50;
+			}
+
+			@Override
+			public boolean overrideSky() {
+				return false;
+			}
+
+			@Override
+			public boolean atmosphericLighting() {
+				return true;
+			}
+
+			@Override
+			public boolean multithreadedModelProcessing() {
+				return false;
+			}
+		};
+
+		// Timers are never active, which skips everything but their tracing, which is disabled
+		var frameTimer = new FrameTimer() {
+			@Override
+			public AutoTimer begin(Timer timer) {
+				return null;
+			}
+
+			@Override
+			public void end(Timer timer) {}
+		};
+
+		var eventBus = new EventBus();
+		var injector = Guice.createInjector();
+		inject(plugin, client, config, new QualityGovernor());
+		inject(lightManager, client, plugin);
+		inject(environmentManager, client, plugin, config);
+		inject(sceneManager, client, plugin, config, frameTimer);
+		inject(modelStreamingManager, injector, client, eventBus, plugin, config, frameTimer);
+		inject(zoneRenderer, environmentManager);
+
+		plugin.configDynamicLights = DynamicLights.SOME;
+		plugin.configSeasonalTheme = SeasonalTheme.SUMMER;
+		plugin.cameraFocalPoint[0] = SCENE_SIZE / 2 * LOCAL_TILE_SIZE;
+		plugin.cameraFocalPoint[1] = SCENE_SIZE / 2 * LOCAL_TILE_SIZE;
+		plugin.deltaTime = plugin.deltaClientTime = 1 / 60f;
+
+		sceneContext = new ZoneSceneContext(client, worldView, scene, 0, null);
+		sceneContext.environments.add(Environment.DEFAULT);
+		var area = new Area("TEST", BASE_X, BASE_Y, BASE_X + SCENE_SIZE, BASE_Y + SCENE_SIZE);
+		sceneContext.possibleAreas = new Area[] { area };
+		sceneContext.currentArea = area;
+		sceneContext.enableAreaHiding = true;
+		for (int i = 0; i < NUM_ANIMATED_OBJECTS; i++)
+			sceneContext.animatedDynamicObjectIds.add(i);
+
+		// Attach the scene to the root world view the same way a completed scene swap would
+		var root = sceneManager.getRoot();
+		var zones = new Zone[SceneManager.NUM_ZONES][SceneManager.NUM_ZONES];
+		for (var column : zones)
+			for (int z = 0; z < column.length; z++)
+				column[z] = new Zone(Zone.UNPACKED_VERT_SIZE);
+		setField(root, "sceneContext", sceneContext);
+		setField(root, "zones", zones);
+		setField(root, "isLoading", false);
+
+		@SuppressWarnings("unchecked")
+		var modelOverrides = (Int2ObjectHashMap<ModelOverride>) getField(modelOverrideManager, "modelOverrides");
+		for (int i = 0; i < NUM_MODELS; i++) {
+			var override = new ModelOverride();
+			if (i % 3 == 0) {
+				override.areaOverrides = new HashMap<>();
+				for (int j = 0; j < 4; j++) {
+					int x = BASE_X + random.nextInt(64);
+					int y = BASE_Y + random.nextInt(64);
+					override.areaOverrides.put(new AABB(x, y, x + 8, y + 8), new ModelOverride());
+				}
+			}
+			ModelOverrideManager.flattenAreaOverrides(override);
+			modelOverrides.put(ModelHash.packUuid(ModelHash.TYPE_OBJECT, i), override);
+		}
+
+		for (int i = 0; i < NUM_LIGHTS; i++) {
+			var def = new LightDefinition();
+			def.radius = 300 + random.nextInt(500);
+			def.strength = 5;
+			def.type = i % 2 == 0 ? LightType.FLICKER : LightType.STATIC;
+			if (i < NUM_ANIMATED_LIGHTS)
+				for (int j = 0; j < 4; j++)
+					def.animationIds.add(random.nextInt(128));
+			def.normalize();
+
+			var light = new Light(def);
+			light.origin[0] = random.nextInt(SCENE_SIZE * LOCAL_TILE_SIZE);
+			light.origin[2] = random.nextInt(SCENE_SIZE * LOCAL_TILE_SIZE);
+			if (i < NUM_ANIMATED_LIGHTS) {
+				var animation = fake(FakeAnimation.class);
+				var dynamicObject = fake(FakeDynamicObject.class);
+				dynamicObject.animation = animation;
+				var gameObject = fake(FakeGameObject.class);
+				gameObject.renderable = dynamicObject;
+				light.tileObject = gameObject;
+				animations.add(animation);
+			}
+			sceneContext.lights.add(light);
+		}
+
+		modelStreamingManager.initialize();
+	}
+
+	@Test
+	public void testSteadyStateFrameIsAllocationFree() {
+		var threadBean = ManagementFactory.getThreadMXBean();
+		assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+		var allocationCounter = (com.sun.management.ThreadMXBean) threadBean;
+		assumeTrue(allocationCounter.isThreadAllocatedMemorySupported());
+		allocationCounter.setThreadAllocatedMemoryEnabled(true);
+
+		long threadId = Thread.currentThread().getId();
+		int frame = 0;
+		while (frame < WARMUP_FRAMES)
+			simulateFrame(frame++);
+
+		long before = allocationCounter.getThreadAllocatedBytes(threadId);
+		while (frame < WARMUP_FRAMES + MEASURED_FRAMES)
+			simulateFrame(frame++);
+		long allocated = allocationCounter.getThreadAllocatedBytes(threadId) - before;
+
+		long bytesPerFrame = allocated / MEASURED_FRAMES;
+		log.debug("Allocated {} bytes over {} frames ({} bytes per frame)", allocated, MEASURED_FRAMES, bytesPerFrame);
+		assertNotEquals(0, checksum);
+		assertTrue(
+			String.format(
+				"Allocated %d bytes per frame, exceeding the budget of %d bytes (%d bytes in total)",
+				bytesPerFrame, BYTES_PER_FRAME_BUDGET, allocated
+			),
+			bytesPerFrame <= BYTES_PER_FRAME_BUDGET
+		);
+	}
+
+	private void simulateFrame(int frame) {
+		plugin.frame = frame;
+		plugin.elapsedTime = frame / 60.;
+		for (int i = 0; i < animations.size(); i++)
+			animations.get(i).id = frame & 127;
+
+		modelStreamingManager.onBeforeRender(null);
+		sceneManager.update();
+		environmentManager.update(sceneContext);
+		lightManager.update(sceneContext, plugin.cameraShift, plugin.cameraFrustum);
+		zoneRenderer.updateEnvironmentColors();
+
+		// Model override lookups for each model being drawn, moving around within the area overrides
+		for (int i = 0; i < NUM_MODELS; i++) {
+			worldPos[0] = BASE_X + (frame + i) % 80;
+			worldPos[1] = BASE_Y + (frame * 7 + i) % 80;
+			worldPos[2] = 0;
+			if (modelOverrideManager.getOverride(ModelHash.packUuid(ModelHash.TYPE_OBJECT, i), worldPos) != ModelOverride.NONE)
+				checksum++;
+		}
+
+		modelStreamingManager.ensureAsyncUploadsComplete(null);
+		checksum += sceneContext.numVisibleLights + modelStreamingManager.getDrawnDynamicRenderableCount();
+	}
+
+	/**
+	 * Create an instance of the fake, with any methods it doesn't implement returning zero, false or null.
+	 */
+	private static <T> T fake(Class<T> type) throws ReflectiveOperationException {
+		return new ByteBuddy()
+			.subclass(type)
+			.method(isAbstract())
+			.intercept(StubMethod.INSTANCE)
+			.make()
+			.load(type.getClassLoader())
+			.getLoaded()
+			.getDeclaredConstructor()
+			.newInstance();
+	}
+
+	/**
+	 * Fill in any of the object's injected fields with the first matching dependency.
+	 */
+	private static void inject(Object target, Object... dependencies) throws IllegalAccessException {
+		for (Field field : target.getClass().getDeclaredFields()) {
+			if (!field.isAnnotationPresent(Inject.class))
+				continue;
+			for (var dependency : dependencies) {
+				if (field.getType().isInstance(dependency)) {
+					field.setAccessible(true);
+					field.set(target, dependency);
+					break;
+				}
+			}
+		}
+	}
+
+	private static Object getField(Object target, String name) throws ReflectiveOperationException {
+		Field field = target.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		return field.get(target);
+	}
+
+	private static void setField(Object target, String name, Object value) throws ReflectiveOperationException {
+		Field field = target.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(target, value);
+	}
+
+	public abstract static class FakeClient implements Client {
+		WorldView topLevelWorldView;
+		Player localPlayer;
+		ObjectComposition objectDefinition;
+
+		@Override
+		public boolean isClientThread() {
+			return true;
+		}
+
+		@Override
+		public GameState getGameState() {
+			return GameState.LOGGED_IN;
+		}
+
+		@Override
+		public WorldView getTopLevelWorldView() {
+			return topLevelWorldView;
+		}
+
+		@Override
+		public Player getLocalPlayer() {
+			return localPlayer;
+		}
+
+		@Override
+		public ObjectComposition getObjectDefinition(int objectId) {
+			return objectDefinition;
+		}
+	}
+
+	public abstract static class FakeWorldView implements WorldView {
+		IndexedObjectSet<WorldEntity> worldEntities;
+
+		@Override
+		public boolean isTopLevel() {
+			return true;
+		}
+
+		@Override
+		public IndexedObjectSet<WorldEntity> worldEntities() {
+			return worldEntities;
+		}
+	}
+
+	public abstract static class FakeWorldEntities implements IndexedObjectSet<WorldEntity> {
+		@Override
+		public Iterator<WorldEntity> iterator() {
+			return Collections.emptyIterator();
+		}
+	}
+
+	public abstract static class FakePlayer implements Player {
+		LocalPoint localLocation;
+
+		@Override
+		public LocalPoint getLocalLocation() {
+			return localLocation;
+		}
+	}
+
+	public abstract static class FakeScene implements Scene {
+		Tile[][][] extendedTiles;
+		int[][][] tileHeights;
+
+		@Override
+		public int getBaseX() {
+			return BASE_X;
+		}
+
+		@Override
+		public int getBaseY() {
+			return BASE_Y;
+		}
+
+		@Override
+		public Tile[][][] getExtendedTiles() {
+			return extendedTiles;
+		}
+
+		@Override
+		public int[][][] getTileHeights() {
+			return tileHeights;
+		}
+	}
+
+	public abstract static class FakeGameObject implements GameObject {
+		Renderable renderable;
+
+		@Override
+		public Renderable getRenderable() {
+			return renderable;
+		}
+	}
+
+	public abstract static class FakeDynamicObject implements DynamicObject {
+		Animation animation;
+
+		@Override
+		public Animation getAnimation() {
+			return animation;
+		}
+	}
+
+	public abstract static class FakeAnimation implements Animation {
+		int id;
+
+		@Override
+		public int getId() {
+			return id;
+		}
+	}
+}
@@ -2,6 +2,7 @@ package rs117.hd.tests;
 
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -9,6 +10,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import rs117.hd.config.CpuUsageLimit;
 import rs117.hd.utils.jobs.GenericJob;
+import rs117.hd.utils.jobs.Job;
+import rs117.hd.utils.jobs.JobLatencyHistogram;
+import rs117.hd.utils.jobs.JobPriority;
 import rs117.hd.utils.jobs.JobSystem;
 
 @Slf4j
@@ -526,6 +530,179 @@ public class JobSystemTests {
 		Assert.assertEquals(1, order.size());
 	}
 
+	@Test
+	public void testLowerPriorityWorkIsNotStarved() throws Exception {
+		for (var priority : new JobPriority[] { JobPriority.FRAME_DEFERRED, JobPriority.BACKGROUND }) {
+			GenericJob starved = GenericJob.build("Starved", t -> busyWork(t, 10)).queue(priority);
+
+			// Keep frame-critical work queued for far longer than the lower priority work may wait
+			long elapsed = floodUntilDone(starved, 3000);
+			Assert.assertTrue(priority + " work should be picked up despite frame-critical work", starved.ranToCompletion());
+			Assert.assertTrue(priority + " work waited for " + elapsed + " ms", elapsed < 2000);
+		}
+	}
+
+	@Test
+	public void testDeadlineIsMetDespiteHigherPriorityWork() throws Exception {
+		GenericJob job = GenericJob
+			.build("Deadline", t -> busyWork(t, 10))
+			.queue(JobPriority.BACKGROUND, 10, TimeUnit.MILLISECONDS);
+
+		long elapsed = floodUntilDone(job, 3000);
+		Assert.assertTrue(job.ranToCompletion());
+		// Well before the background class would age past frame-critical work on its own
+		Assert.assertTrue("Work with a deadline waited for " + elapsed + " ms", elapsed < JobPriority.BACKGROUND.maxWaitNanos / 1_000_000);
+	}
+
+	@Test
+	public void testBackgroundWorkCompletesOverBudget() {
+		try {
+			JOB_SYSTEM.setBackgroundFrameBudget(1);
+			List<GenericJob> jobs = new CopyOnWriteArrayList<>();
+			for (int i = 0; i < 4; i++)
+				jobs.add(GenericJob.build("Background" + i, t -> busyWork(t, 20)).queue(JobPriority.BACKGROUND));
+
+			// No frames are ending, so the budget is never reset, and the work must age past it
+			long start = System.nanoTime();
+			while (jobs.stream().anyMatch(job -> !job.isDone()) && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5))
+				Thread.yield();
+
+			for (var job : jobs)
+				Assert.assertTrue(job + " should complete once overdue", job.ranToCompletion());
+			Assert.assertTrue(JOB_SYSTEM.isBackgroundBudgetExceeded());
+		} finally {
+			JOB_SYSTEM.setBackgroundFrameBudget(0);
+			JOB_SYSTEM.endFrame();
+		}
+	}
+
+	@Test
+	public void testWaitingPromotesQueuedWork() {
+		try {
+			JOB_SYSTEM.setBackgroundFrameBudget(1);
+			GenericJob first = GenericJob.build("First", t -> busyWork(t, 5)).queue(JobPriority.BACKGROUND);
+			first.waitForCompletion();
+
+			GenericJob awaited = GenericJob.build("Awaited", t -> busyWork(t, 5)).queue(JobPriority.BACKGROUND);
+			long start = System.nanoTime();
+			awaited.waitForCompletion();
+			long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+			Assert.assertTrue(awaited.ranToCompletion());
+			Assert.assertTrue("Awaited work waited for " + elapsed + " ms", elapsed < JobPriority.BACKGROUND.maxWaitNanos / 1_000_000);
+		} finally {
+			JOB_SYSTEM.setBackgroundFrameBudget(0);
+			JOB_SYSTEM.endFrame();
+		}
+	}
+
+	@Test
+	public void testLatencyHistogramPercentiles() {
+		var histogram = new JobLatencyHistogram();
+		Assert.assertEquals(0, histogram.getPercentile(.99f));
+
+		for (int i = 1; i <= 1000; i++)
+			histogram.record(i * 1000L);
+
+		long median = histogram.getPercentile(.5f);
+		long p99 = histogram.getPercentile(.99f);
+		// Buckets are a quarter of a power of two wide, so upper bounds are at most 25% off
+		Assert.assertTrue("Median " + median, median >= 500_000 && median <= 625_000);
+		Assert.assertTrue("P99 " + p99, p99 >= 990_000 && p99 <= 1_237_500);
+		Assert.assertTrue(histogram.getPercentile(1) >= 1_000_000);
+
+		histogram.reset();
+		Assert.assertEquals(0, histogram.getPercentile(.5f));
+	}
+
+	@Test
+	public void testSuspendedJobResumesAfterClientCallbacks() throws Exception {
+		var job = new SuspendingJob(2, false);
+		job.queue();
+		pumpClientCallbacksUntilDone(job, 5000);
+
+		Assert.assertTrue(job.ranToCompletion());
+		Assert.assertEquals(List.of("run 0", "callback", "run 1", "callback", "run 2"), job.steps);
+		// Callbacks run on whichever thread processes the batch, rather than on the worker
+		Assert.assertEquals(List.of(Thread.currentThread(), Thread.currentThread()), job.callbackThreads);
+	}
+
+	@Test
+	public void testFailedClientCallbackCancelsSuspendedJob() throws Exception {
+		var job = new SuspendingJob(2, true);
+		job.queue();
+		GenericJob dependant = GenericJob.build("Dependant", t -> {}).queue(job);
+		pumpClientCallbacksUntilDone(job, 5000);
+		dependant.waitForCompletion();
+
+		Assert.assertTrue(job.wasCancelled());
+		Assert.assertTrue(job.encounteredError());
+		Assert.assertFalse(job.ranToCompletion());
+		Assert.assertEquals(List.of("run 0", "callback"), job.steps);
+		Assert.assertTrue(dependant.wasCancelled());
+	}
+
+	private static final class SuspendingJob extends Job {
+		final List<String> steps = new CopyOnWriteArrayList<>();
+		final List<Thread> callbackThreads = new CopyOnWriteArrayList<>();
+		final int suspensions;
+		final boolean failCallback;
+		int phase;
+
+		SuspendingJob(int suspensions, boolean failCallback) {
+			this.suspensions = suspensions;
+			this.failCallback = failCallback;
+		}
+
+		@Override
+		protected void onRun() throws InterruptedException {
+			steps.add("run " + phase);
+			if (phase++ < suspensions)
+				suspendForClientCallback(this::clientCallback);
+		}
+
+		private void clientCallback() {
+			steps.add("callback");
+			callbackThreads.add(Thread.currentThread());
+			if (failCallback)
+				throw new IllegalStateException("Failed client callback");
+		}
+	}
+
+	/**
+	 * Process client callbacks on the current thread, standing in for the client thread, until the job is done.
+	 */
+	private static void pumpClientCallbacksUntilDone(Job job, long timeoutMillis) throws InterruptedException {
+		long start = System.nanoTime();
+		while (!job.isDone()) {
+			Assert.assertTrue("Timed out", System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+			JOB_SYSTEM.processPendingClientCallbacks();
+			Thread.sleep(1);
+		}
+		job.waitForCompletion();
+	}
+
+	/**
+	 * Keep the frame-critical queue busy until the job is done, without waiting on the job itself.
+	 *
+	 * @return milliseconds until the job was done
+	 */
+	private static long floodUntilDone(GenericJob job, long timeoutMillis) throws InterruptedException {
+		List<GenericJob> flood = new CopyOnWriteArrayList<>();
+		long start = System.nanoTime();
+		try {
+			while (!job.isDone() && System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+				while (JOB_SYSTEM.getWorkQueueSize(JobPriority.FRAME_CRITICAL) < 8)
+					flood.add(GenericJob.build("Flood", t -> busyWork(t, 2)).queue());
+				Thread.sleep(1);
+			}
+			return (System.nanoTime() - start) / 1_000_000;
+		} finally {
+			for (var f : flood)
+				f.cancel();
+		}
+	}
+
 	private static void busyWork(GenericJob task, long millis) throws InterruptedException {
 		final long start = System.nanoTime();
 		final long durationNanos = millis * 1_000_000L;
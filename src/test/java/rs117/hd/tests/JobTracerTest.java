@@ -0,0 +1,110 @@
+package rs117.hd.tests;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.StringWriter;
+import java.util.HashSet;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import rs117.hd.config.CpuUsageLimit;
+import rs117.hd.utils.jobs.GenericJob;
+import rs117.hd.utils.jobs.JobSystem;
+import rs117.hd.utils.jobs.JobTracer;
+
+public class JobTracerTest {
+	private static JobSystem JOB_SYSTEM;
+
+	@BeforeClass
+	public static void beforeAll() {
+		JOB_SYSTEM = new JobSystem();
+		JOB_SYSTEM.startUp(CpuUsageLimit.MAX);
+	}
+
+	@AfterClass
+	public static void afterAll() {
+		JOB_SYSTEM.tracer.stop();
+		JOB_SYSTEM.shutDown();
+	}
+
+	@Test
+	public void testNothingIsRecordedWhileDisabled() throws Exception {
+		var tracer = new JobTracer();
+		tracer.complete("Span", System.nanoTime());
+		tracer.instant("Instant");
+		Assert.assertEquals(0, tracer.flowStart("Flow"));
+		Assert.assertEquals(0, tracer.getEventCount());
+		Assert.assertEquals(0, parse(tracer).size());
+	}
+
+	@Test
+	public void testJobsAreTracedWithFlows() throws Exception {
+		var tracer = JOB_SYSTEM.tracer;
+		tracer.start();
+		try {
+			GenericJob a = GenericJob.build("TracedA", t -> Thread.sleep(2)).queue();
+			// Long enough for the job to still be running once it's waited on
+			GenericJob b = GenericJob.build("TracedB", t -> Thread.sleep(100)).queue(a);
+			b.waitForCompletion();
+		} finally {
+			tracer.stop();
+		}
+
+		var events = parse(tracer);
+		var flowStarts = new HashSet<Long>();
+		var flowEnds = new HashSet<Long>();
+		boolean ranA = false, ranB = false, waited = false;
+		for (JsonElement element : events) {
+			JsonObject event = element.getAsJsonObject();
+			String ph = event.get("ph").getAsString();
+			String name = event.get("name").getAsString();
+			switch (ph) {
+				case "X":
+					Assert.assertTrue(event.get("dur").getAsDouble() >= 0);
+					ranA |= name.equals("TracedA");
+					ranB |= name.equals("TracedB");
+					waited |= name.equals("Wait for TracedB");
+					break;
+				case "s":
+					flowStarts.add(event.get("id").getAsLong());
+					break;
+				case "f":
+					flowEnds.add(event.get("id").getAsLong());
+					break;
+				case "M":
+					Assert.assertEquals("thread_name", name);
+					break;
+			}
+		}
+
+		Assert.assertTrue("Both jobs should have been traced", ranA && ranB);
+		Assert.assertTrue("Waiting on the job should have been traced", waited);
+		Assert.assertFalse(flowEnds.isEmpty());
+		Assert.assertTrue("Every job start should be linked to where it was queued", flowStarts.containsAll(flowEnds));
+	}
+
+	@Test
+	public void testRingBufferKeepsMostRecentEvents() throws Exception {
+		var tracer = new JobTracer();
+		tracer.start();
+		int count = 200_000;
+		for (int i = 0; i < count; i++)
+			tracer.instant(i % 2 == 0 ? "Even \"quoted\"" : "Odd\\");
+		tracer.stop();
+
+		Assert.assertTrue(tracer.getEventCount() < count);
+		var events = parse(tracer);
+		// The thread name, followed by the most recent events, which should still be valid JSON
+		Assert.assertEquals(tracer.getEventCount() + 1, events.size());
+		Assert.assertEquals("Odd\\", events.get(events.size() - 1).getAsJsonObject().get("name").getAsString());
+	}
+
+	private static JsonArray parse(JobTracer tracer) throws Exception {
+		var writer = new StringWriter();
+		tracer.writeChromeTrace(writer);
+		return new JsonParser().parse(writer.toString()).getAsJsonObject().getAsJsonArray("traceEvents");
+	}
+}
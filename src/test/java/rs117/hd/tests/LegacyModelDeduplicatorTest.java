@@ -0,0 +1,153 @@
+package rs117.hd.tests;
+
+import java.util.Random;
+import org.junit.Test;
+import rs117.hd.renderer.legacy.LegacyModelDeduplicator;
+import rs117.hd.renderer.legacy.LegacyStagingBuffers;
+import rs117.hd.utils.buffer.GpuFloatBuffer;
+import rs117.hd.utils.buffer.GpuIntBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LegacyModelDeduplicatorTest {
+	private static final int PROTOTYPE_COUNT = 12;
+	private static final int PLACEMENT_COUNT = 500;
+
+	@Test
+	public void testExpandedPlacementsMatchFullUpload() {
+		var random = new Random(117);
+		int[][] prototypes = new int[PROTOTYPE_COUNT][];
+		for (int i = 0; i < PROTOTYPE_COUNT; i++) {
+			// Vertex count, UV count and seed. Some prototypes share their seed, but differ in size
+			int vertexCount = (1 + i % 2 + random.nextInt(10) * 2) * 3;
+			prototypes[i] = new int[] { vertexCount, random.nextInt(3) == 0 ? 0 : vertexCount, i / 2 };
+		}
+
+		int[] placements = new int[PLACEMENT_COUNT];
+		for (int i = 0; i < PLACEMENT_COUNT; i++)
+			placements[i] = random.nextInt(PROTOTYPE_COUNT);
+
+		var expected = newBuffers();
+		var actual = newBuffers();
+		var deduplicator = new LegacyModelDeduplicator(actual);
+		int[] expectedOffsets = new int[PLACEMENT_COUNT * 2];
+		int[] actualOffsets = new int[PLACEMENT_COUNT * 2];
+		boolean[] seen = new boolean[PROTOTYPE_COUNT];
+		int uniqueCount = 0;
+
+		for (int i = 0; i < PLACEMENT_COUNT; i++) {
+			int[] prototype = prototypes[placements[i]];
+			expectedOffsets[i * 2] = expected.getVertexOffset();
+			expectedOffsets[i * 2 + 1] = prototype[1] == 0 ? -1 : expected.getUvOffset();
+			writeModel(expected, prototype);
+
+			int vertexOffset = actual.getVertexOffset();
+			int uvOffset = prototype[1] == 0 ? -1 : actual.getUvOffset();
+			writeModel(actual, prototype);
+			boolean deduplicated = deduplicator.deduplicate(vertexOffset, uvOffset);
+			assertEquals(seen[placements[i]], deduplicated);
+			if (!seen[placements[i]]) {
+				seen[placements[i]] = true;
+				uniqueCount++;
+			}
+			actualOffsets[i * 2] = deduplicator.getVertexOffset();
+			actualOffsets[i * 2 + 1] = deduplicator.getUvOffset();
+		}
+
+		assertEquals(PLACEMENT_COUNT - uniqueCount, deduplicator.getDeduplicatedModelCount());
+		assertTrue(actual.getVertexOffset() < expected.getVertexOffset());
+
+		for (int i = 0; i < PLACEMENT_COUNT; i++) {
+			int[] prototype = prototypes[placements[i]];
+			int orientation = i % 4;
+			assertArrayEquals(
+				expand(expected, expectedOffsets[i * 2], expectedOffsets[i * 2 + 1], prototype, orientation, i),
+				expand(actual, actualOffsets[i * 2], actualOffsets[i * 2 + 1], prototype, orientation, i)
+			);
+		}
+
+		destroy(expected);
+		destroy(actual);
+	}
+
+	@Test
+	public void testUvBitsAreComparedExactly() {
+		var buffers = newBuffers();
+		var deduplicator = new LegacyModelDeduplicator(buffers);
+
+		// Packed material data may look like NaNs, which must not be treated as equal
+		for (int bits : new int[] { 0x7FC00001, 0x7FC00002 }) {
+			int vertexOffset = buffers.getVertexOffset();
+			int uvOffset = buffers.getUvOffset();
+			writeModel(buffers, new int[] { 3, 0, 1 });
+			buffers.uvs.ensureCapacity(12);
+			for (int i = 0; i < 3; i++)
+				buffers.uvs.put(0, 0, 0, Float.intBitsToFloat(bits));
+			assertFalse(deduplicator.deduplicate(vertexOffset, uvOffset));
+		}
+
+		assertEquals(6, buffers.getVertexOffset());
+		destroy(buffers);
+	}
+
+	/**
+	 * Expand a placement the same way the compute pass does, by rotating the model around the Y axis in 90 degree
+	 * steps, and translating it to its position.
+	 */
+	private static int[] expand(LegacyStagingBuffers buffers, int vertexOffset, int uvOffset, int[] prototype, int orientation, int position) {
+		int vertexCount = prototype[0];
+		int uvCount = prototype[1];
+		var vertices = buffers.vertices.getBuffer();
+		var normals = buffers.normals.getBuffer();
+		var uvs = buffers.uvs.getBuffer();
+		int[] result = new int[vertexCount * 8 + uvCount * 4];
+		int j = 0;
+		for (int i = 0; i < vertexCount; i++) {
+			int base = (vertexOffset + i) * 4;
+			int x = vertices.get(base);
+			int z = vertices.get(base + 2);
+			for (int r = 0; r < orientation; r++) {
+				int tmp = x;
+				x = z;
+				z = -tmp;
+			}
+			result[j++] = x + position * 128;
+			result[j++] = vertices.get(base + 1);
+			result[j++] = z - position * 128;
+			result[j++] = vertices.get(base + 3);
+			for (int k = 0; k < 4; k++)
+				result[j++] = Float.floatToRawIntBits(normals.get(base + k));
+		}
+		for (int i = 0; i < uvCount * 4; i++)
+			result[j++] = Float.floatToRawIntBits(uvs.get(uvOffset * 4 + i));
+		return result;
+	}
+
+	private static void writeModel(LegacyStagingBuffers buffers, int[] prototype) {
+		int vertexCount = prototype[0];
+		int uvCount = prototype[1];
+		int seed = prototype[2];
+		buffers.vertices.ensureCapacity(vertexCount * 4);
+		buffers.normals.ensureCapacity(vertexCount * 4);
+		for (int i = 0; i < vertexCount; i++) {
+			buffers.vertices.put(new int[] { seed * 7 + i, i * seed, -i, seed ^ i });
+			buffers.normals.put(i, seed, 0, -1);
+		}
+		buffers.uvs.ensureCapacity(uvCount * 4);
+		for (int i = 0; i < uvCount; i++)
+			buffers.uvs.put(i / 128f, seed / 128f, 0, seed);
+	}
+
+	private static LegacyStagingBuffers newBuffers() {
+		return new LegacyStagingBuffers(new GpuIntBuffer(64), new GpuFloatBuffer(64), new GpuFloatBuffer(64));
+	}
+
+	private static void destroy(LegacyStagingBuffers buffers) {
+		buffers.vertices.destroy();
+		buffers.uvs.destroy();
+		buffers.normals.destroy();
+	}
+}
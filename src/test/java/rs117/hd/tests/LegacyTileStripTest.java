@@ -0,0 +1,287 @@
+package rs117.hd.tests;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Random;
+import javax.inject.Inject;
+import net.runelite.api.*;
+import net.runelite.api.coords.*;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import rs117.hd.HdPlugin;
+import rs117.hd.config.CpuUsageLimit;
+import rs117.hd.renderer.legacy.LegacySceneContext;
+import rs117.hd.renderer.legacy.LegacySceneUploader;
+import rs117.hd.scene.ProceduralGenerator;
+import rs117.hd.scene.TileOverrideManager;
+import rs117.hd.utils.buffer.GpuFloatBuffer;
+import rs117.hd.utils.buffer.GpuIntBuffer;
+import rs117.hd.utils.collections.Int2IntHashMap;
+import rs117.hd.utils.collections.Int2ObjectHashMap;
+import rs117.hd.utils.jobs.JobSystem;
+
+import static net.runelite.api.Constants.*;
+import static net.runelite.api.Perspective.*;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+import static rs117.hd.scene.SceneContext.TILE_WATER_FLAG;
+
+/**
+ * Uploads a synthetic scene through the legacy scene uploader, once with all tile geometry generated by the current
+ * thread, and once split into strips generated by workers, and checks that both produce identical scene buffers.
+ */
+public class LegacyTileStripTest {
+	private static final int BASE_X = 3200;
+	private static final int BASE_Y = 3200;
+	// Strips split the scene along the X axis, so tiles span every column, but only a band of rows
+	private static final int FROM_TILE_EX_Y = 40;
+	private static final int TO_TILE_EX_Y = 52;
+	private static final int PLANES = 2;
+	// Paint offset, UV offset and length, followed by the same for the tile model
+	private static final int RECORD_SIZE = 6;
+
+	private static JobSystem JOB_SYSTEM;
+
+	private final HdPlugin plugin = new HdPlugin();
+	private final TileOverrideManager tileOverrideManager = new TileOverrideManager();
+	private final ProceduralGenerator proceduralGenerator = new ProceduralGenerator();
+	private final LegacySceneUploader sceneUploader = new LegacySceneUploader();
+
+	private Client client;
+	private Scene scene;
+	private byte[] tileFlags;
+	// The buffer offsets and lengths the uploader assigned to each tile during the current upload
+	private int[] records;
+
+	@BeforeClass
+	public static void beforeAll() {
+		JOB_SYSTEM = new JobSystem();
+		JOB_SYSTEM.startUp(CpuUsageLimit.MAX);
+	}
+
+	@AfterClass
+	public static void afterAll() {
+		JOB_SYSTEM.shutDown();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		var random = new Random(117);
+
+		client = mock(Client.class, withSettings().stubOnly());
+		scene = mock(Scene.class, withSettings().stubOnly());
+		var tiles = new Tile[MAX_Z][EXTENDED_SCENE_SIZE][EXTENDED_SCENE_SIZE];
+		var tileHeights = new int[MAX_Z][EXTENDED_SCENE_SIZE + 1][EXTENDED_SCENE_SIZE + 1];
+		when(scene.isInstance()).thenReturn(false);
+		when(scene.getBaseX()).thenReturn(BASE_X);
+		when(scene.getBaseY()).thenReturn(BASE_Y);
+		when(scene.getExtendedTiles()).thenReturn(tiles);
+		when(scene.getTileHeights()).thenReturn(tileHeights);
+		when(scene.getOverlayIds()).thenReturn(new short[MAX_Z][EXTENDED_SCENE_SIZE][EXTENDED_SCENE_SIZE]);
+		when(scene.getUnderlayIds()).thenReturn(new short[MAX_Z][EXTENDED_SCENE_SIZE][EXTENDED_SCENE_SIZE]);
+
+		for (var plane : tileHeights)
+			for (var column : plane)
+				for (int y = 0; y < column.length; y++)
+					column[y] = -random.nextInt(480);
+
+		int sceneOffset = (EXTENDED_SCENE_SIZE - SCENE_SIZE) / 2;
+		tileFlags = new byte[MAX_Z * EXTENDED_SCENE_SIZE * EXTENDED_SCENE_SIZE];
+		for (int z = 0; z < PLANES; z++) {
+			for (int x = 0; x < EXTENDED_SCENE_SIZE; x++) {
+				for (int y = FROM_TILE_EX_Y; y < TO_TILE_EX_Y; y++) {
+					// Leave some tiles empty, and give others tile paint, a tile model, or both
+					int kind = random.nextInt(4);
+					if (kind == 0)
+						continue;
+
+					int tileIdx = (z * EXTENDED_SCENE_SIZE + x) * EXTENDED_SCENE_SIZE + y;
+					int sceneX = x - sceneOffset;
+					int sceneY = y - sceneOffset;
+					var tile = mock(Tile.class, withSettings().stubOnly());
+					when(tile.getSceneLocation()).thenReturn(new Point(sceneX, sceneY));
+					when(tile.getLocalLocation()).thenReturn(new LocalPoint(
+						sceneX * LOCAL_TILE_SIZE + LOCAL_HALF_TILE_SIZE,
+						sceneY * LOCAL_TILE_SIZE + LOCAL_HALF_TILE_SIZE,
+						-1
+					));
+					when(tile.getPlane()).thenReturn(z);
+					when(tile.getRenderLevel()).thenReturn(z);
+					when(tile.getGameObjects()).thenReturn(new GameObject[0]);
+					if ((kind & 1) != 0)
+						when(tile.getSceneTilePaint()).thenReturn(tilePaint(random, tileIdx));
+					if ((kind & 2) != 0)
+						when(tile.getSceneTileModel()).thenReturn(tileModel(random, tileIdx, sceneX, sceneY, tileHeights[z]));
+					tiles[z][x][y] = tile;
+
+					// Some tiles also have underwater terrain below them
+					if (random.nextInt(5) == 0)
+						tileFlags[x + y * EXTENDED_SCENE_SIZE + z * EXTENDED_SCENE_SIZE * EXTENDED_SCENE_SIZE] |= TILE_WATER_FLAG;
+				}
+			}
+		}
+
+		setField(tileOverrideManager, "anyMatchOverrides", new ArrayList<>());
+		setField(tileOverrideManager, "idMatchOverrides", new Int2ObjectHashMap<>());
+		inject(sceneUploader, client, plugin, tileOverrideManager, proceduralGenerator, JOB_SYSTEM);
+	}
+
+	@Test
+	public void testStripsMatchSingleThreadedUpload() throws Exception {
+		var expected = upload(1);
+		assertNotEquals(0, expected.vertices.length);
+		assertNotEquals(0, expected.uvs.length);
+
+		for (int stripCount : new int[] { 2, 3, 8 }) {
+			var actual = upload(stripCount);
+			assertArrayEquals(expected.vertices, actual.vertices);
+			assertArrayEquals(expected.uvs, actual.uvs, 0);
+			assertArrayEquals(expected.normals, actual.normals, 0);
+			assertArrayEquals(expected.records, actual.records);
+			assertArrayEquals(expected.filledTiles, actual.filledTiles);
+		}
+	}
+
+	private static final class UploadedScene {
+		int[] vertices;
+		float[] uvs;
+		float[] normals;
+		int[] records;
+		byte[][] filledTiles;
+	}
+
+	private UploadedScene upload(int stripCount) throws Exception {
+		records = new int[MAX_Z * EXTENDED_SCENE_SIZE * EXTENDED_SCENE_SIZE * RECORD_SIZE];
+		var sceneContext = new LegacySceneContext(client, scene, 0, null);
+		sceneContext.tileFlags = tileFlags.clone();
+		sceneContext.vertexTerrainData = new Int2IntHashMap();
+		sceneContext.vertexTerrainNormalIndices = new Int2IntHashMap();
+		try {
+			var uploadTiles = LegacySceneUploader.class.getDeclaredMethod("uploadTiles", LegacySceneContext.class, int.class);
+			uploadTiles.setAccessible(true);
+			uploadTiles.invoke(sceneUploader, sceneContext, stripCount);
+
+			var uploaded = new UploadedScene();
+			uploaded.vertices = toArray(sceneContext.stagingBufferVertices);
+			uploaded.uvs = toArray(sceneContext.stagingBufferUvs);
+			uploaded.normals = toArray(sceneContext.stagingBufferNormals);
+			uploaded.records = records;
+			uploaded.filledTiles = sceneContext.filledTiles;
+			return uploaded;
+		} finally {
+			sceneContext.staticUnorderedModelBuffer.destroy();
+			sceneContext.destroy();
+		}
+	}
+
+	private SceneTilePaint tilePaint(Random random, int tileIdx) {
+		var paint = mock(SceneTilePaint.class, withSettings().stubOnly());
+		when(paint.getSwColor()).thenReturn(random.nextInt(0x10000));
+		when(paint.getSeColor()).thenReturn(random.nextInt(0x10000));
+		when(paint.getNeColor()).thenReturn(random.nextInt(0x10000));
+		when(paint.getNwColor()).thenReturn(random.nextInt(0x10000));
+		when(paint.getTexture()).thenReturn(-1);
+		recordOffsets(tileIdx * RECORD_SIZE, paint);
+		return paint;
+	}
+
+	private SceneTileModel tileModel(Random random, int tileIdx, int sceneX, int sceneY, int[][] tileHeights) {
+		int x = sceneX * LOCAL_TILE_SIZE;
+		int y = sceneY * LOCAL_TILE_SIZE;
+		int tileExX = tileIdx / EXTENDED_SCENE_SIZE % EXTENDED_SCENE_SIZE;
+		int tileExY = tileIdx % EXTENDED_SCENE_SIZE;
+		var model = mock(SceneTileModel.class, withSettings().stubOnly());
+		// Two triangles covering the tile, the first of which is an underlay, and the second an overlay
+		when(model.getShape()).thenReturn(2);
+		when(model.getVertexX()).thenReturn(new int[] { x, x + LOCAL_TILE_SIZE, x + LOCAL_TILE_SIZE, x });
+		when(model.getVertexY()).thenReturn(new int[] {
+			tileHeights[tileExX][tileExY],
+			tileHeights[tileExX + 1][tileExY],
+			tileHeights[tileExX + 1][tileExY + 1],
+			tileHeights[tileExX][tileExY + 1]
+		});
+		when(model.getVertexZ()).thenReturn(new int[] { y, y, y + LOCAL_TILE_SIZE, y + LOCAL_TILE_SIZE });
+		when(model.getFaceX()).thenReturn(new int[] { 0, 0 });
+		when(model.getFaceY()).thenReturn(new int[] { 1, 2 });
+		when(model.getFaceZ()).thenReturn(new int[] { 2, 3 });
+		when(model.getTriangleColorA()).thenReturn(new int[] { random.nextInt(0x10000), random.nextInt(0x10000) });
+		when(model.getTriangleColorB()).thenReturn(new int[] { random.nextInt(0x10000), random.nextInt(0x10000) });
+		when(model.getTriangleColorC()).thenReturn(new int[] { random.nextInt(0x10000), random.nextInt(0x10000) });
+		recordOffsets(tileIdx * RECORD_SIZE + 3, model);
+		return model;
+	}
+
+	private void recordOffsets(int offset, SceneTilePaint paint) {
+		doAnswer(invocation -> {
+			records[offset] = invocation.getArgument(0);
+			return null;
+		}).when(paint).setBufferOffset(anyInt());
+		doAnswer(invocation -> {
+			records[offset + 1] = invocation.getArgument(0);
+			return null;
+		}).when(paint).setUvBufferOffset(anyInt());
+		doAnswer(invocation -> {
+			records[offset + 2] = invocation.getArgument(0);
+			return null;
+		}).when(paint).setBufferLen(anyInt());
+	}
+
+	private void recordOffsets(int offset, SceneTileModel model) {
+		doAnswer(invocation -> {
+			records[offset] = invocation.getArgument(0);
+			return null;
+		}).when(model).setBufferOffset(anyInt());
+		doAnswer(invocation -> {
+			records[offset + 1] = invocation.getArgument(0);
+			return null;
+		}).when(model).setUvBufferOffset(anyInt());
+		doAnswer(invocation -> {
+			records[offset + 2] = invocation.getArgument(0);
+			return null;
+		}).when(model).setBufferLen(anyInt());
+	}
+
+	private static int[] toArray(GpuIntBuffer buffer) {
+		var view = buffer.getBuffer().duplicate().flip();
+		int[] array = new int[view.remaining()];
+		view.get(array);
+		return array;
+	}
+
+	private static float[] toArray(GpuFloatBuffer buffer) {
+		var view = buffer.getBuffer().duplicate().flip();
+		float[] array = new float[view.remaining()];
+		view.get(array);
+		return array;
+	}
+
+	/**
+	 * Fill in any of the object's injected fields with the first matching dependency.
+	 */
+	private static void inject(Object target, Object... dependencies) throws IllegalAccessException {
+		for (Field field : target.getClass().getDeclaredFields()) {
+			if (!field.isAnnotationPresent(Inject.class))
+				continue;
+			for (var dependency : dependencies) {
+				if (field.getType().isInstance(dependency)) {
+					field.setAccessible(true);
+					field.set(target, dependency);
+					break;
+				}
+			}
+		}
+	}
+
+	private static void setField(Object target, String name, Object value) throws ReflectiveOperationException {
+		Field field = target.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(target, value);
+	}
+}
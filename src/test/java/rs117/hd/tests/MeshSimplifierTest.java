@@ -0,0 +1,159 @@
+package rs117.hd.tests;
+
+import java.util.HashSet;
+import java.util.Random;
+import org.junit.Test;
+import rs117.hd.utils.MeshSimplifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MeshSimplifierTest {
+	private static final int GRID_SIZE = 16;
+	private static final int TILE_SIZE = 128;
+
+	private final MeshSimplifier simplifier = new MeshSimplifier();
+
+	@Test
+	public void testFlatGridCollapsesWithoutError() {
+		int[] mesh = heightfield(new int[(GRID_SIZE + 1) * (GRID_SIZE + 1)]);
+		int triangleCount = mesh.length / 9;
+		int[] triangles = new int[triangleCount];
+		int[] positions = new int[mesh.length];
+		int count = simplifier.simplify(mesh, triangleCount, 0, 0, triangles, positions);
+
+		// Only the locked border vertices should remain, so most of the triangles can go
+		assertTrue("Remaining triangles: " + count, count <= triangleCount / 4);
+		double expectedArea = 0;
+		for (int t = 0; t < triangleCount; t++)
+			expectedArea += signedArea(mesh, t);
+		double area = 0;
+		for (int t = 0; t < count; t++) {
+			for (int i = 0; i < 3; i++)
+				assertEquals(0, positions[t * 9 + i * 3 + 1]);
+			area += signedArea(positions, t);
+		}
+		// No triangle may fold over, so the grid must still be covered exactly once
+		assertEquals(expectedArea, area, 1e-3);
+	}
+
+	@Test
+	public void testHeightfieldStaysWithinMaxError() {
+		var random = new Random(117);
+		int[] heights = new int[(GRID_SIZE + 1) * (GRID_SIZE + 1)];
+		for (int z = 0; z <= GRID_SIZE; z++)
+			for (int x = 0; x <= GRID_SIZE; x++)
+				heights[z * (GRID_SIZE + 1) + x] = (int) (Math.sin(x * .4) * 200 + Math.cos(z * .3) * 150) + random.nextInt(9) - 4;
+		int[] mesh = heightfield(heights);
+		int triangleCount = mesh.length / 9;
+		int[] triangles = new int[triangleCount];
+		int[] positions = new int[mesh.length];
+
+		for (float maxError : new float[] { 4, 16, 64 }) {
+			int count = simplifier.simplify(mesh, triangleCount, 0, maxError, triangles, positions);
+			assertTrue("Remaining triangles: " + count, count < triangleCount);
+
+			// Every original vertex must still be close to the simplified surface above or below it
+			for (int z = 0; z <= GRID_SIZE; z++) {
+				for (int x = 0; x <= GRID_SIZE; x++) {
+					double y = heightAt(positions, count, x * TILE_SIZE, z * TILE_SIZE);
+					double error = Math.abs(y - heights[z * (GRID_SIZE + 1) + x]);
+					assertTrue(String.format("Error %.2f at (%d, %d) exceeds %.0f", error, x, z, maxError), error <= maxError * 2);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testOpenEdgesAreLocked() {
+		var random = new Random(117);
+		int[] heights = new int[(GRID_SIZE + 1) * (GRID_SIZE + 1)];
+		for (int i = 0; i < heights.length; i++)
+			heights[i] = random.nextInt(64);
+		int[] mesh = heightfield(heights);
+		int triangleCount = mesh.length / 9;
+		int[] triangles = new int[triangleCount];
+		int[] positions = new int[mesh.length];
+		int count = simplifier.simplify(mesh, triangleCount, triangleCount / 4, Float.POSITIVE_INFINITY, triangles, positions);
+		assertTrue("Remaining triangles: " + count, count <= triangleCount / 4);
+
+		var remaining = new HashSet<Long>();
+		for (int i = 0; i < count * 3; i++)
+			remaining.add(key(positions, i * 3));
+		for (int i = 0; i < triangleCount * 3; i++) {
+			int x = mesh[i * 3] / TILE_SIZE, z = mesh[i * 3 + 2] / TILE_SIZE;
+			if (x == 0 || z == 0 || x == GRID_SIZE || z == GRID_SIZE)
+				assertTrue("Border vertex was removed", remaining.contains(key(mesh, i * 3)));
+		}
+
+		// Remaining triangles must point back at the input triangles they were derived from
+		for (int t = 0; t < count; t++)
+			assertTrue(triangles[t] >= 0 && triangles[t] < triangleCount && (t == 0 || triangles[t] > triangles[t - 1]));
+	}
+
+	@Test
+	public void testDegenerateTrianglesAreDropped() {
+		int[] mesh = {
+			0, 0, 0, 128, 0, 0, 0, 0, 128,
+			0, 0, 0, 0, 0, 0, 128, 0, 0,
+			0, 0, 0, 64, 0, 64, 128, 0, 128
+		};
+		int[] triangles = new int[3];
+		int[] positions = new int[mesh.length];
+		int count = simplifier.simplify(mesh, 3, 3, 0, triangles, positions);
+		assertEquals(1, count);
+		assertEquals(0, triangles[0]);
+	}
+
+	/**
+	 * Build a grid of tiles with the winding order used for scene tiles, viewed from above with Y pointing down.
+	 */
+	private static int[] heightfield(int[] heights) {
+		int[] mesh = new int[GRID_SIZE * GRID_SIZE * 2 * 9];
+		int o = 0;
+		for (int z = 0; z < GRID_SIZE; z++) {
+			for (int x = 0; x < GRID_SIZE; x++) {
+				int[][] quad = {
+					corner(heights, x, z), corner(heights, x + 1, z),
+					corner(heights, x + 1, z + 1), corner(heights, x, z + 1)
+				};
+				for (int[] corner : new int[][] { quad[0], quad[3], quad[1], quad[1], quad[3], quad[2] }) {
+					System.arraycopy(corner, 0, mesh, o, 3);
+					o += 3;
+				}
+			}
+		}
+		return mesh;
+	}
+
+	private static int[] corner(int[] heights, int x, int z) {
+		return new int[] { x * TILE_SIZE, heights[z * (GRID_SIZE + 1) + x], z * TILE_SIZE };
+	}
+
+	private static double signedArea(int[] p, int t) {
+		int o = t * 9;
+		double ux = p[o + 3] - p[o], uz = p[o + 5] - p[o + 2];
+		double vx = p[o + 6] - p[o], vz = p[o + 8] - p[o + 2];
+		return (ux * vz - uz * vx) / 2;
+	}
+
+	private static double heightAt(int[] p, int count, double x, double z) {
+		for (int t = 0; t < count; t++) {
+			int o = t * 9;
+			double ax = p[o], az = p[o + 2], bx = p[o + 3], bz = p[o + 5], cx = p[o + 6], cz = p[o + 8];
+			double det = (bz - cz) * (ax - cx) + (cx - bx) * (az - cz);
+			if (det == 0)
+				continue;
+			double wa = ((bz - cz) * (x - cx) + (cx - bx) * (z - cz)) / det;
+			double wb = ((cz - az) * (x - cx) + (ax - cx) * (z - cz)) / det;
+			double wc = 1 - wa - wb;
+			if (wa >= -1e-9 && wb >= -1e-9 && wc >= -1e-9)
+				return wa * p[o + 1] + wb * p[o + 4] + wc * p[o + 7];
+		}
+		throw new AssertionError("No triangle covers (" + x + ", " + z + ")");
+	}
+
+	private static long key(int[] p, int o) {
+		return (long) p[o] << 40 | (long) (p[o + 1] & 0xFFFFF) << 20 | p[o + 2];
+	}
+}
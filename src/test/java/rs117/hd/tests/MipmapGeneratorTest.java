@@ -0,0 +1,136 @@
+package rs117.hd.tests;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import rs117.hd.utils.MipmapGenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MipmapGeneratorTest {
+	private static final int TOLERANCE = 1;
+
+	@Test
+	public void testLevelCountAndSizes() {
+		int[][] levels = MipmapGenerator.generate(new int[64 * 16], 64, 16);
+		assertEquals(7, levels.length);
+		for (int i = 0; i < levels.length; i++)
+			assertEquals(Math.max(1, 64 >> i) * Math.max(1, 16 >> i), levels[i].length);
+	}
+
+	@Test
+	public void testBaseLevelIsNotCopied() {
+		int[] base = new int[4 * 4];
+		assertSame(base, MipmapGenerator.generate(base, 4, 4)[0]);
+	}
+
+	@Test
+	public void testUniformColorIsPreserved() {
+		int color = 0xFF8040C0;
+		int[] base = new int[32 * 32];
+		Arrays.fill(base, color);
+		for (int[] level : MipmapGenerator.generate(base, 32, 32))
+			for (int c : level)
+				assertEquals(color, c);
+	}
+
+	@Test
+	public void testTransparentTexelsDoNotDarkenColor() {
+		// Vanilla textures use transparent black for holes, which must not bleed into the neighbouring texels
+		int[] base = { 0xFFFF0000, 0, 0, 0xFFFF0000 };
+		int[] level = MipmapGenerator.generate(base, 2, 2)[1];
+		assertEquals(0x80FF0000, level[0]);
+	}
+
+	@Test
+	public void testMatchesReferenceBoxFilter() {
+		var random = new Random(117);
+		for (int size : new int[] { 1, 2, 16, 128 }) {
+			int[] base = new int[size * size];
+			for (int i = 0; i < base.length; i++) {
+				base[i] = random.nextInt();
+				// Include plenty of fully transparent and fully opaque texels
+				int alphaMode = random.nextInt(4);
+				if (alphaMode == 0) {
+					base[i] &= 0xFFFFFF;
+				} else if (alphaMode == 1) {
+					base[i] |= 0xFF000000;
+				}
+			}
+
+			int[][] levels = MipmapGenerator.generate(base, size, size);
+			for (int level = 0; level < levels.length; level++) {
+				int[] expected = referenceLevel(base, size, level);
+				int[] actual = levels[level];
+				assertEquals(expected.length, actual.length);
+				for (int i = 0; i < expected.length; i++)
+					assertColorEquals(String.format("size %d, level %d, texel %d", size, level, i), expected[i], actual[i]);
+			}
+		}
+	}
+
+	/**
+	 * Straightforward double precision box filter, averaging every base level texel covered by each mip texel.
+	 */
+	private static int[] referenceLevel(int[] base, int size, int level) {
+		int blockSize = 1 << level;
+		int levelSize = size >> level;
+		int[] out = new int[levelSize * levelSize];
+		for (int y = 0; y < levelSize; y++) {
+			for (int x = 0; x < levelSize; x++) {
+				double r = 0, g = 0, b = 0, a = 0;
+				for (int by = 0; by < blockSize; by++) {
+					for (int bx = 0; bx < blockSize; bx++) {
+						int c = base[(y * blockSize + by) * size + x * blockSize + bx];
+						double alpha = (c >>> 24) / 255d;
+						a += alpha;
+						r += srgbToLinear(c >>> 16 & 0xFF) * alpha;
+						g += srgbToLinear(c >>> 8 & 0xFF) * alpha;
+						b += srgbToLinear(c & 0xFF) * alpha;
+					}
+				}
+				if (a == 0)
+					continue;
+				int n = blockSize * blockSize;
+				out[y * levelSize + x] =
+					(int) Math.round(a / n * 255) << 24 |
+					linearToSrgb(r / a) << 16 |
+					linearToSrgb(g / a) << 8 |
+					linearToSrgb(b / a);
+			}
+		}
+		return out;
+	}
+
+	private static double srgbToLinear(int c) {
+		double v = c / 255d;
+		return v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+	}
+
+	private static int linearToSrgb(double c) {
+		double v = c <= 0.0031308 ? c * 12.92 : 1.055 * Math.pow(c, 1 / 2.4) - 0.055;
+		return (int) Math.round(Math.min(Math.max(v, 0), 1) * 255);
+	}
+
+	private static void assertColorEquals(String message, int expected, int actual) {
+		int expectedAlpha = expected >>> 24;
+		int actualAlpha = actual >>> 24;
+		assertTrue(
+			String.format("%s: alpha %d != %d", message, expectedAlpha, actualAlpha),
+			Math.abs(expectedAlpha - actualAlpha) <= TOLERANCE
+		);
+		// Color is meaningless for fully transparent texels
+		if (expectedAlpha == 0 || actualAlpha == 0)
+			return;
+		for (int shift = 0; shift <= 16; shift += 8) {
+			int e = expected >>> shift & 0xFF;
+			int a = actual >>> shift & 0xFF;
+			assertTrue(
+				String.format("%s: expected %08X, got %08X", message, expected, actual),
+				Math.abs(e - a) <= TOLERANCE
+			);
+		}
+	}
+}
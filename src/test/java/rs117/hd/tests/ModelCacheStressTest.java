@@ -0,0 +1,150 @@
+package rs117.hd.tests;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.lwjgl.system.MemoryUtil;
+import rs117.hd.model.ModelCache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static rs117.hd.utils.MathUtils.*;
+
+public class ModelCacheStressTest {
+	private static final int THREADS = 8;
+	private static final int OPERATIONS_PER_THREAD = 50_000;
+	private static final int MAX_ENTRY_INTS = 2048;
+	// Few enough keys for entries to be looked up often, while the cache is too small to hold all of them at once
+	private static final int KEY_COUNT = 4096;
+
+	@Test
+	public void testLookupMatchesCommittedData() {
+		var cache = new ModelCache(MiB, 2, () -> {});
+		IntBuffer dst = MemoryUtil.memAllocInt(16);
+		try {
+			var entry = cache.reserveIntBuffer(1, 16);
+			assertNotNull(entry);
+			fill(entry.intBuffer, 1, 16);
+
+			// Not visible until committed
+			assertFalse(cache.copyTo(1, 16, dst));
+			cache.commit(entry);
+			assertTrue(cache.copyTo(1, 16, dst));
+			assertEquals(16, dst.position());
+			dst.flip();
+			assertEquals(-1, verify(dst, 1, 16));
+
+			// A lookup with a different size doesn't match
+			dst.clear();
+			assertFalse(cache.copyTo(1, 8, dst));
+			assertEquals(0, dst.position());
+
+			// Partially filled entries never match
+			var partial = cache.reserveIntBuffer(2, 16);
+			fill(partial.intBuffer, 2, 8);
+			cache.commit(partial);
+			assertFalse(cache.copyTo(2, 16, dst));
+		} finally {
+			MemoryUtil.memFree(dst);
+			cache.destroy();
+		}
+	}
+
+	@Test
+	public void testUncommittedEntriesAreNotEvicted() {
+		var cache = new ModelCache(64 * KiB, 1, () -> {});
+		try {
+			var pending = cache.reserveIntBuffer(1, 8 * 1024);
+			assertNotNull(pending);
+			// The only way to make room would be to evict the pending entry
+			assertNull(cache.reserveIntBuffer(2, 8 * 1024));
+			fill(pending.intBuffer, 1, 8 * 1024);
+			cache.commit(pending);
+			assertNotNull(cache.reserveIntBuffer(2, 8 * 1024));
+		} finally {
+			cache.destroy();
+		}
+	}
+
+	@Test
+	public void testConcurrentReserveLookupAndEvict() throws InterruptedException {
+		var terminated = new AtomicBoolean();
+		var cache = new ModelCache(4 * MiB, 4, () -> terminated.set(true));
+		var failure = new AtomicReference<String>();
+		var hits = new AtomicInteger();
+		var start = new CountDownLatch(1);
+
+		Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			threads[t] = new Thread(() -> {
+				IntBuffer dst = MemoryUtil.memAllocInt(MAX_ENTRY_INTS);
+				try {
+					start.await();
+					var random = ThreadLocalRandom.current();
+					for (int i = 0; i < OPERATIONS_PER_THREAD && failure.get() == null; i++) {
+						long hash = random.nextInt(KEY_COUNT);
+						int size = sizeOf(hash);
+
+						dst.clear();
+						if (cache.copyTo(hash, size, dst)) {
+							hits.incrementAndGet();
+							dst.flip();
+							int mismatch = verify(dst, hash, size);
+							if (mismatch != -1)
+								failure.compareAndSet(null, "Corrupted entry " + hash + " at index " + mismatch);
+							continue;
+						}
+
+						var entry = cache.reserveIntBuffer(hash, size);
+						if (entry == null)
+							continue;
+						fill(entry.intBuffer, hash, size);
+						// Give other threads a chance to evict and overwrite entries while this one is being written
+						if ((i & 63) == 0)
+							Thread.yield();
+						cache.commit(entry);
+					}
+				} catch (Throwable ex) {
+					failure.compareAndSet(null, ex.toString());
+				} finally {
+					MemoryUtil.memFree(dst);
+				}
+			});
+			threads[t].start();
+		}
+
+		start.countDown();
+		for (Thread thread : threads)
+			thread.join();
+		cache.destroy();
+
+		assertNull(failure.get());
+		assertFalse(terminated.get());
+		assertTrue("Expected some lookups to hit the cache", hits.get() > 0);
+	}
+
+	private static int sizeOf(long hash) {
+		return 1 + (int) (hash * 7919 % MAX_ENTRY_INTS);
+	}
+
+	private static void fill(IntBuffer buffer, long hash, int size) {
+		for (int i = 0; i < size; i++)
+			buffer.put((int) (hash * 31 + i));
+	}
+
+	private static int verify(IntBuffer buffer, long hash, int size) {
+		if (buffer.remaining() != size)
+			return 0;
+		for (int i = 0; i < size; i++)
+			if (buffer.get(i) != (int) (hash * 31 + i))
+				return i;
+		return -1;
+	}
+}
@@ -0,0 +1,118 @@
+package rs117.hd.tests;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import org.junit.Test;
+import rs117.hd.renderer.zone.ModelTopologyStore;
+import rs117.hd.utils.collections.PooledArrayType;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ModelTopologyStoreTest {
+	@Test
+	public void testSharesCopiesOfTheSameArray() {
+		ModelTopologyStore store = new ModelTopologyStore();
+		int[] a = { 1, 2, 3, 4, 99 };
+
+		var entryA = store.acquire(PooledArrayType.INT, a, 4);
+		var entryB = store.acquire(PooledArrayType.INT, a, 4);
+		assertNotNull(entryA);
+		assertSame(entryA, entryB);
+		assertNotSame(a, entryA.array);
+		assertEquals(1, store.size());
+		assertArrayEquals(new int[] { 1, 2, 3, 4 }, Arrays.copyOf((int[]) entryA.array, 4));
+
+		// Arrays with identical contents are only shared if they're the same array
+		var entryC = store.acquire(PooledArrayType.INT, new int[] { 1, 2, 3, 4 }, 4);
+		assertNotSame(entryA, entryC);
+		assertEquals(2, store.size());
+	}
+
+	@Test
+	public void testDoesNotShareOverwrittenArrays() {
+		ModelTopologyStore store = new ModelTopologyStore();
+		int[] a = { 1, 2, 3, 4 };
+		var held = store.acquire(PooledArrayType.INT, a, 4);
+
+		// The client reused the array for a different model, while the old copy is still in use
+		a[0] = 5;
+		var changed = store.acquire(PooledArrayType.INT, a, 4);
+		assertNotSame(held, changed);
+		assertArrayEquals(new int[] { 1, 2, 3, 4 }, Arrays.copyOf((int[]) held.array, 4));
+		assertArrayEquals(new int[] { 5, 2, 3, 4 }, Arrays.copyOf((int[]) changed.array, 4));
+
+		// Once unreferenced, the replaced copy is returned to the pool on the next sweep
+		store.release(held);
+		store.sweep(1);
+		assertEquals(1, store.size());
+
+		// Stored copies are never modified, even once unreferenced
+		store.release(changed);
+		a[1] = 6;
+		var updated = store.acquire(PooledArrayType.INT, a, 4);
+		assertNotSame(changed, updated);
+		assertArrayEquals(new int[] { 5, 2, 3, 4 }, Arrays.copyOf((int[]) changed.array, 4));
+		assertArrayEquals(new int[] { 5, 6, 3, 4 }, Arrays.copyOf((int[]) updated.array, 4));
+
+		// A different length replaces the copy
+		var shorter = store.acquire(PooledArrayType.INT, a, 2);
+		assertNotSame(updated, shorter);
+		assertArrayEquals(new int[] { 5, 6 }, Arrays.copyOf((int[]) shorter.array, 2));
+	}
+
+	@Test
+	public void testDoesNotHoldOntoSourceArrays() throws InterruptedException {
+		ModelTopologyStore store = new ModelTopologyStore();
+		int[] source = { 1, 2, 3, 4 };
+		var entry = store.acquire(PooledArrayType.INT, source, 4);
+		store.release(entry);
+
+		var ref = new WeakReference<>(source);
+		// noinspection UnusedAssignment
+		source = null;
+		for (int i = 0; i < 100 && ref.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(ref.get());
+
+		// Copies of collected arrays are released without waiting for them to go stale
+		store.sweep(1);
+		assertEquals(0, store.size());
+	}
+
+	@Test
+	public void testDistinguishesArrayTypes() {
+		ModelTopologyStore store = new ModelTopologyStore();
+		var bytes = store.acquire(PooledArrayType.BYTE, new byte[] { 0, 0 }, 2);
+		var shorts = store.acquire(PooledArrayType.SHORT, new short[] { 0, 0 }, 2);
+		assertNotSame(bytes, shorts);
+		assertArrayEquals(new short[] { 0, 0 }, Arrays.copyOf((short[]) shorts.array, 2));
+	}
+
+	@Test
+	public void testSweepsOnlyUnreferencedStaleEntries() {
+		ModelTopologyStore store = new ModelTopologyStore();
+		int[] heldSource = { 1 };
+		var held = store.acquire(PooledArrayType.INT, heldSource, 1);
+		var released = store.acquire(PooledArrayType.INT, new int[] { 2 }, 1);
+		store.release(released);
+
+		store.sweep(1);
+		assertEquals(2, store.size());
+
+		store.sweep(100);
+		assertEquals(1, store.size());
+		assertSame(held, store.acquire(PooledArrayType.INT, heldSource, 1));
+
+		store.release(held);
+		store.release(held);
+		store.clear();
+		assertEquals(0, store.size());
+	}
+}
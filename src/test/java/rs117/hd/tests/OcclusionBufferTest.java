@@ -0,0 +1,220 @@
+package rs117.hd.tests;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import rs117.hd.utils.Mat4;
+import rs117.hd.utils.OcclusionBuffer;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OcclusionBufferTest {
+	private static final int TILE_SIZE = 128;
+	private static final int SIZE = 64;
+	private static final int TILE_OFFSET = 0;
+	private static final int WIDTH = 256;
+	private static final int HEIGHT = 144;
+
+	private final Random random = new Random(117);
+	private final OcclusionBuffer buffer = new OcclusionBuffer();
+
+	private int[][] heights;
+	private boolean[][] occluders;
+	private float[] cameraPos;
+	private float[] viewProjMatrix;
+
+	@Before
+	public void setUp() {
+		heights = new int[SIZE + 1][SIZE + 1];
+		occluders = new boolean[SIZE][SIZE];
+		for (boolean[] column : occluders)
+			Arrays.fill(column, true);
+		buffer.setViewport(WIDTH, HEIGHT);
+	}
+
+	@Test
+	public void testGroundHidesGeometryFarBelowIt() {
+		setCamera(32 * TILE_SIZE, -1500, 10 * TILE_SIZE, 0, .6f);
+		rasterize();
+
+		assertTrue(buffer.isOccluded(30 * TILE_SIZE, 3000, 30 * TILE_SIZE, 34 * TILE_SIZE, 3400, 34 * TILE_SIZE));
+		assertFalse(buffer.isOccluded(30 * TILE_SIZE, -100, 30 * TILE_SIZE, 34 * TILE_SIZE, 400, 34 * TILE_SIZE));
+	}
+
+	@Test
+	public void testRidgeHidesLowerGeometryBehindIt() {
+		// A ridge running along the X axis, between the camera and the far side of the map
+		for (int x = 0; x <= SIZE; x++)
+			for (int z = 24; z <= 28; z++)
+				heights[x][z] = -1000;
+		setCamera(32 * TILE_SIZE, -600, 4 * TILE_SIZE, 0, .3f);
+		rasterize();
+
+		assertTrue(buffer.isOccluded(28 * TILE_SIZE, -200, 36 * TILE_SIZE, 36 * TILE_SIZE, 0, 44 * TILE_SIZE));
+		// A tower tall enough to peek over the ridge
+		assertFalse(buffer.isOccluded(30 * TILE_SIZE, -3000, 36 * TILE_SIZE, 32 * TILE_SIZE, 0, 38 * TILE_SIZE));
+		// The near side of the ridge itself
+		assertFalse(buffer.isOccluded(28 * TILE_SIZE, -1000, 16 * TILE_SIZE, 36 * TILE_SIZE, 0, 24 * TILE_SIZE));
+	}
+
+	@Test
+	public void testHolesInTheTerrainDoNotOcclude() {
+		setCamera(32 * TILE_SIZE, -1500, 10 * TILE_SIZE, 0, .6f);
+		for (int x = 29; x < 35; x++)
+			for (int z = 29; z < 35; z++)
+				occluders[x][z] = false;
+		rasterize();
+
+		assertFalse(buffer.isOccluded(31 * TILE_SIZE, 100, 31 * TILE_SIZE, 33 * TILE_SIZE, 400, 33 * TILE_SIZE));
+	}
+
+	@Test
+	public void testTerrainSeenFromBelowDoesNotOcclude() {
+		setCamera(32 * TILE_SIZE, 500, 10 * TILE_SIZE, 0, -.3f);
+		rasterize();
+
+		assertFalse(buffer.isOccluded(30 * TILE_SIZE, 100, 30 * TILE_SIZE, 34 * TILE_SIZE, 400, 34 * TILE_SIZE));
+	}
+
+	@Test
+	public void testBoxesBehindTheCameraAreNeverOccluded() {
+		setCamera(32 * TILE_SIZE, -1500, 32 * TILE_SIZE, 0, .6f);
+		rasterize();
+
+		assertFalse(buffer.isOccluded(30 * TILE_SIZE, 100, 20 * TILE_SIZE, 34 * TILE_SIZE, 400, 34 * TILE_SIZE));
+		assertFalse(buffer.isOccluded(30 * TILE_SIZE, 100, 0, 34 * TILE_SIZE, 400, 4 * TILE_SIZE));
+	}
+
+	@Test
+	public void testEmptyBufferOccludesNothing() {
+		setCamera(32 * TILE_SIZE, -1500, 10 * TILE_SIZE, 0, .6f);
+		buffer.clear();
+		buffer.buildHierarchy();
+
+		assertFalse(buffer.isOccluded(30 * TILE_SIZE, 100, 30 * TILE_SIZE, 34 * TILE_SIZE, 400, 34 * TILE_SIZE));
+	}
+
+	@Test
+	public void testCulledBoxesAreNotVisibleByRayMarching() {
+		int culled = 0;
+		int tested = 0;
+		for (int i = 0; i < 10; i++) {
+			generateHills();
+			setCamera(
+				(16 + random.nextFloat() * 32) * TILE_SIZE,
+				-800 - random.nextFloat() * 1500,
+				(16 + random.nextFloat() * 32) * TILE_SIZE,
+				random.nextFloat() * 2 * (float) Math.PI,
+				.1f + random.nextFloat() * .6f
+			);
+			rasterize();
+
+			for (int j = 0; j < 100; j++) {
+				float x = random.nextFloat() * (SIZE - 8) * TILE_SIZE;
+				float z = random.nextFloat() * (SIZE - 8) * TILE_SIZE;
+				float x2 = x + (1 + random.nextInt(8)) * TILE_SIZE;
+				float z2 = z + (1 + random.nextInt(8)) * TILE_SIZE;
+				float top = terrainHeight((x + x2) / 2, (z + z2) / 2) - random.nextFloat() * 400;
+				float bottom = top + 200 + random.nextFloat() * 400;
+				tested++;
+				if (!buffer.isOccluded(x, top, z, x2, bottom, z2))
+					continue;
+				culled++;
+				assertFalse(
+					String.format("box %d of camera %d was culled despite being visible", j, i),
+					isAnyPointVisible(x, top, z, x2, bottom, z2)
+				);
+			}
+		}
+		assertTrue(String.format("only %d of %d boxes were culled", culled, tested), culled > tested / 25);
+	}
+
+	private void rasterize() {
+		buffer.clear();
+		buffer.rasterizeHeightmap(heights, occluders, TILE_OFFSET, TILE_SIZE);
+		buffer.buildHierarchy();
+	}
+
+	private void setCamera(float x, float y, float z, float yaw, float pitch) {
+		cameraPos = new float[] { x, y, z };
+		float[] viewMatrix = Mat4.rotateX(pitch);
+		Mat4.mul(viewMatrix, Mat4.rotateY(yaw));
+		Mat4.mul(viewMatrix, Mat4.translate(-x, -y, -z));
+
+		float zoom = 600;
+		viewProjMatrix = Mat4.perspectiveInfiniteReverseZ(1280 / zoom, 720 / zoom, 50);
+		Mat4.mul(viewProjMatrix, viewMatrix);
+		buffer.setCamera(viewProjMatrix, cameraPos);
+	}
+
+	private void generateHills() {
+		float fx = .1f + random.nextFloat() * .3f;
+		float fz = .1f + random.nextFloat() * .3f;
+		float amplitude = 300 + random.nextFloat() * 700;
+		for (int x = 0; x <= SIZE; x++)
+			for (int z = 0; z <= SIZE; z++)
+				heights[x][z] = (int) (amplitude * (Math.sin(x * fx) * Math.cos(z * fz) - 1));
+	}
+
+	/**
+	 * Height of the terrain at a world position, split into triangles along the same diagonal as the rasterizer.
+	 */
+	private float terrainHeight(float x, float z) {
+		int tx = Math.min(SIZE - 1, Math.max(0, (int) Math.floor(x / TILE_SIZE)));
+		int tz = Math.min(SIZE - 1, Math.max(0, (int) Math.floor(z / TILE_SIZE)));
+		float fx = x / TILE_SIZE - tx;
+		float fz = z / TILE_SIZE - tz;
+		float sw = heights[tx][tz];
+		float se = heights[tx + 1][tz];
+		float nw = heights[tx][tz + 1];
+		float ne = heights[tx + 1][tz + 1];
+		if (fx + fz >= 1)
+			return ne + (nw - ne) * (1 - fx) + (se - ne) * (1 - fz);
+		return sw + (se - sw) * fx + (nw - sw) * fz;
+	}
+
+	private boolean isAnyPointVisible(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		final int steps = 6;
+		for (int i = 0; i <= steps; i++) {
+			for (int j = 0; j <= steps; j++) {
+				for (int k = 0; k <= steps; k++) {
+					// Only sample the surface of the box
+					if (i != 0 && i != steps && j != 0 && j != steps && k != 0 && k != steps)
+						continue;
+					float x = minX + (maxX - minX) * i / steps;
+					float y = minY + (maxY - minY) * j / steps;
+					float z = minZ + (maxZ - minZ) * k / steps;
+					if (isPointVisible(x, y, z))
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private boolean isPointVisible(float x, float y, float z) {
+		float[] clip = new float[4];
+		Mat4.mulVec(clip, viewProjMatrix, new float[] { x, y, z, 1 });
+		if (clip[3] <= 0 || Math.abs(clip[0]) > clip[3] || Math.abs(clip[1]) > clip[3])
+			return false;
+
+		float dx = x - cameraPos[0];
+		float dy = y - cameraPos[1];
+		float dz = z - cameraPos[2];
+		float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+		int steps = (int) (length / 4);
+		for (int i = 1; i < steps; i++) {
+			float t = (float) i / steps;
+			float px = cameraPos[0] + dx * t;
+			float pz = cameraPos[2] + dz * t;
+			if (px < 0 || pz < 0 || px >= SIZE * TILE_SIZE || pz >= SIZE * TILE_SIZE)
+				continue;
+			// With Y pointing down, the ray is below the terrain if its Y is greater
+			if (cameraPos[1] + dy * t > terrainHeight(px, pz))
+				return false;
+		}
+		return true;
+	}
+}
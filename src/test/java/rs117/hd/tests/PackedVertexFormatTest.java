@@ -0,0 +1,124 @@
+package rs117.hd.tests;
+
+import java.util.Random;
+import org.junit.Test;
+import rs117.hd.renderer.zone.PackedVertexFormat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static rs117.hd.utils.MathUtils.*;
+
+public class PackedVertexFormatTest {
+	// Worst case angle between the original and decoded normals
+	private static final double MAX_NORMAL_ERROR_RADIANS = 1e-3;
+
+	@Test
+	public void testHalfFloatRoundTrip() {
+		float[] values = { 0, 1, -1, .5f, 1 / 3f, 65504, -65504, 6.1035156e-5f, 5.9604645e-8f, 1024.25f };
+		for (float value : values) {
+			float decoded = float16ToFloat(float16(value));
+			assertEquals("Value: " + value, value, decoded, abs(value) * 0x1p-11f);
+		}
+		assertEquals(Float.POSITIVE_INFINITY, float16ToFloat(float16(1e6f)), 0);
+		assertTrue(Float.isNaN(float16ToFloat(float16(Float.NaN))));
+	}
+
+	@Test
+	public void testNormalRoundTrip() {
+		var random = new Random(117);
+		float[] decoded = new float[3];
+		int[][] axes = {
+			{ 1, 0, 0 }, { -1, 0, 0 }, { 0, 1, 0 }, { 0, -1, 0 }, { 0, 0, 1 }, { 0, 0, -1 },
+			{ 1, 1, 1 }, { -1, -1, -1 }, { 1, -1, -1 }, { -1, 1, -1 }
+		};
+		for (int[] n : axes)
+			assertNormal(n[0], n[1], n[2], decoded);
+
+		for (int i = 0; i < 100_000; i++) {
+			// Model normals are unnormalized shorts
+			int x = random.nextInt(65536) - 32768;
+			int y = random.nextInt(65536) - 32768;
+			int z = random.nextInt(65536) - 32768;
+			if (x == 0 && y == 0 && z == 0)
+				continue;
+			assertNormal(x, y, z, decoded);
+		}
+	}
+
+	@Test
+	public void testZeroNormalPointsUp() {
+		float[] decoded = new float[3];
+		PackedVertexFormat.octDecode(PackedVertexFormat.octEncode(0, 0, 0), decoded);
+		assertEquals(0, decoded[0], 1e-4);
+		assertEquals(-1, decoded[1], 1e-4);
+		assertEquals(0, decoded[2], 1e-4);
+	}
+
+	@Test
+	public void testVertexRoundTrip() {
+		var random = new Random(117);
+		int[] packed = new int[PackedVertexFormat.VERT_SIZE_INTS * 2];
+		int[] position = new int[3];
+		float[] uvw = new float[3];
+		float[] normal = new float[3];
+		for (int i = 0; i < 10_000; i++) {
+			int x = random.nextInt(65536) - 32768;
+			int y = random.nextInt(65536) - 32768;
+			int z = random.nextInt(65536) - 32768;
+			float u = random.nextFloat() * 4 - 2;
+			float v = random.nextFloat() * 4 - 2;
+			float w = random.nextFloat() * 256;
+			int faceIdx = random.nextInt(1 << 24);
+			boolean windingReversed = random.nextBoolean();
+
+			// Write the vertex at an offset, to check that neighboring vertices are left untouched
+			packed[0] = 0xCAFEBABE;
+			PackedVertexFormat.pack(packed, 1, x, y, z, u, v, w, 0, -128, 0, faceIdx, windingReversed);
+			assertEquals(0xCAFEBABE, packed[0]);
+
+			int decodedFaceIdx = PackedVertexFormat.unpack(packed, 1, position, uvw, normal);
+			assertEquals(x, position[0]);
+			assertEquals(y, position[1]);
+			assertEquals(z, position[2]);
+			assertEquals(u, uvw[0], abs(u) * 0x1p-11f);
+			assertEquals(v, uvw[1], abs(v) * 0x1p-11f);
+			assertEquals(w, uvw[2], abs(w) * 0x1p-11f);
+			assertEquals(0, normal[0], 1e-4);
+			assertEquals(-1, normal[1], 1e-4);
+			assertEquals(0, normal[2], 1e-4);
+			assertEquals(faceIdx, decodedFaceIdx & 0x7FFFFFFF);
+			assertEquals(windingReversed, decodedFaceIdx < 0);
+		}
+	}
+
+	@Test
+	public void testAttributesArePackedWithoutPadding() {
+		// Position and UVW are read as back to back 16-bit components, with the normal and face index following
+		int[] packed = new int[PackedVertexFormat.VERT_SIZE_INTS];
+		PackedVertexFormat.pack(packed, 0, -3, 7, -1024, .5f, -2, 64, 0, -128, 0, 117, true);
+		assertEquals(20, PackedVertexFormat.VERT_SIZE);
+		int[] components = new int[6];
+		for (int i = 0; i < components.length; i++)
+			components[i] = packed[i >> 1] >>> (i & 1) * 16 & 0xFFFF;
+		assertArrayEquals(
+			new int[] { -3 & 0xFFFF, 7, -1024 & 0xFFFF, float16(.5f), float16(-2), float16(64) },
+			components
+		);
+		assertEquals(PackedVertexFormat.octEncode(0, -128, 0), packed[3]);
+		assertEquals(1 << 31 | 117, packed[4]);
+	}
+
+	private static void assertNormal(int x, int y, int z, float[] decoded) {
+		PackedVertexFormat.octDecode(PackedVertexFormat.octEncode(x, y, z), decoded);
+		double length = Math.sqrt((double) x * x + (double) y * y + (double) z * z);
+		double dot = (x * decoded[0] + y * decoded[1] + z * decoded[2]) / length;
+		double angle = Math.acos(Math.min(1, dot));
+		assertTrue(
+			String.format("Normal (%d, %d, %d) decoded as (%f, %f, %f) with error %f rad", x, y, z, decoded[0], decoded[1], decoded[2], angle),
+			angle <= MAX_NORMAL_ERROR_RADIANS
+		);
+		double decodedLength = Math.sqrt(decoded[0] * decoded[0] + decoded[1] * decoded[1] + decoded[2] * decoded[2]);
+		assertEquals(1, decodedLength, 1e-5);
+	}
+}
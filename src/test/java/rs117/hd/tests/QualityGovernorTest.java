@@ -0,0 +1,117 @@
+package rs117.hd.tests;
+
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import rs117.hd.utils.QualityGovernor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QualityGovernorTest {
+	private static final int TARGET_FPS = 60;
+	private static final long BUDGET = 1_000_000_000L / TARGET_FPS;
+
+	private QualityGovernor governor;
+	private final Random random = new Random(117);
+
+	@Before
+	public void setUp() {
+		governor = new QualityGovernor();
+		governor.setTargetFps(TARGET_FPS);
+	}
+
+	@Test
+	public void testStaysAtFullQualityWithinBudget() {
+		assertFalse(run(20, .6, .95));
+		assertEquals(0, governor.getLevel());
+		assertEquals(1, governor.getDrawDistanceScale(), 0);
+	}
+
+	@Test
+	public void testLowersQualityOneWindowAtATime() {
+		// Slightly over budget, so each window should only lower quality by a single step
+		for (int window = 1; window <= QualityGovernor.MAX_LEVEL; window++) {
+			assertTrue(run(1, 1.2, 1.3));
+			assertEquals(window, governor.getLevel());
+		}
+		assertFalse(run(5, 1.2, 1.3));
+		assertEquals(QualityGovernor.MAX_LEVEL, governor.getLevel());
+		assertTrue(governor.getDrawDistanceScale() < 1);
+		assertTrue(governor.getShadowDistanceScale() < 1);
+		assertTrue(governor.getDetailDistanceScale() < 1);
+		assertTrue(governor.getAlphaSortDistanceScale() < 1);
+	}
+
+	@Test
+	public void testFarOverBudgetSkipsALevel() {
+		assertTrue(run(1, 2, 3));
+		assertEquals(2, governor.getLevel());
+	}
+
+	@Test
+	public void testIgnoresHitches() {
+		// A few long frames per window, like garbage collection pauses, shouldn't affect quality
+		for (int i = 0; i < QualityGovernor.WINDOW_SIZE * 10; i++)
+			governor.update(i % 20 == 0 ? BUDGET * 5 : (long) (BUDGET * .8));
+		assertEquals(0, governor.getLevel());
+	}
+
+	@Test
+	public void testRecoversOnlyAfterSustainedHeadroom() {
+		run(2, 1.2, 1.3);
+		assertEquals(2, governor.getLevel());
+
+		// Frames just within budget shouldn't raise quality again, which would likely push it back over budget
+		assertFalse(run(20, .8, 1.05));
+		assertEquals(2, governor.getLevel());
+
+		// Headroom must last several windows in a row before quality is raised by a single step
+		assertFalse(run(2, .4, .6));
+		assertEquals(2, governor.getLevel());
+		assertFalse(run(1, .8, 1.05));
+		assertFalse(run(2, .4, .6));
+		assertEquals(2, governor.getLevel());
+		assertTrue(run(1, .4, .6));
+		assertEquals(1, governor.getLevel());
+		run(3, .4, .6);
+		assertEquals(0, governor.getLevel());
+	}
+
+	@Test
+	public void testTraceSettlesWithoutOscillating() {
+		// Simulate frame times scaling with the draw distance, where full quality is 40% over budget
+		int changes = 0;
+		for (int i = 0; i < QualityGovernor.WINDOW_SIZE * 200; i++) {
+			double cost = 1.4 * governor.getDrawDistanceScale() * governor.getDrawDistanceScale();
+			if (governor.update((long) (BUDGET * cost * (.95 + random.nextDouble() * .1))))
+				changes++;
+		}
+		assertTrue("Quality changed " + changes + " times", changes <= 3);
+		double settledCost = 1.4 * governor.getDrawDistanceScale() * governor.getDrawDistanceScale();
+		assertTrue("Settled at " + settledCost + " of the budget", settledCost <= 1.1);
+	}
+
+	@Test
+	public void testDisablingRestoresFullQuality() {
+		run(3, 1.2, 1.3);
+		assertEquals(3, governor.getLevel());
+		governor.setTargetFps(0);
+		assertEquals(0, governor.getLevel());
+		assertFalse(run(5, 2, 3));
+		assertEquals(0, governor.getLevel());
+	}
+
+	/**
+	 * Feed the governor whole windows of frame times between the specified fractions of the budget.
+	 *
+	 * @return whether the quality level changed at any point
+	 */
+	private boolean run(int windows, double min, double max) {
+		boolean changed = false;
+		for (int i = 0; i < QualityGovernor.WINDOW_SIZE * windows; i++)
+			changed |= governor.update((long) (BUDGET * (min + random.nextDouble() * (max - min))));
+		return changed;
+	}
+}
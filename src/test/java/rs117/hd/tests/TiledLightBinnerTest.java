@@ -0,0 +1,245 @@
+package rs117.hd.tests;
+
+import java.util.Random;
+import org.junit.Test;
+import rs117.hd.scene.lights.TiledLightBinner;
+import rs117.hd.utils.Mat4;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TiledLightBinnerTest {
+	private static final int TILE_SIZE = 16;
+	private static final int SCENE_WIDTH = 1280;
+	private static final int SCENE_HEIGHT = 720;
+	private static final int TILES_X = Math.max(1, Math.round(SCENE_WIDTH / (float) TILE_SIZE));
+	private static final int TILES_Y = Math.max(1, Math.round(SCENE_HEIGHT / (float) TILE_SIZE));
+	private static final int LAYER_COUNT = 8;
+
+	private final Random random = new Random(117);
+
+	private float[] cameraPos;
+	private float[] viewMatrix;
+	private float[] viewProjMatrix;
+	private float[] invViewProjMatrix;
+
+	@Test
+	public void testMatchesBruteForce() {
+		for (int i = 0; i < 20; i++) {
+			setRandomCamera();
+			var binner = createBinner();
+			float[][] lights = addRandomLights(binner, 50 + random.nextInt(500));
+			binner.bin();
+			assertArrayEquals("camera " + i, bruteForce(lights), binner.getTileData());
+		}
+	}
+
+	@Test
+	public void testConcurrentBandsMatchSingleBand() throws InterruptedException {
+		setRandomCamera();
+		var binner = createBinner();
+		addRandomLights(binner, 400);
+		binner.bin();
+		short[] expected = binner.getTileData().clone();
+
+		binner.prepare(7);
+		Thread[] threads = new Thread[binner.getBandCount()];
+		for (int i = 0; i < threads.length; i++) {
+			int band = i;
+			threads[i] = new Thread(() -> binner.binBand(band));
+			threads[i].start();
+		}
+		for (var thread : threads)
+			thread.join();
+
+		assertArrayEquals(expected, binner.getTileData());
+	}
+
+	@Test
+	public void testTileListsAreTruncatedToLayerCapacity() {
+		setRandomCamera();
+		var binner = createBinner();
+		// Surround the camera with lights, so every light affects every tile
+		float[][] lights = new float[300][];
+		for (int i = 0; i < lights.length; i++) {
+			lights[i] = new float[] {
+				cameraPos[0] + random.nextFloat() * 100 - 50,
+				cameraPos[1] + random.nextFloat() * 100 - 50,
+				cameraPos[2] + random.nextFloat() * 100 - 50,
+				1000
+			};
+			binner.addLight(lights[i][0], lights[i][1], lights[i][2], lights[i][3]);
+		}
+		binner.bin();
+
+		short[] data = binner.getTileData();
+		assertArrayEquals(bruteForce(lights), data);
+		for (int i = 0; i < data.length; i++)
+			assertTrue("expected every slot to be filled", data[i] != 0);
+	}
+
+	@Test
+	public void testEmptyScene() {
+		setRandomCamera();
+		var binner = createBinner();
+		binner.bin();
+		for (short s : binner.getTileData())
+			assertEquals(0, s);
+	}
+
+	private TiledLightBinner createBinner() {
+		var binner = new TiledLightBinner(TILE_SIZE, 1000);
+		binner.setViewport(SCENE_WIDTH, SCENE_HEIGHT, TILES_X, TILES_Y, LAYER_COUNT);
+		binner.setCamera(viewMatrix, viewProjMatrix, invViewProjMatrix, cameraPos);
+		return binner;
+	}
+
+	private void setRandomCamera() {
+		cameraPos = new float[] {
+			6000 + random.nextFloat() * 1000,
+			-1000 - random.nextFloat() * 2000,
+			6000 + random.nextFloat() * 1000
+		};
+		float yaw = random.nextFloat() * 2 * (float) Math.PI;
+		float pitch = .2f + random.nextFloat() * 1.2f;
+		float zoom = 500 + random.nextFloat() * 1000;
+
+		viewMatrix = Mat4.rotateX(pitch);
+		Mat4.mul(viewMatrix, Mat4.rotateY(yaw));
+		Mat4.mul(viewMatrix, Mat4.translate(-cameraPos[0], -cameraPos[1], -cameraPos[2]));
+
+		viewProjMatrix = Mat4.identity();
+		Mat4.mul(viewProjMatrix, Mat4.perspectiveInfiniteReverseZ(SCENE_WIDTH / zoom, SCENE_HEIGHT / zoom, 50));
+		Mat4.mul(viewProjMatrix, viewMatrix);
+		invViewProjMatrix = Mat4.inverse(viewProjMatrix);
+	}
+
+	private float[][] addRandomLights(TiledLightBinner binner, int count) {
+		float[][] lights = new float[count][];
+		for (int i = 0; i < count; i++) {
+			lights[i] = new float[] {
+				cameraPos[0] + random.nextFloat() * 8000 - 4000,
+				random.nextFloat() * -800,
+				cameraPos[2] + random.nextFloat() * 8000 - 4000,
+				50 + random.nextFloat() * 400
+			};
+			binner.addLight(lights[i][0], lights[i][1], lights[i][2], lights[i][3]);
+		}
+		return lights;
+	}
+
+	/**
+	 * Direct transcription of tiled_lighting_frag.glsl, testing every light against every tile.
+	 */
+	private short[] bruteForce(float[][] lights) {
+		float[][] viewLights = new float[lights.length][4];
+		for (int i = 0; i < lights.length; i++) {
+			float[] l = lights[i];
+			float[] m = viewMatrix;
+			viewLights[i][0] = m[0] * l[0] + m[4] * l[1] + m[8] * l[2] + m[12];
+			viewLights[i][1] = m[1] * l[0] + m[5] * l[1] + m[9] * l[2] + m[13];
+			viewLights[i][2] = m[2] * l[0] + m[6] * l[1] + m[10] * l[2] + m[14];
+			viewLights[i][3] = l[3] * l[3];
+		}
+
+		int maxTileLights = LAYER_COUNT * 4 * 2;
+		short[] out = new short[TILES_X * TILES_Y * LAYER_COUNT * 4];
+		int[] binLights = new int[maxTileLights];
+		float[] binScores = new float[maxTileLights];
+		for (int y = 0; y < TILES_Y; y++) {
+			for (int x = 0; x < TILES_X; x++) {
+				float originX = (float) Math.floor(((x + .5f) / TILES_X * SCENE_WIDTH) / TILE_SIZE) * TILE_SIZE;
+				float originY = (float) Math.floor(((y + .5f) / TILES_Y * SCENE_HEIGHT) / TILE_SIZE) * TILE_SIZE;
+				float[] rTL = tileRay(originX, originY + TILE_SIZE);
+				float[] rTR = tileRay(originX + TILE_SIZE, originY + TILE_SIZE);
+				float[] rBL = tileRay(originX, originY);
+				float[] rBR = tileRay(originX + TILE_SIZE, originY);
+				float[] center = normalize(
+					rTL[0] + rTR[0] + rBL[0] + rBR[0],
+					rTL[1] + rTR[1] + rBL[1] + rBR[1],
+					rTL[2] + rTR[2] + rBL[2] + rBR[2]
+				);
+				float tileCos = Math.min(Math.min(dot(center, rTL), dot(center, rTR)), Math.min(dot(center, rBL), dot(center, rBR)));
+				float tileSin = (float) Math.sqrt(Math.max(0, 1 - tileCos * tileCos));
+
+				int binSize = 0;
+				for (int lightIdx = 0; lightIdx < viewLights.length; lightIdx++) {
+					float[] l = viewLights[lightIdx];
+					float lightRadiusSqr = l[3];
+					float lightDistSqr = l[0] * l[0] + l[1] * l[1] + l[2] * l[2];
+					float invDist = lightDistSqr > 0 ? 1 / (float) Math.sqrt(lightDistSqr) : 0;
+					float[] lightCenter = { l[0] * invDist, l[1] * invDist, l[2] * invDist };
+
+					float lightSinSqr = Math.min(Math.max(lightRadiusSqr / Math.max(lightDistSqr, 1e-6f), 0), 1);
+					float lightCos = (float) Math.sqrt(.999f - lightSinSqr);
+					float lightTileCos = dot(lightCenter, center);
+
+					float sumCos = lightRadiusSqr > lightDistSqr ? -1 : tileCos * lightCos - tileSin * (float) Math.sqrt(lightSinSqr);
+					if (lightTileCos < sumCos)
+						continue;
+
+					float distanceScore = Math.min(Math.max(
+						1 - (float) Math.sqrt(lightDistSqr) / ((float) Math.sqrt(lightRadiusSqr) + 1e-6f), 0), 1);
+					float score = lightTileCos * .75f + distanceScore * (1 - .75f);
+
+					int idx = 0;
+					while (idx < binSize && score <= binScores[idx])
+						idx++;
+					if (idx == maxTileLights)
+						continue;
+					for (int j = Math.min(binSize, maxTileLights - 1); j > idx; j--) {
+						binLights[j] = binLights[j - 1];
+						binScores[j] = binScores[j - 1];
+					}
+					binLights[idx] = lightIdx;
+					binScores[idx] = score;
+					if (binSize < maxTileLights)
+						binSize++;
+				}
+
+				int[] binIdx = { 0 };
+				for (int layer = 0; layer < LAYER_COUNT; layer++)
+					for (int c = 0; c < 4; c++)
+						out[((layer * TILES_Y + y) * TILES_X + x) * 4 + c] = (short) packLightIndices(binLights, binSize, binIdx);
+			}
+		}
+		return out;
+	}
+
+	private static int packLightIndices(int[] bin, int binSize, int[] binIdx) {
+		if (binIdx[0] >= binSize)
+			return 0;
+
+		int idx0 = bin[binIdx[0]++] + 1;
+		if (binIdx[0] < binSize) {
+			int idx1 = bin[binIdx[0]] + 1;
+			if (idx0 <= 127 && idx1 <= 255) {
+				binIdx[0]++;
+				return 0x8000 | (idx1 & 0xFF) << 7 | idx0 & 0x7F;
+			} else if (idx1 <= 127 && idx0 <= 255) {
+				binIdx[0]++;
+				return 0x8000 | (idx0 & 0xFF) << 7 | idx1 & 0x7F;
+			}
+		}
+		return idx0 <= 32767 ? idx0 & 0x7FFF : 0;
+	}
+
+	private float[] tileRay(float pixelX, float pixelY) {
+		float[] ndc = { pixelX / SCENE_WIDTH * 2 - 1, pixelY / SCENE_HEIGHT * 2 - 1, 1e-10f, 1 };
+		float[] p = new float[4];
+		Mat4.mulVec(p, invViewProjMatrix, ndc);
+		float[] v = { p[0] / p[3] - cameraPos[0], p[1] / p[3] - cameraPos[1], p[2] / p[3] - cameraPos[2], 1 };
+		Mat4.mulVec(v, viewMatrix, v);
+		return normalize(v[0], v[1], v[2]);
+	}
+
+	private static float[] normalize(float x, float y, float z) {
+		float invLength = 1 / (float) Math.sqrt(x * x + y * y + z * z);
+		return new float[] { x * invLength, y * invLength, z * invLength };
+	}
+
+	private static float dot(float[] a, float[] b) {
+		return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+	}
+}
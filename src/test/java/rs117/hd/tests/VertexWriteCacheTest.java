@@ -0,0 +1,67 @@
+package rs117.hd.tests;
+
+import java.nio.IntBuffer;
+import org.junit.Test;
+import rs117.hd.renderer.zone.VertexWriteCache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class VertexWriteCacheTest {
+	@Test
+	public void testIdenticalFacesShareData() {
+		IntBuffer output = IntBuffer.allocate(1024);
+		var cache = new VertexWriteCache("Test", 64);
+		cache.setOutputBuffer(output);
+		cache.resetFaceCounts();
+		cache.beginFaceDeduplication();
+
+		int a = putFace(cache, 1);
+		int b = putFace(cache, 2);
+		assertEquals(a, putFace(cache, 1));
+		assertEquals(b, putFace(cache, 2));
+		assertNotEquals(a, b);
+
+		// Faces differing in a single value must not be merged
+		int c = cache.putFace(1, 1, 1, 1, 1, 1, 1, 1, 2);
+		assertNotEquals(a, c);
+
+		cache.endFaceDeduplication();
+		assertNotEquals(a, putFace(cache, 1));
+		cache.flush();
+
+		assertEquals(6, cache.faceCount);
+		assertEquals(2, cache.deduplicatedFaceCount);
+		// Only unique faces are written while deduplicating
+		assertEquals(4 * 9, output.position());
+		for (int i = 0; i < 9; i++) {
+			assertEquals(1, output.get(a * 3 + i));
+			assertEquals(2, output.get(b * 3 + i));
+		}
+	}
+
+	@Test
+	public void testFaceIndicesSurviveGrowth() {
+		final int faceCount = 5000;
+		IntBuffer output = IntBuffer.allocate(faceCount * 9);
+		var cache = new VertexWriteCache("Test", 64, 1024);
+		cache.setOutputBuffer(output);
+		cache.beginFaceDeduplication();
+
+		int[] indices = new int[faceCount];
+		for (int i = 0; i < faceCount; i++)
+			indices[i] = putFace(cache, i);
+		for (int i = faceCount - 1; i >= 0; i--)
+			assertEquals(indices[i], putFace(cache, i));
+		cache.endFaceDeduplication();
+		cache.flush();
+
+		assertEquals(faceCount * 9, output.position());
+		for (int i = 0; i < faceCount; i++)
+			assertEquals(i, output.get(indices[i] * 3));
+	}
+
+	private static int putFace(VertexWriteCache cache, int value) {
+		return cache.putFace(value, value, value, value, value, value, value, value, value);
+	}
+}
@@ -0,0 +1,97 @@
+package rs117.hd.tests;
+
+import org.junit.Test;
+import rs117.hd.renderer.zone.Zone;
+import rs117.hd.renderer.zone.ZoneDetailCuller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ZoneDetailCullerTest {
+	private static final float ZOOM = 512;
+	private static final float[] CAMERA_POS = { 0, -1000, 0 };
+
+	@Test
+	public void testCullsModelsBelowPixelThreshold() {
+		// A model with a radius of 32 covers 2 pixels of radius at a distance of 32 * 512 / 2 = 8192
+		int[] models = models(
+			model(0, 0, 0, 32),
+			model(4096, 0, 0, 32),
+			model(20000, 0, 0, 32),
+			model(20000, 0, 0, 256)
+		);
+		long[] culled = new long[1];
+		int count = cull(models, culled, 0, 0, 2);
+		assertEquals(1, count);
+		assertFalse(isCulled(culled, 0));
+		assertFalse(isCulled(culled, 1));
+		assertTrue(isCulled(culled, 2));
+		assertFalse(isCulled(culled, 3));
+	}
+
+	@Test
+	public void testAccountsForZoneOrigin() {
+		int[] models = model(64, 0, 64, 32);
+		long[] culled = new long[1];
+		assertEquals(0, cull(models, culled, 0, 0, 2));
+		assertEquals(1, cull(models, culled, 20000, 0, 2));
+		assertEquals(1, cull(models, culled, 0, -20000, 2));
+		assertEquals(0, cull(models, culled, 0, 0, 2));
+		assertFalse(isCulled(culled, 0));
+	}
+
+	@Test
+	public void testNeverCullsModelsAroundTheCamera() {
+		int[] models = models(model(0, -1000, 0, 8), model(0, -1000, 100, 200));
+		long[] culled = new long[1];
+		assertEquals(0, cull(models, culled, 0, 0, 16));
+	}
+
+	@Test
+	public void testClearsStaleBitsAcrossWords() {
+		int modelCount = 130;
+		int[][] list = new int[modelCount][];
+		for (int i = 0; i < modelCount; i++)
+			list[i] = model(i % 2 == 0 ? 0 : 50000, 0, 0, 16);
+		int[] models = models(list);
+
+		long[] culled = { -1, -1, -1 };
+		assertEquals(modelCount / 2, cull(models, culled, 0, 0, 1));
+		for (int i = 0; i < modelCount; i++)
+			assertEquals("Model " + i, i % 2 == 1, isCulled(culled, i));
+	}
+
+	private static int cull(int[] models, long[] culled, int baseX, int baseZ, float minPixelRadius) {
+		return ZoneDetailCuller.cull(
+			models,
+			models.length / Zone.DETAIL_MODEL_SIZE,
+			culled,
+			CAMERA_POS,
+			baseX,
+			baseZ,
+			ZOOM,
+			minPixelRadius
+		);
+	}
+
+	private static int[] model(int x, int y, int z, int radius) {
+		int[] model = new int[Zone.DETAIL_MODEL_SIZE];
+		model[2] = x;
+		model[3] = y;
+		model[4] = z;
+		model[5] = radius;
+		return model;
+	}
+
+	private static int[] models(int[]... models) {
+		int[] packed = new int[models.length * Zone.DETAIL_MODEL_SIZE];
+		for (int i = 0; i < models.length; i++)
+			System.arraycopy(models[i], 0, packed, i * Zone.DETAIL_MODEL_SIZE, Zone.DETAIL_MODEL_SIZE);
+		return packed;
+	}
+
+	private static boolean isCulled(long[] culled, int i) {
+		return (culled[i >> 6] & 1L << i) != 0;
+	}
+}